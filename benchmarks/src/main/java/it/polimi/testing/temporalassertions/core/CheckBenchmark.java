@@ -0,0 +1,114 @@
+package it.polimi.testing.temporalassertions.core;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+
+import rx.Subscriber;
+
+/**
+ * Measures the cost of each operator alone: each invocation evaluates one check on a whole synthetic stream
+ * (see {@link SyntheticStream} and {@link Operators}), through the same dispatcher used by the monitor.
+ *
+ * Besides the streams per second, the "events" counter gives the events per second, and the allocation rate
+ * per event can be obtained dividing the one of the GC profiler (run by the "jmh" task) by the length.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CheckBenchmark
+{
+    @Param({"canHappenOnlyAfter", "canHappenOnlyAfterWithin", "canHappenOnlyBefore", "canHappenOnlyBetween",
+            "cannotHappenAfter", "cannotHappenBefore", "cannotHappenBetween",
+            "mustHappenAfter", "mustHappenAfterWithin", "mustHappenBefore", "mustHappenBetween", "perWindow",
+            "exist", "existAfter", "existBefore", "existBetween",
+            "matchInOrder", "areOrdered", "delaysBetween",
+            "allHold", "anyHolds", "isNotSatisfied", "providedThatThen", "isSatisfiedIff"})
+    public String operator;
+
+    @Param({"10000"})
+    public int length;
+
+    @Param({"0.1", "0.9"})
+    public double density;
+
+    private SyntheticStream stream;
+    private Check check;
+
+    /**
+     * The events checked in each iteration, reported by JMH as a rate
+     */
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.OPERATIONS)
+    public static class Events
+    {
+        public long events;
+
+        @Setup(Level.Iteration)
+        public void reset()
+        {
+            events = 0;
+        }
+    }
+
+    @Setup(Level.Trial)
+    public void setUp()
+    {
+        stream = new SyntheticStream(length, density, 42);
+        check = Operators.build(operator, stream);
+    }
+
+    @Benchmark
+    public void check(Events counter, Blackhole blackhole)
+    {
+        CheckDispatcher dispatcher = new CheckDispatcher(Collections.singletonList(check), newResultsSubscriber(blackhole));
+        stream.replay(dispatcher, check.isTimed());
+        counter.events += length;
+    }
+
+    /**
+     * Helper to get a subscriber that consumes the results of the checks
+     * @param blackhole the JMH blackhole
+     * @return the results subscriber
+     */
+    static Subscriber<Result> newResultsSubscriber(final Blackhole blackhole)
+    {
+        return new Subscriber<Result>()
+        {
+            @Override
+            public void onCompleted()
+            {
+
+            }
+
+            @Override
+            public void onError(Throwable e)
+            {
+                throw new IllegalStateException(e);
+            }
+
+            @Override
+            public void onNext(Result result)
+            {
+                blackhole.consume(result.getOutcome());
+            }
+        };
+    }
+}
@@ -0,0 +1,149 @@
+package it.polimi.testing.temporalassertions.core;
+
+import org.hamcrest.Matcher;
+
+import java.util.Comparator;
+import java.util.concurrent.TimeUnit;
+
+import it.polimi.testing.temporalassertions.events.GenericEvent;
+
+import static it.polimi.testing.temporalassertions.core.AllEventsWhereEach.allEventsWhereEach;
+import static it.polimi.testing.temporalassertions.core.AllHold.allHold;
+import static it.polimi.testing.temporalassertions.core.AnEventThat.anEventThat;
+import static it.polimi.testing.temporalassertions.core.AnyHolds.anyHolds;
+import static it.polimi.testing.temporalassertions.core.AtLeast.atLeast;
+import static it.polimi.testing.temporalassertions.core.AtMost.atMost;
+import static it.polimi.testing.temporalassertions.core.DelaysBetween.delaysBetween;
+import static it.polimi.testing.temporalassertions.core.Exactly.exactly;
+import static it.polimi.testing.temporalassertions.core.Exist.exist;
+import static it.polimi.testing.temporalassertions.core.ExistAfterConstraint.after;
+import static it.polimi.testing.temporalassertions.core.ExistBeforeConstraint.before;
+import static it.polimi.testing.temporalassertions.core.ExistBetweenConstraint.between;
+import static it.polimi.testing.temporalassertions.core.IsSatisfied.isSatisfied;
+import static it.polimi.testing.temporalassertions.core.Not.isNotSatisfied;
+import static it.polimi.testing.temporalassertions.core.ProvidedThat.providedThat;
+import static it.polimi.testing.temporalassertions.events.GenericEvent.isGenericEventWithObjects;
+
+/**
+ * Builds one check for each operator of the library, on the events of a {@link SyntheticStream}. Each check holds
+ * on the relevant events of the stream, so it is evaluated on the whole stream (unless the operator itself can
+ * decide earlier, e.g. an existential quantifier that is already satisfied).
+ */
+class Operators
+{
+    /**
+     * The names of all the operators, the values of the operator parameter of the benchmarks
+     */
+    final static String[] NAMES =
+    {
+            "canHappenOnlyAfter", "canHappenOnlyAfterWithin", "canHappenOnlyBefore", "canHappenOnlyBetween",
+            "cannotHappenAfter", "cannotHappenBefore", "cannotHappenBetween",
+            "mustHappenAfter", "mustHappenAfterWithin", "mustHappenBefore", "mustHappenBetween", "perWindow",
+            "exist", "existAfter", "existBefore", "existBetween",
+            "matchInOrder", "areOrdered", "delaysBetween",
+            "allHold", "anyHolds", "isNotSatisfied", "providedThatThen", "isSatisfiedIff"
+    };
+
+    private final static Matcher<GenericEvent> A = isGenericEventWithObjects("A");
+    private final static Matcher<GenericEvent> B = isGenericEventWithObjects("B");
+    private final static Matcher<GenericEvent> C = isGenericEventWithObjects("C");
+    private final static Matcher<GenericEvent> NEVER = isGenericEventWithObjects("X");
+
+    /**
+     * Builds the check of an operator
+     * @param name the name of the operator, one of {@link #NAMES}
+     * @param stream the stream the check will be evaluated on
+     * @return the check
+     */
+    @SuppressWarnings("unchecked")
+    static Check build(String name, SyntheticStream stream)
+    {
+        switch(name)
+        {
+            case "canHappenOnlyAfter":
+                return anEventThat(A).canHappenOnlyAfter(anEventThat(B));
+
+            case "canHappenOnlyAfterWithin":
+                return anEventThat(A).canHappenOnlyAfter(anEventThat(B), 10, TimeUnit.MILLISECONDS);
+
+            case "canHappenOnlyBefore":
+                return anEventThat(A).canHappenOnlyBefore(anEventThat(C));
+
+            case "canHappenOnlyBetween":
+                return anEventThat(A).canHappenOnlyBetween(anEventThat(B), anEventThat(C));
+
+            case "cannotHappenAfter":
+                return anEventThat(NEVER).cannotHappenAfter(anEventThat(B));
+
+            case "cannotHappenBefore":
+                return anEventThat(NEVER).cannotHappenBefore(anEventThat(C));
+
+            case "cannotHappenBetween":
+                return anEventThat(NEVER).cannotHappenBetween(anEventThat(B), anEventThat(C));
+
+            case "mustHappenAfter":
+                return exactly(1).eventsWhereEach(A).mustHappenAfter(anEventThat(B));
+
+            case "mustHappenAfterWithin":
+                return exactly(1).eventsWhereEach(A).mustHappenAfter(anEventThat(B), 10, TimeUnit.MILLISECONDS);
+
+            case "mustHappenBefore":
+                return exactly(1).eventsWhereEach(A).mustHappenBefore(anEventThat(C));
+
+            case "mustHappenBetween":
+                return exactly(1).eventsWhereEach(A).mustHappenBetween(anEventThat(B), anEventThat(C));
+
+            case "perWindow":
+                return atMost(1000).eventsWhereEach(A).perWindow(1, TimeUnit.MILLISECONDS);
+
+            case "exist":
+                return exist(atMost(stream.getRelevantCount())).eventsWhereEach(A);
+
+            case "existAfter":
+                return exist(after(anEventThat(B)), atLeast(1)).eventsWhereEach(A);
+
+            case "existBefore":
+                return exist(before(anEventThat(C)), atLeast(1)).eventsWhereEach(A);
+
+            case "existBetween":
+                return exist(between(anEventThat(B), anEventThat(C)), exactly(1)).eventsWhereEach(A);
+
+            case "matchInOrder":
+                // One matcher for each "A" of the pattern "B", "A", "C"
+                Matcher<GenericEvent>[] matchers = new Matcher[(stream.getRelevantCount()+1)/3];
+                for(int i=0; i<matchers.length; i++) matchers[i] = A;
+                return allEventsWhereEach(A).matchInOrder(matchers);
+
+            case "areOrdered":
+                return allEventsWhereEach(A).areOrdered(new Comparator<GenericEvent>()
+                {
+                    @Override
+                    public int compare(GenericEvent e1, GenericEvent e2)
+                    {
+                        return Long.compare(e1.getSequence(), e2.getSequence());
+                    }
+                });
+
+            case "delaysBetween":
+                return delaysBetween(anEventThat(B), anEventThat(C)).havePercentileBelow(99, 10, TimeUnit.MILLISECONDS);
+
+            case "allHold":
+                return allHold(build("canHappenOnlyAfter", stream), build("mustHappenBefore", stream));
+
+            case "anyHolds":
+                return anyHolds(build("canHappenOnlyAfter", stream), build("mustHappenBefore", stream));
+
+            case "isNotSatisfied":
+                return isNotSatisfied(build("canHappenOnlyBetween", stream));
+
+            case "providedThatThen":
+                return providedThat(build("canHappenOnlyAfter", stream)).then(build("mustHappenBetween", stream));
+
+            case "isSatisfiedIff":
+                return isSatisfied(build("canHappenOnlyAfter", stream)).iff(build("mustHappenBetween", stream));
+
+            default:
+                throw new IllegalArgumentException("Unknown operator "+name);
+        }
+    }
+}
@@ -0,0 +1,67 @@
+package it.polimi.testing.temporalassertions.core;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures how the cost of the dispatcher grows with the number of checks: each invocation evaluates a suite
+ * with all the operators in turn on a whole synthetic stream, so the matchers shared by the checks are evaluated
+ * only once per event (see {@link MatcherCache}).
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SuiteBenchmark
+{
+    @Param({"1", "10", "100"})
+    public int checks;
+
+    @Param({"10000"})
+    public int length;
+
+    @Param({"0.1", "0.9"})
+    public double density;
+
+    private SyntheticStream stream;
+    private List<Check> suite;
+    private boolean timed;
+
+    @Setup(Level.Trial)
+    public void setUp()
+    {
+        stream = new SyntheticStream(length, density, 42);
+        suite = new ArrayList<>();
+        for(int i=0; i<checks; i++)
+        {
+            Check check = Operators.build(Operators.NAMES[i%Operators.NAMES.length], stream);
+            timed |= check.isTimed();
+            suite.add(check);
+        }
+    }
+
+    @Benchmark
+    public void check(CheckBenchmark.Events counter, Blackhole blackhole)
+    {
+        CheckDispatcher dispatcher = new CheckDispatcher(suite, CheckBenchmark.newResultsSubscriber(blackhole));
+        stream.replay(dispatcher, timed);
+        counter.events += length;
+    }
+}
@@ -0,0 +1,86 @@
+package it.polimi.testing.temporalassertions.core;
+
+import java.util.Random;
+
+import it.polimi.testing.temporalassertions.events.Event;
+import it.polimi.testing.temporalassertions.events.GenericEvent;
+
+/**
+ * A synthetic stream of generic events for the benchmarks, always the same for the same parameters
+ *
+ * The relevant events repeat the pattern "B", "A", "C", so that the checks built by {@link Operators} keep
+ * running until the end of the stream instead of failing on the first events. They are mixed with noise
+ * events ("N") that are seen by all the checks but match none of their matchers. Consecutive events are
+ * stamped one microsecond apart.
+ */
+class SyntheticStream
+{
+    private final static Object[] PATTERN = {"B", "A", "C"};
+    private final static long DELAY_NANOS = 1000;
+
+    private final Event[] events;
+    private final int relevantCount;
+
+    /**
+     * Constructor
+     * @param length the number of events of the stream
+     * @param density the fraction of relevant events, between 0 and 1
+     * @param seed the seed of the choice between relevant and noise events
+     */
+    SyntheticStream(int length, double density, long seed)
+    {
+        Random random = new Random(seed);
+        events = new Event[length];
+        int relevant = 0;
+        for(int i=0; i<length; i++)
+        {
+            GenericEvent event;
+            if(random.nextDouble()<density)
+            {
+                event = new GenericEvent(PATTERN[relevant%PATTERN.length]);
+                relevant++;
+            }
+            else
+            {
+                event = new GenericEvent("N");
+            }
+            EventStamps.stamp(event, i*DELAY_NANOS, i);
+            events[i] = event;
+        }
+        relevantCount = relevant;
+    }
+
+    /**
+     * Getter
+     * @return the events of the stream
+     */
+    Event[] getEvents()
+    {
+        return events;
+    }
+
+    /**
+     * Getter
+     * @return the number of relevant events of the stream
+     */
+    int getRelevantCount()
+    {
+        return relevantCount;
+    }
+
+    /**
+     * Sends the whole stream to a dispatcher in batches, as the {@link EventIngestion} does, and completes it
+     * @param dispatcher the dispatcher of the checks
+     * @param timed true if the dispatcher must also receive the time after each batch
+     */
+    void replay(CheckDispatcher dispatcher, boolean timed)
+    {
+        for(int from=0; from<events.length && !dispatcher.isUnsubscribed(); from+=EventIngestion.BATCH_SIZE)
+        {
+            int to = Math.min(from+EventIngestion.BATCH_SIZE, events.length);
+            dispatcher.onNextBatch(events, from, to);
+            if(timed && !dispatcher.isUnsubscribed()) dispatcher.onTime(events[to-1].getTimestamp());
+        }
+        dispatcher.onCompleted();
+    }
+}
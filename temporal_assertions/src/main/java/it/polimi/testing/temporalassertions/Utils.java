@@ -2,6 +2,9 @@ package it.polimi.testing.temporalassertions;
 
 import android.view.View;
 
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+
 /**
  * Some helper methods
  */
@@ -34,6 +37,17 @@ public class Utils
         return sb.toString();
     }
 
+    /**
+     * Helper to describe a duration as a string, i.e. {@code describeDuration(200, MILLISECONDS)} returns {@code "200 milliseconds"}
+     * @param time the duration
+     * @param unit the time unit of the duration
+     * @return the description
+     */
+    public static String describeDuration(long time, TimeUnit unit)
+    {
+        return time+" "+unit.name().toLowerCase(Locale.US);
+    }
+
     /**
      * Helper to describe a view as a string
      * @param view the view
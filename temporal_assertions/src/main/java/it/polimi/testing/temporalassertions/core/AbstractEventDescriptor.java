@@ -2,9 +2,6 @@ package it.polimi.testing.temporalassertions.core;
 
 import org.hamcrest.Matcher;
 
-import java.util.ArrayList;
-import java.util.List;
-
 import it.polimi.testing.temporalassertions.events.Event;
 
 /**
@@ -34,88 +31,4 @@ public abstract class AbstractEventDescriptor
     {
         return matcher;
     }
-
-    /**
-     * Utility class that allows to store a "state" of the current computation
-     *
-     * Can be used by the implementations' methods to express the state of a check on this descriptor
-     */
-    static class State
-    {
-        private int state;
-        private List<Event> events = new ArrayList<>();
-
-        /**
-         * Constructor
-         * @param state the initial state
-         */
-        public State(int state)
-        {
-            this.state = state;
-        }
-
-        /**
-         * Getter
-         * @return the current state
-         */
-        public int getState()
-        {
-            return state;
-        }
-
-        /**
-         * Setter
-         * @param state the new state
-         */
-        public void setState(int state)
-        {
-            this.state = state;
-        }
-
-        /**
-         * Getter
-         * @return the events stored in the object
-         */
-        public List<Event> getEvents()
-        {
-            return events;
-        }
-
-        /**
-         * Helper equivalent to getEvents().get(i)
-         * @param i the index
-         * @return the event at the given index
-         */
-        public Event getEvent(int i)
-        {
-            return events.get(i);
-        }
-
-        /**
-         * Setter
-         * @param events the event(s) to be set in the state
-         */
-        public void setEvents(Event... events)
-        {
-            clearEvents();
-            for(Event e: events) addEvent(e);
-        }
-
-        /**
-         * Adder
-         * @param newEvent the event to be added to the current list of events
-         */
-        public void addEvent(Event newEvent)
-        {
-            this.events.add(newEvent);
-        }
-
-        /**
-         * Helper equivalent to getEvents().clear();
-         */
-        public void clearEvents()
-        {
-            this.events.clear();
-        }
-    }
 }
@@ -6,10 +6,12 @@ import it.polimi.testing.temporalassertions.events.Event;
 
 /**
  * An abstract quantifier. The implementations express some condition on the number of events.
+ *
+ * The quantifier is immutable: the number of events is counted by each evaluation of the check that uses it,
+ * so the same quantifier can be shared by several checks.
  */
 abstract class AbstractQuantifier
 {
-    private int counter;
     private final int desiredBound;
 
     /**
@@ -32,33 +34,19 @@ abstract class AbstractQuantifier
         return new EventsWhereEach(this, matcher);
     }
 
-    /**
-     * Simply +1 the internal counter
-     */
-    void increaseCounter()
-    {
-        counter++;
-    }
-
-    /**
-     * Simply sets to 0 the internal counter
-     */
-    void resetCounter()
-    {
-        counter = 0;
-    }
-
     /**
      * Allows the implementations to build the quantifier logic
-     * @return true if the condition of the quantifier is met given the current counter value
+     * @param counter the number of events counted so far
+     * @return true if the condition of the quantifier is met given the counter value
      */
-    protected abstract boolean isConditionMet();
+    protected abstract boolean isConditionMet(int counter);
 
     /**
      * Allows the implementations to short-circuit the computation in case the condition can never be reached
+     * @param counter the number of events counted so far
      * @return true if we can short-circuit the computation
      */
-    protected abstract boolean canStopCurrentComputation();
+    protected abstract boolean canStopCurrentComputation(int counter);
 
     /**
      * Allows the implementations to describe in a string their meaning
@@ -67,11 +55,12 @@ abstract class AbstractQuantifier
     protected abstract String getDescription();
 
     /**
-     * Allows the implementations to describe the error when {@link AbstractQuantifier#isConditionMet()}
+     * Allows the implementations to describe the error when {@link AbstractQuantifier#isConditionMet(int)}
      * returns false
+     * @param counter the number of events counted so far
      * @return a string explaining why the condition is not met
      */
-    protected abstract String describeError();
+    protected abstract String describeError(int counter);
 
     /**
      * Getter
@@ -81,13 +70,4 @@ abstract class AbstractQuantifier
     {
         return desiredBound;
     }
-
-    /**
-     * Getter
-     * @return the current counter value
-     */
-    int getCounter()
-    {
-        return counter;
-    }
 }
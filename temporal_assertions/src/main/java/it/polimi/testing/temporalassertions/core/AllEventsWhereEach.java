@@ -7,7 +7,6 @@ import org.hamcrest.Matcher;
 
 import java.util.Comparator;
 
-import it.polimi.testing.temporalassertions.Utils;
 import it.polimi.testing.temporalassertions.events.Event;
 
 /**
@@ -40,37 +39,32 @@ public class AllEventsWhereEach<T extends Event> extends AbstractEventDescriptor
      */
     Check are(final AbstractQuantifier quantifier)
     {
-        return new Check(
-                "All events where each "+getMatcher()+" are "+quantifier.getDescription(),
+        final int E = 1;
 
-                new CheckSubscriber()
-                {
-                    @Override
-                    public void onNext(Event event)
-                    {
-                        // If the event matches...
-                        if(getMatcher().matches(event))
-                        {
-                            // Increase counter
-                            quantifier.increaseCounter();
-
-                            // Check if we can short-circuit the computation
-                            if(quantifier.canStopCurrentComputation())
-                            {
-                                endCheck();
-                            }
-                        }
-                    }
+        // If the event matches, increase counter and check if we can short-circuit the computation
+        final Automaton automaton = Automaton.builder(1, getMatcher())
+                .on(0, E, 0, Automaton.COUNT | Automaton.END_IF_DECIDED)
+                .build();
 
+        return new Check(
+                LazyString.of("All events where each ", getMatcher(), " are ", quantifier.getDescription()),
+
+                getMatcher())
+        {
+            @Override
+            protected CheckSubscriber newCheckSubscriber()
+            {
+                return new AutomatonSubscriber(automaton, quantifier)
+                {
                     @NonNull
                     @Override
                     public Result getFinalResult()
                     {
                         Outcome outcome;
-                        String report;
+                        CharSequence report;
 
                         // Success if the quantifier's condition is met
-                        if(quantifier.isConditionMet())
+                        if(isConditionMet())
                         {
                             outcome = Outcome.SUCCESS;
                         }
@@ -80,10 +74,12 @@ public class AllEventsWhereEach<T extends Event> extends AbstractEventDescriptor
                         {
                             outcome = Outcome.FAILURE;
                         }
-                        report = "Events were "+quantifier.getCounter();
+                        report = LazyString.of("Events were ", getCounter());
                         return new Result(outcome, report);
                     }
-                });
+                };
+            }
+        };
     }
 
     /**
@@ -96,10 +92,19 @@ public class AllEventsWhereEach<T extends Event> extends AbstractEventDescriptor
     @SafeVarargs
     public final Check matchInOrder(final Matcher<T>... matchers)
     {
-        return new Check(
-                "All events where each "+getMatcher()+" satisfy in order "+Utils.arrayToString(matchers),
+        // Copy the matchers one by one, so that the generic array of the caller is never passed around
+        Matcher<?>[] inOrder = new Matcher<?>[matchers.length];
+        for(int k=0; k<matchers.length; k++) inOrder[k] = matchers[k];
 
-                new CheckSubscriber()
+        return new Check(
+                LazyString.of("All events where each ", getMatcher(), " satisfy in order [\"", LazyString.join("\", \"", inOrder), "\"]"),
+
+                prepend(getMatcher(), inOrder))
+        {
+            @Override
+            protected CheckSubscriber newCheckSubscriber()
+            {
+                return new CheckSubscriber()
                 {
                     private int i = 0;
                     private boolean oneDoesNotMatch = false;
@@ -109,13 +114,13 @@ public class AllEventsWhereEach<T extends Event> extends AbstractEventDescriptor
                     public void onNext(Event event)
                     {
                         // If we have a match...
-                        if(getMatcher().matches(event))
+                        if(matches(getMatcher(), event))
                         {
                             // If we are in a valid situation...
                             if(i<matchers.length)
                             {
                                 // If the current event matches the current matcher, simply increase the index
-                                if(matchers[i].matches(event)) i++;
+                                if(matches(matchers[i], event)) i++;
 
                                 // Otherwise (no match), short-circuit
                                 else
@@ -136,12 +141,33 @@ public class AllEventsWhereEach<T extends Event> extends AbstractEventDescriptor
                         }
                     }
 
+                    @Override
+                    public void onNextBatch(Event[] events, int from, int to)
+                    {
+                        for(int k=from; k<to; k++)
+                        {
+                            Event event = events[k];
+
+                            // Fast path: the event is not interesting or matches the current matcher
+                            if(!matches(getMatcher(), event)) continue;
+                            if(i<matchers.length && matches(matchers[i], event))
+                            {
+                                i++;
+                                continue;
+                            }
+
+                            // Otherwise the check ends here
+                            onNext(event);
+                            return;
+                        }
+                    }
+
                     @NonNull
                     @Override
                     public Result getFinalResult()
                     {
                         Outcome outcome;
-                        String report;
+                        CharSequence report;
 
                         // Success, if we found exactly "matchers.length" events and they matched in order
                         if(i==matchers.length)
@@ -158,25 +184,27 @@ public class AllEventsWhereEach<T extends Event> extends AbstractEventDescriptor
                             // We found more events than #matchers
                             if(i>matchers.length)
                             {
-                                report = "The events satisfied in order the given matchers but an extra event "+event+" was found afterwards";
+                                report = LazyString.of("The events satisfied in order the given matchers but an extra event ", event, " was found afterwards");
                             }
 
                             // One event did not match
                             else if(oneDoesNotMatch)
                             {
-                                report = "The event "+event+" does not match '"+matchers[i]+"'";
+                                report = LazyString.of("The event ", event, " does not match '", matchers[i], "'");
                             }
 
                             // We found less events that #matchers
                             else
                             {
-                                report = "The events were not enough to satisfy all matchers: no event satisfied '"+matchers[i]+"'";
+                                report = LazyString.of("The events were not enough to satisfy all matchers: no event satisfied '", matchers[i], "'");
                             }
                         }
 
                         return new Result(outcome, report);
                     }
-                });
+                };
+            }
+        };
     }
 
     /**
@@ -188,9 +216,14 @@ public class AllEventsWhereEach<T extends Event> extends AbstractEventDescriptor
     public final Check areOrdered(final Comparator<T> comparator)
     {
         return new Check(
-                "All events where each "+getMatcher()+" are in the order defined by the comparator: "+comparator,
-
-                new CheckSubscriber()
+                LazyString.of("All events where each ", getMatcher(), " are in the order defined by the comparator: ", comparator),
+
+                getMatcher())
+        {
+            @Override
+            protected CheckSubscriber newCheckSubscriber()
+            {
+                return new CheckSubscriber()
                 {
                     private int matchedEvents = 0;
                     private boolean wrongOrder = false;
@@ -212,7 +245,7 @@ public class AllEventsWhereEach<T extends Event> extends AbstractEventDescriptor
                         }
 
                         // If we have a match...
-                        if(getMatcher().matches(interestingEvent))
+                        if(matches(getMatcher(), interestingEvent))
                         {
                             matchedEvents++;
 
@@ -233,17 +266,17 @@ public class AllEventsWhereEach<T extends Event> extends AbstractEventDescriptor
                     public Result getFinalResult()
                     {
                         Outcome outcome;
-                        String report;
+                        CharSequence report;
 
                         if(wrongOrder)
                         {
                             outcome = Outcome.FAILURE;
-                            report = "Events "+previousEvent+" and "+wrongEvent+" were not ordered";
+                            report = LazyString.of("Events ", previousEvent, " and ", wrongEvent, " were not ordered");
                         }
                         else if(matchedEvents>0)
                         {
                             outcome = Outcome.SUCCESS;
-                            report = "All "+matchedEvents+" events were in order";
+                            report = LazyString.of("All ", matchedEvents, " events were in order");
                         }
                         else
                         {
@@ -253,6 +286,22 @@ public class AllEventsWhereEach<T extends Event> extends AbstractEventDescriptor
 
                         return new Result(outcome, report);
                     }
-                });
+                };
+            }
+        };
+    }
+
+    /**
+     * Helper to build an array with the given matcher followed by all the other ones
+     * @param first the first matcher
+     * @param others the following matchers
+     * @return the array of matchers
+     */
+    private static Matcher<?>[] prepend(Matcher<?> first, Matcher<?>[] others)
+    {
+        Matcher<?>[] all = new Matcher<?>[others.length+1];
+        all[0] = first;
+        System.arraycopy(others, 0, all, 1, others.length);
+        return all;
     }
 }
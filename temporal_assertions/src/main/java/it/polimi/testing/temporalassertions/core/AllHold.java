@@ -1,6 +1,8 @@
 package it.polimi.testing.temporalassertions.core;
 
-import it.polimi.testing.temporalassertions.Utils;
+import java.util.ArrayList;
+import java.util.List;
+
 
 /**
  * Connective that allows to express a logic AND between two or more checks: it returns SUCCESS only if all
@@ -16,7 +18,7 @@ public class AllHold extends CheckConnective
      */
     private AllHold(Check... checks)
     {
-        super("("+Utils.join(") AND (", checks)+")", checks);
+        super(LazyString.of("(", LazyString.join(") AND (", checks), ")"), checks);
     }
 
     /**
@@ -39,8 +41,8 @@ public class AllHold extends CheckConnective
         return new ResultsSubscriber()
         {
             private boolean oneFailed = false;
-            private String reportsListForSuccess = "";
-            private String failedReport;
+            private final List<CharSequence> reportsListForSuccess = new ArrayList<>();
+            private CharSequence failedReport;
 
             @Override
             Result getFinalResult()
@@ -52,7 +54,7 @@ public class AllHold extends CheckConnective
                 }
                 else
                 {
-                    return new Result(Outcome.SUCCESS, reportsListForSuccess);
+                    return new Result(Outcome.SUCCESS, LazyString.joinNonEmpty("; ", reportsListForSuccess));
                 }
             }
 
@@ -63,11 +65,11 @@ public class AllHold extends CheckConnective
                 if(Outcome.FAILURE.equals(result.getOutcome()))
                 {
                     oneFailed = true;
-                    failedReport = result.getReport();
+                    failedReport = result.getLazyReport();
                     return false;
                 }
 
-                reportsListForSuccess += ("".equals(reportsListForSuccess) ? "" : "; ")+result.getReport();
+                reportsListForSuccess.add(result.getLazyReport());
 
                 return true;
             }
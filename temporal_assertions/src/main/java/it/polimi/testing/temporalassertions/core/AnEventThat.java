@@ -5,6 +5,9 @@ import android.support.annotation.NonNull;
 
 import org.hamcrest.Matcher;
 
+import java.util.concurrent.TimeUnit;
+
+import it.polimi.testing.temporalassertions.Utils;
 import it.polimi.testing.temporalassertions.events.Event;
 
 import static it.polimi.testing.temporalassertions.core.AtLeast.atLeast;
@@ -45,60 +48,46 @@ public class AnEventThat extends AbstractEventDescriptor
      */
     public Check canHappenOnlyAfter(final AnEventThat eventBefore)
     {
-        return new Check(
-                "Every event that "+getMatcher()+" happens after an event that "+eventBefore.getMatcher(),
+        final int FOUND_NO_E2 = 0;
+        final int FOUND_E2 = 1;
+        final int FOUND_E1_BEFORE_E2 = 2;
 
-                new CheckSubscriber()
-                {
-                    private final static int FOUND_NO_E2 = 0;
-                    private final static int FOUND_E2 = 1;
-                    private final static int FOUND_E1_BEFORE_E2 = 2;
+        final int E2 = 1;
+        final int E1 = 1<<1;
 
-                    private final State state = new State(FOUND_NO_E2);
+        final Automaton automaton = Automaton.builder(3, eventBefore.getMatcher(), getMatcher())
 
-                    @Override
-                    public void onNext(Event event)
-                    {
-                        switch(state.getState())
-                        {
-                            // If we are still waiting for "eventBefore"...
-                            case FOUND_NO_E2:
+                // If I find an event that matches the parameter, complete (success): from this point anything can happen, don't care anymore
+                .on(FOUND_NO_E2, E2, FOUND_E2, Automaton.SET_WITNESS | Automaton.END)
 
-                                // If I find an event that matches the parameter...
-                                if(eventBefore.getMatcher().matches(event))
-                                {
-                                    // Complete (success): from this point anything can happen, don't care anymore
-                                    state.setState(FOUND_E2);
-                                    state.setEvents(event);
-                                    endCheck();
-                                }
+                // If I find an event that matches the field before one that matches the parameter, complete (error)
+                .on(FOUND_NO_E2, E1, FOUND_E1_BEFORE_E2, Automaton.SET_WITNESS | Automaton.END)
 
-                                // If I find an event that matches the field before one that matches the parameter...
-                                else if(getMatcher().matches(event))
-                                {
-                                    // Complete (error)
-                                    state.setState(FOUND_E1_BEFORE_E2);
-                                    state.setEvents(event);
-                                    endCheck();
-                                }
-
-                                break;
-                        }
-                    }
+                .build();
 
+        return new Check(
+                LazyString.of("Every event that ", getMatcher(), " happens after an event that ", eventBefore.getMatcher()),
+
+                eventBefore.getMatcher(), getMatcher())
+        {
+            @Override
+            protected CheckSubscriber newCheckSubscriber()
+            {
+                return new AutomatonSubscriber(automaton, null)
+                {
                     @NonNull
                     @Override
                     public Result getFinalResult()
                     {
                         Outcome outcome = null;
-                        String report = null;
-                        switch(state.getState())
+                        CharSequence report = null;
+                        switch(getState())
                         {
                             // Warning if no "eventBefore" has been found in the sequence
                             case FOUND_NO_E2:
 
                                 outcome = Outcome.WARNING;
-                                report = "No event that "+eventBefore.getMatcher()+" was found in the sequence";
+                                report = LazyString.of("No event that ", eventBefore.getMatcher(), " was found in the sequence");
 
                                 break;
 
@@ -106,7 +95,7 @@ public class AnEventThat extends AbstractEventDescriptor
                             case FOUND_E2:
 
                                 outcome = Outcome.SUCCESS;
-                                report = "No event that "+getMatcher()+" was found before "+state.getEvent(0);
+                                report = LazyString.of("No event that ", getMatcher(), " was found before ", getWitness(0));
 
                                 break;
 
@@ -114,93 +103,169 @@ public class AnEventThat extends AbstractEventDescriptor
                             case FOUND_E1_BEFORE_E2:
 
                                 outcome = Outcome.FAILURE;
-                                report = state.getEvent(0)+" was found before an event that "+eventBefore.getMatcher();
+                                report = LazyString.of(getWitness(0), " was found before an event that ", eventBefore.getMatcher());
 
                                 break;
                         }
 
                         return new Result(outcome, report);
                     }
-                });
+                };
+            }
+        };
     }
 
     /**
-     * Checks that {@code this} is ONLY before {@code eventAfter}, i.e. there cannot be any {@code this} after
-     * {@code eventAfter}
-     * @param eventAfter the descriptor of the event after which we cannot find {@code this}
-     * @return the check will return SUCCESS if every {@code this} is before a {@code eventAfter} or is not in
-     *         the sequence at all, FAILURE if there's at least one after {@code eventBefore} and WARNING if no
-     *         {@code this} has been found in the sequence
+     * Timed version of {@link AnEventThat#canHappenOnlyAfter(AnEventThat)}: {@code this} can happen ONLY within the
+     * given time after an {@code eventBefore}. For example {@code anEventThat(m1).canHappenOnlyAfter(anEventThat(m2), 200, MILLISECONDS)}
+     * means that every {@code this} must be at most 200 ms after the last {@code eventBefore}. The time is the one
+     * of the monitor, see {@link Event#getTimestamp()}.
+     * @param eventBefore the descriptor of the event after which we can find {@code this}
+     * @param time the time limit after each {@code eventBefore}
+     * @param unit the time unit of the time limit
+     * @return the check will return SUCCESS if every {@code this} is within the time limit after an {@code eventBefore}
+     *         or is not in the sequence at all, FAILURE if there's at least one that is not and WARNING if no
+     *         {@code eventBefore} has been found in the sequence
      */
-    public Check canHappenOnlyBefore(final AnEventThat eventAfter)
+    public Check canHappenOnlyAfter(final AnEventThat eventBefore, final long time, final TimeUnit unit)
     {
-        return new Check(
-                "Every event that "+getMatcher()+" happens before an event that "+eventAfter.getMatcher(),
+        final int CLOSED = 0;
+        final int OPEN = 1;
+        final int FOUND_E1_OUTSIDE = 2;
 
-                new CheckSubscriber()
-                {
-                    private final static int CORRECT = 0;
-                    private final static int FOUND_E1 = 1;
+        final int E2 = 1;
+        final int E1 = 1<<1;
+
+        final Automaton automaton = Automaton.builder(3, eventBefore.getMatcher(), getMatcher())
+
+                // If I find an event that matches the parameter, the time limit (re)starts
+                .on(CLOSED, E2, OPEN, Automaton.SET_WITNESS | Automaton.TALLY | Automaton.START_TIMER)
+                .on(OPEN, E2, OPEN, Automaton.SET_WITNESS | Automaton.TALLY | Automaton.START_TIMER)
+
+                // If I find an event that matches the field within the time limit, count it
+                .on(OPEN, E1, OPEN, Automaton.COUNT)
+
+                // If I find an event that matches the field outside the time limit, complete (error)
+                .on(CLOSED, E1, FOUND_E1_OUTSIDE, Automaton.ADD_WITNESS | Automaton.END)
 
-                    private final State state = new State(CORRECT);
+                // When the time is up, the following events that match the field are errors
+                .within(unit.toNanos(time))
+                .onTimeout(OPEN, CLOSED, 0)
 
-                    private boolean foundAtLeastOneE1 = false;
+                .build();
 
+        return new Check(
+                LazyString.of("Every event that ", getMatcher(), " happens within ", Utils.describeDuration(time, unit), " after an event that ", eventBefore.getMatcher()),
+
+                eventBefore.getMatcher(), getMatcher())
+        {
+            @Override
+            boolean isTimed()
+            {
+                return true;
+            }
+
+            @Override
+            protected CheckSubscriber newCheckSubscriber()
+            {
+                return new AutomatonSubscriber(automaton, null)
+                {
+                    @NonNull
                     @Override
-                    public void onNext(Event event)
+                    public Result getFinalResult()
                     {
-                        switch(state.getState())
+                        Outcome outcome;
+                        CharSequence report;
+
+                        // Failure if we found a "this" outside the time limits
+                        if(getState()==FOUND_E1_OUTSIDE)
                         {
-                            // If we are in the CORRECT state (i.e. found an "eventAfter" after each "this" so far)
-                            case CORRECT:
+                            outcome = Outcome.FAILURE;
+                            report = getTally()<=0
+                                    ? LazyString.of(getWitness(0), " was found before an event that ", eventBefore.getMatcher())
+                                    : LazyString.of(getWitness(1), " was found more than ", Utils.describeDuration(time, unit), " after ", getWitness(0));
+                        }
 
-                                // If we match "this", go to the FOUND_E1 state
-                                if(getMatcher().matches(event))
-                                {
-                                    state.setState(FOUND_E1);
-                                    state.setEvents(event);
-                                    foundAtLeastOneE1 = true;
-                                }
+                        // Warning if no "eventBefore" has been found in the sequence
+                        else if(getTally()<=0)
+                        {
+                            outcome = Outcome.WARNING;
+                            report = LazyString.of("No event that ", eventBefore.getMatcher(), " was found in the sequence");
+                        }
 
-                                break;
+                        // Success otherwise
+                        else
+                        {
+                            outcome = Outcome.SUCCESS;
+                            report = LazyString.of("All the ", getCounter(), " events that ", getMatcher(), " were found within ", Utils.describeDuration(time, unit), " after an event that ", eventBefore.getMatcher());
+                        }
 
-                            // If we found a "this" but not an "eventAfter" after it...
-                            case FOUND_E1:
+                        return new Result(outcome, report);
+                    }
+                };
+            }
+        };
+    }
 
-                                // If we match "eventAfter", go back to CORRECT
-                                if(eventAfter.getMatcher().matches(event))
-                                {
-                                    state.setState(CORRECT);
-                                    state.setEvents(event);
-                                }
+    /**
+     * Checks that {@code this} is ONLY before {@code eventAfter}, i.e. there cannot be any {@code this} after
+     * {@code eventAfter}
+     * @param eventAfter the descriptor of the event after which we cannot find {@code this}
+     * @return the check will return SUCCESS if every {@code this} is before a {@code eventAfter} or is not in
+     *         the sequence at all, FAILURE if there's at least one after {@code eventBefore} and WARNING if no
+     *         {@code this} has been found in the sequence
+     */
+    public Check canHappenOnlyBefore(final AnEventThat eventAfter)
+    {
+        final int CORRECT = 0;
+        final int FOUND_E1 = 1;
 
-                                break;
-                        }
-                    }
+        final int E1 = 1;
+        final int E2 = 1<<1;
+
+        final Automaton automaton = Automaton.builder(2, getMatcher(), eventAfter.getMatcher())
+
+                // If we are in the CORRECT state (i.e. found an "eventAfter" after each "this" so far) and we match "this", go to the FOUND_E1 state
+                .on(CORRECT, E1, FOUND_E1, Automaton.SET_WITNESS | Automaton.TALLY)
+
+                // If we found a "this" but not an "eventAfter" after it and we match "eventAfter", go back to CORRECT
+                .on(FOUND_E1, E2, CORRECT, Automaton.SET_WITNESS)
+
+                .build();
 
+        return new Check(
+                LazyString.of("Every event that ", getMatcher(), " happens before an event that ", eventAfter.getMatcher()),
+
+                getMatcher(), eventAfter.getMatcher())
+        {
+            @Override
+            protected CheckSubscriber newCheckSubscriber()
+            {
+                return new AutomatonSubscriber(automaton, null)
+                {
                     @NonNull
                     @Override
                     public Result getFinalResult()
                     {
                         Outcome outcome = null;
-                        String report = null;
-                        switch(state.getState())
+                        CharSequence report = null;
+                        switch(getState())
                         {
                             // If we are in the CORRECT state...
                             case CORRECT:
 
                                 // Success if we found at least one "this" and a "eventAfter" after every one of them
-                                if(foundAtLeastOneE1)
+                                if(getTally()>0)
                                 {
                                     outcome = Outcome.SUCCESS;
-                                    report = "Every event that "+getMatcher()+" was found before "+state.getEvent(0);
+                                    report = LazyString.of("Every event that ", getMatcher(), " was found before ", getWitness(0));
                                 }
 
                                 // Warning if no "this" has been found in the sequence
                                 else
                                 {
                                     outcome = Outcome.WARNING;
-                                    report = "No event that "+getMatcher()+" was found in the sequence";
+                                    report = LazyString.of("No event that ", getMatcher(), " was found in the sequence");
                                 }
 
                                 break;
@@ -209,14 +274,16 @@ public class AnEventThat extends AbstractEventDescriptor
                             case FOUND_E1:
 
                                 outcome = Outcome.FAILURE;
-                                report = "Event "+state.getEvent(0)+" was found after every event that "+eventAfter.getMatcher();
+                                report = LazyString.of("Event ", getWitness(0), " was found after every event that ", eventAfter.getMatcher());
 
                                 break;
                         }
 
                         return new Result(outcome, report);
                     }
-                });
+                };
+            }
+        };
     }
 
     /**
@@ -231,104 +298,73 @@ public class AnEventThat extends AbstractEventDescriptor
      */
     public Check canHappenOnlyBetween(final AnEventThat eventBefore, final AnEventThat eventAfter)
     {
-        return new Check(
-                "Every event that "+getMatcher()+" happens only between a pair of events where the first "+eventBefore.getMatcher()+" and the second "+eventAfter.getMatcher(),
+        final int OUTSIDE_PAIR = 0;
+        final int INSIDE_PAIR = 1;
+        final int FOUND_E1_OUTSIDE = 2;
 
-                new CheckSubscriber()
-                {
-                    private final static int OUTSIDE_PAIR = 0;
-                    private final static int INSIDE_PAIR = 1;
-                    private final static int FOUND_E1_OUTSIDE = 2;
+        final int E1 = 1;
+        final int E2 = 1<<1;
+        final int E3 = 1<<2;
 
-                    private final State state = new State(OUTSIDE_PAIR);
+        final Automaton automaton = Automaton.builder(3, getMatcher(), eventBefore.getMatcher(), eventAfter.getMatcher())
 
-                    private boolean foundAtLeastOneE1 = false;
-                    private int eventsInCurrentPair = 0;
+                // If "this" is found outside a pair, failure
+                .on(OUTSIDE_PAIR, E1, FOUND_E1_OUTSIDE, Automaton.SET_WITNESS | Automaton.END)
 
-                    @Override
-                    public void onNext(Event event)
-                    {
-                        switch(state.getState())
-                        {
-                            case OUTSIDE_PAIR:
-
-                                // If "this" is found outside a pair, failure
-                                if(getMatcher().matches(event))
-                                {
-                                    state.setState(FOUND_E1_OUTSIDE);
-                                    state.setEvents(event);
-                                    endCheck();
-                                }
-
-                                // If "eventBefore" is found, start a pair
-                                else if(eventBefore.getMatcher().matches(event))
-                                {
-                                    state.setState(INSIDE_PAIR);
-                                }
-
-                                break;
-
-                            case INSIDE_PAIR:
+                // If "eventBefore" is found, start a pair
+                .on(OUTSIDE_PAIR, E2, INSIDE_PAIR, 0)
 
-                                // Get matches
-                                boolean isEventBefore = eventBefore.getMatcher().matches(event);
-                                boolean isEventAfter = eventAfter.getMatcher().matches(event);
-                                boolean isBoth = isEventBefore && isEventAfter;
+                // If it's both "eventBefore" and "eventAfter", just reset the count
+                .on(INSIDE_PAIR, E2 | E3, INSIDE_PAIR, Automaton.RESET)
 
-                                // If it's both "eventBefore" and "eventAfter", just reset the count
-                                if(isBoth)
-                                {
-                                    eventsInCurrentPair = 0;
-                                }
-
-                                // If "eventAfter" is found, end a pair
-                                else if(isEventAfter)
-                                {
-                                    state.setState(OUTSIDE_PAIR);
-                                    eventsInCurrentPair = 0;
-                                }
+                // If "eventAfter" is found, end a pair
+                .on(INSIDE_PAIR, E3, OUTSIDE_PAIR, Automaton.RESET)
 
-                                // Count the "this" found in the current pair
-                                else if(getMatcher().matches(event))
-                                {
-                                    foundAtLeastOneE1 = true;
-                                    eventsInCurrentPair++;
-                                }
+                // Count the "this" found in the current pair
+                .on(INSIDE_PAIR, E1, INSIDE_PAIR, Automaton.COUNT | Automaton.TALLY)
 
-                                break;
-                        }
-                    }
+                .build();
 
+        return new Check(
+                LazyString.of("Every event that ", getMatcher(), " happens only between a pair of events where the first ", eventBefore.getMatcher(), " and the second ", eventAfter.getMatcher()),
+
+                getMatcher(), eventBefore.getMatcher(), eventAfter.getMatcher())
+        {
+            @Override
+            protected CheckSubscriber newCheckSubscriber()
+            {
+                return new AutomatonSubscriber(automaton, null)
+                {
                     @NonNull
                     @Override
                     public Result getFinalResult()
                     {
                         Outcome outcome = null;
-                        String report = null;
+                        CharSequence report = null;
 
                         // If we finished inside a pair but no "this" was found, it's the same as being outside a pair
-                        if(state.getState()==INSIDE_PAIR && eventsInCurrentPair<=0)
+                        if(getState()==INSIDE_PAIR && getCounter()<=0)
                         {
-                            state.setState(OUTSIDE_PAIR);
+                            setState(OUTSIDE_PAIR);
                         }
 
-                        switch(state.getState())
+                        switch(getState())
                         {
                             // If we finished outside a pair...
                             case OUTSIDE_PAIR:
 
                                 // Success if we found at least one "this" (in any pair)
-                                if(foundAtLeastOneE1)
+                                if(getTally()>0)
                                 {
                                     outcome = Outcome.SUCCESS;
-                                    report = "Every event that "+getMatcher()+" was found inside a pair";
+                                    report = LazyString.of("Every event that ", getMatcher(), " was found inside a pair");
                                 }
 
                                 // Warning if no "this" has been found in the sequence
                                 else
                                 {
                                     outcome = Outcome.WARNING;
-                                    report = "No event that "+getMatcher()+" was found in the sequence";
+                                    report = LazyString.of("No event that ", getMatcher(), " was found in the sequence");
                                 }
 
                                 break;
@@ -337,7 +373,7 @@ public class AnEventThat extends AbstractEventDescriptor
                             case INSIDE_PAIR:
 
                                 outcome = Outcome.FAILURE;
-                                report = "At the end of the stream, "+eventsInCurrentPair+" events that "+getMatcher()+" were found but no event that "+eventAfter.getMatcher()+" was there to close the pair";
+                                report = LazyString.of("At the end of the stream, ", getCounter(), " events that ", getMatcher(), " were found but no event that ", eventAfter.getMatcher(), " was there to close the pair");
 
                                 break;
 
@@ -345,15 +381,16 @@ public class AnEventThat extends AbstractEventDescriptor
                             case FOUND_E1_OUTSIDE:
 
                                 outcome = Outcome.FAILURE;
-                                report = "Event "+state.getEvent(0)+" was found outside a pair";
+                                report = LazyString.of("Event ", getWitness(0), " was found outside a pair");
 
                                 break;
                         }
 
                         return new Result(outcome, report);
                     }
-                }
-        );
+                };
+            }
+        };
     }
 
     /**
@@ -397,6 +434,6 @@ public class AnEventThat extends AbstractEventDescriptor
                                 getMatcher()
                         )
                 )
-                .overwriteDescription("No event that "+getMatcher()+" happens between a pair of events where the first "+eventBefore.getMatcher()+" and the second "+eventAfter.getMatcher());
+                .overwriteDescription(LazyString.of("No event that ", getMatcher(), " happens between a pair of events where the first ", eventBefore.getMatcher(), " and the second ", eventAfter.getMatcher()));
     }
 }
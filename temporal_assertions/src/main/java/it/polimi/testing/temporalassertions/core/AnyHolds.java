@@ -1,6 +1,8 @@
 package it.polimi.testing.temporalassertions.core;
 
-import it.polimi.testing.temporalassertions.Utils;
+import java.util.ArrayList;
+import java.util.List;
+
 
 /**
  * Connective that allows to express a logic OR between two or more checks: it returns SUCCESS if at least
@@ -16,7 +18,7 @@ public class AnyHolds extends CheckConnective
      */
     private AnyHolds(Check... checks)
     {
-        super("("+Utils.join(") OR (", checks)+")", checks);
+        super(LazyString.of("(", LazyString.join(") OR (", checks), ")"), checks);
     }
 
     /**
@@ -39,8 +41,8 @@ public class AnyHolds extends CheckConnective
         return new ResultsSubscriber()
         {
             private boolean oneSucceeded = false;
-            private String reportsListForFailure = "";
-            private String succeededReport;
+            private final List<CharSequence> reportsListForFailure = new ArrayList<>();
+            private CharSequence succeededReport;
 
             @Override
             Result getFinalResult()
@@ -52,7 +54,7 @@ public class AnyHolds extends CheckConnective
                 }
                 else
                 {
-                    return new Result(Outcome.FAILURE, reportsListForFailure);
+                    return new Result(Outcome.FAILURE, LazyString.joinNonEmpty("; ", reportsListForFailure));
                 }
             }
 
@@ -63,11 +65,11 @@ public class AnyHolds extends CheckConnective
                 if(!Outcome.FAILURE.equals(result.getOutcome()))
                 {
                     oneSucceeded = true;
-                    succeededReport = result.getReport();
+                    succeededReport = result.getLazyReport();
                     return false;
                 }
 
-                reportsListForFailure += ("".equals(reportsListForFailure) ? "" : "; ")+result.getReport();
+                reportsListForFailure.add(result.getLazyReport());
 
                 return true;
             }
@@ -27,18 +27,18 @@ public class AtMost extends AbstractQuantifier
      * {@inheritDoc}
      */
     @Override
-    protected boolean isConditionMet()
+    protected boolean isConditionMet(int counter)
     {
-        return getCounter()<=getDesiredBound();
+        return counter<=getDesiredBound();
     }
 
     /**
      * {@inheritDoc}
      */
     @Override
-    protected boolean canStopCurrentComputation()
+    protected boolean canStopCurrentComputation(int counter)
     {
-        return !isConditionMet();
+        return !isConditionMet(counter);
     }
 
     /**
@@ -54,7 +54,7 @@ public class AtMost extends AbstractQuantifier
      * {@inheritDoc}
      */
     @Override
-    protected String describeError()
+    protected String describeError(int counter)
     {
         return "more than "+getDesiredBound();
     }
@@ -0,0 +1,375 @@
+package it.polimi.testing.temporalassertions.core;
+
+import org.hamcrest.Matcher;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A table-driven finite automaton that implements the logic of a check
+ *
+ * The alphabet of the automaton is given by a small list of matchers: each event is translated into a symbol,
+ * i.e. the bitmask of the matchers that match it (bit i is set if the i-th matcher matches). The transition
+ * table gives, for each state and symbol, the next state and the actions that need to be performed on the
+ * data of the check (counters, witness events, etc.). A transition can be guarded by the condition of the
+ * quantifier of the check, in which case the table holds two alternatives.
+ *
+ * A timed automaton also has a window: a transition can start a timer that expires when the window has passed
+ * since the timestamp of the event, and each state can have a timeout transition that is taken when the timer
+ * expires (e.g. "the events must happen within 200 ms").
+ *
+ * The automaton is immutable and can be shared by any number of {@link AutomatonSubscriber}s, which interpret it.
+ */
+final class Automaton
+{
+    /**
+     * Action: increase the counter
+     */
+    final static int COUNT = 1;
+
+    /**
+     * Action: reset the counter
+     */
+    final static int RESET = 1<<1;
+
+    /**
+     * Action: increase the tally, i.e. a secondary counter (e.g. the number of pairs found so far)
+     */
+    final static int TALLY = 1<<2;
+
+    /**
+     * Action: the event becomes the only witness event
+     */
+    final static int SET_WITNESS = 1<<3;
+
+    /**
+     * Action: the event is added to the witness events
+     */
+    final static int ADD_WITNESS = 1<<4;
+
+    /**
+     * Action: remove all witness events
+     */
+    final static int CLEAR_WITNESS = 1<<5;
+
+    /**
+     * Action: end the check
+     */
+    final static int END = 1<<6;
+
+    /**
+     * Action: end the check if the quantifier says that the computation can be stopped (after counting)
+     */
+    final static int END_IF_DECIDED = 1<<7;
+
+    /**
+     * Internal flag: the transition is guarded by the condition of the quantifier
+     */
+    final static int GUARDED = 1<<8;
+
+    /**
+     * Action: start the timer, that expires when the window has passed since the timestamp of the event
+     */
+    final static int START_TIMER = 1<<9;
+
+    /**
+     * Action: stop the timer
+     */
+    final static int STOP_TIMER = 1<<10;
+
+    /**
+     * Action: measure the delay between the first witness event and the event
+     */
+    final static int MEASURE = 1<<11;
+
+    /**
+     * The window of an automaton that is not timed
+     */
+    final static long NO_WINDOW = -1;
+
+    private final Matcher<?>[] alphabet;
+    private final int symbols;
+    private final int[] targets;
+    private final int[] actions;
+    private final int[] relevantSymbols;
+    private final boolean[] absorbing;
+    private final long window;
+
+    /**
+     * Constructor
+     * @param alphabet the matchers that define the alphabet
+     * @param targets the target state of each transition
+     * @param actions the actions of each transition
+     * @param relevantSymbols for each state, the bitmask of the matchers that can trigger a transition
+     * @param absorbing for each state, true if nothing can change once the automaton is in it
+     * @param window the window of the timer in nanoseconds, or {@link Automaton#NO_WINDOW}
+     */
+    private Automaton(Matcher<?>[] alphabet, int[] targets, int[] actions, int[] relevantSymbols, boolean[] absorbing, long window)
+    {
+        this.alphabet = alphabet;
+        this.symbols = 1<<alphabet.length;
+        this.targets = targets;
+        this.actions = actions;
+        this.relevantSymbols = relevantSymbols;
+        this.absorbing = absorbing;
+        this.window = window;
+    }
+
+    /**
+     * Allows to build an automaton
+     * @param states the number of states (the initial state is 0)
+     * @param alphabet the matchers that define the alphabet
+     * @return the builder
+     */
+    static Builder builder(int states, Matcher<?>... alphabet)
+    {
+        return new Builder(states, alphabet);
+    }
+
+    /**
+     * Getter
+     * @return the matchers that define the alphabet
+     */
+    Matcher<?>[] getAlphabet()
+    {
+        return alphabet;
+    }
+
+    /**
+     * Getter
+     * @param state a state
+     * @return the bitmask of the matchers that can trigger a transition from the given state (0 if none)
+     */
+    int getRelevantSymbols(int state)
+    {
+        return relevantSymbols[state];
+    }
+
+    /**
+     * Tells if the given state is absorbing, i.e. every transition from it (including the timeout one) stays in
+     * it without any action: once there, the data of the check can not change anymore, so its verdict is definitive
+     * @param state a state
+     * @return true if the state is absorbing
+     */
+    boolean isAbsorbing(int state)
+    {
+        return absorbing[state];
+    }
+
+    /**
+     * Gets the transition for the given state and symbol. If the transition is guarded, this is the
+     * alternative for when the condition is met and the one for when it is not is at the following index.
+     * @param state the current state
+     * @param symbol the symbol read from the event
+     * @return the index of the transition
+     */
+    int getTransition(int state, int symbol)
+    {
+        return (state*(symbols+1)+symbol)<<1;
+    }
+
+    /**
+     * Gets the transition that is taken from the given state when the timer expires. As for the other
+     * transitions, if it is guarded the alternative for when the condition is not met is at the following index.
+     * @param state the current state
+     * @return the index of the transition
+     */
+    int getTimeoutTransition(int state)
+    {
+        return (state*(symbols+1)+symbols)<<1;
+    }
+
+    /**
+     * Getter
+     * @return the window of the timer in nanoseconds, or {@link Automaton#NO_WINDOW} if the automaton is not timed
+     */
+    long getWindow()
+    {
+        return window;
+    }
+
+    /**
+     * Getter
+     * @param transition the index of the transition
+     * @return the target state of the transition
+     */
+    int getTarget(int transition)
+    {
+        return targets[transition];
+    }
+
+    /**
+     * Getter
+     * @param transition the index of the transition
+     * @return the bitmask of the actions of the transition
+     */
+    int getActions(int transition)
+    {
+        return actions[transition];
+    }
+
+    /**
+     * Builder for the automaton: transitions are given as rows, and for each state the first row whose
+     * matchers all match the event is taken (i.e. the rows of a state are in "if ... else if ..." order).
+     * If no row of the current state can be taken, the automaton stays in the same state.
+     */
+    static class Builder
+    {
+        private final int states;
+        private final Matcher<?>[] alphabet;
+        private final List<int[]> rows = new ArrayList<>();
+        private final List<int[]> timeoutRows = new ArrayList<>();
+        private long window = NO_WINDOW;
+
+        /**
+         * Constructor
+         * @param states the number of states
+         * @param alphabet the matchers that define the alphabet
+         */
+        private Builder(int states, Matcher<?>[] alphabet)
+        {
+            this.states = states;
+            this.alphabet = alphabet;
+        }
+
+        /**
+         * Adds a transition
+         * @param state the source state
+         * @param symbol the bitmask of the matchers that must all match the event
+         * @param target the target state
+         * @param actions the actions to be performed
+         * @return the builder itself (useful for chaining)
+         */
+        Builder on(int state, int symbol, int target, int actions)
+        {
+            return on(state, symbol, target, actions, target, actions);
+        }
+
+        /**
+         * Adds a transition guarded by the condition of the quantifier
+         * @param state the source state
+         * @param symbol the bitmask of the matchers that must all match the event
+         * @param targetIfMet the target state if the condition is met
+         * @param actionsIfMet the actions to be performed if the condition is met
+         * @param targetOtherwise the target state if the condition is not met
+         * @param actionsOtherwise the actions to be performed if the condition is not met
+         * @return the builder itself (useful for chaining)
+         */
+        Builder on(int state, int symbol, int targetIfMet, int actionsIfMet, int targetOtherwise, int actionsOtherwise)
+        {
+            boolean guarded = targetIfMet!=targetOtherwise || actionsIfMet!=actionsOtherwise;
+            rows.add(new int[]{state, symbol, targetIfMet, guarded ? actionsIfMet|GUARDED : actionsIfMet, targetOtherwise, actionsOtherwise});
+            return this;
+        }
+
+        /**
+         * Makes the automaton timed
+         * @param window the window of the timer in nanoseconds
+         * @return the builder itself (useful for chaining)
+         */
+        Builder within(long window)
+        {
+            this.window = window;
+            return this;
+        }
+
+        /**
+         * Adds the transition taken when the timer expires
+         * @param state the source state
+         * @param target the target state
+         * @param actions the actions to be performed
+         * @return the builder itself (useful for chaining)
+         */
+        Builder onTimeout(int state, int target, int actions)
+        {
+            return onTimeout(state, target, actions, target, actions);
+        }
+
+        /**
+         * Adds the transition taken when the timer expires, guarded by the condition of the quantifier
+         * @param state the source state
+         * @param targetIfMet the target state if the condition is met
+         * @param actionsIfMet the actions to be performed if the condition is met
+         * @param targetOtherwise the target state if the condition is not met
+         * @param actionsOtherwise the actions to be performed if the condition is not met
+         * @return the builder itself (useful for chaining)
+         */
+        Builder onTimeout(int state, int targetIfMet, int actionsIfMet, int targetOtherwise, int actionsOtherwise)
+        {
+            boolean guarded = targetIfMet!=targetOtherwise || actionsIfMet!=actionsOtherwise;
+            timeoutRows.add(new int[]{state, 0, targetIfMet, guarded ? actionsIfMet|GUARDED : actionsIfMet, targetOtherwise, actionsOtherwise});
+            return this;
+        }
+
+        /**
+         * Builds the transition table
+         * @return the automaton
+         */
+        Automaton build()
+        {
+            int symbols = 1<<alphabet.length;
+            int[] targets = new int[states*(symbols+1)*2];
+            int[] actions = new int[states*(symbols+1)*2];
+            int[] relevantSymbols = new int[states];
+
+            for(int state=0; state<states; state++)
+            {
+                // The timeout transitions, by default stay in the same state
+                int timeoutTransition = (state*(symbols+1)+symbols)<<1;
+                targets[timeoutTransition] = state;
+                targets[timeoutTransition+1] = state;
+                for(int[] row: timeoutRows)
+                {
+                    if(row[0]==state)
+                    {
+                        targets[timeoutTransition] = row[2];
+                        actions[timeoutTransition] = row[3];
+                        targets[timeoutTransition+1] = row[4];
+                        actions[timeoutTransition+1] = row[5];
+                        break;
+                    }
+                }
+
+                for(int symbol=0; symbol<symbols; symbol++)
+                {
+                    int transition = (state*(symbols+1)+symbol)<<1;
+
+                    // By default stay in the same state
+                    targets[transition] = state;
+                    targets[transition+1] = state;
+
+                    // Find the first row that can be taken
+                    for(int[] row: rows)
+                    {
+                        if(row[0]==state && row[1]!=0 && (row[1] & symbol)==row[1])
+                        {
+                            targets[transition] = row[2];
+                            actions[transition] = row[3];
+                            targets[transition+1] = row[4];
+                            actions[transition+1] = row[5];
+                            break;
+                        }
+                    }
+                }
+            }
+
+            for(int[] row: rows)
+            {
+                relevantSymbols[row[0]] |= row[1];
+            }
+
+            // A state is absorbing if all its transitions (both alternatives) are empty loops
+            boolean[] absorbing = new boolean[states];
+            for(int state=0; state<states; state++)
+            {
+                absorbing[state] = true;
+                for(int transition=(state*(symbols+1))<<1; transition<((state+1)*(symbols+1))<<1; transition++)
+                {
+                    if(targets[transition]!=state || actions[transition]!=0) absorbing[state] = false;
+                }
+            }
+
+            return new Automaton(alphabet, targets, actions, relevantSymbols, absorbing, window);
+        }
+    }
+}
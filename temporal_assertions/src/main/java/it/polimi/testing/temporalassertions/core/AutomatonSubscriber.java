@@ -0,0 +1,274 @@
+package it.polimi.testing.temporalassertions.core;
+
+import org.hamcrest.Matcher;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import it.polimi.testing.temporalassertions.events.Event;
+
+/**
+ * A check subscriber that runs an {@link Automaton}, i.e. the generic interpreter of the transition tables
+ *
+ * It holds the data of a single evaluation of the check (current state, counters and witness events), while
+ * the implementations only need to build the final result from them.
+ */
+abstract class AutomatonSubscriber extends CheckSubscriber
+{
+    private final Automaton automaton;
+    private final AbstractQuantifier quantifier;
+
+    private int state = 0;
+    private int counter = 0;
+    private int tally = 0;
+    private Event[] witnesses = new Event[2];
+    private int witnessesCount = 0;
+    private Verdict absorbedVerdict;
+
+    /**
+     * Constructor
+     * @param automaton the automaton that implements the check logic
+     * @param quantifier the quantifier that guards the transitions (null if none)
+     */
+    AutomatonSubscriber(Automaton automaton, AbstractQuantifier quantifier)
+    {
+        this.automaton = automaton;
+        this.quantifier = quantifier;
+    }
+
+    @Override
+    public void onNext(Event event)
+    {
+        step(event);
+    }
+
+    @Override
+    public void onNextBatch(Event[] events, int from, int to)
+    {
+        for(int i=from; i<to; i++)
+        {
+            if(!step(events[i])) return;
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    Result buildFinalResult()
+    {
+        // Attach the counter and the witness events, the report will be rendered from them only if needed
+        Result result = super.buildFinalResult();
+        result.setCounter(counter);
+        if(result.getWitnesses().length==0) result.setWitnesses(Arrays.copyOf(witnesses, witnessesCount));
+        return result;
+    }
+
+    /**
+     * Performs the transition for the given event
+     * @param event the event
+     * @return false if the check ended
+     */
+    private boolean step(Event event)
+    {
+        // Let the timer expire first, if the event comes after the deadline
+        if(automaton.getWindow()!=Automaton.NO_WINDOW && event.isStamped())
+        {
+            advanceTime(event.getTimestamp());
+            if(isUnsubscribed()) return false;
+        }
+
+        // Nothing to do if no transition can start from the current state
+        int relevantSymbols = automaton.getRelevantSymbols(state);
+        if(relevantSymbols==0) return true;
+
+        // Translate the event into a symbol
+        Matcher<?>[] alphabet = automaton.getAlphabet();
+        int symbol = 0;
+        for(int i=0; i<alphabet.length; i++)
+        {
+            if((relevantSymbols & (1<<i))!=0 && matches(alphabet[i], event))
+            {
+                symbol |= 1<<i;
+            }
+        }
+
+        return perform(automaton.getTransition(state, symbol), event);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    void onDeadline(long deadline)
+    {
+        perform(automaton.getTimeoutTransition(state), null);
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * The verdict is definitive as soon as the automaton is in an absorbing state: it is the outcome that the
+     * final result would have now. The transitions that end the check (e.g. when the quantifier says that the
+     * computation can be stopped) send the result right away instead.
+     */
+    @Override
+    public Verdict getVerdict()
+    {
+        Verdict verdict = super.getVerdict();
+        if(verdict!=Verdict.OPEN || !automaton.isAbsorbing(state)) return verdict;
+
+        // Built only once, the data can not change anymore (the implementations may adjust the state while building it)
+        if(absorbedVerdict==null)
+        {
+            int currentState = state;
+            absorbedVerdict = Verdict.of(getFinalResult().getOutcome());
+            state = currentState;
+        }
+        return absorbedVerdict;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    int getInterestState()
+    {
+        // While the timer runs, any event may be the one that lets it expire
+        return getDeadline()==NO_DEADLINE ? state : ANY_STATE;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    Matcher<?>[] getInterestingMatchers(int state)
+    {
+        int relevantSymbols = automaton.getRelevantSymbols(state);
+        Matcher<?>[] alphabet = automaton.getAlphabet();
+        List<Matcher<?>> matchers = new ArrayList<>();
+        for(int i=0; i<alphabet.length; i++)
+        {
+            if((relevantSymbols & (1<<i))!=0) matchers.add(alphabet[i]);
+        }
+        return matchers.toArray(new Matcher<?>[matchers.size()]);
+    }
+
+    /**
+     * Called when a transition measures the delay between two events, by default it does nothing
+     * @param from the first witness event
+     * @param to the event of the transition
+     */
+    void onDelay(Event from, Event to)
+    {
+
+    }
+
+    /**
+     * Performs a transition
+     * @param transition the index of the transition
+     * @param event the event that triggered it, or null if it was triggered by the timer
+     * @return false if the check ended
+     */
+    private boolean perform(int transition, Event event)
+    {
+        // Choose the alternative if the transition is guarded and the condition is not met
+        int actions = automaton.getActions(transition);
+        if((actions & Automaton.GUARDED)!=0 && !isConditionMet())
+        {
+            transition++;
+            actions = automaton.getActions(transition);
+        }
+
+        // Perform the actions
+        if((actions & Automaton.RESET)!=0) counter = 0;
+        if((actions & Automaton.COUNT)!=0) counter++;
+        if((actions & Automaton.TALLY)!=0) tally++;
+        if((actions & Automaton.CLEAR_WITNESS)!=0) witnessesCount = 0;
+        if((actions & Automaton.SET_WITNESS)!=0)
+        {
+            witnessesCount = 0;
+            addWitness(event);
+        }
+        if((actions & Automaton.ADD_WITNESS)!=0) addWitness(event);
+        if((actions & Automaton.MEASURE)!=0 && witnessesCount>0) onDelay(witnesses[0], event);
+        if((actions & Automaton.STOP_TIMER)!=0) clearDeadline();
+        if((actions & Automaton.START_TIMER)!=0) setDeadline(event.getTimestamp()+automaton.getWindow());
+
+        state = automaton.getTarget(transition);
+        countTransition();
+
+        if((actions & Automaton.END)!=0 || ((actions & Automaton.END_IF_DECIDED)!=0 && quantifier.canStopCurrentComputation(counter)))
+        {
+            endCheck();
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Getter
+     * @return the current state of the automaton
+     */
+    int getState()
+    {
+        return state;
+    }
+
+    /**
+     * Setter, allows the implementations to adjust the state when building the final result
+     * @param state the new state
+     */
+    void setState(int state)
+    {
+        this.state = state;
+    }
+
+    /**
+     * Getter
+     * @return the current counter
+     */
+    int getCounter()
+    {
+        return counter;
+    }
+
+    /**
+     * Checks the condition of the quantifier on the current counter
+     * @return true if the condition of the quantifier is met
+     */
+    boolean isConditionMet()
+    {
+        return quantifier.isConditionMet(counter);
+    }
+
+    /**
+     * Getter
+     * @return the current tally, i.e. the secondary counter
+     */
+    int getTally()
+    {
+        return tally;
+    }
+
+    /**
+     * Getter
+     * @param i the index
+     * @return the witness event at the given index
+     */
+    Event getWitness(int i)
+    {
+        return witnesses[i];
+    }
+
+    /**
+     * Helper to add a witness event
+     * @param event the event
+     */
+    private void addWitness(Event event)
+    {
+        if(witnessesCount==witnesses.length) witnesses = Arrays.copyOf(witnesses, witnesses.length*2);
+        witnesses[witnessesCount++] = event;
+    }
+}
@@ -0,0 +1,129 @@
+package it.polimi.testing.temporalassertions.core;
+
+/**
+ * Describes what happens to the events of a source that arrive faster than the checks can evaluate them, see
+ * {@link EventMonitor#observe(String, rx.Observable, BackpressurePolicy)}
+ *
+ * With a bounded policy, at most a fixed number of events of the source wait to be checked, whatever the rate of
+ * the source: the memory used by the monitor for the source does not grow under a heavy load. The events that are
+ * dropped are counted in the metrics of the source (see {@link PipelineMetrics.Source#getDroppedCount()}), and
+ * the results of the checks tell that their input was lossy (see {@link Result#getDroppedEventsCount()}).
+ */
+public final class BackpressurePolicy
+{
+    enum Kind
+    {
+        UNBOUNDED, BLOCK, DROP_OLDEST, DROP_NEWEST, LATEST
+    }
+
+    private final Kind kind;
+    private final int capacity;
+
+    /**
+     * Constructor
+     * @param kind the kind of policy
+     * @param capacity the maximum number of waiting events (ignored if unbounded)
+     */
+    private BackpressurePolicy(Kind kind, int capacity)
+    {
+        this.kind = kind;
+        this.capacity = capacity;
+    }
+
+    /**
+     * All the events of the source wait to be checked (memory grows if the checks are slower than the source).
+     * This is the default policy of the sources.
+     * @return the backpressure policy
+     */
+    public static BackpressurePolicy unbounded()
+    {
+        return new BackpressurePolicy(Kind.UNBOUNDED, 0);
+    }
+
+    /**
+     * When too many events are waiting, the source is blocked until the checks catch up: no event is lost, but
+     * the thread of the source waits (so it cannot be used for the sources that emit on the main thread, see
+     * {@link EventMonitor#observe(String, rx.Observable, BackpressurePolicy, rx.Scheduler)})
+     * @param capacity the maximum number of waiting events
+     * @return the backpressure policy
+     */
+    public static BackpressurePolicy block(int capacity)
+    {
+        return new BackpressurePolicy(Kind.BLOCK, checkCapacity(capacity));
+    }
+
+    /**
+     * When too many events are waiting, the oldest one is dropped to make room for the new one
+     * @param capacity the maximum number of waiting events
+     * @return the backpressure policy
+     */
+    public static BackpressurePolicy dropOldest(int capacity)
+    {
+        return new BackpressurePolicy(Kind.DROP_OLDEST, checkCapacity(capacity));
+    }
+
+    /**
+     * When too many events are waiting, the new events are dropped
+     * @param capacity the maximum number of waiting events
+     * @return the backpressure policy
+     */
+    public static BackpressurePolicy dropNewest(int capacity)
+    {
+        return new BackpressurePolicy(Kind.DROP_NEWEST, checkCapacity(capacity));
+    }
+
+    /**
+     * Only the latest event of the source waits to be checked: a new event replaces the waiting one (e.g. for the
+     * text changes of a view, where only the current text matters)
+     * @return the backpressure policy
+     */
+    public static BackpressurePolicy latest()
+    {
+        return new BackpressurePolicy(Kind.LATEST, 1);
+    }
+
+    /**
+     * Helper to validate the capacity of a bounded policy
+     * @param capacity the maximum number of waiting events
+     * @return the capacity
+     */
+    private static int checkCapacity(int capacity)
+    {
+        if(capacity<=0) throw new IllegalArgumentException("The number of waiting events must be positive");
+        return capacity;
+    }
+
+    /**
+     * Getter
+     * @return the kind of policy
+     */
+    Kind getKind()
+    {
+        return kind;
+    }
+
+    /**
+     * Getter
+     * @return the maximum number of waiting events (ignored if unbounded)
+     */
+    int getCapacity()
+    {
+        return capacity;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String toString()
+    {
+        switch(kind)
+        {
+            case BLOCK: return "block after "+capacity+" events";
+            case DROP_OLDEST: return "drop the oldest of "+capacity+" events";
+            case DROP_NEWEST: return "drop the newest after "+capacity+" events";
+            case LATEST: return "latest event only";
+            default: return "all events";
+        }
+    }
+}
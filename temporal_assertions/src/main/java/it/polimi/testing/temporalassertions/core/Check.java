@@ -1,40 +1,106 @@
 package it.polimi.testing.temporalassertions.core;
 
+import org.hamcrest.Matcher;
+
 import rx.Subscriber;
 
 /**
  * Basic consistency check for the event stream
  *
  * It allows to express a condition (e.g. "an event X exists") on the stream it is applied to
+ *
+ * A check is only the definition of the condition: each time it is applied to a stream it creates a new
+ * {@link CheckSubscriber} that holds the state of that evaluation (see {@link Check#newCheckSubscriber()}),
+ * so the same check can be applied any number of times, also concurrently.
  */
 public class Check
 {
     private final CheckSubscriber checkSubscriber;
-    private String description;
+    private final Matcher<?>[] matchers;
+    private CharSequence description;
     private String userFailureMessage;
 
     /**
-     * Constructor
-     * @param description a description of the check
+     * Constructor for a check that can be applied only once, since the given subscriber holds the state
+     * of the evaluation
+     * @param description a description of the check, rendered only when it is needed
      * @param checkSubscriber the subscriber that implements the check logic
+     * @param matchers the Hamcrest matchers used by the check logic, if known in advance. If they are given, the
+     *                 check logic must ignore all events that none of them matches: the monitor will not deliver
+     *                 to the check the events that cannot be matched by any of them
      */
-    protected Check(String description, CheckSubscriber checkSubscriber)
+    protected Check(CharSequence description, CheckSubscriber checkSubscriber, Matcher<?>... matchers)
     {
         this.description = description;
         this.checkSubscriber = checkSubscriber;
+        this.matchers = matchers;
+    }
+
+    /**
+     * Constructor for a check that can be applied only once, with a description already rendered. It is kept
+     * for the checks compiled against the previous versions of the library.
+     * @param description a description of the check
+     * @param checkSubscriber the subscriber that implements the check logic
+     */
+    protected Check(String description, CheckSubscriber checkSubscriber)
+    {
+        this(description, checkSubscriber, new Matcher<?>[0]);
+    }
+
+    /**
+     * Constructor for a check that can be applied any number of times: the implementations create the
+     * subscriber for each evaluation in {@link Check#newCheckSubscriber()}
+     * @param description a description of the check, rendered only when it is needed
+     * @param matchers the Hamcrest matchers used by the check logic, if known in advance. If they are given, the
+     *                 check logic must ignore all events that none of them matches: the monitor will not deliver
+     *                 to the check the events that cannot be matched by any of them
+     */
+    protected Check(CharSequence description, Matcher<?>... matchers)
+    {
+        this(description, null, matchers);
     }
 
     /**
-     * Sets the given child to the check subscriber and returns it
+     * Allows the implementations to create the subscriber for a new evaluation of the check. By default it
+     * returns the subscriber given to the constructor.
+     * @return a subscriber that implements the check logic
+     */
+    protected CheckSubscriber newCheckSubscriber()
+    {
+        return checkSubscriber;
+    }
+
+    /**
+     * Creates the subscriber for a new evaluation of the check and sets the given child to it
      * @param child the subscriber that will receive the result of the check
      * @return the subscriber that implements the check logic
      */
     CheckSubscriber getCheckSubscriber(final Subscriber<? super Result> child)
     {
+        CheckSubscriber checkSubscriber = newCheckSubscriber();
         checkSubscriber.setChild(child);
         return checkSubscriber;
     }
 
+    /**
+     * Getter
+     * @return the Hamcrest matchers used by the check logic (empty if unknown, i.e. the check is interested in all events)
+     */
+    Matcher<?>[] getMatchers()
+    {
+        return matchers;
+    }
+
+    /**
+     * Tells if the check uses the time of the events, i.e. it can need to be woken up by the monitor even if
+     * no event arrives (see {@link CheckSubscriber#setDeadline(long)})
+     * @return true if the check is timed
+     */
+    boolean isTimed()
+    {
+        return false;
+    }
+
     /**
      * Getter
      * @return the message provided by the user to be displayed in case of check failure
@@ -50,7 +116,7 @@ public class Check
      */
     String getDescription()
     {
-        return description;
+        return description==null ? null : description.toString();
     }
 
     /**
@@ -67,7 +133,7 @@ public class Check
      * @param newDescription the new description
      * @return the check itself with changed description (useful for chaining)
      */
-    Check overwriteDescription(String newDescription)
+    Check overwriteDescription(CharSequence newDescription)
     {
         this.description = newDescription;
         return this;
@@ -79,6 +145,6 @@ public class Check
     @Override
     public String toString()
     {
-        return description;
+        return getDescription();
     }
 }
@@ -2,7 +2,10 @@ package it.polimi.testing.temporalassertions.core;
 
 import android.support.annotation.NonNull;
 
+import org.hamcrest.Matcher;
+
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 
 import it.polimi.testing.temporalassertions.events.Event;
@@ -15,31 +18,60 @@ import rx.Subscriber;
 public abstract class CheckConnective extends Check
 {
     private final Check[] checks;
-    private Subscriber<? super Result> finalResultChild;
 
     /**
      * Constructor
      * @param description a description of the check
      * @param checks the checks contained in this connective
      */
-    CheckConnective(String description, Check... checks)
+    CheckConnective(CharSequence description, Check... checks)
     {
-        super(description, null);
+        super(description);
 
         this.checks = checks;
     }
 
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    boolean isTimed()
+    {
+        // The connective is timed if one of its internal checks is
+        for(Check check: checks)
+        {
+            if(check.isTimed()) return true;
+        }
+        return false;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    Matcher<?>[] getMatchers()
+    {
+        // The connective uses all the matchers of its internal checks (unknown if one of them is unknown)
+        List<Matcher<?>> matchers = new ArrayList<>();
+        for(Check check: checks)
+        {
+            if(check.getMatchers().length==0) return new Matcher<?>[0];
+            matchers.addAll(Arrays.asList(check.getMatchers()));
+        }
+        return matchers.toArray(new Matcher<?>[matchers.size()]);
+    }
+
     /**
      * {@inheritDoc}
      */
     @Override
     protected CheckSubscriber getCheckSubscriber(final Subscriber<? super Result> finalResultChild)
     {
-        this.finalResultChild = finalResultChild;
         final List<CheckSubscriber> singleTermSubscribers = new ArrayList<>();
 
         // This subscriber receives all results of the internal checks: it implements the actual logic of the connective
-        final Subscriber<ChildResult> resultsSubscriber = getResultsSubscriber();
+        final ResultsSubscriber resultsSubscriber = getResultsSubscriber();
+        resultsSubscriber.finalResultChild = finalResultChild;
 
         // Loop all internal checks
         for(final Check check: checks)
@@ -90,13 +122,13 @@ public abstract class CheckConnective extends Check
                 }
             };
 
-            // Get the internal check subscriber and add the child
+            // Get a new internal check subscriber and add the child
             CheckSubscriber singleTermCheckSubscriber = check.getCheckSubscriber(singleTermChild);
             singleTermSubscribers.add(singleTermCheckSubscriber);
         }
 
         // Return a subscriber that will be attached to the main event stream and takes care of forwarding the received events to all internal checks
-        return new CheckSubscriber()
+        CheckSubscriber connectiveSubscriber = new CheckSubscriber()
         {
             private boolean allTermsUnsubscribed;
 
@@ -120,6 +152,45 @@ public abstract class CheckConnective extends Check
                 return null;
             }
 
+            @Override
+            public Verdict getVerdict()
+            {
+                return resultsSubscriber.verdict;
+            }
+
+            @Override
+            void setMatcherCache(MatcherCache matcherCache)
+            {
+                // All internal checks share the same cache
+                super.setMatcherCache(matcherCache);
+                for(CheckSubscriber singleTermSubscriber: singleTermSubscribers)
+                {
+                    singleTermSubscriber.setMatcherCache(matcherCache);
+                }
+            }
+
+            @Override
+            void setMetrics(CheckMetrics metrics)
+            {
+                // The costs of the internal checks are counted as costs of the connective
+                super.setMetrics(metrics);
+                for(CheckSubscriber singleTermSubscriber: singleTermSubscribers)
+                {
+                    singleTermSubscriber.setMetrics(metrics);
+                }
+            }
+
+            @Override
+            void setTimerWheel(TimerWheel timerWheel)
+            {
+                // The deadlines of the internal checks are kept in the same wheel
+                super.setTimerWheel(timerWheel);
+                for(CheckSubscriber singleTermSubscriber: singleTermSubscribers)
+                {
+                    singleTermSubscriber.setTimerWheel(timerWheel);
+                }
+            }
+
             @Override
             public void onNext(Event event)
             {
@@ -135,6 +206,17 @@ public abstract class CheckConnective extends Check
                     }
                 }
 
+                // A term whose verdict became definitive is ended right away, as the monitor does with the checks,
+                // so that the connective can combine its result (e.g. AND fails as soon as a term is violated)
+                for(CheckSubscriber singleTermSubscriber: singleTermSubscribers)
+                {
+                    if(resultsSubscriber.isUnsubscribed()) break;
+                    if(!singleTermSubscriber.isUnsubscribed() && singleTermSubscriber.getVerdict()!=Verdict.OPEN)
+                    {
+                        singleTermSubscriber.endCheck();
+                    }
+                }
+
                 // If all internal subscribers already unsubscribed on their own, no need to receive events anymore
                 if(allTermsUnsubscribed)
                 {
@@ -142,10 +224,14 @@ public abstract class CheckConnective extends Check
                 }
             }
         };
+
+        resultsSubscriber.connectiveSubscriber = connectiveSubscriber;
+        resultsSubscriber.termSubscribers = singleTermSubscribers;
+        return connectiveSubscriber;
     }
 
     /**
-     * Getter
+     * Allows the implementations to create the subscriber for a new evaluation of the connective
      * @return the subscriber that receives all results of the internal checks
      */
     abstract ResultsSubscriber getResultsSubscriber();
@@ -157,6 +243,10 @@ public abstract class CheckConnective extends Check
     abstract class ResultsSubscriber extends Subscriber<ChildResult>
     {
         private int resultsToBeReceived = checks.length;
+        private Subscriber<? super Result> finalResultChild;
+        private CheckSubscriber connectiveSubscriber;
+        private List<CheckSubscriber> termSubscribers;
+        private Verdict verdict = Verdict.OPEN;
 
         @Override
         public void onCompleted()
@@ -164,12 +254,26 @@ public abstract class CheckConnective extends Check
             // Send the (single) final result of the connective to the main child
             if(!finalResultChild.isUnsubscribed())
             {
-                finalResultChild.onNext(getFinalResult());
+                Result result = getFinalResult();
+                verdict = Verdict.of(result.getOutcome());
+                finalResultChild.onNext(result);
                 finalResultChild.onCompleted();
             }
 
             // This is needed!
             unsubscribe();
+
+            // The verdict is definitive: the internal checks still running are not needed anymore, and the
+            // connective stops receiving events (so the verdict propagates immediately to the enclosing checks)
+            if(termSubscribers!=null)
+            {
+                for(CheckSubscriber termSubscriber: termSubscribers)
+                {
+                    termSubscriber.clearDeadline();
+                    termSubscriber.unsubscribe();
+                }
+            }
+            if(connectiveSubscriber!=null) connectiveSubscriber.unsubscribe();
         }
 
         @Override
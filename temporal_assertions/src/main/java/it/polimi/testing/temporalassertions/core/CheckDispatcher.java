@@ -0,0 +1,567 @@
+package it.polimi.testing.temporalassertions.core;
+
+import org.hamcrest.Matcher;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import it.polimi.testing.temporalassertions.events.Event;
+import rx.Subscriber;
+
+/**
+ * The single subscriber that is attached to the event stream on behalf of all the registered checks.
+ *
+ * Each event is read once and handed in a tight loop to every check subscriber that is still running,
+ * instead of having one subscription (and one operator chain) for each check. When a check terminates
+ * (e.g. it is short-circuited) it is removed from the loop in constant time.
+ *
+ * All the checks share a {@link MatcherCache}, so that a matcher used by several checks is evaluated
+ * only once per event.
+ *
+ * Events are routed by class: for each concrete class of event the dispatcher builds (the first time it
+ * sees it) the list of checks whose matchers could possibly match it, and delivers the events of that
+ * class only to them.
+ *
+ * The deadlines of the timed checks are kept in a {@link TimerWheel}, which is advanced by the time signals of
+ * the stream (see {@link RingBufferSubject#onTime(long)}), so that a deadline can expire even if no event arrives.
+ *
+ * A check is removed as soon as it ends on its own or its verdict becomes definitive (see
+ * {@link CheckSubscriber#getVerdict()}), and its result is sent immediately, without waiting for the end of the stream.
+ *
+ * A check can also tell which matchers it needs in its current state (see {@link CheckSubscriber#getInterestState()}),
+ * e.g. a constraint that is still waiting for its first event: an event of a class that none of them can match is
+ * not delivered to the check at all. For each class of events the route remembers, check by check, the states
+ * that do not need it, so the check is skipped with a bit test.
+ *
+ * When the events arrive in batches, each check receives at once all the consecutive events of the batch it
+ * is interested in (see {@link CheckSubscriber#onNextBatch(Event[], int, int)}), so the checks are visited
+ * one after the other instead of event by event. Only the live checks of the routes of the batch are visited.
+ */
+class CheckDispatcher extends Subscriber<Event> implements RingBufferSubject.BatchObserver<Event>, RingBufferSubject.TimeObserver
+{
+    final static long TIMER_TICK_NANOS = TimeUnit.MILLISECONDS.toNanos(10);
+    final static int TIMER_WHEEL_SIZE = 512;
+
+    private final Slot[] slots;
+    private int liveCount;
+
+    private final Map<Class<?>, Route> routes = new HashMap<>();
+    private Route[] batchRoutes = new Route[0];
+    private final Slot[] batchSlots;
+    private int batchEpoch = 0;
+
+    private final MatcherCache matcherCache = new MatcherCache();
+    private final TimerWheel timerWheel = new TimerWheel(TIMER_TICK_NANOS, TIMER_WHEEL_SIZE);
+
+    private final Subscriber<? super Result> resultsChild;
+    private int resultsToBeReceived;
+    private boolean busyTimeMeasured = false;
+
+    /**
+     * Constructor
+     * @param checks the checks that will be applied to the stream
+     * @param resultsChild the subscriber that will receive the results of all the checks
+     */
+    CheckDispatcher(List<Check> checks, Subscriber<? super Result> resultsChild)
+    {
+        this(checks, newMetrics(checks), resultsChild);
+    }
+
+    /**
+     * Constructor
+     * @param checks the checks that will be applied to the stream
+     * @param metrics the metrics where the costs of each check are counted, in the same order of the checks
+     * @param resultsChild the subscriber that will receive the results of all the checks
+     */
+    CheckDispatcher(List<Check> checks, List<CheckMetrics> metrics, Subscriber<? super Result> resultsChild)
+    {
+        this.resultsChild = resultsChild;
+        this.resultsToBeReceived = checks.size();
+        this.slots = new Slot[checks.size()];
+        this.batchSlots = new Slot[checks.size()];
+
+        // Each check has a child that links the result with the check and forwards it to the results child
+        for(int i=0; i<checks.size(); i++)
+        {
+            final Check check = checks.get(i);
+            final CheckMetrics checkMetrics = metrics.get(i);
+            busyTimeMeasured |= checkMetrics.isBusyTimeMeasured();
+
+            // Assign an id to every matcher used by the check
+            matcherCache.registerAll(check.getMatchers());
+
+            CheckSubscriber checkSubscriber = check.getCheckSubscriber(new Subscriber<Result>()
+            {
+                @Override
+                public void onCompleted()
+                {
+
+                }
+
+                @Override
+                public void onError(Throwable e)
+                {
+                    if(!CheckDispatcher.this.resultsChild.isUnsubscribed())
+                    {
+                        CheckDispatcher.this.resultsChild.onError(e);
+                    }
+                }
+
+                @Override
+                public void onNext(Result result)
+                {
+                    result.setLinkedCheck(check);
+                    result.setUserFailureMessage(check.getUserFailureMessage());
+                    checkMetrics.recordVerdict();
+                    result.setMetrics(checkMetrics.snapshot());
+                    forwardResult(result);
+                }
+            });
+            checkSubscriber.setMatcherCache(matcherCache);
+            checkSubscriber.setTimerWheel(timerWheel);
+            checkSubscriber.setMetrics(checkMetrics);
+            slots[liveCount] = new Slot(liveCount, checkSubscriber, checkMetrics, MatcherEventTypes.of(check.getMatchers()));
+            liveCount++;
+        }
+
+        // Without checks there is nothing to wait for
+        if(resultsToBeReceived<=0 && !resultsChild.isUnsubscribed())
+        {
+            resultsChild.onCompleted();
+        }
+    }
+
+    @Override
+    public void onNext(Event event)
+    {
+        Route route = getRoute(event.getClass());
+        if(route.count<=0) return;
+
+        matcherCache.setCurrentEvent(event);
+
+        Slot slot;
+        long now = readTime();
+        for(int i=0; i<route.count; i++)
+        {
+            slot = route.slots[i];
+            if(!slot.terminated && route.accepts(slot))
+            {
+                slot.checkSubscriber.onNext(event);
+                checkTermination(slot);
+                now = slot.count(1, now);
+            }
+
+            // If the check terminated, replace it with the last one of the route and visit the same index again
+            if(slot.terminated)
+            {
+                route.remove(i);
+                i--;
+            }
+        }
+
+        // If all checks already terminated on their own, no need to receive events anymore
+        if(liveCount<=0)
+        {
+            unsubscribe();
+        }
+    }
+
+    @Override
+    public void onNextBatch(Event[] events, int from, int to)
+    {
+        matcherCache.setCurrentBatch(events, from, to);
+
+        // Find the route of each event of the batch, and the live checks of all these routes (only once each)
+        batchEpoch++;
+        int candidates = 0;
+        if(batchRoutes.length<to-from) batchRoutes = new Route[to-from];
+        for(int i=from; i<to; i++)
+        {
+            Route route = getRoute(events[i].getClass());
+            batchRoutes[i-from] = route;
+            if(route.epoch==batchEpoch) continue;
+
+            route.epoch = batchEpoch;
+            for(int k=0; k<route.count; k++)
+            {
+                Slot slot = route.slots[k];
+
+                // If the check terminated, replace it with the last one of the route and visit the same index again
+                if(slot.terminated)
+                {
+                    route.remove(k);
+                    k--;
+                }
+                else if(slot.epoch!=batchEpoch)
+                {
+                    slot.epoch = batchEpoch;
+                    batchSlots[candidates++] = slot;
+                }
+            }
+        }
+
+        // The checks are visited in the order they were added, as with single events
+        Arrays.sort(batchSlots, 0, candidates, Slot.BY_INDEX);
+
+        // Each check receives the runs of consecutive events it is interested in
+        for(int c=0; c<candidates; c++)
+        {
+            Slot slot = batchSlots[c];
+            batchSlots[c] = null;
+            int runStart = -1;
+            for(int i=from; i<=to && !slot.terminated; i++)
+            {
+                if(i<to && batchRoutes[i-from].accepts(slot))
+                {
+                    if(runStart<0) runStart = i;
+                }
+                else if(runStart>=0)
+                {
+                    long start = readTime();
+                    slot.checkSubscriber.onNextBatch(events, runStart, i);
+                    checkTermination(slot);
+                    slot.count(i-runStart, start);
+                    runStart = -1;
+
+                    // The run may have changed the state of the check, so the event is looked at again
+                    i--;
+                }
+            }
+        }
+        Arrays.fill(batchRoutes, 0, to-from, null);
+
+        // If all checks already terminated on their own, no need to receive events anymore
+        if(liveCount<=0)
+        {
+            unsubscribe();
+        }
+    }
+
+    @Override
+    public void onTime(long now)
+    {
+        // Nothing to do if no deadline expired
+        if(timerWheel.advance(now)<=0) return;
+
+        // Some checks may have terminated because of their deadline
+        for(Slot slot: slots)
+        {
+            if(!slot.terminated)
+            {
+                checkTermination(slot);
+            }
+        }
+
+        // If all checks already terminated on their own, no need to receive events anymore
+        if(liveCount<=0)
+        {
+            unsubscribe();
+        }
+    }
+
+    @Override
+    public void onCompleted()
+    {
+        // Send the onCompleted to all the checks still running, so that they send their result
+        long now = readTime();
+        for(Slot slot: slots)
+        {
+            if(!slot.terminated)
+            {
+                terminate(slot);
+                if(!slot.checkSubscriber.isUnsubscribed())
+                {
+                    slot.checkSubscriber.onCompleted();
+                    now = slot.count(0, now);
+                }
+            }
+        }
+    }
+
+    @Override
+    public void onError(Throwable e)
+    {
+        // Forward the error to all the checks still running
+        for(Slot slot: slots)
+        {
+            if(!slot.terminated)
+            {
+                terminate(slot);
+                if(!slot.checkSubscriber.isUnsubscribed())
+                {
+                    slot.checkSubscriber.onError(e);
+                }
+            }
+        }
+    }
+
+    /**
+     * Builds the metrics for the given checks, starting their evaluation, without measuring the busy time
+     * @param checks the checks
+     * @return the metrics of each check, in the same order
+     */
+    static List<CheckMetrics> newMetrics(List<Check> checks)
+    {
+        return newMetrics(checks, false);
+    }
+
+    /**
+     * Builds the metrics for the given checks, starting their evaluation
+     * @param checks the checks
+     * @param busyTimeMeasured true if the time spent on the events must be measured
+     * @return the metrics of each check, in the same order
+     */
+    static List<CheckMetrics> newMetrics(List<Check> checks, boolean busyTimeMeasured)
+    {
+        List<CheckMetrics> metrics = new ArrayList<>(checks.size());
+        for(Check check: checks)
+        {
+            metrics.add(new CheckMetrics(check, busyTimeMeasured));
+        }
+        return metrics;
+    }
+
+    /**
+     * Helper to read the time when a delivery starts, only if the busy time is measured
+     * @return the current time, or 0 if the busy time is not measured
+     */
+    private long readTime()
+    {
+        return busyTimeMeasured ? System.nanoTime() : 0;
+    }
+
+    /**
+     * Gets the checks interested in the given class of events, building the list the first time
+     * @param eventClass the concrete class of an event
+     * @return the route for the given class
+     */
+    private Route getRoute(Class<?> eventClass)
+    {
+        Route route = routes.get(eventClass);
+        if(route==null)
+        {
+            route = new Route(eventClass, slots.length);
+            for(Slot slot: slots)
+            {
+                if(!slot.terminated && slot.isInterestedIn(eventClass))
+                {
+                    route.add(slot);
+                }
+            }
+            routes.put(eventClass, route);
+        }
+        return route;
+    }
+
+    /**
+     * Marks a check as terminated if it ended after the last events. A check whose verdict became definitive
+     * is ended here, so that its result is sent right away.
+     * @param slot the slot of the check
+     */
+    private void checkTermination(Slot slot)
+    {
+        CheckSubscriber checkSubscriber = slot.checkSubscriber;
+        if(!checkSubscriber.isUnsubscribed() && checkSubscriber.getVerdict()!=Verdict.OPEN)
+        {
+            checkSubscriber.endCheck();
+        }
+        if(checkSubscriber.isUnsubscribed())
+        {
+            terminate(slot);
+        }
+    }
+
+    /**
+     * Marks a check as terminated: it will be lazily removed from all routes
+     * @param slot the slot of the check
+     */
+    private void terminate(Slot slot)
+    {
+        if(!slot.terminated)
+        {
+            slot.terminated = true;
+            liveCount--;
+        }
+    }
+
+    /**
+     * Sends the result of a single check to the results child, completing it after the last result
+     * @param result the result of a check
+     */
+    private void forwardResult(Result result)
+    {
+        if(resultsChild.isUnsubscribed()) return;
+
+        resultsChild.onNext(result);
+
+        resultsToBeReceived--;
+        if(resultsToBeReceived<=0)
+        {
+            resultsChild.onCompleted();
+        }
+    }
+
+    /**
+     * Internal class that holds a check subscriber, its metrics and the classes of events it is interested into
+     */
+    private static class Slot
+    {
+        private final static Comparator<Slot> BY_INDEX = new Comparator<Slot>()
+        {
+            @Override
+            public int compare(Slot first, Slot second)
+            {
+                return first.index<second.index ? -1 : (first.index==second.index ? 0 : 1);
+            }
+        };
+
+        private final int index;
+        private final CheckSubscriber checkSubscriber;
+        private final CheckMetrics metrics;
+        private final Class<?>[] eventTypes;
+        private boolean terminated = false;
+        private int epoch = 0;
+
+        private Slot(int index, CheckSubscriber checkSubscriber, CheckMetrics metrics, Set<Class<?>> eventTypes)
+        {
+            this.index = index;
+            this.checkSubscriber = checkSubscriber;
+            this.metrics = metrics;
+            this.eventTypes = eventTypes.toArray(new Class<?>[eventTypes.size()]);
+        }
+
+        /**
+         * Counts the events just delivered to the check and, if measured, the time spent on them (reading the clock
+         * once per delivery, the end of one delivery is the start of the next one), then publishes the metrics
+         * @param eventsCount the number of events
+         * @param start the time when the delivery started
+         * @return the time when the delivery ended
+         */
+        private long count(int eventsCount, long start)
+        {
+            metrics.eventsCount += eventsCount;
+            if(!metrics.isBusyTimeMeasured())
+            {
+                metrics.publish();
+                return start;
+            }
+
+            long end = System.nanoTime();
+            metrics.busyNanos += end-start;
+            metrics.publish();
+            return end;
+        }
+
+        /**
+         * Checks if the events of the given class could be matched by the check
+         * @param eventClass the concrete class of an event
+         * @return true if the check needs to receive the events of the given class
+         */
+        private boolean isInterestedIn(Class<?> eventClass)
+        {
+            return isAnyAssignableFrom(eventTypes, eventClass);
+        }
+
+        /**
+         * Checks if the events of the given class could be matched by the check in the given state
+         * @param eventClass the concrete class of an event
+         * @param state a state of the check, see {@link CheckSubscriber#getInterestState()}
+         * @return true if the check needs to receive the events of the given class in the given state
+         */
+        private boolean isInterestedIn(Class<?> eventClass, int state)
+        {
+            Matcher<?>[] matchers = checkSubscriber.getInterestingMatchers(state);
+            if(matchers==null) return true;
+            if(matchers.length==0) return false;
+
+            Set<Class<?>> types = MatcherEventTypes.of(matchers);
+            return isAnyAssignableFrom(types.toArray(new Class<?>[types.size()]), eventClass);
+        }
+
+        /**
+         * Helper to check if a class of events is one of the given types
+         * @param types the types
+         * @param eventClass the concrete class of an event
+         * @return true if the class is a subclass of any of the types
+         */
+        private static boolean isAnyAssignableFrom(Class<?>[] types, Class<?> eventClass)
+        {
+            for(Class<?> type: types)
+            {
+                if(type.isAssignableFrom(eventClass)) return true;
+            }
+            return false;
+        }
+    }
+
+    /**
+     * Internal class that holds the checks interested in a given class of events
+     */
+    private static class Route
+    {
+        private final Class<?> eventClass;
+        private final Slot[] slots;
+        private final boolean[] members;
+        private int count;
+        private int epoch = 0;
+
+        // For each check, the bitmask of the states already examined and of the ones that do not need the events
+        private final long[] knownStates;
+        private final long[] skippedStates;
+
+        private Route(Class<?> eventClass, int capacity)
+        {
+            this.eventClass = eventClass;
+            this.slots = new Slot[capacity];
+            this.members = new boolean[capacity];
+            this.knownStates = new long[capacity];
+            this.skippedStates = new long[capacity];
+        }
+
+        private void add(Slot slot)
+        {
+            slots[count++] = slot;
+            members[slot.index] = true;
+        }
+
+        /**
+         * Checks if the given check needs the events of the route in its current state
+         * @param slot the slot of the check
+         * @return true if the event has to be delivered to the check
+         */
+        private boolean accepts(Slot slot)
+        {
+            // The check is (or was, if terminated) in the route
+            if(!members[slot.index]) return false;
+
+            // Only the first 64 states are remembered, the check receives all the events in the other ones
+            int state = slot.checkSubscriber.getInterestState();
+            if(state<0 || state>=Long.SIZE) return true;
+
+            long bit = 1L<<state;
+            if((knownStates[slot.index] & bit)==0)
+            {
+                knownStates[slot.index] |= bit;
+                if(!slot.isInterestedIn(eventClass, state)) skippedStates[slot.index] |= bit;
+            }
+            return (skippedStates[slot.index] & bit)==0;
+        }
+
+        /**
+         * Removes in constant time the slot at the given position, moving the last one in its place
+         * @param i the index of the slot to be removed
+         */
+        private void remove(int i)
+        {
+            count--;
+            slots[i] = slots[count];
+            slots[count] = null;
+        }
+    }
+}
@@ -0,0 +1,193 @@
+package it.polimi.testing.temporalassertions.core;
+
+import android.support.annotation.NonNull;
+
+/**
+ * The runtime costs of a single evaluation of a check, see {@link EventMonitor#getMetrics()} and
+ * {@link Result#getMetrics()}
+ *
+ * The counters are updated only by the thread that evaluates the check (each check belongs to a single
+ * dispatcher, also when the checks are evaluated in parallel), so they are plain fields without any
+ * synchronization. After each delivery of events the same thread publishes them in volatile fields, which are
+ * the only ones read by the getters and by the snapshots. The metrics exposed to the users are snapshots: a
+ * snapshot taken by another thread while the check is running may lag slightly behind, the one attached to the
+ * result is exact.
+ *
+ * The busy time costs two reads of the system clock for each delivery, so it is measured only if required (see
+ * {@link EventMonitor#setBusyTimeMeasured(boolean)}).
+ *
+ * For a connective, the matchers and the transitions of its internal checks are counted in its own metrics.
+ */
+public class CheckMetrics
+{
+    /**
+     * The time to verdict of a check that has not sent its result yet
+     */
+    public final static long NO_VERDICT = -1;
+
+    private final Check check;
+    private final long startNanos;
+    private final boolean busyTimeMeasured;
+
+    long eventsCount;
+    long matcherCallsCount;
+    long matcherEvaluationsCount;
+    long transitionsCount;
+    long busyNanos;
+    long timeToVerdictNanos = NO_VERDICT;
+
+    private volatile long publishedEventsCount;
+    private volatile long publishedMatcherCallsCount;
+    private volatile long publishedMatcherEvaluationsCount;
+    private volatile long publishedTransitionsCount;
+    private volatile long publishedBusyNanos;
+    private volatile long publishedTimeToVerdictNanos = NO_VERDICT;
+
+    /**
+     * Constructor, starts the evaluation
+     * @param check the check
+     * @param busyTimeMeasured true if the time spent on the events must be measured
+     */
+    CheckMetrics(Check check, boolean busyTimeMeasured)
+    {
+        this.check = check;
+        this.startNanos = System.nanoTime();
+        this.busyTimeMeasured = busyTimeMeasured;
+    }
+
+    /**
+     * Constructor, copies the published counters of the given metrics
+     * @param metrics the metrics to be copied
+     */
+    private CheckMetrics(CheckMetrics metrics)
+    {
+        this.check = metrics.check;
+        this.startNanos = metrics.startNanos;
+        this.busyTimeMeasured = metrics.busyTimeMeasured;
+        this.eventsCount = metrics.publishedEventsCount;
+        this.matcherCallsCount = metrics.publishedMatcherCallsCount;
+        this.matcherEvaluationsCount = metrics.publishedMatcherEvaluationsCount;
+        this.transitionsCount = metrics.publishedTransitionsCount;
+        this.busyNanos = metrics.publishedBusyNanos;
+        this.timeToVerdictNanos = metrics.publishedTimeToVerdictNanos;
+        publish();
+    }
+
+    /**
+     * Builds a copy of the published counters, can be called by any thread
+     * @return the snapshot
+     */
+    CheckMetrics snapshot()
+    {
+        return new CheckMetrics(this);
+    }
+
+    /**
+     * Makes the current counters visible to the other threads, called by the thread that evaluates the check
+     */
+    void publish()
+    {
+        publishedEventsCount = eventsCount;
+        publishedMatcherCallsCount = matcherCallsCount;
+        publishedMatcherEvaluationsCount = matcherEvaluationsCount;
+        publishedTransitionsCount = transitionsCount;
+        publishedBusyNanos = busyNanos;
+        publishedTimeToVerdictNanos = timeToVerdictNanos;
+    }
+
+    /**
+     * Records the verdict of the check, i.e. the time elapsed since the start of the evaluation, and publishes the counters
+     */
+    void recordVerdict()
+    {
+        if(timeToVerdictNanos==NO_VERDICT) timeToVerdictNanos = System.nanoTime()-startNanos;
+        publish();
+    }
+
+    /**
+     * Getter
+     * @return the check that has been evaluated
+     */
+    public Check getCheck()
+    {
+        return check;
+    }
+
+    /**
+     * Getter
+     * @return the number of events delivered to the check
+     */
+    public long getEventsCount()
+    {
+        return publishedEventsCount;
+    }
+
+    /**
+     * Getter
+     * @return the number of times the check matched an event, including the results reused from the other checks
+     */
+    public long getMatcherCallsCount()
+    {
+        return publishedMatcherCallsCount;
+    }
+
+    /**
+     * Getter
+     * @return the number of times a matcher was actually evaluated for the check (i.e. its result was not
+     *         already known from another check on the same event)
+     */
+    public long getMatcherEvaluationsCount()
+    {
+        return publishedMatcherEvaluationsCount;
+    }
+
+    /**
+     * Getter
+     * @return the number of transitions performed by the automata of the check (zero for the checks without one)
+     */
+    public long getTransitionsCount()
+    {
+        return publishedTransitionsCount;
+    }
+
+    /**
+     * Getter
+     * @return true if the time spent on the events is measured, see {@link CheckMetrics#getBusyNanos()}
+     */
+    public boolean isBusyTimeMeasured()
+    {
+        return busyTimeMeasured;
+    }
+
+    /**
+     * Getter
+     * @return the nanoseconds spent evaluating the events delivered to the check, or 0 if the time is not measured
+     */
+    public long getBusyNanos()
+    {
+        return publishedBusyNanos;
+    }
+
+    /**
+     * Getter
+     * @return the nanoseconds between the start of the evaluation and the result of the check, or
+     *         {@link CheckMetrics#NO_VERDICT} if the check has not sent its result yet
+     */
+    public long getTimeToVerdictNanos()
+    {
+        return publishedTimeToVerdictNanos;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @NonNull
+    @Override
+    public String toString()
+    {
+        long verdictNanos = getTimeToVerdictNanos();
+        return check.getDescription()+": "+getEventsCount()+" events, "+getMatcherCallsCount()+" matcher calls ("+
+                getMatcherEvaluationsCount()+" evaluated), "+getTransitionsCount()+" transitions, "+getBusyNanos()+
+                " ns busy, "+(verdictNanos==NO_VERDICT ? "no verdict" : verdictNanos+" ns to verdict");
+    }
+}
@@ -2,6 +2,8 @@ package it.polimi.testing.temporalassertions.core;
 
 import android.support.annotation.NonNull;
 
+import org.hamcrest.Matcher;
+
 import it.polimi.testing.temporalassertions.events.Event;
 import rx.Subscriber;
 
@@ -13,6 +15,24 @@ import rx.Subscriber;
 public abstract class CheckSubscriber extends Subscriber<Event>
 {
     private Subscriber<? super Result> child;
+    private MatcherCache matcherCache;
+    private CheckMetrics metrics;
+
+    private TimerWheel timerWheel;
+    private TimerWheel.Timeout timeout;
+    private long deadline = NO_DEADLINE;
+
+    private Verdict verdict = Verdict.OPEN;
+
+    /**
+     * The deadline of a check that is not waiting for anything
+     */
+    final static long NO_DEADLINE = Long.MAX_VALUE;
+
+    /**
+     * The interest state of a check that needs all the events it could match, see {@link CheckSubscriber#getInterestState()}
+     */
+    final static int ANY_STATE = -1;
 
     /**
      * {@inheritDoc}
@@ -41,6 +61,8 @@ public abstract class CheckSubscriber extends Subscriber<Event>
     @Override
     public void onError(Throwable e)
     {
+        clearDeadline();
+
         // Forward error to the child
         if(!child.isUnsubscribed())
         {
@@ -51,15 +73,34 @@ public abstract class CheckSubscriber extends Subscriber<Event>
     @Override
     public void onCompleted()
     {
+        clearDeadline();
+
         // Send result to the child
         if(!child.isUnsubscribed())
         {
-            Result result = getFinalResult();
+            Result result = buildFinalResult();
+            verdict = Verdict.of(result.getOutcome());
             child.onNext(result);
             child.onCompleted();
         }
     }
 
+    /**
+     * Receives several consecutive events of the stream at once. By default it simply calls
+     * {@link CheckSubscriber#onNext(Object)} for each event until the check terminates, but the
+     * implementations can override it with a tighter loop.
+     * @param events the array that contains the events (it must not be retained after the call)
+     * @param from the index of the first event (inclusive)
+     * @param to the index of the last event (exclusive)
+     */
+    public void onNextBatch(Event[] events, int from, int to)
+    {
+        for(int i=from; i<to && !isUnsubscribed(); i++)
+        {
+            onNext(events[i]);
+        }
+    }
+
     /**
      * Allows to short-circuit a check
      */
@@ -69,12 +110,34 @@ public abstract class CheckSubscriber extends Subscriber<Event>
         unsubscribe();
     }
 
+    /**
+     * Gets the current verdict of the check. By default it is open until the check sends its result, then it is the
+     * verdict of the result. The implementations can override it to tell that the verdict became definitive before
+     * the end of the stream: the {@link EventMonitor} then ends the check right after the current event, so that its
+     * result is sent immediately (e.g. a failure is reported at the event that caused it).
+     * @return the current verdict
+     */
+    public Verdict getVerdict()
+    {
+        return verdict;
+    }
+
     /**
      * Allows to build the final result of the check, based on its logic
      * @return the single final result of the check
      */
     public abstract @NonNull Result getFinalResult();
 
+    /**
+     * Builds the final result that is sent to the child, allows the internal implementations to attach
+     * their structured data to the result
+     * @return the single final result of the check
+     */
+    Result buildFinalResult()
+    {
+        return getFinalResult();
+    }
+
     /**
      * Allows the caller to set the child that will receive the check result
      * @param child a subscriber of results
@@ -83,4 +146,158 @@ public abstract class CheckSubscriber extends Subscriber<Event>
     {
         this.child = child;
     }
+
+    /**
+     * Allows the implementations to match an event, reusing the result computed for the same matcher
+     * by any other check on the current event (if the check is applied by the {@link EventMonitor})
+     * @param matcher the Hamcrest matcher
+     * @param event the event to be matched
+     * @return true if the event matches
+     */
+    protected boolean matches(Matcher<?> matcher, Event event)
+    {
+        if(metrics==null)
+        {
+            if(matcherCache==null) return matcher.matches(event);
+            return matcherCache.matches(matcher, event);
+        }
+
+        // Count the call, and the evaluation only if the result was not in the cache
+        metrics.matcherCallsCount++;
+        if(matcherCache==null)
+        {
+            metrics.matcherEvaluationsCount++;
+            return matcher.matches(event);
+        }
+        long evaluationsCount = matcherCache.getEvaluationsCount();
+        boolean result = matcherCache.matches(matcher, event);
+        metrics.matcherEvaluationsCount += matcherCache.getEvaluationsCount()-evaluationsCount;
+        return result;
+    }
+
+    /**
+     * Gets the state of the check that decides which events it needs right now. The {@link EventMonitor} asks it
+     * before each event and skips the check if the event cannot match any of the matchers returned by
+     * {@link CheckSubscriber#getInterestingMatchers(int)} for that state. By default the check needs all the
+     * events its matchers could match.
+     * @return the current state (small and non-negative), or {@link CheckSubscriber#ANY_STATE}
+     */
+    int getInterestState()
+    {
+        return ANY_STATE;
+    }
+
+    /**
+     * Gets the matchers that the check evaluates in the given state: an event that cannot match any of them
+     * would leave the check unchanged
+     * @param state a state returned by {@link CheckSubscriber#getInterestState()}
+     * @return the matchers (if empty, no event is needed in that state), or null if any event is needed
+     */
+    Matcher<?>[] getInterestingMatchers(int state)
+    {
+        return null;
+    }
+
+    /**
+     * Allows the implementations to count a transition of their state machine in the metrics of the check
+     */
+    void countTransition()
+    {
+        if(metrics!=null) metrics.transitionsCount++;
+    }
+
+    /**
+     * Sets the deadline of the check, replacing the previous one: {@link CheckSubscriber#onDeadline(long)} will be
+     * called as soon as the time (of the events, or of the monitor if no event arrives) passes it
+     * @param deadline the deadline in nanoseconds, see {@link Event#getTimestamp()}
+     */
+    void setDeadline(long deadline)
+    {
+        this.deadline = deadline;
+        if(timerWheel!=null)
+        {
+            if(timeout==null)
+            {
+                timeout = new TimerWheel.Timeout()
+                {
+                    @Override
+                    void expire(long now)
+                    {
+                        advanceTime(now);
+                    }
+                };
+            }
+            timerWheel.schedule(timeout, deadline);
+        }
+    }
+
+    /**
+     * Removes the deadline of the check
+     */
+    void clearDeadline()
+    {
+        deadline = NO_DEADLINE;
+        if(timerWheel!=null && timeout!=null) timerWheel.cancel(timeout);
+    }
+
+    /**
+     * Getter
+     * @return the deadline of the check, or {@link CheckSubscriber#NO_DEADLINE}
+     */
+    long getDeadline()
+    {
+        return deadline;
+    }
+
+    /**
+     * Tells the check the current time, calling {@link CheckSubscriber#onDeadline(long)} if the deadline has passed.
+     * The timed implementations call it with the timestamp of each event before using it.
+     * @param now the current time in nanoseconds
+     */
+    void advanceTime(long now)
+    {
+        if(now>deadline && !isUnsubscribed())
+        {
+            long expired = deadline;
+            clearDeadline();
+            onDeadline(expired);
+        }
+    }
+
+    /**
+     * Called when the deadline of the check has passed, by default it does nothing
+     * @param deadline the deadline that has passed
+     */
+    void onDeadline(long deadline)
+    {
+
+    }
+
+    /**
+     * Allows the caller to set the wheel that keeps the deadlines of all the checks on the stream, so
+     * that they can expire even if no event arrives
+     * @param timerWheel the timer wheel
+     */
+    void setTimerWheel(TimerWheel timerWheel)
+    {
+        this.timerWheel = timerWheel;
+    }
+
+    /**
+     * Allows the caller to set the metrics where the costs of the check are counted
+     * @param metrics the metrics of the check
+     */
+    void setMetrics(CheckMetrics metrics)
+    {
+        this.metrics = metrics;
+    }
+
+    /**
+     * Allows the caller to set the cache of matcher results shared by all the checks on the stream
+     * @param matcherCache the cache of matcher results
+     */
+    void setMatcherCache(MatcherCache matcherCache)
+    {
+        this.matcherCache = matcherCache;
+    }
 }
@@ -0,0 +1,25 @@
+package it.polimi.testing.temporalassertions.core;
+
+/**
+ * The source of the monotonic time used by the monitor to stamp the events, see {@link EventMonitor#setClock(Clock)}
+ */
+public interface Clock
+{
+    /**
+     * The default clock, based on {@link System#nanoTime()}
+     */
+    Clock SYSTEM = new Clock()
+    {
+        @Override
+        public long nanoTime()
+        {
+            return System.nanoTime();
+        }
+    };
+
+    /**
+     * Reads the current time, can be called by any thread (the one that emits each event)
+     * @return the current time in nanoseconds, it must never decrease
+     */
+    long nanoTime();
+}
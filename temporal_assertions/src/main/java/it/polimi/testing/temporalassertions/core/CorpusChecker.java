@@ -0,0 +1,184 @@
+package it.polimi.testing.temporalassertions.core;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import it.polimi.testing.temporalassertions.trace.TraceReader;
+import rx.Subscriber;
+
+/**
+ * Allows to check a whole corpus of recorded traces (e.g. collected from many test runs and devices) with a suite
+ * of checks, on the plain JVM
+ *
+ * The traces are split between the threads of a fixed pool (only the executors available on every API level are
+ * used), and each of them is replayed by the {@link OfflineMonitor} that defines the suite, so each trace is checked
+ * from scratch. The results of all the traces are aggregated in a single {@link CorpusResult}, in the order of the traces.
+ *
+ * The checks of the suite are evaluated by several threads at the same time, so they must not share the state
+ * of their evaluations: all the checks of the library do this, as do the custom checks that create a new
+ * subscriber for each evaluation (see {@link Check#newCheckSubscriber()}).
+ */
+public class CorpusChecker
+{
+    private final OfflineMonitor suite;
+    private int parallelism = Runtime.getRuntime().availableProcessors();
+
+    /**
+     * Constructor
+     * @param suite the monitor with the checks to be evaluated on each trace
+     */
+    public CorpusChecker(OfflineMonitor suite)
+    {
+        this.suite = suite;
+    }
+
+    /**
+     * Allows to choose the number of threads that check the traces. By default it is the number of processors.
+     * @param parallelism the number of threads
+     */
+    public void setParallelism(int parallelism)
+    {
+        this.parallelism = Math.max(1, parallelism);
+    }
+
+    /**
+     * Checks all the files of a directory (in the order of their names), each of them must be a trace
+     * @param directory the directory of the traces
+     * @return the aggregate results
+     * @throws IOException if the directory cannot be listed
+     */
+    public CorpusResult check(File directory) throws IOException
+    {
+        File[] files = directory.listFiles();
+        if(files==null) throw new FileNotFoundException("Not a directory: "+directory);
+        Arrays.sort(files);
+
+        List<File> traces = new ArrayList<>();
+        for(File file: files)
+        {
+            if(file.isFile()) traces.add(file);
+        }
+        return check(traces);
+    }
+
+    /**
+     * Checks the given traces
+     * @param traces the files of the traces
+     * @return the aggregate results
+     * @throws IllegalStateException if the current thread is interrupted while the traces are checked
+     */
+    public CorpusResult check(List<File> traces)
+    {
+        List<Check> checks = new ArrayList<>(suite.getChecks());
+        List<CheckTask> tasks = new ArrayList<>(traces.size());
+        for(File file: traces)
+        {
+            tasks.add(new CheckTask(checks, file));
+        }
+
+        ExecutorService pool = Executors.newFixedThreadPool(parallelism);
+        try
+        {
+            // The results of the traces are merged in order
+            CorpusResult result = new CorpusResult(checks);
+            for(Future<CorpusResult> traceResult: pool.invokeAll(tasks))
+            {
+                result.merge(traceResult.get());
+            }
+            return result;
+        }
+        catch(InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while checking the traces", e);
+        }
+        catch(ExecutionException e)
+        {
+            // A check failed with an unexpected exception, as if the traces were checked by the current thread
+            Throwable cause = e.getCause();
+            if(cause instanceof RuntimeException) throw (RuntimeException) cause;
+            if(cause instanceof Error) throw (Error) cause;
+            throw new IllegalStateException(cause);
+        }
+        finally
+        {
+            pool.shutdown();
+        }
+    }
+
+    /**
+     * The task that checks a single trace
+     */
+    private class CheckTask implements Callable<CorpusResult>
+    {
+        private final List<Check> checks;
+        private final File file;
+
+        private CheckTask(List<Check> checks, File file)
+        {
+            this.checks = checks;
+            this.file = file;
+        }
+
+        @Override
+        public CorpusResult call()
+        {
+            CorpusResult result = new CorpusResult(checks);
+            checkTrace(file, result);
+            return result;
+        }
+
+        /**
+         * Helper to replay a single trace, its results are added only if it is read completely
+         * @param file the trace
+         * @param result the aggregate results
+         */
+        private void checkTrace(final File file, CorpusResult result)
+        {
+            final List<Result> results = new ArrayList<>();
+            try
+            {
+                suite.replay(new TraceReader(file), new Subscriber<Result>()
+                {
+                    @Override
+                    public void onCompleted()
+                    {
+
+                    }
+
+                    @Override
+                    public void onError(Throwable e)
+                    {
+
+                    }
+
+                    @Override
+                    public void onNext(Result checkResult)
+                    {
+                        results.add(checkResult);
+                    }
+                });
+            }
+            catch(IOException e)
+            {
+                result.addError(file, e);
+                return;
+            }
+
+            result.addTrace();
+            for(Result checkResult: results)
+            {
+                result.add(file, checkResult);
+            }
+        }
+    }
+}
@@ -0,0 +1,151 @@
+package it.polimi.testing.temporalassertions.core;
+
+import android.support.annotation.NonNull;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The aggregate results of a suite of checks over a corpus of traces, see {@link CorpusChecker}
+ *
+ * For each check it counts the traces for each outcome and keeps the traces where the check failed. The traces
+ * that could not be read are not counted, and are kept with their error.
+ */
+public class CorpusResult
+{
+    private final List<Check> checks;
+    private final Map<Check, Integer> indexes = new IdentityHashMap<>();
+    private final int[][] counts;
+    private final List<List<File>> failingTraces = new ArrayList<>();
+    private final Map<File, IOException> errors = new LinkedHashMap<>();
+    private int tracesCount = 0;
+
+    /**
+     * Constructor, with no trace
+     * @param checks the checks of the suite
+     */
+    CorpusResult(List<Check> checks)
+    {
+        this.checks = checks;
+        this.counts = new int[checks.size()][Outcome.values().length];
+        for(int i=0; i<checks.size(); i++)
+        {
+            indexes.put(checks.get(i), i);
+            failingTraces.add(new ArrayList<File>());
+        }
+    }
+
+    /**
+     * Adds the result of a check on a trace
+     * @param trace the trace
+     * @param result the result of one of the checks of the suite
+     */
+    void add(File trace, Result result)
+    {
+        Integer index = indexes.get(result.getLinkedCheck());
+        if(index==null) return;
+
+        counts[index][result.getOutcome().ordinal()]++;
+        if(Outcome.FAILURE.equals(result.getOutcome())) failingTraces.get(index).add(trace);
+    }
+
+    /**
+     * Counts a trace that has been checked
+     */
+    void addTrace()
+    {
+        tracesCount++;
+    }
+
+    /**
+     * Adds a trace that could not be read
+     * @param trace the trace
+     * @param error the error
+     */
+    void addError(File trace, IOException error)
+    {
+        errors.put(trace, error);
+    }
+
+    /**
+     * Adds all the results of another part of the corpus, checked by the same suite
+     * @param other the results of the other part
+     */
+    void merge(CorpusResult other)
+    {
+        for(int i=0; i<counts.length; i++)
+        {
+            for(int j=0; j<counts[i].length; j++) counts[i][j] += other.counts[i][j];
+            failingTraces.get(i).addAll(other.failingTraces.get(i));
+        }
+        errors.putAll(other.errors);
+        tracesCount += other.tracesCount;
+    }
+
+    /**
+     * Getter
+     * @return the number of traces that have been checked (excluding the ones that could not be read)
+     */
+    public int getTracesCount()
+    {
+        return tracesCount;
+    }
+
+    /**
+     * Gets the number of traces where a check had the given outcome
+     * @param check one of the checks of the suite
+     * @param outcome the outcome
+     * @return the number of traces
+     */
+    public int getCount(Check check, Outcome outcome)
+    {
+        Integer index = indexes.get(check);
+        return index==null ? 0 : counts[index][outcome.ordinal()];
+    }
+
+    /**
+     * Gets the traces where a check failed
+     * @param check one of the checks of the suite
+     * @return the traces, in the order of the corpus
+     */
+    public List<File> getFailingTraces(Check check)
+    {
+        Integer index = indexes.get(check);
+        return index==null ? Collections.<File>emptyList() : Collections.unmodifiableList(failingTraces.get(index));
+    }
+
+    /**
+     * Getter
+     * @return the traces that could not be read, with their error
+     */
+    public Map<File, IOException> getErrors()
+    {
+        return Collections.unmodifiableMap(errors);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @NonNull
+    @Override
+    public String toString()
+    {
+        StringBuilder sb = new StringBuilder();
+        sb.append(tracesCount).append(" traces checked, ").append(errors.size()).append(" not readable");
+        for(int i=0; i<checks.size(); i++)
+        {
+            sb.append("\n").append(checks.get(i).getDescription()).append(":");
+            for(Outcome outcome: Outcome.values())
+            {
+                sb.append(" ").append(outcome).append(" ").append(counts[i][outcome.ordinal()]);
+            }
+        }
+        return sb.toString();
+    }
+}
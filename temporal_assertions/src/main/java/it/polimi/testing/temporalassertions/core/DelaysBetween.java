@@ -0,0 +1,148 @@
+package it.polimi.testing.temporalassertions.core;
+
+import android.support.annotation.NonNull;
+
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+
+import it.polimi.testing.temporalassertions.Utils;
+import it.polimi.testing.temporalassertions.events.Event;
+
+/**
+ * Descriptor of the delays between the pairs of events where the first matches {@code eventStart} and the second
+ * matches {@code eventEnd} (e.g. a menu click and the following toast)
+ *
+ * A pair starts with an {@code eventStart} (a following {@code eventStart} restarts it) and ends with the first
+ * {@code eventEnd} after it. The delays are computed from the timestamps of the events (see {@link Event#getTimestamp()})
+ * and accumulated in a histogram of fixed size, so the checks run in constant memory however many pairs occur.
+ */
+public class DelaysBetween
+{
+    private final AnEventThat eventStart;
+    private final AnEventThat eventEnd;
+
+    /**
+     * Constructor
+     * @param eventStart the first element of a pair
+     * @param eventEnd the second element of a pair
+     */
+    private DelaysBetween(AnEventThat eventStart, AnEventThat eventEnd)
+    {
+        this.eventStart = eventStart;
+        this.eventEnd = eventEnd;
+    }
+
+    /**
+     * Descriptor of the delays between the pairs of events {@code eventStart}-{@code eventEnd}
+     * @param eventStart the first element of a pair
+     * @param eventEnd the second element of a pair
+     * @return the descriptor of the delays
+     */
+    public static DelaysBetween delaysBetween(AnEventThat eventStart, AnEventThat eventEnd)
+    {
+        return new DelaysBetween(eventStart, eventEnd);
+    }
+
+    /**
+     * Checks that the given percentile of the delays is below the given limit. For example
+     * {@code delaysBetween(anEventThat(m1), anEventThat(m2)).havePercentileBelow(99, 50, MILLISECONDS)} means that
+     * 99% of the pairs must have a delay lower than 50 ms. The percentile is computed with a relative error
+     * of about 3%, rounding up.
+     * @param percentile the percentile, from 0 to 100 (100 means the maximum delay)
+     * @param time the limit
+     * @param unit the time unit of the limit
+     * @return the check will return SUCCESS if the percentile of the delays is below the limit, FAILURE if it is
+     *         not and WARNING if no pair has been found in the sequence
+     */
+    public Check havePercentileBelow(final double percentile, final long time, final TimeUnit unit)
+    {
+        final int OUTSIDE = 0;
+        final int INSIDE = 1;
+
+        final int START = 1;
+        final int END = 1<<1;
+
+        final Automaton automaton = Automaton.builder(2, eventStart.getMatcher(), eventEnd.getMatcher())
+
+                // If I find a start, the pair starts (again)
+                .on(OUTSIDE, START, INSIDE, Automaton.SET_WITNESS)
+                .on(INSIDE, START, INSIDE, Automaton.SET_WITNESS)
+
+                // If I find an end after a start, the pair ends and its delay is measured
+                .on(INSIDE, END, OUTSIDE, Automaton.MEASURE | Automaton.COUNT)
+
+                .build();
+
+        final long limit = unit.toNanos(time);
+        final String percentileName = percentile==Math.rint(percentile) ? String.valueOf((long) percentile) : String.valueOf(percentile);
+
+        return new Check(
+                LazyString.of("The ", percentileName, "th percentile of the delays between each event that ", eventStart.getMatcher(), " and the following event that ", eventEnd.getMatcher(), " is below ", Utils.describeDuration(time, unit)),
+
+                eventStart.getMatcher(), eventEnd.getMatcher())
+        {
+            @Override
+            protected CheckSubscriber newCheckSubscriber()
+            {
+                return new AutomatonSubscriber(automaton, null)
+                {
+                    private final LatencyHistogram histogram = new LatencyHistogram();
+                    private Event slowestStart;
+                    private Event slowestEnd;
+
+                    @Override
+                    void onDelay(Event from, Event to)
+                    {
+                        // The events without a timestamp cannot be measured
+                        if(!from.isStamped() || !to.isStamped()) return;
+
+                        long delay = to.getTimestamp()-from.getTimestamp();
+                        if(slowestStart==null || delay>histogram.getMax())
+                        {
+                            slowestStart = from;
+                            slowestEnd = to;
+                        }
+                        histogram.record(delay);
+                    }
+
+                    @NonNull
+                    @Override
+                    public Result getFinalResult()
+                    {
+                        Outcome outcome;
+                        CharSequence report;
+
+                        // Warning if no pair was measured
+                        if(histogram.getTotalCount()<=0)
+                        {
+                            outcome = Outcome.WARNING;
+                            report = "No pair of events was found in the sequence";
+                        }
+
+                        // Success or failure if the percentile is below the limit or not
+                        else
+                        {
+                            long value = histogram.getValueAtPercentile(percentile);
+                            outcome = value<limit ? Outcome.SUCCESS : Outcome.FAILURE;
+                            report = LazyString.of("The ", percentileName, "th percentile of the delays of the ", histogram.getTotalCount(), " pairs was ", describe(value), ", the slowest pair was ", slowestStart, " and ", slowestEnd, " (", describe(histogram.getMax()), ")");
+                        }
+
+                        Result result = new Result(outcome, report);
+                        if(slowestStart!=null) result.setWitnesses(new Event[]{slowestStart, slowestEnd});
+                        return result;
+                    }
+
+                    /**
+                     * Helper to describe a delay in the unit of the limit, with decimals
+                     * @param nanos the delay in nanoseconds
+                     * @return the description
+                     */
+                    private String describe(long nanos)
+                    {
+                        return String.format(Locale.US, "%.3f %s", (double) nanos/unit.toNanos(1), unit.name().toLowerCase(Locale.US));
+                    }
+                };
+            }
+        };
+    }
+}
@@ -0,0 +1,680 @@
+package it.polimi.testing.temporalassertions.core;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.LockSupport;
+
+import it.polimi.testing.temporalassertions.events.Event;
+import rx.Scheduler;
+import rx.Subscriber;
+import rx.exceptions.Exceptions;
+import rx.functions.Action0;
+import rx.subscriptions.CompositeSubscription;
+
+/**
+ * The single entry point of the events into the monitored stream
+ *
+ * Both the observed sources and the custom events fired with {@link EventMonitor#fireCustomEvent(Event)} only
+ * add their events to a lock-free queue, so any thread can produce events at the same time. A single worker of
+ * the given scheduler drains the queue and sends the events in order to the subject, in batches of at most
+ * {@link EventIngestion#BATCH_SIZE} events. Events produced before the subject is connected are kept in the queue.
+ *
+ * The time of each event is read from the clock when the event is emitted, by the thread that emits it, and the
+ * worker stamps the event with that time and its sequence number when the event enters the stream: since it is
+ * the only thread that stamps, the sequence numbers follow the order of the stream, and it raises the times that
+ * are lower than the previous one (e.g. read by another thread just before it), so the timestamps never decrease.
+ * An event that is emitted again enters the stream again, with the stamps of its new position.
+ *
+ * If required, the worker also signals the current time to the subject at a fixed period (see
+ * {@link RingBufferSubject#onTime(long)}), so that the timed checks know the time even if no event arrives.
+ *
+ * The stream terminates only when {@link EventIngestion#complete()} is called, a source fails or the delivery of the
+ * events to the subject throws (e.g. a matcher of a check fails): in this case the subject receives the error (in
+ * Android many sources never complete, e.g. text change on a TextView can potentially generate events forever).
+ *
+ * Each source is tagged and counts its own events (also its recent rate, decayed exponentially every second so
+ * that a burst stands out even after a long session), and the worker measures the lag of each event from its
+ * emission to the end of its delivery to the subject (see {@link EventIngestion#getMetrics()}). The metrics
+ * are measured with the system time, not with the clock of the monitor.
+ *
+ * The events of the sources with a bounded {@link BackpressurePolicy} do not go in the queue: each of these sources
+ * keeps its waiting events in a ring buffer of its own, and only adds a marker to the queue for each of them, so
+ * that they keep their position in the stream. When the buffer is full, the policy decides if the source waits, if
+ * the new event is dropped or if the oldest one is dropped (in this case the new event takes the marker of the
+ * next one, so the waiting events of the source move one position forward in the stream). The dropped events are
+ * also counted by class, so that each check can know how many of the events it could have matched were dropped.
+ */
+final class EventIngestion
+{
+    final static int BATCH_SIZE = 64;
+    final static String CUSTOM_SOURCE_TAG = "custom";
+    private final static long BLOCK_PARK_NANOS = TimeUnit.MICROSECONDS.toNanos(100);
+    private final static long RATE_INTERVAL_NANOS = TimeUnit.SECONDS.toNanos(1);
+    private final static double RATE_DECAY = Math.exp(-1.0/10);
+
+    private final Scheduler scheduler;
+    private final MpscQueue<Object> queue = new MpscQueue<>();
+    private final AtomicInteger wip = new AtomicInteger();
+    private final CompositeSubscription sources = new CompositeSubscription();
+
+    private final Event[] batch = new Event[BATCH_SIZE];
+    private final long[] emissionTimes = new long[BATCH_SIZE];
+    private long polledTime;
+    private long polledTimestamp;
+    private boolean terminated = false;
+    private long nextSequence = 0;
+    private Event held;
+    private long lastTimestamp = Long.MIN_VALUE;
+
+    private volatile Clock clock = Clock.SYSTEM;
+
+    private volatile RingBufferSubject<Event> subject;
+    private volatile Scheduler.Worker worker;
+    private volatile boolean done = false;
+    private volatile Throwable error;
+    private final CountDownLatch terminatedLatch = new CountDownLatch(1);
+
+    private final List<Source> allSources = new CopyOnWriteArrayList<>();
+    private final Source customSource;
+    private final LatencyHistogram lag = new LatencyHistogram();
+    private volatile long deliveredCount = 0;
+    private final ConcurrentMap<Class<?>, AtomicLong> droppedCountByClass = new ConcurrentHashMap<>();
+
+    private final Action0 drain = new Action0()
+    {
+        @Override
+        public void call()
+        {
+            drain();
+        }
+    };
+
+    private final Action0 tick = new Action0()
+    {
+        @Override
+        public void call()
+        {
+            tick();
+        }
+    };
+
+    /**
+     * Constructor
+     * @param scheduler the scheduler whose worker will send the events to the subject
+     */
+    EventIngestion(Scheduler scheduler)
+    {
+        this.scheduler = scheduler;
+        this.customSource = newSource(CUSTOM_SOURCE_TAG, BackpressurePolicy.unbounded());
+    }
+
+    /**
+     * Setter
+     * @param clock the clock used to stamp the events emitted from now on, read by the threads that emit them
+     */
+    void setClock(Clock clock)
+    {
+        this.clock = clock;
+    }
+
+    /**
+     * Adds a custom event to the stream, can be called by any thread
+     * @param event the event
+     */
+    void offer(Event event)
+    {
+        offer(event, customSource);
+    }
+
+    /**
+     * Helper to add an event of a source to the stream, with the time of its emission
+     * @param event the event
+     * @param source the source
+     */
+    private void offer(Event event, Source source)
+    {
+        if(done) return;
+
+        // The system time measures the lag, the clock stamps the event (they are the same time for the default clock)
+        Clock currentClock = clock;
+        long time = System.nanoTime();
+        long timestamp = currentClock==Clock.SYSTEM ? time : currentClock.nanoTime();
+
+        source.count.incrementAndGet();
+        source.updateRate(time);
+        if(source.slots==null)
+        {
+            queue.offer(event, time, timestamp);
+        }
+        else if(source.admit(event, time, timestamp))
+        {
+            queue.offer(source);
+        }
+        scheduleDrain();
+    }
+
+    /**
+     * Creates a subscriber that adds to the stream the events of a source
+     * @return the subscriber for the source
+     */
+    Subscriber<Event> newSourceSubscriber()
+    {
+        return newSourceSubscriber("source-"+allSources.size(), BackpressurePolicy.unbounded());
+    }
+
+    /**
+     * Creates a subscriber that adds to the stream the events of a source, counting them
+     * @param tag the tag of the source in the metrics
+     * @param policy what to do when the events of the source arrive faster than they are checked (the bounded
+     *               policies require the source to emit its events serially, as every observable does)
+     * @return the subscriber for the source
+     */
+    Subscriber<Event> newSourceSubscriber(String tag, BackpressurePolicy policy)
+    {
+        final Source source = newSource(tag, policy);
+        Subscriber<Event> sourceSubscriber = new Subscriber<Event>()
+        {
+            @Override
+            public void onCompleted()
+            {
+                // The stream goes on with the other sources
+            }
+
+            @Override
+            public void onError(Throwable e)
+            {
+                error(e);
+            }
+
+            @Override
+            public void onNext(Event event)
+            {
+                offer(event, source);
+            }
+        };
+        sources.add(sourceSubscriber);
+        return sourceSubscriber;
+    }
+
+    /**
+     * Stops adding to the stream the events of a source
+     * @param sourceSubscriber the subscriber of the source, see {@link EventIngestion#newSourceSubscriber(String, BackpressurePolicy)}
+     */
+    void removeSourceSubscriber(Subscriber<Event> sourceSubscriber)
+    {
+        sources.remove(sourceSubscriber);
+    }
+
+    /**
+     * Starts sending the events to the given subject
+     * @param subject the subject
+     */
+    void connect(RingBufferSubject<Event> subject)
+    {
+        connect(subject, 0);
+    }
+
+    /**
+     * Starts sending the events and the time to the given subject
+     * @param subject the subject
+     * @param tickNanos the period of the time signals in nanoseconds, or 0 if the time is not needed
+     */
+    void connect(RingBufferSubject<Event> subject, long tickNanos)
+    {
+        Scheduler.Worker newWorker = scheduler.createWorker();
+
+        // The subject must be visible before the worker, which is the signal for the producers
+        this.subject = subject;
+        worker = newWorker;
+        scheduleDrain();
+
+        // The time signals run on the same worker, so they are in order with the events
+        if(tickNanos>0)
+        {
+            newWorker.schedulePeriodically(tick, tickNanos, tickNanos, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    /**
+     * Terminates the stream after the events already in the queue
+     */
+    void complete()
+    {
+        done = true;
+        sources.unsubscribe();
+        scheduleDrain();
+    }
+
+    /**
+     * Waits until the worker has sent the termination to the subject, after {@link EventIngestion#complete()}
+     * or {@link EventIngestion#error(Throwable)}. It returns immediately if the ingestion was never connected.
+     * @param timeout the maximum time to wait
+     * @param unit the unit of the timeout
+     * @return true if the stream terminated, false if the timeout elapsed
+     * @throws InterruptedException if the current thread is interrupted while waiting
+     */
+    boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException
+    {
+        return worker==null || terminatedLatch.await(timeout, unit);
+    }
+
+    /**
+     * Terminates the stream with an error after the events already in the queue
+     * @param e the error
+     */
+    void error(Throwable e)
+    {
+        error = e;
+        complete();
+    }
+
+    /**
+     * Helper to start the drain loop on the worker, if it is not running already
+     */
+    private void scheduleDrain()
+    {
+        Scheduler.Worker currentWorker = worker;
+        if(currentWorker!=null && wip.getAndIncrement()==0)
+        {
+            currentWorker.schedule(drain);
+        }
+    }
+
+    /**
+     * Sends all the queued events to the subject, runs only on the worker
+     */
+    private void drain()
+    {
+        if(terminated) return;
+
+        int missed = 1;
+        while(true)
+        {
+            // Read the flag first: the events offered before the termination are still in the queue
+            boolean terminate = done;
+
+            // Send the events in batches
+            int size = 0;
+            try
+            {
+                while((size = fillBatch())>0)
+                {
+                    subject.onNextBatch(batch, 0, size);
+                    Arrays.fill(batch, 0, size, null);
+                    recordLag(size);
+                }
+            }
+            catch(Throwable e)
+            {
+                // A check (or a subscriber) failed, so the stream cannot go on after this batch
+                Exceptions.throwIfFatal(e);
+                Arrays.fill(batch, 0, size, null);
+                recordLag(size);
+                fail(e);
+                terminate = true;
+            }
+
+            // Terminate the stream once the queue is empty
+            if(terminate)
+            {
+                terminated = true;
+                if(error!=null) subject.onError(error);
+                else subject.onCompleted();
+                terminatedLatch.countDown();
+                worker.unsubscribe();
+                return;
+            }
+
+            // Exit only if no producer signaled new events in the meantime
+            missed = wip.addAndGet(-missed);
+            if(missed==0) return;
+        }
+    }
+
+    /**
+     * Signals the current time to the subject, runs only on the worker
+     */
+    private void tick()
+    {
+        if(terminated) return;
+
+        lastTimestamp = Math.max(lastTimestamp, clock.nanoTime());
+        try
+        {
+            subject.onTime(lastTimestamp);
+        }
+        catch(Throwable e)
+        {
+            // A check failed on its deadline, the stream terminates with the error at the next drain
+            Exceptions.throwIfFatal(e);
+            fail(e);
+            scheduleDrain();
+        }
+    }
+
+    /**
+     * Helper to stop the stream because of an error thrown while delivering it, runs only on the worker
+     * @param e the error
+     */
+    private void fail(Throwable e)
+    {
+        error = e;
+        done = true;
+        sources.unsubscribe();
+    }
+
+    /**
+     * Helper to move the first events of the queue in the batch array, stamping them with the time of their emission
+     * @return the number of events in the batch
+     */
+    private int fillBatch()
+    {
+        int size = 0;
+        long firstSequence = nextSequence;
+        while(size<BATCH_SIZE)
+        {
+            Event event = held;
+            held = null;
+            if(event==null)
+            {
+                Object item = queue.poll();
+                if(item==null) break;
+
+                // The marker of a bounded source stands for its oldest waiting event, which keeps its own times
+                if(item instanceof Source)
+                {
+                    event = ((Source) item).take();
+                }
+                else
+                {
+                    event = (Event) item;
+                    polledTime = queue.getPolledTime();
+                    polledTimestamp = queue.getPolledStamp();
+                }
+            }
+
+            // An event emitted again while it is still in the batch waits for the next one, so it is not delivered
+            // twice with the same stamps
+            if(size>0 && event.isStamped() && event.getSequence()>=firstSequence)
+            {
+                held = event;
+                break;
+            }
+
+            lastTimestamp = Math.max(lastTimestamp, polledTimestamp);
+            EventStamps.stamp(event, lastTimestamp, nextSequence++);
+            emissionTimes[size] = polledTime;
+            batch[size++] = event;
+        }
+        return size;
+    }
+
+    /**
+     * Helper to record the lag of the events of the batch just delivered to the subject, runs only on the worker
+     * @param size the number of events of the batch
+     */
+    private void recordLag(int size)
+    {
+        long now = System.nanoTime();
+        synchronized(lag)
+        {
+            for(int i=0; i<size; i++)
+            {
+                lag.record(now-emissionTimes[i]);
+            }
+        }
+        deliveredCount += size;
+    }
+
+    /**
+     * Helper to create a source, starting its metrics from the current time
+     * @param tag the tag of the source
+     * @param policy the backpressure policy of the source
+     * @return the source
+     */
+    private Source newSource(String tag, BackpressurePolicy policy)
+    {
+        Source source = new Source(tag, policy, System.nanoTime());
+        allSources.add(source);
+        return source;
+    }
+
+    /**
+     * Counts the events dropped by the backpressure policies of all the sources that belong to the given types, can
+     * be called by any thread
+     * @param types the classes of events, e.g. the ones a check could match (see {@link MatcherEventTypes})
+     * @return the number of dropped events that are instances of any of the types
+     */
+    long getDroppedCount(Set<Class<?>> types)
+    {
+        long dropped = 0;
+        for(Map.Entry<Class<?>, AtomicLong> entry: droppedCountByClass.entrySet())
+        {
+            for(Class<?> type: types)
+            {
+                if(type.isAssignableFrom(entry.getKey()))
+                {
+                    dropped += entry.getValue().get();
+                    break;
+                }
+            }
+        }
+        return dropped;
+    }
+
+    /**
+     * Builds a snapshot of the metrics of the ingestion, can be called by any thread
+     * @return the metrics
+     */
+    PipelineMetrics getMetrics()
+    {
+        // Read the delivered events first, so that they are never more than the emitted ones
+        long delivered = deliveredCount;
+        long now = System.nanoTime();
+        long emitted = 0;
+        long dropped = 0;
+        List<PipelineMetrics.Source> sources = new ArrayList<>();
+        for(Source source: allSources)
+        {
+            // Read the dropped events first, so that they are never more than the emitted ones
+            long sourceDropped = source.dropped.get();
+            long count = source.count.get();
+            emitted += count;
+            dropped += sourceDropped;
+            sources.add(new PipelineMetrics.Source(source.tag, source.policy, count, sourceDropped, now-source.startTime, source.getRecentRate(now)));
+        }
+
+        LatencyHistogram lagSnapshot = new LatencyHistogram();
+        synchronized(lag)
+        {
+            lagSnapshot.add(lag);
+        }
+        return new PipelineMetrics(sources, delivered, Math.max(0, emitted-dropped-delivered), lagSnapshot);
+    }
+
+    /**
+     * Internal class that holds the metrics of a source and, if its backpressure policy is bounded, its waiting events
+     *
+     * The events are added only by the thread of the source and taken only by the worker. The sequence number of the
+     * oldest waiting event (the head) is advanced with an atomic operation both by the worker, which takes the event,
+     * and by the source, which drops it: each event is either taken or dropped exactly once. The buffer has one more
+     * slot than the capacity, so that the source can add an event before dropping the oldest one: the waiting events
+     * are never less than the markers in the queue.
+     */
+    private class Source
+    {
+        private final String tag;
+        private final BackpressurePolicy policy;
+        private final long startTime;
+        private final AtomicLong count = new AtomicLong();
+        private final AtomicLong dropped = new AtomicLong();
+        private final AtomicLong rateTime;
+        private volatile long rateCount = 0;
+        private volatile double recentRate = -1;
+
+        private final int capacity;
+        private final AtomicReferenceArray<Event> slots;
+        private final long[] times;
+        private final long[] timestamps;
+        private final AtomicLong head = new AtomicLong();
+        private volatile long tail = 0;
+
+        private Source(String tag, BackpressurePolicy policy, long startTime)
+        {
+            this.tag = tag;
+            this.policy = policy;
+            this.startTime = startTime;
+            this.rateTime = new AtomicLong(startTime);
+            this.capacity = policy.getCapacity();
+            boolean unbounded = BackpressurePolicy.Kind.UNBOUNDED.equals(policy.getKind());
+            this.slots = unbounded ? null : new AtomicReferenceArray<Event>(capacity+1);
+            this.times = unbounded ? null : new long[capacity+1];
+            this.timestamps = unbounded ? null : new long[capacity+1];
+        }
+
+        /**
+         * Updates the recent rate of the source once per interval, can be called by any thread: only the thread
+         * that moves the time of the rate forward updates it
+         * @param now the current system time
+         */
+        private void updateRate(long now)
+        {
+            long last = rateTime.get();
+            long intervals = (now-last)/RATE_INTERVAL_NANOS;
+            if(intervals<=0 || !rateTime.compareAndSet(last, last+intervals*RATE_INTERVAL_NANOS)) return;
+
+            // The events of the elapsed intervals are spread evenly over them
+            long currentCount = count.get();
+            double intervalsRate = (currentCount-rateCount)*1e9/(intervals*RATE_INTERVAL_NANOS);
+            double decay = Math.pow(RATE_DECAY, intervals);
+            rateCount = currentCount;
+            recentRate = recentRate<0 ? intervalsRate : recentRate*decay+intervalsRate*(1-decay);
+        }
+
+        /**
+         * Gets the recent rate of the source, can be called by any thread
+         * @param now the current system time
+         * @return the number of events per second, decayed exponentially (or the mean one during the first interval)
+         */
+        private double getRecentRate(long now)
+        {
+            updateRate(now);
+            double rate = recentRate;
+            return rate>=0 ? rate : (now<=startTime ? 0 : count.get()*1e9/(now-startTime));
+        }
+
+        /**
+         * Adds an event to the buffer according to the policy, runs only on the thread of the source
+         * @param event the event
+         * @param time the system time of the emission
+         * @param timestamp the time of the emission for the monitor clock
+         * @return true if the event needs a new marker in the queue
+         */
+        private boolean admit(Event event, long time, long timestamp)
+        {
+            long currentTail = tail;
+            if(currentTail-head.get()>=capacity)
+            {
+                switch(policy.getKind())
+                {
+                    case BLOCK:
+                        // Wait until the worker takes an event (or the stream ends)
+                        while(currentTail-head.get()>=capacity && !done)
+                        {
+                            LockSupport.parkNanos(BLOCK_PARK_NANOS);
+                        }
+                        break;
+
+                    case DROP_NEWEST:
+                        drop(event);
+                        return false;
+
+                    default:
+                        // Add the event in the spare slot, then drop the oldest one if the worker did not take it
+                        put(currentTail, event, time, timestamp);
+                        long currentHead;
+                        while(currentTail+1-(currentHead = head.get())>capacity)
+                        {
+                            // The oldest event stays in its slot until the head moves
+                            Event oldest = slots.get((int) (currentHead%slots.length()));
+                            if(head.compareAndSet(currentHead, currentHead+1))
+                            {
+                                drop(oldest);
+                                return false;
+                            }
+                        }
+
+                        // The worker took an event in the meantime, so the new one needs its own marker
+                        return true;
+                }
+            }
+            put(currentTail, event, time, timestamp);
+            return true;
+        }
+
+        /**
+         * Takes the oldest waiting event, runs only on the worker when it finds a marker of the source. The times
+         * of the event are left in the fields of the ingestion.
+         * @return the event
+         */
+        private Event take()
+        {
+            while(true)
+            {
+                // Read the times before moving the head, then the source cannot reuse the slot
+                long currentHead = head.get();
+                int index = (int) (currentHead%slots.length());
+                Event event = slots.get(index);
+                polledTime = times[index];
+                polledTimestamp = timestamps[index];
+                if(head.compareAndSet(currentHead, currentHead+1)) return event;
+            }
+        }
+
+        /**
+         * Helper to add an event at the end of the buffer
+         * @param currentTail the sequence number of the event
+         * @param event the event
+         * @param time the system time of the emission
+         * @param timestamp the time of the emission for the monitor clock
+         */
+        private void put(long currentTail, Event event, long time, long timestamp)
+        {
+            // The times are published by the write of the event
+            int index = (int) (currentTail%slots.length());
+            times[index] = time;
+            timestamps[index] = timestamp;
+            slots.set(index, event);
+            tail = currentTail+1;
+        }
+
+        /**
+         * Helper to count a dropped event, both for the source and for its class
+         * @param event the dropped event
+         */
+        private void drop(Event event)
+        {
+            dropped.incrementAndGet();
+
+            AtomicLong counter = droppedCountByClass.get(event.getClass());
+            if(counter==null)
+            {
+                AtomicLong newCounter = new AtomicLong();
+                counter = droppedCountByClass.putIfAbsent(event.getClass(), newCounter);
+                if(counter==null) counter = newCounter;
+            }
+            counter.incrementAndGet();
+        }
+    }
+}
@@ -5,16 +5,21 @@ import android.util.Log;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
 
 import it.polimi.testing.temporalassertions.events.Event;
 import rx.Observable;
+import rx.Scheduler;
 import rx.Subscriber;
+import rx.Subscription;
 import rx.android.schedulers.AndroidSchedulers;
-import rx.functions.Func1;
+import rx.functions.Action0;
+import rx.functions.Action1;
 import rx.observers.Subscribers;
 import rx.schedulers.Schedulers;
-import rx.subjects.ReplaySubject;
-import rx.subjects.Subject;
+import rx.subscriptions.Subscriptions;
 
 /**
  * This is the main interface of the library. It allows to register observables to build the event stream,
@@ -22,7 +27,7 @@ import rx.subjects.Subject;
  *
  * The monitor can be in three states:
  * - initialized (the monitor is ready and can receive observables and checks)
- * - verifying (all observables and checks have been added and the monitor is now processing the stream)
+ * - verifying (all checks have been added and the monitor is now processing the stream, observables can still be added or removed)
  * - stopped (the monitor is doing nothing and does not accept observables or checks)
  * Any action (except the call to {@link EventMonitor#initialize()} of course) that is performed while the monitor
  * is stopped has no effect on the system. This can for example be useful for debugging: if the call to {@code initialize()}
@@ -34,16 +39,23 @@ public class EventMonitor
     private final static String RESULT_TAG = "EventMonitor-RESULT";
     private final static String EVENT_TAG = "EventMonitor-EVENT";
 
-    private Observable<? extends Event> merged;
+    private SourceRegistry sources;
     private Subscriber<? super Event> subscriber;
-    private Subject<? super Event, ? extends Event> subject;
+    private RingBufferSubject<Event> subject;
+    private RetentionPolicy retentionPolicy = RetentionPolicy.untilSubscribed();
+    private int parallelism = 1;
+    private boolean busyTimeMeasured = false;
+    private Clock clock = Clock.SYSTEM;
 
     private List<Check> checks = new ArrayList<>();
+    private List<CheckMetrics> metrics = new ArrayList<>();
 
-    private ManualEventListener manualEventListener;
+    private EventIngestion ingestion;
+    private EventIngestion stoppedIngestion;
 
     private static EventMonitor instance;
     private Subscriber<Result> resultsSubscriber;
+    private CountDownLatch resultsLatch;
 
     private enum State
     {
@@ -79,15 +91,16 @@ public class EventMonitor
         {
             state = State.INITIALIZED;
 
-            setupInternalListener();
+            setupIngestion();
         }
     }
 
     /**
      * This method starts the verification on the stream, usually called for example during onCreate of a component.
-     * After this call it will not be possible to add further observables or consistency checks.
+     * After this call it will not be possible to add further consistency checks (observables can still be added).
      * @param eventsSubscriber the subscriber that will receive in order all the events of the stream. You can pass:
      *                         - {@link EventMonitor#getLoggerEventsSubscriber()} or null to log all events in the console
+     *                         - a {@link it.polimi.testing.temporalassertions.trace.TraceWriter} to record all events in a binary file
      *                         - {@link Subscribers#empty()} to do nothing
      *                         - your own subscriber
      * @param resultsSubscriber the subscriber that will receive the results of the consistency checks. You can pass:
@@ -104,42 +117,165 @@ public class EventMonitor
 
             initializeSubject();
             setupEventsSubscriber(eventsSubscriber);
-            applyChecks(resultsSubscriber);
+            List<Check> appliedChecks = applyChecks(resultsSubscriber);
+            connectSubject(appliedChecks);
         }
     }
 
     /**
-     * Allows to add an observable that will add its events to the monitored stream. The observables can be added
-     * in any order. This method can be called only after {@link EventMonitor#initialize()} and before
+     * Allows to choose which events are kept in memory by the monitor during the verification. By default
+     * ({@link RetentionPolicy#untilSubscribed()}) no event is retained once the events subscriber and the checks
+     * have subscribed to the stream. This method can be called only after {@link EventMonitor#initialize()} and
+     * before {@link EventMonitor#startVerification(Subscriber, Subscriber)}
+     * @param retentionPolicy the retention policy
+     */
+    public void setRetentionPolicy(RetentionPolicy retentionPolicy)
+    {
+        if(isInitialized())
+        {
+            this.retentionPolicy = retentionPolicy;
+        }
+    }
+
+    /**
+     * Allows to choose the clock used to stamp the events when they enter the stream (see {@link Event#getTimestamp()}).
+     * By default it is {@link Clock#SYSTEM}. This method can be called only after {@link EventMonitor#initialize()} and
+     * before {@link EventMonitor#startVerification(Subscriber, Subscriber)}
+     * @param clock the clock
+     */
+    public void setClock(Clock clock)
+    {
+        if(isInitialized())
+        {
+            this.clock = clock;
+            ingestion.setClock(clock);
+        }
+    }
+
+    /**
+     * Allows to evaluate the checks in parallel: they are partitioned across the given number of worker threads,
+     * each of them reading the whole stream in order. The results of each check keep their order, while results
+     * of different checks can be interleaved. By default all checks are evaluated by a single thread.
+     * This method can be called only after {@link EventMonitor#initialize()} and before
      * {@link EventMonitor#startVerification(Subscriber, Subscriber)}
-     * @param observable the event observable to be added
+     * @param workers the number of worker threads (1 to evaluate all checks in the same thread)
+     */
+    public void setParallelism(int workers)
+    {
+        if(isInitialized())
+        {
+            this.parallelism = Math.max(1, workers);
+        }
+    }
+
+    /**
+     * Allows to measure the time spent by each check on the events (see {@link CheckMetrics#getBusyNanos()}). It is not
+     * measured by default, since it reads the system clock for each delivery of events to each check. This method can
+     * be called only after {@link EventMonitor#initialize()} and before {@link EventMonitor#startVerification(Subscriber, Subscriber)}
+     * @param measured true if the busy time must be measured
      */
-    public void observe(Observable<? extends Event> observable)
+    public void setBusyTimeMeasured(boolean measured)
     {
         if(isInitialized())
         {
-            if(merged==null) merged = observable;
-            else merged = Observable.merge(merged, observable);
+            this.busyTimeMeasured = measured;
         }
     }
 
+    /**
+     * Allows to add an observable that will add its events to the monitored stream. The observables can be added
+     * in any order. This method can be called after {@link EventMonitor#initialize()} and until
+     * {@link EventMonitor#stopVerification()}: an observable added during the verification is subscribed immediately.
+     * Until version 1.2 it returned nothing: the code compiled against those versions must be recompiled.
+     * @param observable the event observable to be added
+     * @return the subscription that removes the observable from the stream when unsubscribed (e.g. when the view it
+     *         observes is destroyed)
+     */
+    public Subscription observe(Observable<? extends Event> observable)
+    {
+        return observe(null, observable);
+    }
+
+    /**
+     * Allows to add an observable that will add its events to the monitored stream, with a tag that identifies it
+     * in the metrics (see {@link EventMonitor#getPipelineMetrics()}). The observables can be added in any order.
+     * This method can be called after {@link EventMonitor#initialize()} and until {@link EventMonitor#stopVerification()}:
+     * an observable added during the verification is subscribed immediately
+     * @param tag the tag of the observable, e.g. the name of the view it observes (if null, a tag with the position
+     *            of the observable is used)
+     * @param observable the event observable to be added
+     * @return the subscription that removes the observable from the stream when unsubscribed (e.g. when the view it
+     *         observes is destroyed)
+     */
+    public Subscription observe(@Nullable String tag, Observable<? extends Event> observable)
+    {
+        return observe(tag, observable, BackpressurePolicy.unbounded());
+    }
+
+    /**
+     * Allows to add an observable that will add its events to the monitored stream, with a tag and a policy that
+     * limits the events of the observable waiting to be checked (e.g. for a high-rate source like the scroll
+     * events of a list). The events dropped by the policy are counted in the metrics (see
+     * {@link EventMonitor#getPipelineMetrics()}) and the results tell if any event their checks could match was dropped (see
+     * {@link Result#getDroppedEventsCount()}). This method can be called after {@link EventMonitor#initialize()}
+     * and until {@link EventMonitor#stopVerification()}. The observable is subscribed on the main thread, so it
+     * cannot use {@link BackpressurePolicy#block(int)}, which would block the main thread (see
+     * {@link EventMonitor#observe(String, Observable, BackpressurePolicy, Scheduler)}).
+     * @param tag the tag of the observable (if null, a tag with the position of the observable is used)
+     * @param observable the event observable to be added
+     * @param policy what to do when the observable emits its events faster than they are checked
+     * @return the subscription that removes the observable from the stream when unsubscribed
+     * @throws IllegalArgumentException if the policy blocks the source
+     */
+    public Subscription observe(@Nullable String tag, Observable<? extends Event> observable, BackpressurePolicy policy)
+    {
+        if(policy.getKind()==BackpressurePolicy.Kind.BLOCK)
+        {
+            throw new IllegalArgumentException("A blocking source cannot be subscribed on the main thread, choose its scheduler");
+        }
+        return observe(tag, observable, policy, AndroidSchedulers.mainThread());
+    }
+
+    /**
+     * Allows to add an observable that will add its events to the monitored stream, with a tag, a backpressure policy
+     * (see {@link EventMonitor#observe(String, Observable, BackpressurePolicy)}) and the scheduler on which the
+     * observable is subscribed. This is needed by the sources that use {@link BackpressurePolicy#block(int)}: they
+     * are blocked when too many of their events are waiting, so they must emit their events on a background thread
+     * (e.g. a cold observable that reads a file, subscribed on {@link rx.schedulers.Schedulers#io()}).
+     * @param tag the tag of the observable (if null, a tag with the position of the observable is used)
+     * @param observable the event observable to be added
+     * @param policy what to do when the observable emits its events faster than they are checked
+     * @param subscribeScheduler the scheduler on which the observable is subscribed
+     * @return the subscription that removes the observable from the stream when unsubscribed
+     */
+    public Subscription observe(@Nullable String tag, Observable<? extends Event> observable, BackpressurePolicy policy, Scheduler subscribeScheduler)
+    {
+        if(isInitialized() || isVerifying())
+        {
+            return sources.add(tag, observable, policy, subscribeScheduler);
+        }
+        return Subscriptions.unsubscribed();
+    }
+
     /**
      * Allows to fire an event outside the added observables, useful for example to fire any
      * custom event without creating an observable just for that. This method can be called
-     * only after {@link EventMonitor#initialize()} and before {@link EventMonitor#stopVerification()}
+     * only after {@link EventMonitor#initialize()} and before {@link EventMonitor#stopVerification()}.
+     * It can be called by any thread, also concurrently: the caller only enqueues the event, which is
+     * then added to the stream by an internal worker thread
      * @param event the event that will be added to the stream
      */
     public void fireCustomEvent(Event event)
     {
         if(isInitialized() || isVerifying())
         {
-            if(manualEventListener==null)
+            if(ingestion==null)
             {
-                Log.v(TAG, "manualEventListener is null, "+event+" skipped!");
+                Log.v(TAG, "ingestion is null, "+event+" skipped!");
                 return;
             }
 
-            manualEventListener.onFireEvent(event);
+            ingestion.offer(event);
         }
     }
 
@@ -161,18 +297,69 @@ public class EventMonitor
 
     /**
      * Allows to stop the verification, usually called for example during onDestroy of a component.
-     * This will send an onCompleted event to the stream and the checks that are still in progress
-     * (i.e. not short-circuited) will terminate.
+     * This will send an onCompleted event to the stream (after the events already received) and the checks that are still in progress
+     * (i.e. not short-circuited) will terminate. The method does not block: the events are checked on other threads,
+     * which deliver the last events and results to the subscribers shortly after (see {@link EventMonitor#awaitTermination(long, TimeUnit)}).
      */
     public void stopVerification()
     {
-        if(isVerifying() && subject!=null) subject.onCompleted();
+        if(isVerifying() && ingestion!=null)
+        {
+            // The subscribers are not unsubscribed, the end of the stream will reach them
+            ingestion.complete();
+            stoppedIngestion = ingestion;
+            subscriber = null;
+            resultsSubscriber = null;
+        }
 
         state = State.STOPPED;
 
         cleanFields();
     }
 
+    /**
+     * Waits until the events subscriber and the results subscriber have received all the events and results of the
+     * verification stopped last, e.g. in the tests. It should not be called on the UI thread.
+     * @param timeout the maximum time to wait
+     * @param unit the unit of the timeout
+     * @return true if the verification has terminated (or if no verification has been stopped), false if the timeout elapsed
+     * @throws InterruptedException if interrupted while waiting
+     */
+    public boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException
+    {
+        if(stoppedIngestion==null) return true;
+
+        long deadline = System.nanoTime()+unit.toNanos(timeout);
+        return stoppedIngestion.awaitTermination(timeout, unit)
+                && (resultsLatch==null || resultsLatch.await(Math.max(0, deadline-System.nanoTime()), TimeUnit.NANOSECONDS));
+    }
+
+    /**
+     * Gets the metrics of the flow of the events from the sources to the checks, e.g. to find the sources that
+     * produce most of the events or to know how far the checks lag behind the sources
+     * @return a snapshot of the metrics, or null if the monitor is stopped
+     */
+    public PipelineMetrics getPipelineMetrics()
+    {
+        EventIngestion currentIngestion = ingestion;
+        return currentIngestion==null ? null : currentIngestion.getMetrics();
+    }
+
+    /**
+     * Gets the runtime costs of each check of the current (or last) verification, e.g. to find the checks that
+     * take most of the monitoring time. The same metrics are attached to each result (see {@link Result#getMetrics()}).
+     * @return a snapshot of the metrics of the checks, in the order they were added
+     */
+    public List<CheckMetrics> getMetrics()
+    {
+        List<CheckMetrics> snapshot = new ArrayList<>(metrics.size());
+        for(CheckMetrics checkMetrics: metrics)
+        {
+            snapshot.add(checkMetrics.snapshot());
+        }
+        return snapshot;
+    }
+
     /**
      * Internal helper to get the current state
      * @return true if initialize() has been called
@@ -203,8 +390,9 @@ public class EventMonitor
     /**
      * This allows to apply the checks to the current stream and send them to the given subscriber
      * @param resultsSubscriber the subscriber that will receive the results of the consistency checks (if null the default subscriber will be used)
+     * @return the checks that have been applied (the list of the added checks is cleared)
      */
-    private void applyChecks(@Nullable Subscriber<Result> resultsSubscriber)
+    private List<Check> applyChecks(@Nullable Subscriber<Result> resultsSubscriber)
     {
         // Get default subscriber if needed
         if(resultsSubscriber==null)
@@ -213,29 +401,53 @@ public class EventMonitor
         }
         this.resultsSubscriber = resultsSubscriber;
 
-        // Apply "EnforceCheck" operator for each check and merge the returned observables
-        Observable<Result> resultsObservable = Observable.empty();
-        Observable<Result> singleResultObservable;
-        for(final Check check: checks)
-        {
-            singleResultObservable = subject.lift(new EnforceCheck<>(check))
-                                            .map(new Func1<Result, Result>()
-                                            {
-                                                @Override
-                                                public Result call(Result result)
-                                                {
-                                                    result.setLinkedCheckDescription(check.getDescription());
-                                                    result.setUserFailureMessage(check.getUserFailureMessage());
-                                                    return result;
-                                                }
-                                            });
-
-            resultsObservable = Observable.merge(resultsObservable, singleResultObservable);
-        }
+        // A single dispatcher reads each event once and hands it to all the checks (or to the workers that
+        // evaluate them in parallel), then emits their results
+        final List<Check> checksToApply = new ArrayList<>(checks);
+        final List<CheckMetrics> checksMetrics = CheckDispatcher.newMetrics(checksToApply, busyTimeMeasured);
+        final int workers = Math.min(parallelism, checksToApply.size());
+        final EventIngestion currentIngestion = ingestion;
         checks.clear();
+        metrics = checksMetrics;
+        Observable<Result> resultsObservable = Observable.create(new Observable.OnSubscribe<Result>()
+        {
+            @Override
+            public void call(Subscriber<? super Result> resultsChild)
+            {
+                Subscriber<Event> dispatcher = workers>1
+                        ? new ParallelCheckDispatcher(checksToApply, checksMetrics, resultsChild, workers, ParallelCheckDispatcher.DEFAULT_CAPACITY)
+                        : new CheckDispatcher(checksToApply, checksMetrics, resultsChild);
+                resultsChild.add(dispatcher);
+                subject.unsafeSubscribe(dispatcher);
+            }
+        });
+
+        // Each result tells if its check missed some of the events it could match, dropped by the backpressure policies
+        resultsObservable = resultsObservable.doOnNext(new Action1<Result>()
+        {
+            @Override
+            public void call(Result result)
+            {
+                Set<Class<?>> types = MatcherEventTypes.of(result.getLinkedCheck().getMatchers());
+                result.setDroppedEventsCount(currentIngestion.getDroppedCount(types));
+            }
+        });
+
+        // The monitor is stopped only after the last result
+        final CountDownLatch latch = new CountDownLatch(1);
+        resultsLatch = latch;
+        resultsObservable = resultsObservable.doAfterTerminate(new Action0()
+        {
+            @Override
+            public void call()
+            {
+                latch.countDown();
+            }
+        });
 
         // The given subscriber will receive all results
         resultsObservable.subscribe(resultsSubscriber);
+        return checksToApply;
     }
 
     /**
@@ -271,6 +483,7 @@ public class EventMonitor
     /**
      * A simple results subscriber that can be passed to {@link EventMonitor#startVerification(Subscriber, Subscriber)}.
      * It logs results with WARNING outcome in the console and makes the application crash (AssertionError) if a FAILURE result is received
+     * (a check sends its result as soon as its verdict is definitive, so the crash happens right after the event that made it fail)
      * @return the results subscriber
      */
     public static Subscriber<Result> getAssertionErrorResultsSubscriber()
@@ -359,7 +572,7 @@ public class EventMonitor
     }
 
     /**
-     * Helper to create a subject from the given "merged" observable
+     * Helper to create the subject that will receive the events of all the sources
      *
      * The subject is needed because during stopVerification we need to call onCompleted
      * to tell that the stream ended (in Android many streams never complete, e.g. text change
@@ -367,37 +580,36 @@ public class EventMonitor
      */
     private void initializeSubject()
     {
-        subject = ReplaySubject.<Event>create();
-        merged.subscribeOn(AndroidSchedulers.mainThread())
-                .observeOn(Schedulers.newThread())
-                .subscribe(subject);
+        subject = RingBufferSubject.create(retentionPolicy);
     }
 
     /**
-     * Helper to create an internal listener that will be used to fire custom events
+     * Helper to connect the subject to the ingestion of the events, once the events subscriber and the
+     * checks have subscribed to it (so no event needs to be retained to be replayed to them)
+     * @param appliedChecks the checks applied to the stream, see {@link EventMonitor#applyChecks(Subscriber)}
      */
-    private void setupInternalListener()
+    private void connectSubject(List<Check> appliedChecks)
     {
-        Observable<Event> internalObserver = Observable.create(new Observable.OnSubscribe<Event>()
+        subject.onAllSubscribed();
+
+        // The timed checks need to know the time even if no event arrives
+        boolean timed = false;
+        for(Check check: appliedChecks)
         {
-            @Override
-            public void call(final Subscriber<? super Event> subscriber)
-            {
-                manualEventListener = new ManualEventListener()
-                {
-                    @Override
-                    public void onFireEvent(Event event)
-                    {
-                        if(!subscriber.isUnsubscribed())
-                        {
-                            subscriber.onNext(event);
-                        }
-                    }
-                };
-            }
-        });
+            timed |= check.isTimed();
+        }
+        ingestion.connect(subject, timed ? CheckDispatcher.TIMER_TICK_NANOS : 0);
+        sources.connect(ingestion);
+    }
 
-        observe(internalObserver);
+    /**
+     * Helper to create the ingestion that will receive the events of all sources, including the custom events
+     */
+    private void setupIngestion()
+    {
+        ingestion = new EventIngestion(Schedulers.newThread());
+        ingestion.setClock(clock);
+        sources = new SourceRegistry(AndroidSchedulers.mainThread());
     }
 
     /**
@@ -407,6 +619,8 @@ public class EventMonitor
     {
         subject = null;
 
+        ingestion = null;
+
         if(subscriber!=null) subscriber.unsubscribe();
         subscriber = null;
 
@@ -415,20 +629,13 @@ public class EventMonitor
 
         checks = null;
 
-        merged = null;
+        if(sources!=null) sources.close();
+        sources = null;
 
-        instance = null;
-    }
+        retentionPolicy = null;
 
-    /**
-     * Internal listener that will be used to fire custom events
-     */
-    private interface ManualEventListener
-    {
-        /**
-         * Called when a custom event is fired
-         * @param event the fired event
-         */
-        void onFireEvent(Event event);
+        clock = null;
+
+        instance = null;
     }
 }
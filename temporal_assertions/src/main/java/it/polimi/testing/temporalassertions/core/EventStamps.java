@@ -0,0 +1,62 @@
+package it.polimi.testing.temporalassertions.core;
+
+import it.polimi.testing.temporalassertions.events.Event;
+
+/**
+ * The internal access to the stamps of the events (see {@link Event#getTimestamp()} and {@link Event#getSequence()})
+ *
+ * Only the library stamps the events, when they enter a stream, so the events have no public method to change their
+ * stamps: the {@link Event} class registers here the only writer of its stamps when it is loaded, and the writer
+ * can be used only by the classes of this package.
+ */
+public final class EventStamps
+{
+    private static volatile Writer writer;
+
+    /**
+     * Constructor
+     */
+    private EventStamps()
+    {
+
+    }
+
+    /**
+     * Registers the writer of the stamps, called only by the {@link Event} class
+     * @param eventWriter the writer
+     * @throws IllegalArgumentException if the writer does not belong to the {@link Event} class
+     */
+    public static void register(Writer eventWriter)
+    {
+        if(eventWriter.getClass().getEnclosingClass()!=Event.class)
+        {
+            throw new IllegalArgumentException("Only the events can register the writer of their stamps");
+        }
+        writer = eventWriter;
+    }
+
+    /**
+     * Stamps an event when it enters a stream (an event emitted again is stamped again)
+     * @param event the event
+     * @param timestamp the monotonic time in nanoseconds
+     * @param sequence the position in the stream
+     */
+    static void stamp(Event event, long timestamp, long sequence)
+    {
+        writer.stamp(event, timestamp, sequence);
+    }
+
+    /**
+     * The writer of the stamps, implemented only by the {@link Event} class
+     */
+    public interface Writer
+    {
+        /**
+         * Stamps an event
+         * @param event the event
+         * @param timestamp the monotonic time in nanoseconds
+         * @param sequence the position in the stream
+         */
+        void stamp(Event event, long timestamp, long sequence);
+    }
+}
@@ -5,6 +5,9 @@ import android.support.annotation.NonNull;
 
 import org.hamcrest.Matcher;
 
+import java.util.concurrent.TimeUnit;
+
+import it.polimi.testing.temporalassertions.Utils;
 import it.polimi.testing.temporalassertions.events.Event;
 
 /**
@@ -39,129 +42,227 @@ public class EventsWhereEach extends AbstractEventDescriptor
      */
     public Check mustHappenAfter(final AnEventThat eventBefore)
     {
-        return new Check(
-                "Every event that "+eventBefore.getMatcher()+" is followed by "+quantifier.getDescription()+" events where each "+getMatcher(),
+        final int CORRECT = 0;
+        final int WAITING_FOR_E1s = 1;
+        final int CONDITION_NOT_MET = 2;
 
-                new CheckSubscriber()
-                {
-                    private final static int CORRECT = 0;
-                    private final static int WAITING_FOR_E1s = 1;
-                    private final static int CONDITION_NOT_MET = 2;
+        final int E2 = 1;
+        final int E1 = 1<<1;
+
+        final Automaton automaton = Automaton.builder(3, eventBefore.getMatcher(), getMatcher())
+
+                // If we are in the CORRECT state and we match an "eventBefore" we move to the WAITING_FOR_E1s state
+                .on(CORRECT, E2, WAITING_FOR_E1s, Automaton.RESET | Automaton.SET_WITNESS | Automaton.TALLY)
+
+                // If we are in the WAITING_FOR_E1s state and we match a "this" event, simply increase the counter
+                .on(WAITING_FOR_E1s, E1, WAITING_FOR_E1s, Automaton.COUNT)
 
-                    private final State state = new State(CORRECT);
+                // If we are in the WAITING_FOR_E1s state and we match an "eventBefore", we restart the count if the condition
+                // is met, otherwise we have an error ("exclusively" constraint: no "eventBefore" before we meet the desired
+                // number of "this" events!)
+                .on(WAITING_FOR_E1s, E2,
+                        WAITING_FOR_E1s, Automaton.TALLY | Automaton.RESET,
+                        CONDITION_NOT_MET, Automaton.TALLY | Automaton.ADD_WITNESS | Automaton.END)
 
-                    private int foundE2s = 0;
+                .build();
 
+        return new Check(
+                LazyString.of("Every event that ", eventBefore.getMatcher(), " is followed by ", quantifier.getDescription(), " events where each ", getMatcher()),
+
+                eventBefore.getMatcher(), getMatcher())
+        {
+            @Override
+            protected CheckSubscriber newCheckSubscriber()
+            {
+                return new AutomatonSubscriber(automaton, quantifier)
+                {
+                    @NonNull
                     @Override
-                    public void onNext(Event event)
+                    public Result getFinalResult()
                     {
-                        switch(state.getState())
+                        final Outcome SUCCESS_OUTCOME = Outcome.SUCCESS;
+                        final CharSequence SUCCESS_REPORT = LazyString.of("Check verified for each of the ", getTally(), " events where each ", eventBefore.getMatcher());
+
+                        Outcome outcome = null;
+                        CharSequence report = null;
+                        switch(getState())
                         {
-                            // If we are in the CORRECT state...
+                            // If we are in CORRECT state, we can have a success or a warning
                             case CORRECT:
 
-                                // If we match an "eventBefore" we move to the WAITING_FOR_E1s state
-                                if(eventBefore.getMatcher().matches(event))
+                                if(getTally()<=0)
+                                {
+                                    outcome = Outcome.WARNING;
+                                    report = LazyString.of("No event that ", eventBefore.getMatcher(), " was found in the sequence");
+                                }
+                                else
                                 {
-                                    quantifier.resetCounter();
-                                    state.setState(WAITING_FOR_E1s);
-                                    state.setEvents(event);
-                                    foundE2s++;
+                                    outcome = SUCCESS_OUTCOME;
+                                    report = SUCCESS_REPORT;
                                 }
 
                                 break;
 
-                            // If we are in the WAITING_FOR_E1s state...
+                            // If we are waiting for "this" events...
                             case WAITING_FOR_E1s:
 
-                                // If we match a "this" event, simply increase the counter
-                                if(getMatcher().matches(event))
+                                // If the last condition is met, it's a success
+                                if(isConditionMet())
                                 {
-                                    quantifier.increaseCounter();
+                                    outcome = SUCCESS_OUTCOME;
+                                    report = SUCCESS_REPORT;
                                 }
 
-                                // If we match an "eventBefore"...
-                                else if(eventBefore.getMatcher().matches(event))
+                                // Otherwise failure
+                                else
                                 {
-                                    foundE2s++;
-
-                                    // If the condition is met, we restart the count
-                                    if(quantifier.isConditionMet())
-                                    {
-                                        quantifier.resetCounter();
-                                    }
-
-                                    // Otherwise we have an error ("exclusively" constraint: no "eventBefore" before we meet the desired number of "this" events!)
-                                    else
-                                    {
-                                        state.setState(CONDITION_NOT_MET);
-                                        state.addEvent(event);
-                                        endCheck();
-                                    }
+                                    outcome = Outcome.FAILURE;
+                                    report = LazyString.of(getWitness(0), " was found but ", getCounter(), " events where each ", getMatcher(), " were found afterwards");
                                 }
 
+                                break;
+
+                            // Failure, if we had an error
+                            case CONDITION_NOT_MET:
+
+                                outcome = Outcome.FAILURE;
+                                report = LazyString.of(getCounter(), " events where each ", getMatcher(), " were found after ", getWitness(0));
+
                                 break;
                         }
+
+                        return new Result(outcome, report);
                     }
+                };
+            }
+        };
+    }
 
+    /**
+     * Timed version of {@link EventsWhereEach#mustHappenAfter(AnEventThat)}: the events described by {@code this} must
+     * happen within the given time after each {@code eventBefore} (and before the next {@code eventBefore}). For example
+     * {@code atLeast(1).eventsWhereEach(m1).mustHappenAfter(anEventThat(m2), 200, MILLISECONDS)} means that each
+     * {@code eventBefore} must be followed by an event {@code this} within 200 ms. The events after the time limit are
+     * not counted, and the check fails as soon as the time limit passes without the desired amount of events, even
+     * if no other event arrives. The time is the one of the monitor, see {@link Event#getTimestamp()}.
+     * @param eventBefore the event after which we must have {@code this} events
+     * @param time the time limit after each {@code eventBefore}
+     * @param unit the time unit of the time limit
+     * @return the check will return SUCCESS if within the time limit after each {@code eventBefore} we found the
+     *         desired amount of {@code this} events, FAILURE if we did not and WARNING if no {@code eventBefore}
+     *         was found in the sequence
+     */
+    public Check mustHappenAfter(final AnEventThat eventBefore, final long time, final TimeUnit unit)
+    {
+        final int CORRECT = 0;
+        final int WAITING_FOR_E1s = 1;
+        final int CONDITION_NOT_MET = 2;
+        final int TIMED_OUT = 3;
+
+        final int E2 = 1;
+        final int E1 = 1<<1;
+
+        final Automaton automaton = Automaton.builder(4, eventBefore.getMatcher(), getMatcher())
+
+                // If we are in the CORRECT state and we match an "eventBefore" we move to the WAITING_FOR_E1s state and start the timer
+                .on(CORRECT, E2, WAITING_FOR_E1s, Automaton.RESET | Automaton.SET_WITNESS | Automaton.TALLY | Automaton.START_TIMER)
+
+                // If we are in the WAITING_FOR_E1s state and we match a "this" event, simply increase the counter
+                .on(WAITING_FOR_E1s, E1, WAITING_FOR_E1s, Automaton.COUNT)
+
+                // If we are in the WAITING_FOR_E1s state and we match an "eventBefore", we restart the count and the timer if the
+                // condition is met, otherwise we have an error (as in the untimed version)
+                .on(WAITING_FOR_E1s, E2,
+                        WAITING_FOR_E1s, Automaton.TALLY | Automaton.RESET | Automaton.SET_WITNESS | Automaton.START_TIMER,
+                        CONDITION_NOT_MET, Automaton.TALLY | Automaton.ADD_WITNESS | Automaton.END)
+
+                // When the time is up, we go back to CORRECT if the condition is met (the following "this" events are not
+                // counted), otherwise we have an error
+                .within(unit.toNanos(time))
+                .onTimeout(WAITING_FOR_E1s,
+                        CORRECT, 0,
+                        TIMED_OUT, Automaton.END)
+
+                .build();
+
+        return new Check(
+                LazyString.of("Every event that ", eventBefore.getMatcher(), " is followed within ", Utils.describeDuration(time, unit), " by ", quantifier.getDescription(), " events where each ", getMatcher()),
+
+                eventBefore.getMatcher(), getMatcher())
+        {
+            @Override
+            boolean isTimed()
+            {
+                return true;
+            }
+
+            @Override
+            protected CheckSubscriber newCheckSubscriber()
+            {
+                return new AutomatonSubscriber(automaton, quantifier)
+                {
                     @NonNull
                     @Override
                     public Result getFinalResult()
                     {
-                        final Outcome SUCCESS_OUTCOME = Outcome.SUCCESS;
-                        final String SUCCESS_REPORT = "Check verified for each of the "+foundE2s+" events where each "+eventBefore.getMatcher();
-
                         Outcome outcome = null;
-                        String report = null;
-                        switch(state.getState())
+                        CharSequence report = null;
+                        switch(getState())
                         {
                             // If we are in CORRECT state, we can have a success or a warning
                             case CORRECT:
 
-                                if(foundE2s<=0)
+                                if(getTally()<=0)
                                 {
                                     outcome = Outcome.WARNING;
-                                    report = "No event that "+eventBefore.getMatcher()+" was found in the sequence";
+                                    report = LazyString.of("No event that ", eventBefore.getMatcher(), " was found in the sequence");
                                 }
                                 else
                                 {
-                                    outcome = SUCCESS_OUTCOME;
-                                    report = SUCCESS_REPORT;
+                                    outcome = Outcome.SUCCESS;
+                                    report = LazyString.of("Check verified for each of the ", getTally(), " events where each ", eventBefore.getMatcher());
                                 }
 
                                 break;
 
-                            // If we are waiting for "this" events...
+                            // If the stream ended while we were waiting for "this" events, success only if the condition is met
                             case WAITING_FOR_E1s:
 
-                                // If the last condition is met, it's a success
-                                if(quantifier.isConditionMet())
+                                if(isConditionMet())
                                 {
-                                    outcome = SUCCESS_OUTCOME;
-                                    report = SUCCESS_REPORT;
+                                    outcome = Outcome.SUCCESS;
+                                    report = LazyString.of("Check verified for each of the ", getTally(), " events where each ", eventBefore.getMatcher());
                                 }
-
-                                // Otherwise failure
                                 else
                                 {
                                     outcome = Outcome.FAILURE;
-                                    report = state.getEvent(0)+" was found but "+quantifier.getCounter()+" events where each "+getMatcher()+" were found afterwards";
+                                    report = LazyString.of(getWitness(0), " was found but only ", getCounter(), " events where each ", getMatcher(), " were found before the end of the stream");
                                 }
 
                                 break;
 
-                            // Failure, if we had an error
+                            // Failure, if another "eventBefore" came too early
                             case CONDITION_NOT_MET:
 
                                 outcome = Outcome.FAILURE;
-                                report = quantifier.getCounter()+" events where each "+getMatcher()+" were found after "+state.getEvent(0);
+                                report = LazyString.of(getCounter(), " events where each ", getMatcher(), " were found between ", getWitness(0), " and ", getWitness(1));
+
+                                break;
+
+                            // Failure, if the time was up
+                            case TIMED_OUT:
+
+                                outcome = Outcome.FAILURE;
+                                report = LazyString.of(getCounter(), " events where each ", getMatcher(), " were found within ", Utils.describeDuration(time, unit), " after ", getWitness(0));
 
                                 break;
                         }
 
                         return new Result(outcome, report);
                     }
-                });
+                };
+            }
+        };
     }
 
     /**
@@ -176,68 +277,54 @@ public class EventsWhereEach extends AbstractEventDescriptor
      */
     public Check mustHappenBefore(final AnEventThat eventAfter)
     {
-        return new Check(
-                "Every event that "+eventAfter.getMatcher()+" is preceded by "+quantifier.getDescription()+" events where each "+getMatcher(),
+        final int CORRECT = 0;
+        final int CONDITION_NOT_MET = 1;
 
-                new CheckSubscriber()
-                {
-                    private final static int CORRECT = 0;
-                    private final static int CONDITION_NOT_MET = 1;
+        final int E1 = 1;
+        final int E2 = 1<<1;
 
-                    private final State state = new State(CORRECT);
+        final Automaton automaton = Automaton.builder(2, getMatcher(), eventAfter.getMatcher())
 
-                    private int foundE2s = 0;
+                // If we match "this", simply increase counter
+                .on(CORRECT, E1, CORRECT, Automaton.COUNT)
 
-                    @Override
-                    public void onNext(Event event)
-                    {
-                        // If we match "this", simply increase counter
-                        if(getMatcher().matches(event))
-                        {
-                            quantifier.increaseCounter();
-                        }
+                // If we match "eventAfter", restart count if the precondition is met, otherwise we have an error
+                .on(CORRECT, E2,
+                        CORRECT, Automaton.TALLY | Automaton.RESET,
+                        CONDITION_NOT_MET, Automaton.TALLY | Automaton.SET_WITNESS | Automaton.END)
 
-                        // If we match "eventAfter"...
-                        else if(eventAfter.getMatcher().matches(event))
-                        {
-                            foundE2s++;
-
-                            // If the precondition is met, restart count
-                            if(quantifier.isConditionMet())
-                            {
-                                quantifier.resetCounter();
-                            }
-
-                            // Otherwise we have an error
-                            else
-                            {
-                                state.setState(CONDITION_NOT_MET);
-                                state.setEvents(event);
-                                endCheck();
-                            }
-                        }
-                    }
+                .build();
 
+        return new Check(
+                LazyString.of("Every event that ", eventAfter.getMatcher(), " is preceded by ", quantifier.getDescription(), " events where each ", getMatcher()),
+
+                getMatcher(), eventAfter.getMatcher())
+        {
+            @Override
+            protected CheckSubscriber newCheckSubscriber()
+            {
+                return new AutomatonSubscriber(automaton, quantifier)
+                {
                     @NonNull
                     @Override
                     public Result getFinalResult()
                     {
                         Outcome outcome = null;
-                        String report = null;
-                        switch(state.getState())
+                        CharSequence report = null;
+                        switch(getState())
                         {
                             // If we are in CORRECT state, warning or success
                             case CORRECT:
 
-                                if(foundE2s<=0)
+                                if(getTally()<=0)
                                 {
                                     outcome = Outcome.WARNING;
-                                    report = "No event that "+eventAfter.getMatcher()+" was found in the sequence";
+                                    report = LazyString.of("No event that ", eventAfter.getMatcher(), " was found in the sequence");
                                 }
                                 else
                                 {
                                     outcome = Outcome.SUCCESS;
-                                    report = "Check verified for each of the "+foundE2s+" events where each "+eventAfter.getMatcher();
+                                    report = LazyString.of("Check verified for each of the ", getTally(), " events where each ", eventAfter.getMatcher());
                                 }
 
                                 break;
@@ -246,14 +333,16 @@ public class EventsWhereEach extends AbstractEventDescriptor
                             case CONDITION_NOT_MET:
 
                                 outcome = Outcome.FAILURE;
-                                report = quantifier.getCounter()+" events where each "+eventAfter.getMatcher()+" were found before "+state.getEvent(0);
+                                report = LazyString.of(getCounter(), " events where each ", eventAfter.getMatcher(), " were found before ", getWitness(0));
 
                                 break;
                         }
 
                         return new Result(outcome, report);
                     }
-                });
+                };
+            }
+        };
     }
 
     /**
@@ -269,119 +358,60 @@ public class EventsWhereEach extends AbstractEventDescriptor
      */
     public Check mustHappenBetween(final AnEventThat eventBefore, final AnEventThat eventAfter)
     {
-        return new Check(
-                "Every pair of events '"+eventBefore.getMatcher()+"' and '"+eventAfter.getMatcher()+"' respectively has "+quantifier.getDescription()+" events where each "+getMatcher()+" in between",
+        final int CORRECT = 0;
+        final int BETWEEN = 1;
+        final int CONDITION_NOT_MET = 2;
 
-                new CheckSubscriber()
-                {
-                    private final static int CORRECT = 0;
-                    private final static int BETWEEN = 1;
-                    private final static int CONDITION_NOT_MET = 2;
+        final int E2 = 1;
+        final int E1 = 1<<1;
+        final int E3 = 1<<2;
 
-                    private final State state = new State(CORRECT);
+        final Automaton automaton = Automaton.builder(3, eventBefore.getMatcher(), getMatcher(), eventAfter.getMatcher())
 
-                    private int foundPairs = 0;
+                // If we are CORRECT state and we match an "eventBefore" we go in BETWEEN to wait for the "this" events
+                .on(CORRECT, E2, BETWEEN, Automaton.RESET | Automaton.SET_WITNESS)
 
-                    @Override
-                    public void onNext(Event event)
-                    {
-                        switch(state.getState())
-                        {
-                            // If we are CORRECT state and we match an "eventBefore" we go in BETWEEN to wait for the "this" events
-                            case CORRECT:
+                // If we are in BETWEEN (i.e. after an "eventBefore"), increase counter if we find a "this" event
+                .on(BETWEEN, E1, BETWEEN, Automaton.COUNT)
 
-                                if(eventBefore.getMatcher().matches(event))
-                                {
-                                    quantifier.resetCounter();
-                                    state.setState(BETWEEN);
-                                    state.setEvents(event);
-                                }
+                // If it's both "eventBefore" and "eventAfter", simply reset the counter if the condition is met, error otherwise
+                .on(BETWEEN, E2 | E3,
+                        BETWEEN, Automaton.TALLY | Automaton.RESET | Automaton.SET_WITNESS,
+                        CONDITION_NOT_MET, Automaton.TALLY | Automaton.ADD_WITNESS | Automaton.END)
 
-                                break;
+                // If we match an "eventAfter" event, go back to CORRECT if the condition is met, error otherwise
+                .on(BETWEEN, E3,
+                        CORRECT, Automaton.TALLY | Automaton.RESET,
+                        CONDITION_NOT_MET, Automaton.TALLY | Automaton.ADD_WITNESS | Automaton.END)
 
-                            // If we are in BETWEEN (i.e. after an "eventBefore")
-                            case BETWEEN:
+                // If we match another "eventBefore" before we find an "eventAfter", simply reset the counter
+                .on(BETWEEN, E2, BETWEEN, Automaton.RESET | Automaton.SET_WITNESS)
 
-                                // Increase counter if we find a "this" event
-                                if(getMatcher().matches(event))
-                                {
-                                    quantifier.increaseCounter();
-                                }
-
-                                else
-                                {
-                                    // Get matches
-                                    boolean isEventBefore = eventBefore.getMatcher().matches(event);
-                                    boolean isEventAfter = eventAfter.getMatcher().matches(event);
-                                    boolean isBoth = isEventBefore && isEventAfter;
-
-                                    // If it's both "eventBefore" and "eventAfter"...
-                                    if(isBoth)
-                                    {
-                                        foundPairs++;
-
-                                        // Simply reset the counter if the condition is met
-                                        if(quantifier.isConditionMet())
-                                        {
-                                            quantifier.resetCounter();
-                                            state.setEvents(event);
-                                        }
-
-                                        // Error otherwise
-                                        else
-                                        {
-                                            state.setState(CONDITION_NOT_MET);
-                                            state.addEvent(event);
-                                            endCheck();
-                                        }
-                                    }
-
-                                    // If we match an "eventAfter" event...
-                                    else if(isEventAfter)
-                                    {
-                                        foundPairs++;
-
-                                        // Go back to CORRECT if the condition is met
-                                        if(quantifier.isConditionMet())
-                                        {
-                                            quantifier.resetCounter();
-                                            state.setState(CORRECT);
-                                        }
-
-                                        // Error otherwise
-                                        else
-                                        {
-                                            state.setState(CONDITION_NOT_MET);
-                                            state.addEvent(event);
-                                            endCheck();
-                                        }
-                                    }
-
-                                    // If we match another "eventBefore" before we find an "eventAfter", simply reset the counter
-                                    else if(isEventBefore)
-                                    {
-                                        quantifier.resetCounter();
-                                        state.setEvents(event);
-                                    }
-                                }
-
-                                break;
-                        }
-                    }
+                .build();
 
+        return new Check(
+                LazyString.of("Every pair of events '", eventBefore.getMatcher(), "' and '", eventAfter.getMatcher(), "' respectively has ", quantifier.getDescription(), " events where each ", getMatcher(), " in between"),
+
+                eventBefore.getMatcher(), getMatcher(), eventAfter.getMatcher())
+        {
+            @Override
+            protected CheckSubscriber newCheckSubscriber()
+            {
+                return new AutomatonSubscriber(automaton, quantifier)
+                {
                     @NonNull
                     @Override
                     public Result getFinalResult()
                     {
                         Outcome outcome = null;
-                        String report = null;
-                        switch(state.getState())
+                        CharSequence report = null;
+                        switch(getState())
                         {
                             // Success or warning if we are in CORRECT (all pairs contained the expected number of "this" events) or in BETWEEN (in the last part we found an "eventBefore" but no "eventAfter" to close the pair, so it's ok)
                             case CORRECT:
                             case BETWEEN:
 
-                                if(foundPairs<=0)
+                                if(getTally()<=0)
                                 {
                                     outcome = Outcome.WARNING;
                                     report = "No pair of events was found in the sequence";
@@ -389,7 +419,7 @@ public class EventsWhereEach extends AbstractEventDescriptor
                                 else
                                 {
                                     outcome = Outcome.SUCCESS;
-                                    report = "Check verified for each of the "+foundPairs+" pairs";
+                                    report = LazyString.of("Check verified for each of the ", getTally(), " pairs");
                                 }
 
                                 break;
@@ -398,13 +428,181 @@ public class EventsWhereEach extends AbstractEventDescriptor
                             case CONDITION_NOT_MET:
 
                                 outcome = Outcome.FAILURE;
-                                report = quantifier.getCounter()+" events where each "+getMatcher()+" were found between "+state.getEvent(0)+" and "+state.getEvent(1);
+                                report = LazyString.of(getCounter(), " events where each ", getMatcher(), " were found between ", getWitness(0), " and ", getWitness(1));
 
                                 break;
                         }
 
                         return new Result(outcome, report);
                     }
-                });
+                };
+            }
+        };
+    }
+
+    /**
+     * Checks the rate of the events described by {@code this}: every time window of the given length must contain the
+     * number of events described by the quantifier. For example {@code atMost(10).eventsWhereEach(m1).perWindow(1, SECONDS)}
+     * means that there can never be more than 10 {@code this} events in one second, while
+     * {@code atLeast(1).eventsWhereEach(m1).perWindow(1, SECONDS)} means that two consecutive {@code this} events (or the
+     * first one and the end of its window) can never be more than one second apart. The windows slide over the sequence,
+     * starting from the first {@code this} event. The time is the one of the monitor (the events without a timestamp are
+     * ignored, see {@link Event#getTimestamp()}), and the check fails as soon as a window breaks the condition, even if
+     * no other event arrives.
+     * @param time the length of the windows
+     * @param unit the time unit of the length
+     * @return the check will return SUCCESS if every window contains the desired amount of {@code this} events,
+     *         FAILURE if one does not and WARNING if no {@code this} event was found in the sequence
+     */
+    public Check perWindow(final long time, final TimeUnit unit)
+    {
+        final long window = unit.toNanos(time);
+        final int bound = quantifier.getDesiredBound();
+
+        // The quantifier can be broken by too many events in a window, too few or both
+        final boolean limitsMaximum = bound<Integer.MAX_VALUE && !quantifier.isConditionMet(bound+1);
+        final boolean limitsMinimum = bound>0 && !quantifier.isConditionMet(bound-1);
+
+        // The times of the last bound+1 events are enough to know both if the window that ends with the newest one has
+        // too many events and when the window that starts after the oldest ones will have too few
+        final int capacity = Math.max(1, limitsMaximum ? bound+1 : bound);
+
+        return new Check(
+                LazyString.of("Every window of ", Utils.describeDuration(time, unit), " has ", quantifier.getDescription(), " events where each ", getMatcher()),
+
+                getMatcher())
+        {
+            @Override
+            boolean isTimed()
+            {
+                return limitsMinimum;
+            }
+
+            @Override
+            protected CheckSubscriber newCheckSubscriber()
+            {
+                return new CheckSubscriber()
+                {
+                    // The times of the last events that are still in a window, grown only when needed
+                    private long[] times = new long[Math.min(capacity, 16)];
+                    private int start = 0;
+                    private int size = 0;
+                    private int count = 0;
+                    private long firstTime;
+                    private Event last;
+
+                    private CharSequence failureReport;
+                    private Event[] witnesses;
+
+                    @Override
+                    public void onNext(Event event)
+                    {
+                        if(!event.isStamped() || !matches(getMatcher(), event)) return;
+                        long timestamp = event.getTimestamp();
+
+                        // First of all see if the current window ended with too few events
+                        advanceTime(timestamp);
+                        if(isUnsubscribed()) return;
+
+                        if(count==0) firstTime = timestamp;
+                        if(count<Integer.MAX_VALUE) count++;
+                        last = event;
+
+                        // The times older than a window cannot be in the same window of the new event, nor of the next ones
+                        while(size>0 && timestamp-times[start]>window)
+                        {
+                            start = (start+1)%times.length;
+                            size--;
+                        }
+                        add(timestamp);
+
+                        // Too many events if the oldest of the last bound+1 is in the window that ends now
+                        if(limitsMaximum && size>bound && timestamp-times[start]<window)
+                        {
+                            failureReport = LazyString.of(quantifier.describeError(bound+1), " events where each ", getMatcher(), " were found within ", Utils.describeDuration(time, unit), ", the last one was ", event);
+                            witnesses = new Event[]{event};
+                            endCheck();
+                            return;
+                        }
+
+                        // The next event must arrive before the end of the window that starts after the oldest of the
+                        // last bound events (or with the first event, at the beginning). If the check did not fail,
+                        // the oldest of them is still in the times.
+                        if(limitsMinimum)
+                        {
+                            long anchor = count<bound ? firstTime : times[(start+size-bound)%times.length];
+                            setDeadline(anchor+window);
+                        }
+                    }
+
+                    @Override
+                    void onDeadline(long deadline)
+                    {
+                        failureReport = LazyString.of(quantifier.describeError(bound-1), " events where each ", getMatcher(), " were found within ", Utils.describeDuration(time, unit), ", the last one was ", last);
+                        witnesses = new Event[]{last};
+                        endCheck();
+                    }
+
+                    /**
+                     * Helper to add the time of a new event, replacing the oldest one if the capacity is reached
+                     * @param timestamp the time of the event
+                     */
+                    private void add(long timestamp)
+                    {
+                        if(size==times.length && size<capacity)
+                        {
+                            long[] newTimes = new long[(int) Math.min(capacity, 2L*times.length)];
+                            for(int i=0; i<size; i++) newTimes[i] = times[(start+i)%times.length];
+                            times = newTimes;
+                            start = 0;
+                        }
+
+                        if(size<times.length)
+                        {
+                            times[(start+size)%times.length] = timestamp;
+                            size++;
+                        }
+                        else
+                        {
+                            times[start] = timestamp;
+                            start = (start+1)%times.length;
+                        }
+                    }
+
+                    @NonNull
+                    @Override
+                    public Result getFinalResult()
+                    {
+                        Outcome outcome;
+                        CharSequence report;
+
+                        // Failure if a window broke the condition
+                        if(failureReport!=null)
+                        {
+                            outcome = Outcome.FAILURE;
+                            report = failureReport;
+                        }
+
+                        // Warning if no event was found
+                        else if(count==0)
+                        {
+                            outcome = Outcome.WARNING;
+                            report = LazyString.of("No event that ", getMatcher(), " was found in the sequence");
+                        }
+
+                        // Success otherwise
+                        else
+                        {
+                            outcome = Outcome.SUCCESS;
+                            report = LazyString.of("Check verified for every window of the ", count, " events where each ", getMatcher());
+                        }
+
+                        Result result = new Result(outcome, report);
+                        if(witnesses!=null) result.setWitnesses(witnesses);
+                        return result;
+                    }
+                };
+            }
+        };
     }
 }
@@ -27,18 +27,18 @@ public class Exactly extends AbstractQuantifier
      * {@inheritDoc}
      */
     @Override
-    protected boolean isConditionMet()
+    protected boolean isConditionMet(int counter)
     {
-        return getCounter()==getDesiredBound();
+        return counter==getDesiredBound();
     }
 
     /**
      * {@inheritDoc}
      */
     @Override
-    protected boolean canStopCurrentComputation()
+    protected boolean canStopCurrentComputation(int counter)
     {
-        return getCounter()>getDesiredBound();
+        return counter>getDesiredBound();
     }
 
     /**
@@ -54,8 +54,8 @@ public class Exactly extends AbstractQuantifier
      * {@inheritDoc}
      */
     @Override
-    protected String describeError()
+    protected String describeError(int counter)
     {
-        return getCounter()>getDesiredBound() ? "more than "+getDesiredBound() : "less than "+getDesiredBound();
+        return counter>getDesiredBound() ? "more than "+getDesiredBound() : "less than "+getDesiredBound();
     }
 }
@@ -54,7 +54,7 @@ public class Exist
     public static Check existsAnEventThat(Matcher<? extends Event> matcher)
     {
         return AllEventsWhereEach.allEventsWhereEach(matcher).are(atLeast(1))
-                .overwriteDescription("Exists an event that "+matcher);
+                .overwriteDescription(LazyString.of("Exists an event that ", matcher));
     }
 
     /**
@@ -4,6 +4,9 @@ import android.support.annotation.NonNull;
 
 import org.hamcrest.Matcher;
 
+import java.util.concurrent.TimeUnit;
+
+import it.polimi.testing.temporalassertions.Utils;
 import it.polimi.testing.temporalassertions.events.Event;
 
 /**
@@ -12,14 +15,20 @@ import it.polimi.testing.temporalassertions.events.Event;
 public class ExistAfterConstraint extends AbstractExistConstraint
 {
     private AnEventThat eventBefore;
+    private long time;
+    private TimeUnit unit;
 
     /**
      * Constructor
      * @param eventBefore the event after which we apply the existential check
+     * @param time the time limit after the event, or {@link Automaton#NO_WINDOW}
+     * @param unit the time unit of the time limit, or null
      */
-    private ExistAfterConstraint(AnEventThat eventBefore)
+    private ExistAfterConstraint(AnEventThat eventBefore, long time, TimeUnit unit)
     {
         this.eventBefore = eventBefore;
+        this.time = time;
+        this.unit = unit;
     }
 
     /**
@@ -29,7 +38,21 @@ public class ExistAfterConstraint extends AbstractExistConstraint
      */
     public static ExistAfterConstraint after(AnEventThat eventBefore)
     {
-        return new ExistAfterConstraint(eventBefore);
+        return new ExistAfterConstraint(eventBefore, Automaton.NO_WINDOW, null);
+    }
+
+    /**
+     * Allows to constrain the existential quantifier to check the events within the given time after ANY
+     * {@code eventBefore} (and before the next {@code eventBefore}). The time is the one of the monitor,
+     * see {@link Event#getTimestamp()}.
+     * @param eventBefore the event after which we apply the existential check
+     * @param time the time limit after {@code eventBefore}
+     * @param unit the time unit of the time limit
+     * @return the constraint for the existential quantifier
+     */
+    public static ExistAfterConstraint after(AnEventThat eventBefore, long time, TimeUnit unit)
+    {
+        return new ExistAfterConstraint(eventBefore, time, unit);
     }
 
     /**
@@ -38,95 +61,86 @@ public class ExistAfterConstraint extends AbstractExistConstraint
     @Override
     Check getConstrainedExistCheck(final Matcher<? extends Event> matcher, final AbstractQuantifier quantifier)
     {
-        return new Check(
-                quantifier.getDescription()+" events where each "+matcher+" are after an event that "+eventBefore.getMatcher(),
+        final int BEFORE = 0;
+        final int WAITING_FOR_E1s = 1;
+        final int CONDITION_MET = 2;
 
-                new CheckSubscriber()
-                {
-                    private final static int BEFORE = 0;
-                    private final static int WAITING_FOR_E1s = 1;
-                    private final static int CONDITION_MET = 2;
+        final int E2 = 1;
+        final int E1 = 1<<1;
 
-                    private final AbstractEventDescriptor.State state = new AbstractEventDescriptor.State(BEFORE);
+        // If timed, each "eventBefore" starts its own time limit
+        final boolean timed = time!=Automaton.NO_WINDOW;
+        final int TIMER = timed ? Automaton.SET_WITNESS | Automaton.TALLY | Automaton.START_TIMER : 0;
 
-                    private int foundE2s = 0;
+        Automaton.Builder builder = Automaton.builder(3, eventBefore.getMatcher(), matcher)
 
-                    @Override
-                    public void onNext(Event event)
-                    {
-                        switch(state.getState())
-                        {
-                            // If we are in the BEFORE state...
-                            case BEFORE:
+                // If we are in the BEFORE state and we match an "eventBefore" we move to the WAITING_FOR_E1s state
+                .on(BEFORE, E2, WAITING_FOR_E1s, Automaton.RESET | Automaton.SET_WITNESS | Automaton.TALLY | TIMER)
 
-                                // If we match an "eventBefore" we move to the WAITING_FOR_E1s state
-                                if(eventBefore.getMatcher().matches(event))
-                                {
-                                    quantifier.resetCounter();
-                                    state.setState(WAITING_FOR_E1s);
-                                    state.setEvents(event);
-                                    foundE2s++;
-                                }
-
-                                break;
+                // If we are in the WAITING_FOR_E1s state and we match an event we are interested in, simply increase the counter
+                .on(WAITING_FOR_E1s, E1, WAITING_FOR_E1s, Automaton.COUNT)
 
-                            // If we are in the WAITING_FOR_E1s state...
-                            case WAITING_FOR_E1s:
-
-                                // If we match an event we are interested in, simply increase the counter
-                                if(matcher.matches(event))
-                                {
-                                    quantifier.increaseCounter();
-                                }
+                // If we are in the WAITING_FOR_E1s state and we match an "eventBefore", exit successfully if the
+                // condition is met, otherwise reset
+                .on(WAITING_FOR_E1s, E2,
+                        CONDITION_MET, Automaton.END,
+                        WAITING_FOR_E1s, Automaton.RESET | TIMER);
 
-                                // If we match an "eventBefore"...
-                                else if(eventBefore.getMatcher().matches(event))
-                                {
-                                    // If the condition is met, exit successfully
-                                    if(quantifier.isConditionMet())
-                                    {
-                                        state.setState(CONDITION_MET);
-                                        endCheck();
-                                    }
-
-                                    // Otherwise reset
-                                    else
-                                    {
-                                        quantifier.resetCounter();
-                                    }
-                                }
+        // When the time is up, exit successfully if the condition is met, otherwise wait for the next "eventBefore"
+        if(timed)
+        {
+            builder.within(unit.toNanos(time))
+                    .onTimeout(WAITING_FOR_E1s,
+                            CONDITION_MET, Automaton.END,
+                            BEFORE, Automaton.RESET);
+        }
 
-                                break;
-                        }
-                    }
+        final Automaton automaton = builder.build();
 
+        return new Check(
+                timed ? LazyString.of(quantifier.getDescription(), " events where each ", matcher, " are within ", Utils.describeDuration(time, unit), " after an event that ", eventBefore.getMatcher())
+                      : LazyString.of(quantifier.getDescription(), " events where each ", matcher, " are after an event that ", eventBefore.getMatcher()),
+
+                eventBefore.getMatcher(), matcher)
+        {
+            @Override
+            boolean isTimed()
+            {
+                return timed;
+            }
+
+            @Override
+            protected CheckSubscriber newCheckSubscriber()
+            {
+                return new AutomatonSubscriber(automaton, quantifier)
+                {
                     @NonNull
                     @Override
                     public Result getFinalResult()
                     {
                         // If we are waiting and the condition is met, it's like CONDITION_MET
-                        if(state.getState()==WAITING_FOR_E1s && quantifier.isConditionMet())
+                        if(getState()==WAITING_FOR_E1s && isConditionMet())
                         {
-                            state.setState(CONDITION_MET);
+                            setState(CONDITION_MET);
                         }
 
                         Outcome outcome = null;
-                        String report = null;
-                        switch(state.getState())
+                        CharSequence report = null;
+                        switch(getState())
                         {
                             // If we are in BEFORE or WAITING_FOR_E1s state, failure or warning
                             case BEFORE:
                             case WAITING_FOR_E1s:
 
-                                if(foundE2s<=0)
+                                if(getTally()<=0)
                                 {
                                     outcome = Outcome.WARNING;
-                                    report = "No event that "+eventBefore.getMatcher()+" was found in the sequence";
+                                    report = LazyString.of("No event that ", eventBefore.getMatcher(), " was found in the sequence");
                                 }
                                 else
                                 {
                                     outcome = Outcome.FAILURE;
-                                    report = "The condition was never verified after any of the "+foundE2s+" events where each "+eventBefore.getMatcher();
+                                    report = LazyString.of("The condition was never verified after any of the ", getTally(), " events where each ", eventBefore.getMatcher());
                                 }
 
                                 break;
@@ -135,13 +149,15 @@ public class ExistAfterConstraint extends AbstractExistConstraint
                             case CONDITION_MET:
 
                                 outcome = Outcome.SUCCESS;
-                                report = quantifier.getCounter()+" events were found after "+state.getEvent(0);
+                                report = LazyString.of(getCounter(), " events were found after ", getWitness(0));
 
                                 break;
                         }
 
                         return new Result(outcome, report);
                     }
-                });
+                };
+            }
+        };
     }
 }
@@ -38,76 +38,62 @@ public class ExistBeforeConstraint extends AbstractExistConstraint
     @Override
     Check getConstrainedExistCheck(final Matcher<? extends Event> matcher, final AbstractQuantifier quantifier)
     {
-        return new Check(
-                quantifier.getDescription()+" events where each "+matcher+" are before an event that "+eventAfter.getMatcher(),
+        final int COUNTING = 0;
+        final int CONDITION_MET = 1;
 
-                new CheckSubscriber()
-                {
-                    private final static int COUNTING = 0;
-                    private final static int CONDITION_MET = 1;
+        final int E1 = 1;
+        final int E2 = 1<<1;
 
-                    private final AbstractEventDescriptor.State state = new AbstractEventDescriptor.State(COUNTING);
+        final Automaton automaton = Automaton.builder(2, matcher, eventAfter.getMatcher())
 
-                    private int foundE2s = 0;
+                // If we match an event we are interested in, simply increase counter
+                .on(COUNTING, E1, COUNTING, Automaton.COUNT)
 
-                    @Override
-                    public void onNext(Event event)
-                    {
-                        // If we match an event we are interested in, simply increase counter
-                        if(matcher.matches(event))
-                        {
-                            quantifier.increaseCounter();
-                        }
+                // If we match "eventAfter", exit with success if the precondition is met, otherwise reset
+                .on(COUNTING, E2,
+                        CONDITION_MET, Automaton.TALLY | Automaton.SET_WITNESS | Automaton.END,
+                        COUNTING, Automaton.TALLY | Automaton.RESET)
 
-                        // If we match "eventAfter"...
-                        else if(eventAfter.getMatcher().matches(event))
-                        {
-                            foundE2s++;
-
-                            // If the precondition is met, exit with success
-                            if(quantifier.isConditionMet())
-                            {
-                                state.setState(CONDITION_MET);
-                                state.setEvents(event);
-                                endCheck();
-                            }
-
-                            // Otherwise reset
-                            else
-                            {
-                                quantifier.resetCounter();
-                            }
-                        }
-                    }
+                .build();
 
+        return new Check(
+                LazyString.of(quantifier.getDescription(), " events where each ", matcher, " are before an event that ", eventAfter.getMatcher()),
+
+                matcher, eventAfter.getMatcher())
+        {
+            @Override
+            protected CheckSubscriber newCheckSubscriber()
+            {
+                return new AutomatonSubscriber(automaton, quantifier)
+                {
                     @NonNull
                     @Override
                     public Result getFinalResult()
                     {
                         Outcome outcome = null;
-                        String report = null;
-                        switch(state.getState())
+                        CharSequence report = null;
+                        switch(getState())
                         {
                             // Success if the condition was met
                             case CONDITION_MET:
 
                                 outcome = Outcome.SUCCESS;
-                                report = quantifier.getCounter()+" events were found before "+state.getEvent(0);
+                                report = LazyString.of(getCounter(), " events were found before ", getWitness(0));
 
                                 break;
 
                             // If we are in COUNTING state, warning or failure
                             case COUNTING:
 
-                                if(foundE2s<=0)
+                                if(getTally()<=0)
                                 {
                                     outcome = Outcome.WARNING;
-                                    report = "No event that "+eventAfter.getMatcher()+" was found in the sequence";
+                                    report = LazyString.of("No event that ", eventAfter.getMatcher(), " was found in the sequence");
                                 }
                                 else
                                 {
                                     outcome = Outcome.FAILURE;
-                                    report = "The condition was never verified before any of the "+foundE2s+" events where each "+eventAfter.getMatcher();
+                                    report = LazyString.of("The condition was never verified before any of the ", getTally(), " events where each ", eventAfter.getMatcher());
                                 }
 
                                 break;
@@ -115,6 +101,8 @@ public class ExistBeforeConstraint extends AbstractExistConstraint
 
                         return new Result(outcome, report);
                     }
-                });
+                };
+            }
+        };
     }
 }
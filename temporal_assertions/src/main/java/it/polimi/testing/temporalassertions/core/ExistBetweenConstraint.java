@@ -43,120 +43,60 @@ public class ExistBetweenConstraint extends AbstractExistConstraint
     @Override
     Check getConstrainedExistCheck(final Matcher<? extends Event> matcher, final AbstractQuantifier quantifier)
     {
-        return new Check(
-                quantifier.getDescription()+" events where each "+matcher+" are between at least one pair of events where the first "+eventBefore.getMatcher()+" and the second "+eventAfter.getMatcher(),
+        final int BEFORE = 0;
+        final int BETWEEN = 1;
+        final int CONDITION_MET = 2;
 
-                new CheckSubscriber()
-                {
-                    private final static int BEFORE = 0;
-                    private final static int BETWEEN = 1;
-                    private final static int CONDITION_MET = 2;
+        final int E2 = 1;
+        final int E1 = 1<<1;
+        final int E3 = 1<<2;
 
-                    private final AbstractEventDescriptor.State state = new AbstractEventDescriptor.State(BEFORE);
+        final Automaton automaton = Automaton.builder(3, eventBefore.getMatcher(), matcher, eventAfter.getMatcher())
 
-                    private int foundPairs = 0;
+                // If we are in BEFORE state and we match an "eventBefore" we go in BETWEEN to wait for the events we are interested in
+                .on(BEFORE, E2, BETWEEN, Automaton.RESET | Automaton.SET_WITNESS)
 
-                    @Override
-                    public void onNext(Event event)
-                    {
-                        switch(state.getState())
-                        {
-                            // If we are in BEFORE state and we match an "eventBefore" we go in BETWEEN to wait for the events we are interested in
-                            case BEFORE:
-
-                                if(eventBefore.getMatcher().matches(event))
-                                {
-                                    quantifier.resetCounter();
-                                    state.setState(BETWEEN);
-                                    state.setEvents(event);
-                                }
-
-                                break;
+                // If we are in BETWEEN (i.e. after an "eventBefore"), increase counter if we find an event we are interested in
+                .on(BETWEEN, E1, BETWEEN, Automaton.COUNT)
 
-                            // If we are in BETWEEN (i.e. after an "eventBefore")
-                            case BETWEEN:
+                // If it's both "eventBefore" and "eventAfter", exit with success if the condition is met, otherwise simply reset counter
+                .on(BETWEEN, E2 | E3,
+                        CONDITION_MET, Automaton.TALLY | Automaton.ADD_WITNESS | Automaton.END,
+                        BETWEEN, Automaton.TALLY | Automaton.RESET | Automaton.SET_WITNESS)
 
-                                // Increase counter if we find an event we are interested in
-                                if(matcher.matches(event))
-                                {
-                                    quantifier.increaseCounter();
-                                }
+                // If we get an "eventAfter", exit with success if the condition is met, otherwise restart everything
+                .on(BETWEEN, E3,
+                        CONDITION_MET, Automaton.TALLY | Automaton.ADD_WITNESS | Automaton.END,
+                        BEFORE, Automaton.TALLY | Automaton.RESET | Automaton.CLEAR_WITNESS)
 
-                                else
-                                {
-                                    // Get matches
-                                    boolean isEventBefore = eventBefore.getMatcher().matches(event);
-                                    boolean isEventAfter = eventAfter.getMatcher().matches(event);
-                                    boolean isBoth = isEventBefore && isEventAfter;
-
-                                    // If it's both "eventBefore" and "eventAfter"...
-                                    if(isBoth)
-                                    {
-                                        foundPairs++;
-
-                                        // Exit with success if the condition is met
-                                        if(quantifier.isConditionMet())
-                                        {
-                                            state.setState(CONDITION_MET);
-                                            state.addEvent(event);
-                                            endCheck();
-                                        }
-
-                                        // Otherwise simply reset counter
-                                        else
-                                        {
-                                            quantifier.resetCounter();
-                                            state.setEvents(event);
-                                        }
-                                    }
-
-                                    // If we get an "eventAfter"...
-                                    else if(isEventAfter)
-                                    {
-                                        foundPairs++;
-
-                                        // Exit with success if the condition is met
-                                        if(quantifier.isConditionMet())
-                                        {
-                                            state.setState(CONDITION_MET);
-                                            state.addEvent(event);
-                                            endCheck();
-                                        }
-
-                                        // Otherwise restart everything
-                                        else
-                                        {
-                                            quantifier.resetCounter();
-                                            state.setState(BEFORE);
-                                            state.clearEvents();
-                                        }
-                                    }
-
-                                    // If we get an "eventBefore" again before we get an "eventAfter", simply reset the counter
-                                    else if(isEventBefore)
-                                    {
-                                        quantifier.resetCounter();
-                                        state.setEvents(event);
-                                    }
-                                }
+                // If we get an "eventBefore" again before we get an "eventAfter", simply reset the counter
+                .on(BETWEEN, E2, BETWEEN, Automaton.RESET | Automaton.SET_WITNESS)
 
-                                break;
-                        }
-                    }
+                .build();
 
+        return new Check(
+                LazyString.of(quantifier.getDescription(), " events where each ", matcher, " are between at least one pair of events where the first ", eventBefore.getMatcher(), " and the second ", eventAfter.getMatcher()),
+
+                eventBefore.getMatcher(), matcher, eventAfter.getMatcher())
+        {
+            @Override
+            protected CheckSubscriber newCheckSubscriber()
+            {
+                return new AutomatonSubscriber(automaton, quantifier)
+                {
                     @NonNull
                     @Override
                     public Result getFinalResult()
                     {
                         Outcome outcome = null;
-                        String report = null;
-                        switch(state.getState())
+                        CharSequence report = null;
+                        switch(getState())
                         {
                             // Success if the condition has been met
                             case CONDITION_MET:
 
                                 outcome = Outcome.SUCCESS;
-                                report = quantifier.getCounter()+" events were found between "+state.getEvent(0)+" and "+state.getEvent(1);
+                                report = LazyString.of(getCounter(), " events were found between ", getWitness(0), " and ", getWitness(1));
 
                                 break;
 
@@ -164,10 +104,10 @@ public class ExistBetweenConstraint extends AbstractExistConstraint
                             case BEFORE:
                             case BETWEEN:
 
-                                if(foundPairs>0)
+                                if(getTally()>0)
                                 {
                                     outcome = Outcome.FAILURE;
-                                    report = "The condition was never met between any of the "+foundPairs+" pairs";
+                                    report = LazyString.of("The condition was never met between any of the ", getTally(), " pairs");
                                 }
                                 else
                                 {
@@ -180,7 +120,8 @@ public class ExistBetweenConstraint extends AbstractExistConstraint
 
                         return new Result(outcome, report);
                     }
-                }
-        );
+                };
+            }
+        };
     }
 }
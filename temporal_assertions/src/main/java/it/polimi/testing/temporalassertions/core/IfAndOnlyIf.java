@@ -15,7 +15,7 @@ class IfAndOnlyIf extends CheckConnective
      */
     IfAndOnlyIf(Check firstCheck, Check secondCheck)
     {
-        super("("+firstCheck+") IF AND ONLY IF ("+secondCheck+")", firstCheck, secondCheck);
+        super(LazyString.of("(", firstCheck, ") IF AND ONLY IF (", secondCheck, ")"), firstCheck, secondCheck);
     }
 
     /**
@@ -49,13 +49,13 @@ class IfAndOnlyIf extends CheckConnective
                 // Success if both failed
                 if(firstIsFailure && secondIsFailure)
                 {
-                    return new Result(Outcome.SUCCESS, "Both conditions didn't hold: "+results[0].getReport()+"; "+results[1].getReport());
+                    return new Result(Outcome.SUCCESS, LazyString.of("Both conditions didn't hold: ", results[0].getLazyReport(), "; ", results[1].getLazyReport()));
                 }
 
                 // Success if both didn't fail
                 else if(!firstIsFailure && !secondIsFailure)
                 {
-                    return new Result(Outcome.SUCCESS, "Both conditions held: "+results[0].getReport()+"; "+results[1].getReport());
+                    return new Result(Outcome.SUCCESS, LazyString.of("Both conditions held: ", results[0].getLazyReport(), "; ", results[1].getLazyReport()));
                 }
 
                 // Failure if one fails and the other does not
@@ -63,11 +63,11 @@ class IfAndOnlyIf extends CheckConnective
                 {
                     if(firstIsFailure)
                     {
-                        return new Result(Outcome.FAILURE, "We have that '"+results[1].getReport()+"' but '"+results[0].getReport()+"'");
+                        return new Result(Outcome.FAILURE, LazyString.of("We have that '", results[1].getLazyReport(), "' but '", results[0].getLazyReport(), "'"));
                     }
                     else
                     {
-                        return new Result(Outcome.FAILURE, "We have that '"+results[0].getReport()+"' but '"+results[1].getReport()+"'");
+                        return new Result(Outcome.FAILURE, LazyString.of("We have that '", results[0].getLazyReport(), "' but '", results[1].getLazyReport(), "'"));
                     }
                 }
             }
@@ -18,7 +18,7 @@ class IfThen extends CheckConnective
      */
     IfThen(Check ifCheck, Check thenCheck)
     {
-        super("IF ("+ifCheck+") THEN ("+thenCheck+")", ifCheck, thenCheck);
+        super(LazyString.of("IF (", ifCheck, ") THEN (", thenCheck, ")"), ifCheck, thenCheck);
         this.ifCheck = ifCheck;
         this.thenCheck = thenCheck;
     }
@@ -64,7 +64,7 @@ class IfThen extends CheckConnective
                 // Success if the precondition fails, independently of the actual check outcome
                 if(Outcome.FAILURE.equals(ifResult.getOutcome()))
                 {
-                    return new Result(Outcome.SUCCESS, "The pre-condition didn't hold: "+ifResult.getReport());
+                    return new Result(Outcome.SUCCESS, LazyString.of("The pre-condition didn't hold: ", ifResult.getLazyReport()));
                 }
 
                 // If the precondition didn't fail, then return the result of the actual check
@@ -0,0 +1,117 @@
+package it.polimi.testing.temporalassertions.core;
+
+/**
+ * A histogram of delays in fixed memory, however many delays are recorded
+ *
+ * The buckets grow exponentially: each power of two is divided in {@code 2^SUB_BUCKET_BITS} linear sub-buckets,
+ * so every recorded value is known with a relative error lower than {@code 1/2^SUB_BUCKET_BITS} (about 3%),
+ * from one nanosecond to hundreds of years.
+ */
+final class LatencyHistogram
+{
+    private final static int SUB_BUCKET_BITS = 5;
+    private final static int SUB_BUCKETS = 1<<SUB_BUCKET_BITS;
+    private final static int BUCKETS = (64-SUB_BUCKET_BITS)*SUB_BUCKETS;
+
+    private final long[] counts = new long[BUCKETS];
+    private long totalCount = 0;
+    private long min = Long.MAX_VALUE;
+    private long max = 0;
+
+    /**
+     * Records a value
+     * @param value the value (negative values are recorded as 0)
+     */
+    void record(long value)
+    {
+        if(value<0) value = 0;
+
+        counts[indexOf(value)]++;
+        totalCount++;
+        if(value<min) min = value;
+        if(value>max) max = value;
+    }
+
+    /**
+     * Records all the values of another histogram
+     * @param other the other histogram
+     */
+    void add(LatencyHistogram other)
+    {
+        for(int i=0; i<BUCKETS; i++) counts[i] += other.counts[i];
+        totalCount += other.totalCount;
+        min = Math.min(min, other.min);
+        max = Math.max(max, other.max);
+    }
+
+    /**
+     * Getter
+     * @return the number of recorded values
+     */
+    long getTotalCount()
+    {
+        return totalCount;
+    }
+
+    /**
+     * Getter
+     * @return the highest recorded value (0 if none)
+     */
+    long getMax()
+    {
+        return max;
+    }
+
+    /**
+     * Gets the value below which the given percentage of the recorded values fall
+     * @param percentile the percentile, from 0 to 100
+     * @return the highest value equivalent (within the precision of the histogram) to the percentile, never
+     *         higher than the highest recorded value (0 if no value was recorded)
+     */
+    long getValueAtPercentile(double percentile)
+    {
+        if(totalCount==0) return 0;
+
+        // The rank of the value, at least the first one
+        long rank = Math.max(1, (long) Math.ceil(Math.min(100, Math.max(0, percentile))/100*totalCount));
+        long seen = 0;
+        for(int i=0; i<BUCKETS; i++)
+        {
+            seen += counts[i];
+            if(seen>=rank)
+            {
+                return Math.max(min, Math.min(max, highestEquivalentValue(i)));
+            }
+        }
+        return max;
+    }
+
+    /**
+     * Helper to get the bucket of a value
+     * @param value the value (not negative)
+     * @return the index of the bucket
+     */
+    private static int indexOf(long value)
+    {
+        if(value<SUB_BUCKETS) return (int) value;
+
+        // The position of the highest bit gives the power of two, the following bits give the sub-bucket
+        int exponent = 63-Long.numberOfLeadingZeros(value);
+        int subBucket = (int) (value>>>(exponent-SUB_BUCKET_BITS)) & (SUB_BUCKETS-1);
+        return ((exponent-SUB_BUCKET_BITS+1)<<SUB_BUCKET_BITS)+subBucket;
+    }
+
+    /**
+     * Helper to get the highest value that falls in a bucket
+     * @param index the index of the bucket
+     * @return the highest value of the bucket
+     */
+    private static long highestEquivalentValue(int index)
+    {
+        if(index<SUB_BUCKETS) return index;
+
+        int exponent = (index>>SUB_BUCKET_BITS)+SUB_BUCKET_BITS-1;
+        long lowest = (1L<<exponent) | ((long) (index & (SUB_BUCKETS-1))<<(exponent-SUB_BUCKET_BITS));
+        return lowest+(1L<<(exponent-SUB_BUCKET_BITS))-1;
+    }
+}
@@ -0,0 +1,115 @@
+package it.polimi.testing.temporalassertions.core;
+
+import android.support.annotation.NonNull;
+
+import java.util.List;
+
+/**
+ * A string that is built from its parts (matchers, events, numbers, other strings...) only the first time
+ * it is read, and then cached
+ *
+ * It allows to describe results and checks without calling the {@code toString()} of matchers and events
+ * unless someone actually needs the text.
+ */
+final class LazyString implements CharSequence
+{
+    private final Object[] parts;
+    private final String separator;
+    private final boolean skipEmpty;
+    private volatile String value;
+
+    /**
+     * Constructor
+     * @param parts the parts of the string
+     * @param separator the separator between the parts, or null if they are simply concatenated
+     * @param skipEmpty true if the separator is added only after some non-empty text
+     */
+    private LazyString(Object[] parts, String separator, boolean skipEmpty)
+    {
+        this.parts = parts;
+        this.separator = separator;
+        this.skipEmpty = skipEmpty;
+    }
+
+    /**
+     * Creates a string that is the concatenation of the given parts (as with the + operator)
+     * @param parts the parts
+     * @return the lazy string
+     */
+    static LazyString of(Object... parts)
+    {
+        return new LazyString(parts, null, false);
+    }
+
+    /**
+     * Creates a string that joins the given parts with a separator, as {@link it.polimi.testing.temporalassertions.Utils#join(String, Object[])}
+     * @param separator the separator
+     * @param parts the parts
+     * @return the lazy string
+     */
+    static LazyString join(String separator, Object[] parts)
+    {
+        return new LazyString(parts, separator, false);
+    }
+
+    /**
+     * Creates a string that joins the given parts with a separator. The separator is added before a part only
+     * if the string built so far is not empty.
+     * @param separator the separator
+     * @param parts the parts
+     * @return the lazy string
+     */
+    static LazyString joinNonEmpty(String separator, List<?> parts)
+    {
+        return new LazyString(parts.toArray(), separator, true);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @NonNull
+    @Override
+    public String toString()
+    {
+        String result = value;
+        if(result==null)
+        {
+            StringBuilder sb = new StringBuilder();
+            for(int i=0; i<parts.length; i++)
+            {
+                if(separator!=null && i>0 && (!skipEmpty || sb.length()>0)) sb.append(separator);
+                sb.append(parts[i]);
+            }
+            result = sb.toString();
+            value = result;
+        }
+        return result;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int length()
+    {
+        return toString().length();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public char charAt(int index)
+    {
+        return toString().charAt(index);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public CharSequence subSequence(int start, int end)
+    {
+        return toString().subSequence(start, end);
+    }
+}
@@ -0,0 +1,191 @@
+package it.polimi.testing.temporalassertions.core;
+
+import org.hamcrest.Matcher;
+
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+import it.polimi.testing.temporalassertions.events.Event;
+
+/**
+ * Per-event cache of matcher results, shared by all the checks applied to the same stream
+ *
+ * Each distinct matcher instance receives an id when the checks are registered. For each event of the current
+ * batch the cache keeps two bitsets indexed by those ids (which matchers were already evaluated and which of them
+ * matched), so that every matcher is evaluated at most once per event whatever the number of checks using it.
+ *
+ * The checks visit the events of a batch in order, so the position of an event in the batch is found by moving
+ * a cursor forward from the position of the previous lookup.
+ */
+class MatcherCache
+{
+    private final Map<Matcher<?>, Integer> ids = new IdentityHashMap<>();
+
+    private long[] evaluated = new long[1];
+    private long[] matched = new long[1];
+    private int words = 1;
+
+    private final Event[] singleEvent = new Event[1];
+    private Event[] events;
+    private int from;
+    private int to;
+    private int cursor;
+
+    private long evaluationsCount = 0;
+
+    /**
+     * Assigns an id to the given matcher, if it does not already have one
+     * @param matcher the matcher
+     * @return the id of the matcher
+     */
+    int register(Matcher<?> matcher)
+    {
+        Integer id = ids.get(matcher);
+        if(id==null)
+        {
+            id = ids.size();
+            ids.put(matcher, id);
+
+            // Widen the bitsets of each event if needed
+            if((id>>6)+1>words)
+            {
+                widen(Math.max((id>>6)+1, words*2));
+            }
+        }
+        return id;
+    }
+
+    /**
+     * Registers all the given matchers
+     * @param matchers the matchers
+     */
+    void registerAll(Matcher<?>[] matchers)
+    {
+        for(Matcher<?> matcher: matchers)
+        {
+            if(matcher!=null) register(matcher);
+        }
+    }
+
+    /**
+     * Invalidates the cached results and sets the event that will be matched next
+     * @param event the new current event
+     */
+    void setCurrentEvent(Event event)
+    {
+        singleEvent[0] = event;
+        setCurrentBatch(singleEvent, 0, 1);
+    }
+
+    /**
+     * Invalidates the cached results and sets the events that will be matched next
+     * @param events the array that contains the events
+     * @param from the index of the first event (inclusive)
+     * @param to the index of the last event (exclusive)
+     */
+    void setCurrentBatch(Event[] events, int from, int to)
+    {
+        this.events = events;
+        this.from = from;
+        this.to = to;
+        this.cursor = from;
+
+        int size = (to-from)*words;
+        if(size>evaluated.length)
+        {
+            evaluated = new long[size];
+            matched = new long[size];
+        }
+        else
+        {
+            Arrays.fill(evaluated, 0, size, 0L);
+        }
+    }
+
+    /**
+     * Evaluates the matcher on the given event, or returns the cached result if the matcher was already
+     * evaluated on the same event of the current batch
+     * @param matcher the matcher
+     * @param event the event to be matched
+     * @return true if the event matches
+     */
+    boolean matches(Matcher<?> matcher, Event event)
+    {
+        // Results are cached only for the events of the current batch
+        int position = locate(event);
+        if(position<0)
+        {
+            evaluationsCount++;
+            return matcher.matches(event);
+        }
+
+        int id = register(matcher);
+        int word = (position-from)*words+(id>>6);
+        long bit = 1L<<id;
+
+        if((evaluated[word] & bit)!=0)
+        {
+            return (matched[word] & bit)!=0;
+        }
+
+        evaluationsCount++;
+        boolean result = matcher.matches(event);
+        evaluated[word] |= bit;
+        if(result) matched[word] |= bit;
+        else matched[word] &= ~bit;
+        return result;
+    }
+
+    /**
+     * Getter
+     * @return the number of times a matcher was actually evaluated, i.e. its result was not in the cache
+     */
+    long getEvaluationsCount()
+    {
+        return evaluationsCount;
+    }
+
+    /**
+     * Helper to find the position of an event in the current batch
+     * @param event the event
+     * @return the index of the event, or -1 if it is not in the current batch
+     */
+    private int locate(Event event)
+    {
+        if(events==null || from>=to) return -1;
+        if(events[cursor]==event) return cursor;
+
+        for(int i=cursor+1; i<to; i++)
+        {
+            if(events[i]==event) return cursor = i;
+        }
+        for(int i=from; i<cursor; i++)
+        {
+            if(events[i]==event) return cursor = i;
+        }
+        return -1;
+    }
+
+    /**
+     * Helper to increase the number of words of the bitsets of each event, keeping the cached results
+     * @param newWords the new number of words
+     */
+    private void widen(int newWords)
+    {
+        int batchSize = events==null ? 1 : to-from;
+        long[] newEvaluated = new long[batchSize*newWords];
+        long[] newMatched = new long[batchSize*newWords];
+        if(events!=null)
+        {
+            for(int i=0; i<batchSize; i++)
+            {
+                System.arraycopy(evaluated, i*words, newEvaluated, i*newWords, words);
+                System.arraycopy(matched, i*words, newMatched, i*newWords, words);
+            }
+        }
+        evaluated = newEvaluated;
+        matched = newMatched;
+        words = newWords;
+    }
+}
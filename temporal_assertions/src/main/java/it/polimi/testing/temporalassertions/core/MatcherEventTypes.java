@@ -0,0 +1,181 @@
+package it.polimi.testing.temporalassertions.core;
+
+import org.hamcrest.Matcher;
+import org.hamcrest.TypeSafeDiagnosingMatcher;
+import org.hamcrest.TypeSafeMatcher;
+import org.hamcrest.core.AllOf;
+import org.hamcrest.core.AnyOf;
+import org.hamcrest.core.CombinableMatcher;
+
+import java.lang.reflect.Field;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+
+import it.polimi.testing.temporalassertions.events.Event;
+import it.polimi.testing.temporalassertions.matchers.AnyEvent;
+
+/**
+ * Helper to find, without evaluating it, the classes of events that a matcher could possibly match
+ *
+ * Most event matchers (e.g. the ones in the events package) are {@link org.hamcrest.FeatureMatcher}s on a
+ * given subclass of {@link Event}, so they can never match an event of a different class. When the type
+ * cannot be found (e.g. custom matchers on any object) the matcher is assumed to be interested in any event.
+ */
+class MatcherEventTypes
+{
+    private final static Set<Class<?>> ANY_EVENT = Collections.<Class<?>>singleton(Event.class);
+
+    private final static Field TYPE_SAFE_DIAGNOSING_EXPECTED_TYPE = getField(TypeSafeDiagnosingMatcher.class, "expectedType");
+    private final static Field TYPE_SAFE_EXPECTED_TYPE = getField(TypeSafeMatcher.class, "expectedType");
+    private final static Field COMBINABLE_MATCHER = getField(CombinableMatcher.class, "matcher");
+    private final static Field ALL_OF_MATCHERS = getField(AllOf.class, "matchers");
+    private final static Field ANY_OF_MATCHERS = getField(AnyOf.class.getSuperclass(), "matchers");
+
+    /**
+     * Constructor
+     */
+    private MatcherEventTypes()
+    {
+
+    }
+
+    /**
+     * Finds the classes of events that can be matched by all the given matchers
+     * @param matchers the matchers (if empty, any event is considered interesting)
+     * @return the set of event classes, which contains {@link Event} if any event could match
+     */
+    static Set<Class<?>> of(Matcher<?>[] matchers)
+    {
+        if(matchers.length==0) return ANY_EVENT;
+
+        Set<Class<?>> types = new HashSet<>();
+        for(Matcher<?> matcher: matchers)
+        {
+            Set<Class<?>> matcherTypes = of(matcher);
+            if(matcherTypes.contains(Event.class)) return ANY_EVENT;
+            types.addAll(matcherTypes);
+        }
+        return types;
+    }
+
+    /**
+     * Finds the classes of events that can be matched by the given matcher
+     * @param matcher the matcher
+     * @return the set of event classes, which contains {@link Event} if any event could match
+     */
+    @SuppressWarnings("unchecked")
+    static Set<Class<?>> of(Matcher<?> matcher)
+    {
+        if(matcher==null) return ANY_EVENT;
+
+        // Union of the sub-matchers
+        if(matcher instanceof AnyEvent)
+        {
+            return union(((AnyEvent) matcher).getMatchers());
+        }
+        if(matcher instanceof AnyOf)
+        {
+            return union((Iterable<? extends Matcher<?>>) read(ANY_OF_MATCHERS, matcher));
+        }
+
+        // Any of the sub-matchers restricts the types
+        if(matcher instanceof CombinableMatcher)
+        {
+            Object inner = read(COMBINABLE_MATCHER, matcher);
+            return inner instanceof Matcher ? of((Matcher<?>) inner) : ANY_EVENT;
+        }
+        if(matcher instanceof AllOf)
+        {
+            return intersection((Iterable<? extends Matcher<?>>) read(ALL_OF_MATCHERS, matcher));
+        }
+
+        // Type-safe matchers only match the expected type
+        Object expectedType = null;
+        if(matcher instanceof TypeSafeDiagnosingMatcher) expectedType = read(TYPE_SAFE_DIAGNOSING_EXPECTED_TYPE, matcher);
+        else if(matcher instanceof TypeSafeMatcher) expectedType = read(TYPE_SAFE_EXPECTED_TYPE, matcher);
+
+        if(expectedType instanceof Class && Event.class.isAssignableFrom((Class<?>) expectedType))
+        {
+            return Collections.<Class<?>>singleton((Class<?>) expectedType);
+        }
+
+        return ANY_EVENT;
+    }
+
+    /**
+     * Helper to get the types of a disjunction of matchers
+     * @param matchers the matchers
+     * @return the union of the types of all matchers
+     */
+    private static Set<Class<?>> union(Iterable<? extends Matcher<?>> matchers)
+    {
+        if(matchers==null) return ANY_EVENT;
+
+        Set<Class<?>> types = new HashSet<>();
+        for(Matcher<?> matcher: matchers)
+        {
+            Set<Class<?>> matcherTypes = of(matcher);
+            if(matcherTypes.contains(Event.class)) return ANY_EVENT;
+            types.addAll(matcherTypes);
+        }
+        return types.isEmpty() ? ANY_EVENT : types;
+    }
+
+    /**
+     * Helper to get the types of a conjunction of matchers
+     * @param matchers the matchers
+     * @return the types of the first matcher that restricts them (which is a superset of the actual intersection)
+     */
+    private static Set<Class<?>> intersection(Iterable<? extends Matcher<?>> matchers)
+    {
+        if(matchers==null) return ANY_EVENT;
+
+        for(Matcher<?> matcher: matchers)
+        {
+            Set<Class<?>> matcherTypes = of(matcher);
+            if(!matcherTypes.contains(Event.class)) return matcherTypes;
+        }
+        return ANY_EVENT;
+    }
+
+    /**
+     * Helper to access a private field of the Hamcrest classes
+     * @param owner the class that declares the field
+     * @param name the name of the field
+     * @return the accessible field, or null if not available
+     */
+    private static Field getField(Class<?> owner, String name)
+    {
+        try
+        {
+            Field field = owner.getDeclaredField(name);
+            field.setAccessible(true);
+            return field;
+        }
+        catch(Exception e)
+        {
+            return null;
+        }
+    }
+
+    /**
+     * Helper to read a field of a matcher
+     * @param field the field (may be null)
+     * @param matcher the matcher
+     * @return the value of the field, or null if not available
+     */
+    private static Object read(Field field, Matcher<?> matcher)
+    {
+        if(field==null) return null;
+
+        try
+        {
+            return field.get(matcher);
+        }
+        catch(Exception e)
+        {
+            return null;
+        }
+    }
+}
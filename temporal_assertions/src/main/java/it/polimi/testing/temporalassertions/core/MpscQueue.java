@@ -0,0 +1,122 @@
+package it.polimi.testing.temporalassertions.core;
+
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * A lock-free unbounded queue for many producers and a single consumer
+ *
+ * Producers only pay a node allocation and one atomic swap, they never wait for each other or for
+ * the consumer. The items of each producer are polled in the order in which they were offered.
+ * @param <T> the type of the items
+ */
+final class MpscQueue<T>
+{
+    private final AtomicReference<Node<T>> producerNode;
+    private Node<T> consumerNode;
+    private long polledTime;
+    private long polledStamp;
+
+    /**
+     * Constructor
+     */
+    MpscQueue()
+    {
+        Node<T> stub = new Node<>(null, 0, 0);
+        producerNode = new AtomicReference<>(stub);
+        consumerNode = stub;
+    }
+
+    /**
+     * Adds an item to the queue, can be called by any thread
+     * @param item the item (not null)
+     */
+    void offer(T item)
+    {
+        offer(item, 0, 0);
+    }
+
+    /**
+     * Adds an item to the queue with two times taken when it was offered, can be called by any thread
+     * @param item the item (not null)
+     * @param time the time when the item was offered, see {@link MpscQueue#getPolledTime()}
+     * @param stamp another time when the item was offered, see {@link MpscQueue#getPolledStamp()}
+     */
+    void offer(T item, long time, long stamp)
+    {
+        Node<T> node = new Node<>(item, time, stamp);
+        Node<T> previous = producerNode.getAndSet(node);
+        previous.lazySet(node);
+    }
+
+    /**
+     * Removes the first item of the queue, must be called only by the consumer thread. It can
+     * return null while a producer is still linking its item: the caller must retry after the
+     * producer signals it.
+     * @return the first item, or null if none is available
+     */
+    T poll()
+    {
+        Node<T> next = consumerNode.get();
+        if(next==null) return null;
+
+        T item = next.item;
+        next.item = null;
+        polledTime = next.time;
+        polledStamp = next.stamp;
+        consumerNode = next;
+        return item;
+    }
+
+    /**
+     * Getter, must be called only by the consumer thread
+     * @return the time when the last polled item was offered
+     */
+    long getPolledTime()
+    {
+        return polledTime;
+    }
+
+    /**
+     * Getter, must be called only by the consumer thread
+     * @return the other time when the last polled item was offered
+     */
+    long getPolledStamp()
+    {
+        return polledStamp;
+    }
+
+    /**
+     * Checks if there is an item available, must be called only by the consumer thread
+     * @return true if {@link MpscQueue#poll()} would return null
+     */
+    boolean isEmpty()
+    {
+        return consumerNode.get()==null;
+    }
+
+    /**
+     * A node of the linked list, which points to the next one
+     * @param <T> the type of the item
+     */
+    private static final class Node<T> extends AtomicReference<Node<T>>
+    {
+        private final static long serialVersionUID = 1L;
+
+        private T item;
+        private final long time;
+        private final long stamp;
+
+        /**
+         * Constructor
+         * @param item the item
+         * @param time the time when the item was offered
+         * @param stamp the other time when the item was offered
+         */
+        Node(T item, long time, long stamp)
+        {
+            this.item = item;
+            this.time = time;
+            this.stamp = stamp;
+        }
+    }
+}
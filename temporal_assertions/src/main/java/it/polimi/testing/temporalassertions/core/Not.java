@@ -16,7 +16,7 @@ public class Not extends CheckConnective
      */
     private Not(Check check)
     {
-        super("NOT TRUE THAT ("+check+")", check);
+        super(LazyString.of("NOT TRUE THAT (", check, ")"), check);
     }
 
     /**
@@ -65,7 +65,7 @@ public class Not extends CheckConnective
                     default:
                         outcome = Outcome.WARNING;
                 }
-                return new Result(outcome, received.getReport());
+                return new Result(outcome, received.getLazyReport());
             }
         };
     }
@@ -0,0 +1,98 @@
+package it.polimi.testing.temporalassertions.core;
+
+import android.support.annotation.Nullable;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import it.polimi.testing.temporalassertions.events.Event;
+import it.polimi.testing.temporalassertions.trace.TraceReader;
+import rx.Subscriber;
+
+/**
+ * Allows to apply consistency checks to a trace recorded with a {@link it.polimi.testing.temporalassertions.trace.TraceWriter},
+ * outside the application (e.g. on the plain JVM to check again old traces with new checks)
+ *
+ * The events of the trace are sent to the checks directly by the calling thread, in batches and with their recorded
+ * timestamps, without schedulers or queues: the replay runs as fast as the checks can go. The checks are evaluated
+ * exactly as by the {@link EventMonitor}, so the same {@link Check}s can be used. Each replay evaluates the checks
+ * again from scratch, so the same monitor can replay several traces, also at the same time (see {@link CorpusChecker}).
+ */
+public class OfflineMonitor
+{
+    private final List<Check> checks = new ArrayList<>();
+
+    /**
+     * Allows to add a consistency check on the traces
+     * @param failureMessage the identifying message for the check in case of failure
+     * @param check the consistency check to be added
+     */
+    public void checkThat(String failureMessage, Check check)
+    {
+        check.setUserFailureMessage(failureMessage);
+        checks.add(check);
+    }
+
+    /**
+     * Getter
+     * @return the checks added to the monitor
+     */
+    List<Check> getChecks()
+    {
+        return checks;
+    }
+
+    /**
+     * Replays a trace, sending the results of the checks to the given subscriber before returning
+     * @param reader the reader of the trace
+     * @param resultsSubscriber the subscriber that will receive the results of the consistency checks (if null
+     *                          {@link EventMonitor#getLoggerResultsSubscriber()} is used)
+     * @throws IOException if the trace is corrupted (the error is also sent to the subscriber)
+     */
+    public void replay(TraceReader reader, @Nullable Subscriber<Result> resultsSubscriber) throws IOException
+    {
+        // Get default subscriber if needed
+        if(resultsSubscriber==null)
+        {
+            resultsSubscriber = EventMonitor.getLoggerResultsSubscriber();
+        }
+
+        // The timed checks need to know the time even if no event of theirs arrives
+        boolean timed = false;
+        for(Check check: checks)
+        {
+            timed |= check.isTimed();
+        }
+
+        CheckDispatcher dispatcher = new CheckDispatcher(checks, resultsSubscriber);
+        Event[] batch = new Event[EventIngestion.BATCH_SIZE];
+        try
+        {
+            int count = batch.length;
+            while(count==batch.length && !dispatcher.isUnsubscribed())
+            {
+                // Read a batch of events and send it to the checks
+                count = 0;
+                Event event;
+                while(count<batch.length && (event = reader.next())!=null)
+                {
+                    EventStamps.stamp(event, reader.getLastTimestamp(), reader.getLastSequence());
+                    batch[count++] = event;
+                }
+                if(count>0)
+                {
+                    dispatcher.onNextBatch(batch, 0, count);
+                    long now = batch[count-1].getTimestamp();
+                    if(timed && !dispatcher.isUnsubscribed()) dispatcher.onTime(now);
+                }
+            }
+        }
+        catch(IOException e)
+        {
+            dispatcher.onError(e);
+            throw e;
+        }
+        dispatcher.onCompleted();
+    }
+}
@@ -0,0 +1,240 @@
+package it.polimi.testing.temporalassertions.core;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import it.polimi.testing.temporalassertions.events.Event;
+import rx.Subscriber;
+import rx.functions.Action0;
+import rx.observers.SerializedSubscriber;
+import rx.subscriptions.Subscriptions;
+
+/**
+ * The subscriber that is attached to the event stream on behalf of all the registered checks when they are
+ * evaluated in parallel, see {@link EventMonitor#setParallelism(int)}
+ *
+ * The checks are partitioned across a fixed number of worker threads, each running a {@link CheckDispatcher} on
+ * its own checks. The events are published once in a {@link SequencedEventBuffer}, from which every worker reads
+ * all of them in order: each check sees exactly the same stream as with a single thread. The results of all the
+ * workers are serialized into the results subscriber, and the results of each check keep their order.
+ *
+ * The time signals of the stream are published in the buffer as special events, so that every worker receives
+ * them in order with the events.
+ */
+class ParallelCheckDispatcher extends Subscriber<Event> implements RingBufferSubject.BatchObserver<Event>, RingBufferSubject.TimeObserver
+{
+    final static int DEFAULT_CAPACITY = 1024;
+
+    private final SequencedEventBuffer buffer;
+    private final Event[] singleEvent = new Event[1];
+    private final AtomicInteger liveWorkers;
+
+    /**
+     * Constructor, starts the worker threads
+     * @param checks the checks that will be applied to the stream
+     * @param resultsChild the subscriber that will receive the results of all the checks
+     * @param workers the maximum number of worker threads
+     * @param capacity the number of events that the workers can lag behind the stream
+     */
+    ParallelCheckDispatcher(List<Check> checks, Subscriber<? super Result> resultsChild, int workers, int capacity)
+    {
+        this(checks, CheckDispatcher.newMetrics(checks), resultsChild, workers, capacity);
+    }
+
+    /**
+     * Constructor, starts the worker threads
+     * @param checks the checks that will be applied to the stream
+     * @param metrics the metrics where the costs of each check are counted (by the worker of the check), in the
+     *                same order of the checks
+     * @param resultsChild the subscriber that will receive the results of all the checks
+     * @param workers the maximum number of worker threads
+     * @param capacity the number of events that the workers can lag behind the stream
+     */
+    ParallelCheckDispatcher(List<Check> checks, List<CheckMetrics> metrics, Subscriber<? super Result> resultsChild, int workers, int capacity)
+    {
+        // Partition the checks in round-robin order
+        int partitionsCount = Math.max(1, Math.min(workers, checks.size()));
+        List<List<Check>> partitions = new ArrayList<>();
+        List<List<CheckMetrics>> partitionsMetrics = new ArrayList<>();
+        for(int i=0; i<partitionsCount; i++)
+        {
+            partitions.add(new ArrayList<Check>());
+            partitionsMetrics.add(new ArrayList<CheckMetrics>());
+        }
+        for(int i=0; i<checks.size(); i++)
+        {
+            partitions.get(i%partitionsCount).add(checks.get(i));
+            partitionsMetrics.get(i%partitionsCount).add(metrics.get(i));
+        }
+
+        this.buffer = new SequencedEventBuffer(capacity, partitionsCount);
+        this.liveWorkers = new AtomicInteger(partitionsCount);
+
+        // The results of all the workers go to the same child, which completes after the last worker
+        final Subscriber<Result> serializedChild = new SerializedSubscriber<>(resultsChild);
+        final AtomicInteger partitionsToBeCompleted = new AtomicInteger(partitionsCount);
+        for(int i=0; i<partitionsCount; i++)
+        {
+            CheckDispatcher dispatcher = new CheckDispatcher(partitions.get(i), partitionsMetrics.get(i), new Subscriber<Result>()
+            {
+                @Override
+                public void onCompleted()
+                {
+                    if(partitionsToBeCompleted.decrementAndGet()==0)
+                    {
+                        serializedChild.onCompleted();
+                    }
+                }
+
+                @Override
+                public void onError(Throwable e)
+                {
+                    serializedChild.onError(e);
+                }
+
+                @Override
+                public void onNext(Result result)
+                {
+                    serializedChild.onNext(result);
+                }
+            });
+
+            Thread thread = new Thread(new Worker(i, dispatcher), "EventMonitor-worker-"+i);
+            thread.setDaemon(true);
+            thread.start();
+        }
+
+        // If the stream is abandoned (e.g. the monitor is stopped), the workers must not wait for it forever
+        add(Subscriptions.create(new Action0()
+        {
+            @Override
+            public void call()
+            {
+                buffer.cancel();
+            }
+        }));
+    }
+
+    @Override
+    public void onNext(Event event)
+    {
+        singleEvent[0] = event;
+        buffer.publish(singleEvent, 0, 1);
+        singleEvent[0] = null;
+    }
+
+    @Override
+    public void onNextBatch(Event[] events, int from, int to)
+    {
+        buffer.publish(events, from, to);
+    }
+
+    @Override
+    public void onTime(long now)
+    {
+        TimeSignal signal = new TimeSignal();
+        EventStamps.stamp(signal, now, -1);
+        onNext(signal);
+    }
+
+    @Override
+    public void onCompleted()
+    {
+        buffer.terminate(null);
+    }
+
+    @Override
+    public void onError(Throwable e)
+    {
+        buffer.terminate(e);
+    }
+
+    /**
+     * The loop of a worker thread: it reads the events from the buffer and sends them to its dispatcher
+     */
+    private class Worker implements Runnable
+    {
+        private final int index;
+        private final CheckDispatcher dispatcher;
+
+        private Worker(int index, CheckDispatcher dispatcher)
+        {
+            this.index = index;
+            this.dispatcher = dispatcher;
+        }
+
+        @Override
+        public void run()
+        {
+            try
+            {
+                read();
+            }
+            catch(Throwable e)
+            {
+                // A check failed: the results end with the error, and the other workers can stop too
+                dispatcher.onError(e);
+                buffer.cancel();
+            }
+            finally
+            {
+                // The producer must not wait for this worker anymore: if it was the last one, no need to receive events anymore
+                buffer.detach(index);
+                if(liveWorkers.decrementAndGet()==0)
+                {
+                    unsubscribe();
+                }
+            }
+        }
+
+        /**
+         * Helper to read the events from the buffer until the stream terminates or all the checks of the worker terminate
+         */
+        private void read()
+        {
+            Event[] ring = buffer.getRing();
+            long next = 0;
+            while(!dispatcher.isUnsubscribed())
+            {
+                long available = buffer.waitFor(next);
+                if(buffer.isCancelled()) return;
+
+                // The stream terminated and all the events have been read
+                if(available<next)
+                {
+                    Throwable error = buffer.getError();
+                    if(error!=null) dispatcher.onError(error);
+                    else dispatcher.onCompleted();
+                    return;
+                }
+
+                // Send the available events in batches, which are contiguous in the ring and end at the time signals
+                while(next<=available && !dispatcher.isUnsubscribed())
+                {
+                    int from = buffer.indexOf(next);
+                    int to = from+(int) Math.min(available-next+1, ring.length-from);
+                    int end = from;
+                    while(end<to && !(ring[end] instanceof TimeSignal)) end++;
+
+                    if(end>from) dispatcher.onNextBatch(ring, from, end);
+                    if(end<to)
+                    {
+                        dispatcher.onTime(ring[end].getTimestamp());
+                        end++;
+                    }
+                    next += end-from;
+                }
+                buffer.release(index, next-1);
+            }
+        }
+    }
+
+    /**
+     * The special event that carries a time signal to the workers
+     */
+    private static final class TimeSignal extends Event
+    {
+
+    }
+}
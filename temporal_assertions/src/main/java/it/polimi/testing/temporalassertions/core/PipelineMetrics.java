@@ -0,0 +1,204 @@
+package it.polimi.testing.temporalassertions.core;
+
+import android.support.annotation.NonNull;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * A snapshot of the flow of the events from the sources to the checks, see {@link EventMonitor#getPipelineMetrics()}
+ *
+ * It tells how many events each source produced (and at which rate, also recently), how many events are waiting to be checked and
+ * how long the events waited between their emission and the end of their evaluation. This allows to find the sources
+ * that overwhelm the checks and to size the buffers.
+ */
+public class PipelineMetrics
+{
+    private final List<Source> sources;
+    private final long eventsCount;
+    private final long backlog;
+    private final LatencyHistogram lag;
+
+    /**
+     * Constructor
+     * @param sources the metrics of each source
+     * @param eventsCount the number of events that have been checked
+     * @param backlog the number of events emitted and not checked yet
+     * @param lag the histogram of the lags (it must not be modified anymore)
+     */
+    PipelineMetrics(List<Source> sources, long eventsCount, long backlog, LatencyHistogram lag)
+    {
+        this.sources = Collections.unmodifiableList(sources);
+        this.eventsCount = eventsCount;
+        this.backlog = backlog;
+        this.lag = lag;
+    }
+
+    /**
+     * Getter
+     * @return the metrics of each source, in the order they were added (the custom events are the first source)
+     */
+    public List<Source> getSources()
+    {
+        return sources;
+    }
+
+    /**
+     * Getter
+     * @return the number of events that have been checked
+     */
+    public long getEventsCount()
+    {
+        return eventsCount;
+    }
+
+    /**
+     * Getter
+     * @return the number of events emitted by the sources and not checked yet (without the dropped ones)
+     */
+    public long getBacklog()
+    {
+        return backlog;
+    }
+
+    /**
+     * Gets a percentile of the lags of the events, i.e. the times between their emission by a source and the end
+     * of their evaluation by the checks (with parallel workers, the end of their publication to the workers)
+     * @param percentile the percentile, from 0 to 100 (100 means the maximum lag)
+     * @return the lag in nanoseconds (of the system time), with a relative error of about 3%, or 0 if no event
+     *         has been checked
+     */
+    public long getLagAtPercentile(double percentile)
+    {
+        return lag.getValueAtPercentile(percentile);
+    }
+
+    /**
+     * Getter
+     * @return the highest lag of the events in nanoseconds, see {@link PipelineMetrics#getLagAtPercentile(double)}
+     */
+    public long getMaxLag()
+    {
+        return lag.getMax();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @NonNull
+    @Override
+    public String toString()
+    {
+        StringBuilder sb = new StringBuilder();
+        sb.append(eventsCount).append(" events checked, ").append(backlog).append(" waiting, lag 50% ")
+                .append(getLagAtPercentile(50)).append(" ns, 99% ").append(getLagAtPercentile(99)).append(" ns, max ")
+                .append(getMaxLag()).append(" ns");
+        for(Source source: sources)
+        {
+            sb.append("\n").append(source);
+        }
+        return sb.toString();
+    }
+
+    /**
+     * The metrics of a single source of events
+     */
+    public static class Source
+    {
+        private final String tag;
+        private final BackpressurePolicy policy;
+        private final long eventsCount;
+        private final long droppedCount;
+        private final long elapsedNanos;
+        private final double recentRate;
+
+        /**
+         * Constructor
+         * @param tag the tag of the source
+         * @param policy the backpressure policy of the source
+         * @param eventsCount the number of events emitted by the source
+         * @param droppedCount the number of events of the source dropped by its policy
+         * @param elapsedNanos the time elapsed since the source was added
+         * @param recentRate the recent number of events per second
+         */
+        Source(String tag, BackpressurePolicy policy, long eventsCount, long droppedCount, long elapsedNanos, double recentRate)
+        {
+            this.tag = tag;
+            this.policy = policy;
+            this.eventsCount = eventsCount;
+            this.droppedCount = droppedCount;
+            this.elapsedNanos = elapsedNanos;
+            this.recentRate = recentRate;
+        }
+
+        /**
+         * Getter
+         * @return the tag of the source, see {@link EventMonitor#observe(String, rx.Observable, BackpressurePolicy)}
+         */
+        public String getTag()
+        {
+            return tag;
+        }
+
+        /**
+         * Getter
+         * @return the number of events emitted by the source
+         */
+        public long getEventsCount()
+        {
+            return eventsCount;
+        }
+
+        /**
+         * Getter
+         * @return the backpressure policy of the source
+         */
+        public BackpressurePolicy getPolicy()
+        {
+            return policy;
+        }
+
+        /**
+         * Getter
+         * @return the number of events emitted by the source and dropped by its backpressure policy without being
+         *         checked (included in {@link Source#getEventsCount()})
+         */
+        public long getDroppedCount()
+        {
+            return droppedCount;
+        }
+
+        /**
+         * Getter
+         * @return the mean number of events per second emitted by the source since it was added
+         */
+        public double getRate()
+        {
+            return elapsedNanos<=0 ? 0 : eventsCount*1e9/elapsedNanos;
+        }
+
+        /**
+         * Getter
+         * @return the recent number of events per second emitted by the source, i.e. the rate of each second decayed
+         *         exponentially, so that the older seconds count less (mostly the last 10 seconds): unlike the mean
+         *         rate, it shows a source that starts flooding the stream after a long quiet time
+         */
+        public double getRecentRate()
+        {
+            return recentRate;
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @NonNull
+        @Override
+        public String toString()
+        {
+            return tag+": "+eventsCount+" events, "+String.format(Locale.US, "%.1f", getRate())+" events/s ("+
+                    String.format(Locale.US, "%.1f", recentRate)+" recently)"+
+                    (droppedCount>0 ? ", "+droppedCount+" dropped ("+policy+")" : "");
+        }
+    }
+}
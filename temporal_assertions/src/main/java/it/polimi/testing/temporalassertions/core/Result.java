@@ -1,15 +1,27 @@
 package it.polimi.testing.temporalassertions.core;
 
+import it.polimi.testing.temporalassertions.events.Event;
+
 /**
  * The result of a check, contains an outcome (success, failure or warning) and a description
+ *
+ * The description is built from the parts provided by the check (matchers, events, counters...) only when
+ * it is read, so that the results that are never printed do not cost their text.
  */
 public class Result
 {
+    private final static Event[] NO_WITNESSES = new Event[0];
+
     private final Outcome outcome;
-    private final String report;
+    private final CharSequence report;
 
+    private Event[] witnesses = NO_WITNESSES;
+    private int counter = 0;
     private String userFailureMessage;
     private String linkedCheckDescription;
+    private Check linkedCheck;
+    private CheckMetrics metrics;
+    private long droppedEventsCount = 0;
 
     /**
      * Constructor
@@ -17,6 +29,16 @@ public class Result
      * @param report a message describing the result
      */
     public Result(Outcome outcome, String report)
+    {
+        this(outcome, (CharSequence) report);
+    }
+
+    /**
+     * Constructor
+     * @param outcome the outcome of the check
+     * @param report a message describing the result, rendered only when {@link Result#getReport()} is called
+     */
+    Result(Outcome outcome, CharSequence report)
     {
         this.outcome = outcome;
         this.report = report;
@@ -36,10 +58,111 @@ public class Result
      * @return a message describing the result
      */
     public String getReport()
+    {
+        return report==null ? null : report.toString();
+    }
+
+    /**
+     * Getter
+     * @return the message describing the result, without rendering it
+     */
+    CharSequence getLazyReport()
     {
         return report;
     }
 
+    /**
+     * Getter
+     * @return the events that determined the outcome (e.g. the event that violated the check), possibly empty
+     */
+    public Event[] getWitnesses()
+    {
+        return witnesses;
+    }
+
+    /**
+     * Setter
+     * @param witnesses the events that determined the outcome
+     */
+    void setWitnesses(Event[] witnesses)
+    {
+        this.witnesses = witnesses;
+    }
+
+    /**
+     * Getter
+     * @return the number of events counted by the check (0 if the check does not count events)
+     */
+    public int getCounter()
+    {
+        return counter;
+    }
+
+    /**
+     * Setter
+     * @param counter the number of events counted by the check
+     */
+    void setCounter(int counter)
+    {
+        this.counter = counter;
+    }
+
+    /**
+     * Getter
+     * @return the check that originated this result, or null if it was not applied by the {@link EventMonitor}
+     */
+    public Check getLinkedCheck()
+    {
+        return linkedCheck;
+    }
+
+    /**
+     * Setter
+     * @param check the check that originated this result
+     */
+    void setLinkedCheck(Check check)
+    {
+        this.linkedCheck = check;
+    }
+
+    /**
+     * Getter
+     * @return the runtime costs of the check until this result, or null if it was not applied by a monitor
+     */
+    public CheckMetrics getMetrics()
+    {
+        return metrics;
+    }
+
+    /**
+     * Setter
+     * @param metrics the runtime costs of the check until this result
+     */
+    void setMetrics(CheckMetrics metrics)
+    {
+        this.metrics = metrics;
+    }
+
+    /**
+     * Getter
+     * @return the number of events dropped by the backpressure policies of the sources before this result (see
+     *         {@link BackpressurePolicy}), counting only the events of the classes that the check could match: if
+     *         positive, the check evaluated a lossy stream and its outcome may differ from the one on the whole stream
+     */
+    public long getDroppedEventsCount()
+    {
+        return droppedEventsCount;
+    }
+
+    /**
+     * Setter
+     * @param droppedEventsCount the number of events that the check could match, dropped before this result
+     */
+    void setDroppedEventsCount(long droppedEventsCount)
+    {
+        this.droppedEventsCount = droppedEventsCount;
+    }
+
     /**
      * Setter
      * @param userFailureMessage the message provided by the user to be displayed in case of failure
@@ -64,7 +187,9 @@ public class Result
     @Override
     public String toString()
     {
+        String checkDescription = linkedCheckDescription==null && linkedCheck!=null ? linkedCheck.getDescription() : linkedCheckDescription;
         String failureMessage = Outcome.FAILURE.equals(outcome) ? "      ERROR: "+userFailureMessage+"\n" : "";
-        return "["+outcome.name()+"] "+linkedCheckDescription+"\n"+failureMessage+"      REPORT: "+getReport();
+        String droppedMessage = droppedEventsCount>0 ? "\n      WARNING: "+droppedEventsCount+" events that the check could match were dropped before this result" : "";
+        return "["+outcome.name()+"] "+checkDescription+"\n"+failureMessage+"      REPORT: "+getReport()+droppedMessage;
     }
 }
@@ -0,0 +1,121 @@
+package it.polimi.testing.temporalassertions.core;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Describes which events of the stream are kept in memory by the monitor to be replayed to
+ * the subscribers that arrive late, see {@link EventMonitor#setRetentionPolicy(RetentionPolicy)}
+ *
+ * The bounded policies are backed by a ring buffer that is allocated once, so the memory used by
+ * the monitor does not grow with the length of the session.
+ */
+public final class RetentionPolicy
+{
+    enum Kind
+    {
+        UNTIL_SUBSCRIBED, LAST_EVENTS, LAST_PERIOD, UNBOUNDED
+    }
+
+    private final Kind kind;
+    private final int capacity;
+    private final long maxAgeNanos;
+
+    /**
+     * Constructor
+     * @param kind the kind of policy
+     * @param capacity the maximum number of retained events (ignored if unbounded)
+     * @param maxAgeNanos the maximum age of the retained events (only for LAST_PERIOD)
+     */
+    private RetentionPolicy(Kind kind, int capacity, long maxAgeNanos)
+    {
+        this.kind = kind;
+        this.capacity = capacity;
+        this.maxAgeNanos = maxAgeNanos;
+    }
+
+    /**
+     * No event is retained once the event subscriber and all the checks have subscribed to the stream.
+     * This is the default policy of the monitor.
+     * @return the retention policy
+     */
+    public static RetentionPolicy untilSubscribed()
+    {
+        return new RetentionPolicy(Kind.UNTIL_SUBSCRIBED, 0, 0);
+    }
+
+    /**
+     * Only the last events of the stream are retained
+     * @param count the maximum number of retained events
+     * @return the retention policy
+     */
+    public static RetentionPolicy lastEvents(int count)
+    {
+        if(count<=0) throw new IllegalArgumentException("The number of retained events must be positive");
+        return new RetentionPolicy(Kind.LAST_EVENTS, count, 0);
+    }
+
+    /**
+     * Only the events received in the last period of time are retained
+     * @param time the length of the period
+     * @param unit the unit of {@code time}
+     * @param capacity the maximum number of retained events, i.e. the size of the buffer
+     * @return the retention policy
+     */
+    public static RetentionPolicy lastPeriod(long time, TimeUnit unit, int capacity)
+    {
+        if(time<=0) throw new IllegalArgumentException("The retention period must be positive");
+        if(capacity<=0) throw new IllegalArgumentException("The number of retained events must be positive");
+        return new RetentionPolicy(Kind.LAST_PERIOD, capacity, unit.toNanos(time));
+    }
+
+    /**
+     * All the events of the session are retained (memory grows with the length of the session)
+     * @return the retention policy
+     */
+    public static RetentionPolicy unbounded()
+    {
+        return new RetentionPolicy(Kind.UNBOUNDED, 0, 0);
+    }
+
+    /**
+     * Getter
+     * @return the kind of policy
+     */
+    Kind getKind()
+    {
+        return kind;
+    }
+
+    /**
+     * Getter
+     * @return the maximum number of retained events (ignored if unbounded)
+     */
+    int getCapacity()
+    {
+        return capacity;
+    }
+
+    /**
+     * Getter
+     * @return the maximum age in nanoseconds of the retained events (only for LAST_PERIOD)
+     */
+    long getMaxAgeNanos()
+    {
+        return maxAgeNanos;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String toString()
+    {
+        switch(kind)
+        {
+            case LAST_EVENTS: return "last "+capacity+" events";
+            case LAST_PERIOD: return "events of the last "+maxAgeNanos+"ns (at most "+capacity+")";
+            case UNBOUNDED: return "all events";
+            default: return "no events once subscribed";
+        }
+    }
+}
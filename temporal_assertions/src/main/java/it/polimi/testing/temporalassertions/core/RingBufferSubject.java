@@ -0,0 +1,441 @@
+package it.polimi.testing.temporalassertions.core;
+
+import java.util.Arrays;
+
+import rx.Subscriber;
+import rx.functions.Action0;
+import rx.subjects.Subject;
+import rx.subscriptions.Subscriptions;
+
+/**
+ * A subject that replays to its late subscribers only the items allowed by a {@link RetentionPolicy},
+ * instead of the whole stream like {@link rx.subjects.ReplaySubject#create()}
+ *
+ * The bounded policies use a ring buffer allocated once at creation. The subject expects its
+ * onNext/onCompleted/onError to be called by one thread at a time (as required by Rx), while
+ * subscriptions can happen concurrently from any thread.
+ *
+ * Items can also be sent in batches: the subscribers that are {@link BatchObserver}s receive the whole
+ * batch at once, the others receive the items one by one.
+ *
+ * The subject can also signal the current time to the subscribers that are {@link TimeObserver}s, so that they
+ * know how the time goes on even if no item arrives. The time is not retained.
+ * @param <T> the type of the items
+ */
+final class RingBufferSubject<T> extends Subject<T, T>
+{
+    private final State<T> state;
+
+    /**
+     * Constructor
+     * @param onSubscribe the function called on subscription
+     * @param state the state shared with the subscription function
+     */
+    private RingBufferSubject(OnSubscribe<T> onSubscribe, State<T> state)
+    {
+        super(onSubscribe);
+        this.state = state;
+    }
+
+    /**
+     * Creates a new subject
+     * @param policy the policy that decides which items are retained
+     * @param <T> the type of the items
+     * @return the subject
+     */
+    static <T> RingBufferSubject<T> create(RetentionPolicy policy)
+    {
+        final State<T> state = new State<>(policy);
+        return new RingBufferSubject<>(new OnSubscribe<T>()
+        {
+            @Override
+            public void call(Subscriber<? super T> child)
+            {
+                state.subscribe(child);
+            }
+        }, state);
+    }
+
+    /**
+     * Tells the subject that all the expected subscribers have subscribed: with the
+     * {@link RetentionPolicy#untilSubscribed()} policy, the retained items are released
+     * and no further item is retained
+     */
+    void onAllSubscribed()
+    {
+        state.onAllSubscribed();
+    }
+
+    /**
+     * Getter
+     * @return the number of items currently retained
+     */
+    int getRetainedCount()
+    {
+        return state.getRetainedCount();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean hasObservers()
+    {
+        return state.subscribers.length>0;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void onNext(T t)
+    {
+        state.onNext(t);
+    }
+
+    /**
+     * Sends a batch of items, in order
+     * @param items the array that contains the items (it can be reused by the caller after this call)
+     * @param from the index of the first item (inclusive)
+     * @param to the index of the last item (exclusive)
+     */
+    void onNextBatch(T[] items, int from, int to)
+    {
+        state.onNextBatch(items, from, to);
+    }
+
+    /**
+     * Signals the current time, in order with the items
+     * @param now the current time in nanoseconds
+     */
+    void onTime(long now)
+    {
+        state.onTime(now);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void onCompleted()
+    {
+        state.onTerminate(null);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void onError(Throwable e)
+    {
+        state.onTerminate(e);
+    }
+
+    /**
+     * The buffer and the subscribers of the subject
+     * @param <T> the type of the items
+     */
+    private static class State<T>
+    {
+        private final static Subscriber<?>[] NO_SUBSCRIBERS = new Subscriber<?>[0];
+        private final static int INITIAL_GROWABLE_CAPACITY = 16;
+
+        private final RetentionPolicy.Kind kind;
+        private final long maxAgeNanos;
+
+        private Object[] buffer;
+        private long[] times;
+        private int head = 0;
+        private int size = 0;
+        private boolean retaining = true;
+
+        private volatile Subscriber<?>[] subscribers = NO_SUBSCRIBERS;
+        private boolean done = false;
+        private Throwable error;
+
+        /**
+         * Constructor
+         * @param policy the retention policy
+         */
+        State(RetentionPolicy policy)
+        {
+            this.kind = policy.getKind();
+            this.maxAgeNanos = policy.getMaxAgeNanos();
+
+            switch(kind)
+            {
+                case LAST_PERIOD:
+                    times = new long[policy.getCapacity()];
+                    buffer = new Object[policy.getCapacity()];
+                    break;
+
+                case LAST_EVENTS:
+                    buffer = new Object[policy.getCapacity()];
+                    break;
+
+                default:
+                    buffer = new Object[INITIAL_GROWABLE_CAPACITY];
+                    break;
+            }
+        }
+
+        /**
+         * Replays the retained items to the new subscriber and registers it
+         * @param child the subscriber
+         */
+        @SuppressWarnings("unchecked")
+        void subscribe(final Subscriber<? super T> child)
+        {
+            synchronized(this)
+            {
+                evictExpired();
+                for(int i=0; i<size && !child.isUnsubscribed(); i++)
+                {
+                    child.onNext((T) buffer[(head+i)%buffer.length]);
+                }
+
+                if(done)
+                {
+                    if(error!=null) child.onError(error);
+                    else child.onCompleted();
+                    return;
+                }
+
+                Subscriber<?>[] newSubscribers = Arrays.copyOf(subscribers, subscribers.length+1);
+                newSubscribers[subscribers.length] = child;
+                subscribers = newSubscribers;
+            }
+
+            child.add(Subscriptions.create(new Action0()
+            {
+                @Override
+                public void call()
+                {
+                    unsubscribe(child);
+                }
+            }));
+        }
+
+        /**
+         * Removes a subscriber
+         * @param child the subscriber
+         */
+        synchronized void unsubscribe(Subscriber<?> child)
+        {
+            for(int i=0; i<subscribers.length; i++)
+            {
+                if(subscribers[i]==child)
+                {
+                    Subscriber<?>[] newSubscribers = new Subscriber<?>[subscribers.length-1];
+                    System.arraycopy(subscribers, 0, newSubscribers, 0, i);
+                    System.arraycopy(subscribers, i+1, newSubscribers, i, subscribers.length-i-1);
+                    subscribers = newSubscribers;
+                    return;
+                }
+            }
+        }
+
+        /**
+         * Retains the item (if the policy allows it) and sends it to all the subscribers
+         * @param t the item
+         */
+        @SuppressWarnings("unchecked")
+        void onNext(T t)
+        {
+            Subscriber<?>[] current;
+            synchronized(this)
+            {
+                if(done) return;
+                if(retaining) retain(t);
+                current = subscribers;
+            }
+
+            for(Subscriber<?> subscriber: current)
+            {
+                ((Subscriber<? super T>) subscriber).onNext(t);
+            }
+        }
+
+        /**
+         * Retains the items (if the policy allows it) and sends them to all the subscribers
+         * @param items the array that contains the items
+         * @param from the index of the first item (inclusive)
+         * @param to the index of the last item (exclusive)
+         */
+        @SuppressWarnings("unchecked")
+        void onNextBatch(T[] items, int from, int to)
+        {
+            Subscriber<?>[] current;
+            synchronized(this)
+            {
+                if(done) return;
+                if(retaining)
+                {
+                    for(int i=from; i<to; i++) retain(items[i]);
+                }
+                current = subscribers;
+            }
+
+            for(Subscriber<?> subscriber: current)
+            {
+                if(subscriber instanceof BatchObserver)
+                {
+                    ((BatchObserver<T>) subscriber).onNextBatch(items, from, to);
+                }
+                else
+                {
+                    for(int i=from; i<to && !subscriber.isUnsubscribed(); i++)
+                    {
+                        ((Subscriber<? super T>) subscriber).onNext(items[i]);
+                    }
+                }
+            }
+        }
+
+        /**
+         * Sends the current time to all the subscribers that want it
+         * @param now the current time in nanoseconds
+         */
+        void onTime(long now)
+        {
+            Subscriber<?>[] current;
+            synchronized(this)
+            {
+                if(done) return;
+                current = subscribers;
+            }
+
+            for(Subscriber<?> subscriber: current)
+            {
+                if(subscriber instanceof TimeObserver)
+                {
+                    ((TimeObserver) subscriber).onTime(now);
+                }
+            }
+        }
+
+        /**
+         * Terminates the stream: the retained items stay available for the late subscribers
+         * @param e the error, or null if the stream completed
+         */
+        void onTerminate(Throwable e)
+        {
+            Subscriber<?>[] current;
+            synchronized(this)
+            {
+                if(done) return;
+                done = true;
+                error = e;
+                current = subscribers;
+                subscribers = NO_SUBSCRIBERS;
+            }
+
+            for(Subscriber<?> subscriber: current)
+            {
+                if(e!=null) subscriber.onError(e);
+                else subscriber.onCompleted();
+            }
+        }
+
+        /**
+         * Stops retaining items if the policy says so
+         */
+        synchronized void onAllSubscribed()
+        {
+            if(kind==RetentionPolicy.Kind.UNTIL_SUBSCRIBED)
+            {
+                retaining = false;
+                buffer = new Object[0];
+                head = 0;
+                size = 0;
+            }
+        }
+
+        /**
+         * Getter
+         * @return the number of items currently retained
+         */
+        synchronized int getRetainedCount()
+        {
+            evictExpired();
+            return size;
+        }
+
+        /**
+         * Helper to add an item to the buffer, overwriting the oldest one if the buffer is bounded and full
+         * @param t the item
+         */
+        private void retain(T t)
+        {
+            if(size==buffer.length)
+            {
+                // Growable buffer: double the size
+                if(kind==RetentionPolicy.Kind.UNBOUNDED || kind==RetentionPolicy.Kind.UNTIL_SUBSCRIBED)
+                {
+                    Object[] newBuffer = new Object[Math.max(INITIAL_GROWABLE_CAPACITY, buffer.length*2)];
+                    for(int i=0; i<size; i++) newBuffer[i] = buffer[(head+i)%buffer.length];
+                    buffer = newBuffer;
+                    head = 0;
+                }
+
+                // Ring buffer: drop the oldest item
+                else
+                {
+                    buffer[head] = null;
+                    head = (head+1)%buffer.length;
+                    size--;
+                }
+            }
+
+            int tail = (head+size)%buffer.length;
+            buffer[tail] = t;
+            if(times!=null) times[tail] = System.nanoTime();
+            size++;
+
+            evictExpired();
+        }
+
+        /**
+         * Helper to drop the items that are too old (only for time-bounded policies)
+         */
+        private void evictExpired()
+        {
+            if(times==null) return;
+
+            long now = System.nanoTime();
+            while(size>0 && now-times[head]>maxAgeNanos)
+            {
+                buffer[head] = null;
+                head = (head+1)%buffer.length;
+                size--;
+            }
+        }
+    }
+
+    /**
+     * Implemented by the subscribers that can receive a batch of items at once
+     * @param <T> the type of the items
+     */
+    interface BatchObserver<T>
+    {
+        /**
+         * Receives a batch of items, in order
+         * @param items the array that contains the items (it must not be retained after the call)
+         * @param from the index of the first item (inclusive)
+         * @param to the index of the last item (exclusive)
+         */
+        void onNextBatch(T[] items, int from, int to);
+    }
+
+    /**
+     * Implemented by the subscribers that want to know the current time even if no item arrives
+     */
+    interface TimeObserver
+    {
+        /**
+         * Receives the current time
+         * @param now the current time in nanoseconds, it never decreases
+         */
+        void onTime(long now);
+    }
+}
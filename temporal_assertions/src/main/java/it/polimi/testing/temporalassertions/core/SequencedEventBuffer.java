@@ -0,0 +1,306 @@
+package it.polimi.testing.temporalassertions.core;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+import it.polimi.testing.temporalassertions.events.Event;
+
+/**
+ * A bounded ring buffer with a single producer and a fixed number of consumers, each reading all the events in order
+ *
+ * Every published event gets the next sequence number and is stored at {@code sequence % capacity}. Each consumer
+ * tracks the sequence of the last event it has consumed, and the producer never overwrites an event that has not
+ * been consumed by all the consumers (it waits instead). The consumers read the events directly from the ring, so
+ * the events are never copied.
+ *
+ * Once all the consumers have passed a slot, the slot is cleared (by the consumer that passes it last, or by the
+ * producer if it needs the room first), so that the ring does not keep the old events reachable. The producer only
+ * writes the slots that have been cleared.
+ *
+ * A consumer that finds no new event first spins, then yields and finally blocks until the producer publishes or
+ * the stream terminates. The buffer can also be cancelled, which releases both the producer and the consumers.
+ */
+final class SequencedEventBuffer
+{
+    private final static int SPIN_TRIES = 100;
+    private final static int YIELD_TRIES = 200;
+    private final static long PARK_NANOS = 50000;
+
+    private final Event[] ring;
+    private final int mask;
+
+    private final AtomicLong published = new AtomicLong(-1);
+    private final AtomicLong[] consumed;
+    private volatile boolean done = false;
+    private volatile boolean cancelled = false;
+    private volatile Throwable error;
+
+    private final AtomicLong cleared = new AtomicLong(-1);
+    private final AtomicBoolean clearing = new AtomicBoolean();
+
+    private final Object lock = new Object();
+    private final AtomicInteger waitingConsumers = new AtomicInteger();
+
+    private long nextSequence = 0;
+    private long cachedCleared = -1;
+
+    /**
+     * Constructor
+     * @param capacity the number of events in the ring (rounded up to a power of two)
+     * @param consumers the number of consumers
+     */
+    SequencedEventBuffer(int capacity, int consumers)
+    {
+        int size = Integer.highestOneBit(Math.max(1, capacity-1))<<1;
+        this.ring = new Event[size];
+        this.mask = size-1;
+
+        this.consumed = new AtomicLong[consumers];
+        for(int i=0; i<consumers; i++)
+        {
+            consumed[i] = new AtomicLong(-1);
+        }
+    }
+
+    /**
+     * Publishes some events, waiting if the consumers are too far behind. Must be called only by the producer.
+     * The events are discarded if the buffer is cancelled.
+     * @param events the array that contains the events
+     * @param from the index of the first event (inclusive)
+     * @param to the index of the last event (exclusive)
+     */
+    void publish(Event[] events, int from, int to)
+    {
+        int i = from;
+        while(i<to)
+        {
+            // Fill all the free slots, then make the events visible at once
+            long limit = waitForCapacity(nextSequence);
+            if(cancelled) return;
+            while(i<to && nextSequence<=limit)
+            {
+                ring[(int) nextSequence & mask] = events[i++];
+                nextSequence++;
+            }
+
+            // A full write, so that the blocked consumers are either seen here or see the new events
+            published.set(nextSequence-1);
+            if(waitingConsumers.get()>0) signalConsumers();
+        }
+    }
+
+    /**
+     * Terminates the stream after the events already published. Must be called only by the producer.
+     * @param e the error, or null if the stream completed
+     */
+    void terminate(Throwable e)
+    {
+        error = e;
+        done = true;
+        signalConsumers();
+    }
+
+    /**
+     * Cancels the stream: the consumers stop waiting (without reading the remaining events) and the producer
+     * stops publishing. Can be called by any thread.
+     */
+    void cancel()
+    {
+        cancelled = true;
+        done = true;
+        signalConsumers();
+    }
+
+    /**
+     * Getter
+     * @return true if the buffer has been cancelled
+     */
+    boolean isCancelled()
+    {
+        return cancelled;
+    }
+
+    /**
+     * Waits until the given sequence is published or the stream is terminated. Must be called only by a consumer.
+     * @param sequence the sequence the consumer wants to read
+     * @return the last published sequence, which is lower than the given one only if the stream terminated (or
+     *         was cancelled)
+     */
+    long waitFor(long sequence)
+    {
+        int tries = 0;
+        while(true)
+        {
+            long available = published.get();
+            if(available>=sequence) return available;
+
+            // Read the published sequence again after the flag, the last events could have been published in the meantime
+            if(done) return published.get();
+
+            if(tries<YIELD_TRIES) tries = backOff(tries);
+            else block(sequence);
+        }
+    }
+
+    /**
+     * Getter
+     * @return the array of the ring, to be read by the consumers at {@link SequencedEventBuffer#indexOf(long)}
+     */
+    Event[] getRing()
+    {
+        return ring;
+    }
+
+    /**
+     * Gets the index in the ring of the event with the given sequence
+     * @param sequence the sequence
+     * @return the index in the ring
+     */
+    int indexOf(long sequence)
+    {
+        return (int) sequence & mask;
+    }
+
+    /**
+     * Getter
+     * @return the error that terminated the stream, or null if it completed
+     */
+    Throwable getError()
+    {
+        return error;
+    }
+
+    /**
+     * Tells the producer that the consumer has read all events up to the given sequence (inclusive)
+     * @param consumer the index of the consumer
+     * @param sequence the sequence of the last consumed event
+     */
+    void release(int consumer, long sequence)
+    {
+        consumed[consumer].set(sequence);
+        clear();
+    }
+
+    /**
+     * Tells the producer that the consumer will not read any more events
+     * @param consumer the index of the consumer
+     */
+    void detach(int consumer)
+    {
+        consumed[consumer].set(Long.MAX_VALUE);
+        clear();
+    }
+
+    /**
+     * Helper to wait until the producer can write the given sequence
+     * @param sequence the sequence to be written
+     * @return the highest sequence that can be written without overwriting uncleared events
+     */
+    private long waitForCapacity(long sequence)
+    {
+        int tries = 0;
+        while(sequence-ring.length>cachedCleared && !cancelled)
+        {
+            clear();
+            cachedCleared = cleared.get();
+
+            if(sequence-ring.length>cachedCleared) tries = backOff(tries);
+        }
+        return cachedCleared+ring.length;
+    }
+
+    /**
+     * Helper to clear the slots that all the consumers have passed, can be called by any thread. If another
+     * thread is clearing, it tries again after it, unless the other thread already cleared everything.
+     */
+    private void clear()
+    {
+        while(clearing.compareAndSet(false, true))
+        {
+            long from = cleared.get();
+            long to = published.get();
+            for(AtomicLong sequenceOfConsumer: consumed)
+            {
+                to = Math.min(to, sequenceOfConsumer.get());
+            }
+            for(long sequence=from+1; sequence<=to; sequence++)
+            {
+                ring[(int) sequence & mask] = null;
+            }
+
+            // The producer can write the cleared slots only after they are null
+            if(to>from) cleared.set(to);
+            clearing.set(false);
+
+            if(to<=from || !canClear()) return;
+        }
+    }
+
+    /**
+     * Helper to know if some slots could be cleared
+     * @return true if all the consumers have passed a slot that is not cleared yet
+     */
+    private boolean canClear()
+    {
+        long to = published.get();
+        for(AtomicLong sequenceOfConsumer: consumed)
+        {
+            to = Math.min(to, sequenceOfConsumer.get());
+        }
+        return to>cleared.get();
+    }
+
+    /**
+     * Helper to block a consumer until the given sequence is published or the stream terminates
+     * @param sequence the sequence the consumer wants to read
+     */
+    private void block(long sequence)
+    {
+        waitingConsumers.incrementAndGet();
+        try
+        {
+            synchronized(lock)
+            {
+                while(published.get()<sequence && !done)
+                {
+                    lock.wait();
+                }
+            }
+        }
+        catch(InterruptedException e)
+        {
+            // An interrupted worker cannot wait for the stream anymore
+            Thread.currentThread().interrupt();
+            cancel();
+        }
+        finally
+        {
+            waitingConsumers.decrementAndGet();
+        }
+    }
+
+    /**
+     * Helper to wake up the blocked consumers
+     */
+    private void signalConsumers()
+    {
+        synchronized(lock)
+        {
+            lock.notifyAll();
+        }
+    }
+
+    /**
+     * Helper to wait a little: first busy spinning, then yielding and finally parking the thread
+     * @param tries the number of times the caller has already waited
+     * @return the new number of tries
+     */
+    private static int backOff(int tries)
+    {
+        if(tries>=YIELD_TRIES) LockSupport.parkNanos(PARK_NANOS);
+        else if(tries>=SPIN_TRIES) Thread.yield();
+        return tries+1;
+    }
+}
@@ -0,0 +1,162 @@
+package it.polimi.testing.temporalassertions.core;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import it.polimi.testing.temporalassertions.events.Event;
+import rx.Observable;
+import rx.Scheduler;
+import rx.Subscriber;
+import rx.Subscription;
+import rx.functions.Action0;
+import rx.subscriptions.Subscriptions;
+
+/**
+ * The sources of the monitored stream, see {@link EventMonitor#observe(String, Observable, BackpressurePolicy)}
+ *
+ * The sources are not merged into a single observable: once the registry is connected to the ingestion, each
+ * source is subscribed on its own and adds its events directly to the queue of the ingestion, so the cost of
+ * an event does not depend on the number of sources. Sources can be added and removed at any time: a source
+ * added before the connection is subscribed when the registry connects, one added later is subscribed
+ * immediately.
+ */
+final class SourceRegistry
+{
+    private final Scheduler subscribeScheduler;
+    private final List<Source> sources = new ArrayList<>();
+    private int addedCount = 0;
+    private EventIngestion ingestion;
+    private boolean closed = false;
+
+    /**
+     * Constructor
+     * @param subscribeScheduler the scheduler on which the sources are subscribed, unless they choose their own
+     */
+    SourceRegistry(Scheduler subscribeScheduler)
+    {
+        this.subscribeScheduler = subscribeScheduler;
+    }
+
+    /**
+     * Adds a source, can be called by any thread
+     * @param tag the tag of the source in the metrics (if null, a tag with the position of the source is used)
+     * @param observable the events of the source
+     * @param policy the backpressure policy of the source
+     * @return the subscription that removes the source when unsubscribed (already unsubscribed if the registry
+     *         is closed)
+     */
+    Subscription add(String tag, Observable<? extends Event> observable, BackpressurePolicy policy)
+    {
+        return add(tag, observable, policy, subscribeScheduler);
+    }
+
+    /**
+     * Adds a source that is subscribed on its own scheduler, can be called by any thread
+     * @param tag the tag of the source in the metrics (if null, a tag with the position of the source is used)
+     * @param observable the events of the source
+     * @param policy the backpressure policy of the source
+     * @param scheduler the scheduler on which the source is subscribed
+     * @return the subscription that removes the source when unsubscribed (already unsubscribed if the registry
+     *         is closed)
+     */
+    Subscription add(String tag, Observable<? extends Event> observable, BackpressurePolicy policy, Scheduler scheduler)
+    {
+        final Source source;
+        synchronized(this)
+        {
+            if(closed) return Subscriptions.unsubscribed();
+
+            source = new Source(tag==null ? "source-"+addedCount : tag, observable, policy, scheduler);
+            addedCount++;
+            sources.add(source);
+            if(ingestion!=null) subscribe(source);
+        }
+
+        return Subscriptions.create(new Action0()
+        {
+            @Override
+            public void call()
+            {
+                remove(source);
+            }
+        });
+    }
+
+    /**
+     * Subscribes all the sources (and the ones that will be added) to the given ingestion
+     * @param ingestion the ingestion of the events
+     */
+    synchronized void connect(EventIngestion ingestion)
+    {
+        if(closed || this.ingestion!=null) return;
+
+        this.ingestion = ingestion;
+        for(Source source: sources)
+        {
+            subscribe(source);
+        }
+    }
+
+    /**
+     * Removes all the sources, the ones added later are ignored
+     */
+    synchronized void close()
+    {
+        closed = true;
+        for(Source source: sources)
+        {
+            if(source.subscriber!=null) source.subscriber.unsubscribe();
+        }
+        sources.clear();
+    }
+
+    /**
+     * Getter
+     * @return the number of sources currently in the registry
+     */
+    synchronized int size()
+    {
+        return sources.size();
+    }
+
+    /**
+     * Helper to remove a source, unsubscribing it if needed
+     * @param source the source
+     */
+    private synchronized void remove(Source source)
+    {
+        if(!sources.remove(source)) return;
+
+        if(source.subscriber!=null) ingestion.removeSourceSubscriber(source.subscriber);
+    }
+
+    /**
+     * Helper to subscribe a source to the ingestion
+     * @param source the source
+     */
+    private void subscribe(Source source)
+    {
+        source.subscriber = ingestion.newSourceSubscriber(source.tag, source.policy);
+        source.observable.subscribeOn(source.scheduler).subscribe(source.subscriber);
+    }
+
+    /**
+     * Internal class that holds a source and, once connected, its subscriber
+     */
+    private static class Source
+    {
+        private final String tag;
+        private final Observable<? extends Event> observable;
+        private final BackpressurePolicy policy;
+        private final Scheduler scheduler;
+        private Subscriber<Event> subscriber;
+
+        private Source(String tag, Observable<? extends Event> observable, BackpressurePolicy policy, Scheduler scheduler)
+        {
+            this.tag = tag;
+            this.observable = observable;
+            this.policy = policy;
+            this.scheduler = scheduler;
+        }
+    }
+}
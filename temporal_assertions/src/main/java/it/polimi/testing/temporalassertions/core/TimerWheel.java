@@ -0,0 +1,181 @@
+package it.polimi.testing.temporalassertions.core;
+
+/**
+ * A hashed timer wheel that keeps the pending deadlines of the checks
+ *
+ * The time is divided in ticks, and each timeout is kept in the bucket of the tick of its deadline (modulo
+ * the number of buckets), in a doubly linked list: scheduling and cancelling a timeout cost O(1), and advancing
+ * the time only visits the buckets of the elapsed ticks. A timeout whose deadline is more than a full rotation
+ * away simply stays in its bucket until the wheel reaches it again.
+ *
+ * The wheel is not thread-safe: it must be used by the thread that delivers the events to the checks.
+ */
+final class TimerWheel
+{
+    private final long tickNanos;
+    private final Timeout[] buckets;
+    private final int mask;
+
+    private boolean started = false;
+    private long origin;
+    private long currentTick = 0;
+    private int pending = 0;
+
+    /**
+     * Constructor
+     * @param tickNanos the duration of a tick in nanoseconds
+     * @param size the number of buckets (rounded up to a power of two)
+     */
+    TimerWheel(long tickNanos, int size)
+    {
+        int buckets = Integer.highestOneBit(Math.max(1, size-1))<<1;
+        this.tickNanos = tickNanos;
+        this.buckets = new Timeout[buckets];
+        this.mask = buckets-1;
+    }
+
+    /**
+     * Schedules a timeout, replacing its previous deadline if it is already scheduled
+     * @param timeout the timeout
+     * @param deadline the time (in nanoseconds) after which the timeout expires
+     */
+    void schedule(Timeout timeout, long deadline)
+    {
+        cancel(timeout);
+        start(deadline);
+
+        // Deadlines in the past go to the current bucket, which is visited again by the next advance
+        int bucket = (int) Math.max(currentTick, tickOf(deadline)) & mask;
+        timeout.deadline = deadline;
+        timeout.bucket = bucket;
+        timeout.prev = null;
+        timeout.next = buckets[bucket];
+        if(timeout.next!=null) timeout.next.prev = timeout;
+        buckets[bucket] = timeout;
+        pending++;
+    }
+
+    /**
+     * Cancels a timeout, if it is scheduled
+     * @param timeout the timeout
+     */
+    void cancel(Timeout timeout)
+    {
+        if(timeout.bucket<0) return;
+
+        if(timeout.prev!=null) timeout.prev.next = timeout.next;
+        else buckets[timeout.bucket] = timeout.next;
+        if(timeout.next!=null) timeout.next.prev = timeout.prev;
+
+        timeout.prev = null;
+        timeout.next = null;
+        timeout.bucket = -1;
+        pending--;
+    }
+
+    /**
+     * Advances the time, expiring all the timeouts whose deadline is before the given time
+     * @param now the current time in nanoseconds
+     * @return the number of expired timeouts
+     */
+    int advance(long now)
+    {
+        if(pending==0 || !started)
+        {
+            start(now);
+            currentTick = Math.max(currentTick, tickOf(now));
+            return 0;
+        }
+
+        // Visit the buckets of the elapsed ticks (each bucket at most once), collecting the expired timeouts
+        long nowTick = Math.max(currentTick, tickOf(now));
+        long lastTick = Math.min(nowTick, currentTick+mask);
+        Timeout expired = null;
+        for(long tick=currentTick; tick<=lastTick; tick++)
+        {
+            Timeout timeout = buckets[(int) tick & mask];
+            while(timeout!=null)
+            {
+                Timeout next = timeout.next;
+                if(timeout.deadline<now)
+                {
+                    cancel(timeout);
+                    timeout.next = expired;
+                    expired = timeout;
+                }
+                timeout = next;
+            }
+        }
+        currentTick = nowTick;
+
+        // Expire them only after visiting the wheel, since they could schedule new timeouts
+        int count = 0;
+        while(expired!=null)
+        {
+            Timeout next = expired.next;
+            expired.next = null;
+            expired.expire(now);
+            expired = next;
+            count++;
+        }
+        return count;
+    }
+
+    /**
+     * Getter
+     * @return the number of scheduled timeouts
+     */
+    int getPendingCount()
+    {
+        return pending;
+    }
+
+    /**
+     * Helper to fix the origin of the ticks the first time the wheel is used
+     * @param now the current time in nanoseconds
+     */
+    private void start(long now)
+    {
+        if(!started)
+        {
+            started = true;
+            origin = now;
+        }
+    }
+
+    /**
+     * Helper to get the tick of the given time
+     * @param time the time in nanoseconds
+     * @return the tick (0 for any time before the origin)
+     */
+    private long tickOf(long time)
+    {
+        return time<=origin ? 0 : (time-origin)/tickNanos;
+    }
+
+    /**
+     * A timeout that can be scheduled in the wheel
+     */
+    abstract static class Timeout
+    {
+        private long deadline;
+        private int bucket = -1;
+        private Timeout prev;
+        private Timeout next;
+
+        /**
+         * Getter
+         * @return true if the timeout is scheduled in a wheel
+         */
+        boolean isScheduled()
+        {
+            return bucket>=0;
+        }
+
+        /**
+         * Called by the wheel when the deadline has passed
+         * @param now the current time in nanoseconds
+         */
+        abstract void expire(long now);
+    }
+}
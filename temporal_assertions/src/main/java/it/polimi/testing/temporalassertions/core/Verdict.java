@@ -0,0 +1,22 @@
+package it.polimi.testing.temporalassertions.core;
+
+/**
+ * Enum that expresses the current verdict of a check while the stream is still running
+ * - satisfied (the check is definitely true: no following event can make it fail)
+ * - violated (the check is definitely false: no following event can make it succeed)
+ * - open (the verdict depends on the following events)
+ */
+public enum Verdict
+{
+    SATISFIED, VIOLATED, OPEN;
+
+    /**
+     * Gets the definitive verdict that corresponds to the outcome of a result
+     * @param outcome the outcome
+     * @return violated for a failure, satisfied otherwise
+     */
+    static Verdict of(Outcome outcome)
+    {
+        return Outcome.FAILURE.equals(outcome) ? VIOLATED : SATISFIED;
+    }
+}
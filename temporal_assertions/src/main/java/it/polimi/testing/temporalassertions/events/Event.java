@@ -1,8 +1,60 @@
 package it.polimi.testing.temporalassertions.events;
 
+import it.polimi.testing.temporalassertions.core.EventStamps;
+
 /**
  * A basic event. All subclasses compose the event stream that will be managed by the EventMonitor
+ *
+ * When the event enters the stream, the monitor stamps it with the time of its clock and with its position
+ * in the stream, so that the checks can reason about time and order. The stamps can be changed only by the
+ * library (see {@link EventStamps}).
  */
 public abstract class Event
 {
+    static
+    {
+        EventStamps.register(new EventStamps.Writer()
+        {
+            @Override
+            public void stamp(Event event, long timestamp, long sequence)
+            {
+                event.timestamp = timestamp;
+                event.sequence = sequence;
+                event.stamped = true;
+            }
+        });
+    }
+
+    private long timestamp = -1;
+    private long sequence = -1;
+    private boolean stamped = false;
+
+    /**
+     * Getter
+     * @return the monotonic time (in nanoseconds, of the monitor clock) when the event entered the stream, or -1
+     *         if it has not entered a stream yet. Timestamps never decrease along the stream, but they can be negative
+     *         (like the values of {@link System#nanoTime()}), so use {@link Event#isStamped()} to know if there is one.
+     */
+    public long getTimestamp()
+    {
+        return timestamp;
+    }
+
+    /**
+     * Getter
+     * @return the position of the event in the stream (starting from 0), or -1 if it has not entered a stream yet
+     */
+    public long getSequence()
+    {
+        return sequence;
+    }
+
+    /**
+     * Checks if the event has already entered a stream (if it is emitted again, it has the stamps of its last emission)
+     * @return true if the event has been stamped
+     */
+    public boolean isStamped()
+    {
+        return stamped;
+    }
 }
@@ -22,6 +22,15 @@ abstract class EventShortcutCombination extends BaseMatcher
         this.matchers = matchers;
     }
 
+    /**
+     * Getter
+     * @return the list of the sub-matchers
+     */
+    public Iterable<Matcher<? extends Event>> getMatchers()
+    {
+        return matchers;
+    }
+
     /**
      * Similar to {@link BaseMatcher#matches(Object)}
      * @param o the object to match
@@ -0,0 +1,43 @@
+package it.polimi.testing.temporalassertions.trace;
+
+import it.polimi.testing.temporalassertions.events.Event;
+
+/**
+ * An event read from a trace that cannot be rebuilt as its original class (e.g. a custom event, or a lifecycle
+ * event of a class that is not available), see {@link TraceReader}. It keeps the name of the original class
+ * and the description of the original event.
+ */
+public class RecordedEvent extends Event
+{
+    private final String className;
+    private final String description;
+
+    /**
+     * Constructor
+     * @param className the name of the class of the original event
+     * @param description the description of the original event
+     */
+    RecordedEvent(String className, String description)
+    {
+        this.className = className;
+        this.description = description;
+    }
+
+    /**
+     * Getter
+     * @return the name of the class of the original event
+     */
+    public String getClassName()
+    {
+        return className;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String toString()
+    {
+        return description;
+    }
+}
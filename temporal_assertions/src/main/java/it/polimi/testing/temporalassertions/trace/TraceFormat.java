@@ -0,0 +1,87 @@
+package it.polimi.testing.temporalassertions.trace;
+
+import java.nio.charset.Charset;
+
+/**
+ * The constants of the binary trace format
+ *
+ * A trace starts with {@link TraceFormat#MAGIC} and {@link TraceFormat#VERSION}, followed by one record per event:
+ * - the type tag of the event class (one byte)
+ * - the difference from the timestamp of the previous record (zig-zag varint)
+ * - the difference from the sequence number of the previous record, minus one (zig-zag varint, so 0 for consecutive events)
+ * - the fields of the event, depending on the tag
+ *
+ * The strings are encoded as a varint: {@link TraceFormat#STRING_NULL}, {@link TraceFormat#STRING_LITERAL} followed
+ * by the string, or the index in the dictionary plus {@link TraceFormat#STRING_DICTIONARY}. An index equal to the
+ * current size of the dictionary defines a new entry and is followed by the string. A string is written as the length
+ * of its UTF-8 bytes (varint) followed by the bytes.
+ */
+final class TraceFormat
+{
+    final static byte[] MAGIC = new byte[]{'T', 'A', 'T', 'R'};
+    final static byte VERSION = 1;
+
+    final static Charset UTF_8 = Charset.forName("UTF-8");
+
+    // Type tags of the events
+    final static byte TAG_OTHER = 0;
+    final static byte TAG_GENERIC = 1;
+    final static byte TAG_CALLBACK = 2;
+    final static byte TAG_ACTIVITY_LIFECYCLE = 3;
+    final static byte TAG_FRAGMENT_LIFECYCLE = 4;
+    final static byte TAG_SUPPORT_FRAGMENT_LIFECYCLE = 5;
+    final static byte TAG_TEXT_CHANGE = 6;
+    final static byte TAG_MENU_CLICK = 7;
+    final static byte TAG_TOAST = 8;
+    final static byte TAG_BACK_PRESS = 9;
+
+    // Type tags of the objects of the generic events
+    final static byte OBJECT_NULL = 0;
+    final static byte OBJECT_STRING = 1;
+    final static byte OBJECT_INTEGER = 2;
+    final static byte OBJECT_LONG = 3;
+    final static byte OBJECT_FALSE = 4;
+    final static byte OBJECT_TRUE = 5;
+    final static byte OBJECT_DOUBLE = 6;
+    final static byte OBJECT_FLOAT = 7;
+    final static byte OBJECT_CHARACTER = 8;
+    final static byte OBJECT_OTHER = 9;
+
+    // Prefixes of the strings
+    final static int STRING_NULL = 0;
+    final static int STRING_LITERAL = 1;
+    final static int STRING_DICTIONARY = 2;
+
+    /**
+     * The maximum number of entries of the dictionary, the following new strings are written as literals
+     */
+    final static int MAX_DICTIONARY_SIZE = 1<<16;
+
+    /**
+     * Private constructor, no instances
+     */
+    private TraceFormat()
+    {
+
+    }
+
+    /**
+     * Encodes a signed value so that small negative values have a short varint
+     * @param value the value
+     * @return the zig-zag encoding of the value
+     */
+    static long zigZag(long value)
+    {
+        return (value<<1) ^ (value>>63);
+    }
+
+    /**
+     * Decodes a value encoded with {@link TraceFormat#zigZag(long)}
+     * @param value the zig-zag encoding
+     * @return the value
+     */
+    static long unZigZag(long value)
+    {
+        return (value>>>1) ^ -(value & 1);
+    }
+}
@@ -0,0 +1,305 @@
+package it.polimi.testing.temporalassertions.trace;
+
+import android.app.Activity;
+import android.app.Fragment;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import it.polimi.testing.temporalassertions.events.ActivityLifecycleEvent;
+import it.polimi.testing.temporalassertions.events.BackPressEvent;
+import it.polimi.testing.temporalassertions.events.CallbackEvent;
+import it.polimi.testing.temporalassertions.events.Event;
+import it.polimi.testing.temporalassertions.events.FragmentLifecycleEvent;
+import it.polimi.testing.temporalassertions.events.GenericEvent;
+import it.polimi.testing.temporalassertions.events.MenuClickEvent;
+import it.polimi.testing.temporalassertions.events.SupportFragmentLifecycleEvent;
+import it.polimi.testing.temporalassertions.events.TextChangeEvent;
+import it.polimi.testing.temporalassertions.events.ToastEvent;
+
+/**
+ * Reads in order the events of a trace recorded by a {@link TraceWriter}, e.g. to check them again with
+ * {@link it.polimi.testing.temporalassertions.core.OfflineMonitor}
+ *
+ * The file is memory-mapped and the events are decoded directly from the mapped pages. Each string of the dictionary
+ * is decoded only once, so all the events that refer to it share the same instance. The recorded timestamp and
+ * sequence number of the last event read are given by the reader (the events are stamped only when they are
+ * replayed, see {@link it.polimi.testing.temporalassertions.core.OfflineMonitor}).
+ *
+ * Some events cannot be fully rebuilt outside the application:
+ * - the text change events have no view (the recorded class and id of the view are skipped)
+ * - the lifecycle events of classes that cannot be loaded, and the events of unknown classes, are read as
+ *   {@link RecordedEvent}s with the recorded description
+ * - the objects of unknown classes of the generic events are read as their description
+ */
+public class TraceReader
+{
+    private final ByteBuffer buffer;
+    private final List<String> dictionary = new ArrayList<>();
+    private final Map<String, Class<?>> classes = new HashMap<>();
+    private byte[] scratch = new byte[256];
+
+    private long lastTimestamp = 0;
+    private long lastSequence = -1;
+
+    /**
+     * Constructor, maps the file in memory (so it cannot be larger than 2 GB)
+     * @param file the file of the trace
+     * @throws IOException if the file cannot be read or it is not a trace
+     */
+    public TraceReader(File file) throws IOException
+    {
+        RandomAccessFile input = new RandomAccessFile(file, "r");
+        try
+        {
+            FileChannel channel = input.getChannel();
+            this.buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+        finally
+        {
+            input.close();
+        }
+
+        // Check the header
+        byte[] magic = new byte[TraceFormat.MAGIC.length];
+        if(buffer.remaining()<magic.length+1) throw new IOException("Not a trace: "+file);
+        buffer.get(magic);
+        for(int i=0; i<magic.length; i++)
+        {
+            if(magic[i]!=TraceFormat.MAGIC[i]) throw new IOException("Not a trace: "+file);
+        }
+        byte version = buffer.get();
+        if(version!=TraceFormat.VERSION) throw new IOException("Unsupported trace version "+version+": "+file);
+    }
+
+    /**
+     * Reads the next event of the trace
+     * @return the event, or null if the trace ended
+     * @throws IOException if the trace is corrupted
+     */
+    public Event next() throws IOException
+    {
+        if(!buffer.hasRemaining()) return null;
+
+        try
+        {
+            byte tag = buffer.get();
+            long timestamp = lastTimestamp+TraceFormat.unZigZag(getVarint());
+            long sequence = lastSequence+1+TraceFormat.unZigZag(getVarint());
+            lastTimestamp = timestamp;
+            lastSequence = sequence;
+
+            return readEvent(tag);
+        }
+        catch(BufferUnderflowException e)
+        {
+            throw new IOException("Truncated trace", e);
+        }
+    }
+
+    /**
+     * Getter
+     * @return the recorded timestamp of the last event read, see {@link Event#getTimestamp()}
+     */
+    public long getLastTimestamp()
+    {
+        return lastTimestamp;
+    }
+
+    /**
+     * Getter
+     * @return the recorded sequence number of the last event read, see {@link Event#getSequence()}
+     */
+    public long getLastSequence()
+    {
+        return lastSequence;
+    }
+
+    /**
+     * Helper to read the fields of an event and build it
+     * @param tag the type tag of the event
+     * @return the event
+     * @throws IOException if the tag is unknown
+     */
+    private Event readEvent(byte tag) throws IOException
+    {
+        String className;
+        String callbackName;
+        switch(tag)
+        {
+            case TraceFormat.TAG_GENERIC:
+                long length = getVarint();
+                if(length==0) return new GenericEvent((Object[]) null);
+                if(length<0 || length-1>buffer.remaining()) throw new IOException("Invalid number of objects "+length);
+                Object[] objects = new Object[(int) length-1];
+                for(int i=0; i<objects.length; i++) objects[i] = getObject();
+                return new GenericEvent(objects);
+
+            case TraceFormat.TAG_CALLBACK:
+                return new CallbackEvent(getString());
+
+            case TraceFormat.TAG_ACTIVITY_LIFECYCLE:
+                className = getString();
+                callbackName = getString();
+                Class<?> activityClass = loadClass(className, Activity.class);
+                if(activityClass==null) return newRecordedLifecycleEvent(className, callbackName);
+                return new ActivityLifecycleEvent(activityClass.asSubclass(Activity.class), callbackName);
+
+            case TraceFormat.TAG_FRAGMENT_LIFECYCLE:
+                className = getString();
+                callbackName = getString();
+                Class<?> fragmentClass = loadClass(className, Fragment.class);
+                if(fragmentClass==null) return newRecordedLifecycleEvent(className, callbackName);
+                return new FragmentLifecycleEvent(fragmentClass.asSubclass(Fragment.class), callbackName);
+
+            case TraceFormat.TAG_SUPPORT_FRAGMENT_LIFECYCLE:
+                className = getString();
+                callbackName = getString();
+                Class<?> supportFragmentClass = loadClass(className, android.support.v4.app.Fragment.class);
+                if(supportFragmentClass==null) return newRecordedLifecycleEvent(className, callbackName);
+                return new SupportFragmentLifecycleEvent(supportFragmentClass.asSubclass(android.support.v4.app.Fragment.class), callbackName);
+
+            case TraceFormat.TAG_TEXT_CHANGE:
+                if(getString()!=null) getVarint();
+                return new TextChangeEvent(null, getString());
+
+            case TraceFormat.TAG_MENU_CLICK:
+                return new MenuClickEvent((int) TraceFormat.unZigZag(getVarint()));
+
+            case TraceFormat.TAG_TOAST:
+                return new ToastEvent(getString());
+
+            case TraceFormat.TAG_BACK_PRESS:
+                return new BackPressEvent();
+
+            case TraceFormat.TAG_OTHER:
+                className = getString();
+                return new RecordedEvent(className, getString());
+
+            default:
+                throw new IOException("Unknown event tag "+tag);
+        }
+    }
+
+    /**
+     * Helper to build the event of a lifecycle callback of a class that cannot be loaded
+     * @param className the name of the class
+     * @param callbackName the name of the callback
+     * @return the recorded event, with the same description of the original one
+     */
+    private static RecordedEvent newRecordedLifecycleEvent(String className, String callbackName)
+    {
+        String simpleName = className==null ? "null" : className.substring(className.lastIndexOf('.')+1);
+        return new RecordedEvent(className, "{"+simpleName+" Lifecycle '"+callbackName+"'}");
+    }
+
+    /**
+     * Helper to load a class, only the first time it is needed
+     * @param className the name of the class
+     * @param superclass the class that it must extend
+     * @return the class, or null if it cannot be loaded or it does not extend the given class
+     */
+    private Class<?> loadClass(String className, Class<?> superclass)
+    {
+        if(className==null) return null;
+        if(classes.containsKey(className)) return classes.get(className);
+
+        Class<?> loaded = null;
+        try
+        {
+            loaded = Class.forName(className, false, TraceReader.class.getClassLoader());
+            if(!superclass.isAssignableFrom(loaded)) loaded = null;
+        }
+        catch(ClassNotFoundException | LinkageError e)
+        {
+            // The event will be read as a recorded event
+        }
+        classes.put(className, loaded);
+        return loaded;
+    }
+
+    /**
+     * Helper to read an object of a generic event
+     * @return the object
+     * @throws IOException if the type of the object is unknown
+     */
+    private Object getObject() throws IOException
+    {
+        byte type = buffer.get();
+        switch(type)
+        {
+            case TraceFormat.OBJECT_NULL: return null;
+            case TraceFormat.OBJECT_STRING: return getString();
+            case TraceFormat.OBJECT_INTEGER: return (int) TraceFormat.unZigZag(getVarint());
+            case TraceFormat.OBJECT_LONG: return TraceFormat.unZigZag(getVarint());
+            case TraceFormat.OBJECT_FALSE: return false;
+            case TraceFormat.OBJECT_TRUE: return true;
+            case TraceFormat.OBJECT_DOUBLE: return buffer.getDouble();
+            case TraceFormat.OBJECT_FLOAT: return buffer.getFloat();
+            case TraceFormat.OBJECT_CHARACTER: return (char) getVarint();
+            case TraceFormat.OBJECT_OTHER: return getString();
+            default: throw new IOException("Unknown object type "+type);
+        }
+    }
+
+    /**
+     * Helper to read a string, from the dictionary or defining a new entry
+     * @return the string (can be null)
+     * @throws IOException if the string refers to an undefined entry of the dictionary
+     */
+    private String getString() throws IOException
+    {
+        long prefix = getVarint();
+        if(prefix==TraceFormat.STRING_NULL) return null;
+        if(prefix==TraceFormat.STRING_LITERAL) return getBytes();
+
+        long index = prefix-TraceFormat.STRING_DICTIONARY;
+        if(index<dictionary.size()) return dictionary.get((int) index);
+        if(index>dictionary.size()) throw new IOException("Undefined string "+index);
+
+        String string = getBytes();
+        dictionary.add(string);
+        return string;
+    }
+
+    /**
+     * Helper to read the UTF-8 bytes of a string, preceded by their number
+     * @return the string
+     * @throws IOException if the number of bytes is not valid
+     */
+    private String getBytes() throws IOException
+    {
+        long length = getVarint();
+        if(length<0 || length>buffer.remaining()) throw new IOException("Invalid string length "+length);
+        if(scratch.length<length) scratch = new byte[(int) Math.max(length, scratch.length*2)];
+        buffer.get(scratch, 0, (int) length);
+        return new String(scratch, 0, (int) length, TraceFormat.UTF_8);
+    }
+
+    /**
+     * Helper to read an unsigned varint
+     * @return the value
+     */
+    private long getVarint()
+    {
+        long value = 0;
+        int shift = 0;
+        byte b;
+        do
+        {
+            b = buffer.get();
+            value |= (long) (b & 0x7F)<<shift;
+            shift += 7;
+        }
+        while((b & 0x80)!=0);
+        return value;
+    }
+}
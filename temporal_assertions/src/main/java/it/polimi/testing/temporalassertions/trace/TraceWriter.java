@@ -0,0 +1,444 @@
+package it.polimi.testing.temporalassertions.trace;
+
+import android.util.Log;
+import android.view.View;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import it.polimi.testing.temporalassertions.events.ActivityLifecycleEvent;
+import it.polimi.testing.temporalassertions.events.BackPressEvent;
+import it.polimi.testing.temporalassertions.events.CallbackEvent;
+import it.polimi.testing.temporalassertions.events.Event;
+import it.polimi.testing.temporalassertions.events.FragmentLifecycleEvent;
+import it.polimi.testing.temporalassertions.events.GenericEvent;
+import it.polimi.testing.temporalassertions.events.MenuClickEvent;
+import it.polimi.testing.temporalassertions.events.SupportFragmentLifecycleEvent;
+import it.polimi.testing.temporalassertions.events.TextChangeEvent;
+import it.polimi.testing.temporalassertions.events.ToastEvent;
+import rx.Subscriber;
+
+/**
+ * An events subscriber that can be passed to {@link it.polimi.testing.temporalassertions.core.EventMonitor#startVerification(Subscriber, Subscriber)}
+ * to record all the events of the stream in a compact binary file (see {@link TraceFormat})
+ *
+ * The events are encoded in a preallocated direct buffer, without building their descriptions: the timestamps and the
+ * sequence numbers are written as the differences from the previous event and the strings are written only the first
+ * time, then referenced by their index in a dictionary. When the buffer is full it is written to the file by a
+ * background thread, while the events go on in a second buffer. The file is closed when the stream terminates.
+ *
+ * The events of unknown classes are recorded with the name of their class and their description only.
+ */
+public class TraceWriter extends Subscriber<Event>
+{
+    private final static String TAG = "TraceWriter";
+
+    final static int BUFFER_SIZE = 64*1024;
+    private final static int BUFFERS = 2;
+    private final static int MIN_BUFFER_SIZE = 32;
+
+    // Marks the end of the trace in the queue of the buffers to be written
+    private final static ByteBuffer END = ByteBuffer.allocate(0);
+
+    private final FileChannel channel;
+    private final BlockingQueue<ByteBuffer> freeBuffers = new ArrayBlockingQueue<>(BUFFERS);
+    private final BlockingQueue<ByteBuffer> fullBuffers = new ArrayBlockingQueue<>(BUFFERS+1);
+    private final CountDownLatch closed = new CountDownLatch(1);
+    private volatile IOException error;
+
+    private final Map<String, Integer> dictionary = new HashMap<>();
+    private ByteBuffer buffer;
+    private long lastTimestamp = 0;
+    private long lastSequence = -1;
+    private boolean terminated = false;
+
+    /**
+     * Constructor, creates (or truncates) the file and starts the thread that writes it
+     * @param file the file of the trace
+     * @throws IOException if the file cannot be opened
+     */
+    public TraceWriter(File file) throws IOException
+    {
+        this(file, BUFFER_SIZE);
+    }
+
+    /**
+     * Constructor
+     * @param file the file of the trace
+     * @param bufferSize the size in bytes of each of the two buffers
+     * @throws IOException if the file cannot be opened
+     */
+    TraceWriter(File file, int bufferSize) throws IOException
+    {
+        this.channel = new FileOutputStream(file).getChannel();
+        for(int i=0; i<BUFFERS; i++) freeBuffers.add(ByteBuffer.allocateDirect(Math.max(MIN_BUFFER_SIZE, bufferSize)));
+
+        buffer = freeBuffers.poll();
+        buffer.put(TraceFormat.MAGIC);
+        buffer.put(TraceFormat.VERSION);
+
+        Thread thread = new Thread(new Flusher(), "EventMonitor-trace");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    @Override
+    public void onNext(Event event)
+    {
+        if(terminated) return;
+
+        byte tag = tagOf(event);
+        ensureRemaining(1);
+        buffer.put(tag);
+
+        // Timestamp and sequence number as differences from the previous event
+        putVarint(TraceFormat.zigZag(event.getTimestamp()-lastTimestamp));
+        putVarint(TraceFormat.zigZag(event.getSequence()-lastSequence-1));
+        lastTimestamp = event.getTimestamp();
+        lastSequence = event.getSequence();
+
+        switch(tag)
+        {
+            case TraceFormat.TAG_GENERIC:
+                Object[] objects = ((GenericEvent) event).getObjects();
+                putVarint(objects==null ? 0 : objects.length+1);
+                if(objects!=null) for(Object object: objects) putObject(object);
+                break;
+
+            case TraceFormat.TAG_CALLBACK:
+                putString(((CallbackEvent) event).getCallbackName());
+                break;
+
+            case TraceFormat.TAG_ACTIVITY_LIFECYCLE:
+                ActivityLifecycleEvent activityEvent = (ActivityLifecycleEvent) event;
+                putString(activityEvent.getActivityClass()==null ? null : activityEvent.getActivityClass().getName());
+                putString(activityEvent.getCallbackName());
+                break;
+
+            case TraceFormat.TAG_FRAGMENT_LIFECYCLE:
+                FragmentLifecycleEvent fragmentEvent = (FragmentLifecycleEvent) event;
+                putString(fragmentEvent.getFragmentClass()==null ? null : fragmentEvent.getFragmentClass().getName());
+                putString(fragmentEvent.getCallbackName());
+                break;
+
+            case TraceFormat.TAG_SUPPORT_FRAGMENT_LIFECYCLE:
+                SupportFragmentLifecycleEvent supportFragmentEvent = (SupportFragmentLifecycleEvent) event;
+                putString(supportFragmentEvent.getFragmentClass()==null ? null : supportFragmentEvent.getFragmentClass().getName());
+                putString(supportFragmentEvent.getCallbackName());
+                break;
+
+            case TraceFormat.TAG_TEXT_CHANGE:
+                TextChangeEvent textChangeEvent = (TextChangeEvent) event;
+                View view = textChangeEvent.getView();
+                putString(view==null ? null : view.getClass().getName());
+                if(view!=null) putVarint(TraceFormat.zigZag(view.getId()));
+                putString(textChangeEvent.getText());
+                break;
+
+            case TraceFormat.TAG_MENU_CLICK:
+                putVarint(TraceFormat.zigZag(((MenuClickEvent) event).getMenuOptionId()));
+                break;
+
+            case TraceFormat.TAG_TOAST:
+                putString(((ToastEvent) event).getText());
+                break;
+
+            case TraceFormat.TAG_BACK_PRESS:
+                break;
+
+            default:
+                putString(event.getClass().getName());
+                putString(event.toString());
+                break;
+        }
+    }
+
+    @Override
+    public void onCompleted()
+    {
+        terminate();
+    }
+
+    @Override
+    public void onError(Throwable e)
+    {
+        terminate();
+    }
+
+    /**
+     * Waits until all the events have been written and the file has been closed
+     * @param timeout the maximum time to wait
+     * @param unit the time unit of the timeout
+     * @return true if the file has been closed, false if the timeout elapsed before
+     * @throws InterruptedException if the current thread is interrupted while waiting
+     */
+    public boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException
+    {
+        return closed.await(timeout, unit);
+    }
+
+    /**
+     * Getter
+     * @return the first error that occurred while writing the file (the following events are discarded), or null
+     */
+    public IOException getError()
+    {
+        return error;
+    }
+
+    /**
+     * Helper to send the last buffer to the background thread and close the file
+     */
+    private void terminate()
+    {
+        if(terminated) return;
+        terminated = true;
+
+        if(buffer.position()>0)
+        {
+            buffer.flip();
+            fullBuffers.add(buffer);
+        }
+        buffer = null;
+        fullBuffers.add(END);
+    }
+
+    /**
+     * Helper to get the type tag of an event. Only the exact classes have their own tag, since the fields of
+     * their subclasses would be lost.
+     * @param event the event
+     * @return the tag
+     */
+    private static byte tagOf(Event event)
+    {
+        Class<?> eventClass = event.getClass();
+        if(eventClass==GenericEvent.class) return TraceFormat.TAG_GENERIC;
+        if(eventClass==CallbackEvent.class) return TraceFormat.TAG_CALLBACK;
+        if(eventClass==ActivityLifecycleEvent.class) return TraceFormat.TAG_ACTIVITY_LIFECYCLE;
+        if(eventClass==FragmentLifecycleEvent.class) return TraceFormat.TAG_FRAGMENT_LIFECYCLE;
+        if(eventClass==SupportFragmentLifecycleEvent.class) return TraceFormat.TAG_SUPPORT_FRAGMENT_LIFECYCLE;
+        if(eventClass==TextChangeEvent.class) return TraceFormat.TAG_TEXT_CHANGE;
+        if(eventClass==MenuClickEvent.class) return TraceFormat.TAG_MENU_CLICK;
+        if(eventClass==ToastEvent.class) return TraceFormat.TAG_TOAST;
+        if(eventClass==BackPressEvent.class) return TraceFormat.TAG_BACK_PRESS;
+        return TraceFormat.TAG_OTHER;
+    }
+
+    /**
+     * Helper to write an object of a generic event. The objects of unknown classes are written as their description.
+     * @param object the object
+     */
+    private void putObject(Object object)
+    {
+        ensureRemaining(1);
+        if(object==null)
+        {
+            buffer.put(TraceFormat.OBJECT_NULL);
+        }
+        else if(object instanceof String)
+        {
+            buffer.put(TraceFormat.OBJECT_STRING);
+            putString((String) object);
+        }
+        else if(object instanceof Integer)
+        {
+            buffer.put(TraceFormat.OBJECT_INTEGER);
+            putVarint(TraceFormat.zigZag((Integer) object));
+        }
+        else if(object instanceof Long)
+        {
+            buffer.put(TraceFormat.OBJECT_LONG);
+            putVarint(TraceFormat.zigZag((Long) object));
+        }
+        else if(object instanceof Boolean)
+        {
+            buffer.put((Boolean) object ? TraceFormat.OBJECT_TRUE : TraceFormat.OBJECT_FALSE);
+        }
+        else if(object instanceof Double)
+        {
+            buffer.put(TraceFormat.OBJECT_DOUBLE);
+            ensureRemaining(8);
+            buffer.putDouble((Double) object);
+        }
+        else if(object instanceof Float)
+        {
+            buffer.put(TraceFormat.OBJECT_FLOAT);
+            ensureRemaining(4);
+            buffer.putFloat((Float) object);
+        }
+        else if(object instanceof Character)
+        {
+            buffer.put(TraceFormat.OBJECT_CHARACTER);
+            putVarint((Character) object);
+        }
+        else
+        {
+            buffer.put(TraceFormat.OBJECT_OTHER);
+            putString(object.toString());
+        }
+    }
+
+    /**
+     * Helper to write a string, adding it to the dictionary the first time
+     * @param string the string (can be null)
+     */
+    private void putString(String string)
+    {
+        if(string==null)
+        {
+            putVarint(TraceFormat.STRING_NULL);
+            return;
+        }
+
+        Integer index = dictionary.get(string);
+        if(index!=null)
+        {
+            putVarint(TraceFormat.STRING_DICTIONARY+index);
+        }
+        else if(dictionary.size()<TraceFormat.MAX_DICTIONARY_SIZE)
+        {
+            index = dictionary.size();
+            dictionary.put(string, index);
+            putVarint(TraceFormat.STRING_DICTIONARY+index);
+            putBytes(string);
+        }
+        else
+        {
+            putVarint(TraceFormat.STRING_LITERAL);
+            putBytes(string);
+        }
+    }
+
+    /**
+     * Helper to write the UTF-8 bytes of a string, preceded by their number. The bytes can span several buffers.
+     * @param string the string
+     */
+    private void putBytes(String string)
+    {
+        byte[] bytes = string.getBytes(TraceFormat.UTF_8);
+        putVarint(bytes.length);
+
+        int offset = 0;
+        while(offset<bytes.length)
+        {
+            ensureRemaining(1);
+            int length = Math.min(buffer.remaining(), bytes.length-offset);
+            buffer.put(bytes, offset, length);
+            offset += length;
+        }
+    }
+
+    /**
+     * Helper to write an unsigned varint: 7 bits per byte, the highest bit tells if another byte follows
+     * @param value the value
+     */
+    private void putVarint(long value)
+    {
+        ensureRemaining(10);
+        while((value & ~0x7FL)!=0)
+        {
+            buffer.put((byte) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        buffer.put((byte) value);
+    }
+
+    /**
+     * Helper to make sure that the current buffer has the given space, otherwise it is sent to the background
+     * thread and replaced with a free one (waiting for it if needed)
+     * @param bytes the required space in bytes
+     */
+    private void ensureRemaining(int bytes)
+    {
+        if(buffer.remaining()>=bytes) return;
+
+        buffer.flip();
+        fullBuffers.add(buffer);
+        buffer = takeUninterruptibly(freeBuffers);
+    }
+
+    /**
+     * Helper to take a buffer from a queue, waiting for it even if the thread is interrupted
+     * @param queue the queue
+     * @return the buffer
+     */
+    private static ByteBuffer takeUninterruptibly(BlockingQueue<ByteBuffer> queue)
+    {
+        boolean interrupted = false;
+        try
+        {
+            while(true)
+            {
+                try
+                {
+                    return queue.take();
+                }
+                catch(InterruptedException e)
+                {
+                    interrupted = true;
+                }
+            }
+        }
+        finally
+        {
+            if(interrupted) Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * The loop of the background thread: it writes the full buffers to the file and gives them back
+     */
+    private class Flusher implements Runnable
+    {
+        @Override
+        public void run()
+        {
+            try
+            {
+                while(true)
+                {
+                    ByteBuffer full = takeUninterruptibly(fullBuffers);
+                    if(full==END) return;
+
+                    // After an error the buffers are simply discarded, so that the stream is never blocked
+                    if(error==null)
+                    {
+                        try
+                        {
+                            while(full.hasRemaining()) channel.write(full);
+                        }
+                        catch(IOException e)
+                        {
+                            error = e;
+                            Log.e(TAG, "Cannot write the trace", e);
+                        }
+                    }
+
+                    full.clear();
+                    freeBuffers.add(full);
+                }
+            }
+            finally
+            {
+                try
+                {
+                    channel.close();
+                }
+                catch(IOException e)
+                {
+                    if(error==null) error = e;
+                }
+                closed.countDown();
+            }
+        }
+    }
+}
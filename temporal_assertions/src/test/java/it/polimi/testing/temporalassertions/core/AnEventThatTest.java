@@ -2,6 +2,8 @@ package it.polimi.testing.temporalassertions.core;
 
 import org.junit.Test;
 
+import java.util.concurrent.TimeUnit;
+
 import static it.polimi.testing.temporalassertions.core.RxTestUtils.assertThatOutcomeIs;
 import static it.polimi.testing.temporalassertions.core.RxTestUtils.ends;
 import static it.polimi.testing.temporalassertions.core.RxTestUtils.is;
@@ -249,4 +251,35 @@ public class AnEventThatTest
         Check check = anEventThat(is("B")).cannotHappenBetween(anEventThat(is("A")), anEventThat(is("C")));
         assertThatOutcomeIs(events, check, Outcome.WARNING);
     }
+
+    /**********************************************
+     * Timed CanHappenOnlyAfter Tests
+     **********************************************/
+
+    @Test
+    public void testTimedCanHappenOnlyAfter_Correct()
+    {
+        String[] events = new String[]{"A", "B", "C", "C", "B", "C"};
+        long[] millis = new long[]{0, 10, 50, 110, 500, 550};
+        Check check = anEventThat(is("C")).canHappenOnlyAfter(anEventThat(is("B")), 100, TimeUnit.MILLISECONDS);
+        assertThatOutcomeIs(events, millis, check, Outcome.SUCCESS);
+    }
+
+    @Test
+    public void testTimedCanHappenOnlyAfter_TooLate()
+    {
+        String[] events = new String[]{"A", "B", "C", "C"};
+        long[] millis = new long[]{0, 10, 50, 111};
+        Check check = anEventThat(is("C")).canHappenOnlyAfter(anEventThat(is("B")), 100, TimeUnit.MILLISECONDS);
+        assertThatOutcomeIs(events, millis, check, Outcome.FAILURE);
+    }
+
+    @Test
+    public void testTimedCanHappenOnlyAfter_Before()
+    {
+        String[] events = new String[]{"A", "C", "B"};
+        long[] millis = new long[]{0, 10, 50};
+        Check check = anEventThat(is("C")).canHappenOnlyAfter(anEventThat(is("B")), 100, TimeUnit.MILLISECONDS);
+        assertThatOutcomeIs(events, millis, check, Outcome.FAILURE);
+    }
 }
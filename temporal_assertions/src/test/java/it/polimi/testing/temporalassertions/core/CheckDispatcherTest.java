@@ -0,0 +1,290 @@
+package it.polimi.testing.temporalassertions.core;
+
+import android.support.annotation.NonNull;
+
+import org.hamcrest.Matcher;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import it.polimi.testing.temporalassertions.events.BackPressEvent;
+import it.polimi.testing.temporalassertions.events.Event;
+import it.polimi.testing.temporalassertions.events.GenericEvent;
+import it.polimi.testing.temporalassertions.events.ToastEvent;
+import rx.observers.TestSubscriber;
+
+import static it.polimi.testing.temporalassertions.core.AllEventsWhereEach.allEventsWhereEach;
+import static it.polimi.testing.temporalassertions.core.AllHold.allHold;
+import static it.polimi.testing.temporalassertions.core.AnEventThat.anEventThat;
+import static it.polimi.testing.temporalassertions.core.AnyHolds.anyHolds;
+import static it.polimi.testing.temporalassertions.core.AtLeast.atLeast;
+import static it.polimi.testing.temporalassertions.core.AtMost.atMost;
+import static it.polimi.testing.temporalassertions.core.Exactly.exactly;
+import static it.polimi.testing.temporalassertions.core.Exist.exist;
+import static it.polimi.testing.temporalassertions.core.RxTestUtils.is;
+import static it.polimi.testing.temporalassertions.core.RxTestUtils.starts;
+import static it.polimi.testing.temporalassertions.events.BackPressEvent.isBackPressed;
+import static it.polimi.testing.temporalassertions.events.ToastEvent.isToastDisplay;
+import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.assertTrue;
+
+public class CheckDispatcherTest
+{
+    private final static String[] EVENTS = {"B", "A1", "A2", "C", "B", "A3", "C", "A4", "B", "C"};
+
+    @SuppressWarnings("unchecked")
+    private static List<Check> checks()
+    {
+        return Arrays.asList(
+                anEventThat(starts("A")).canHappenOnlyAfter(anEventThat(is("B"))),
+                exactly(4).eventsWhereEach(starts("A")).mustHappenBetween(anEventThat(is("B")), anEventThat(is("C"))),
+                exist(atLeast(2)).eventsWhereEach(is("C")),
+                allEventsWhereEach(starts("A")).matchInOrder(is("A1"), is("A2"), is("A3"), is("A4")),
+                allEventsWhereEach(starts("A")).matchInOrder(is("A1"), is("A3")),
+                exactly(3).eventsWhereEach(is("B")).mustHappenBefore(anEventThat(is("C"))));
+    }
+
+    private static List<String> outcomes(TestSubscriber<Result> subscriber)
+    {
+        subscriber.assertNoErrors();
+        subscriber.assertCompleted();
+
+        // Results can arrive in a different order, but each check must have the same outcome
+        List<String> outcomes = new ArrayList<>();
+        for(Result result: subscriber.getOnNextEvents()) outcomes.add(result.toString());
+        Collections.sort(outcomes);
+        return outcomes;
+    }
+
+    private static List<String> runBatches(int batchSize)
+    {
+        TestSubscriber<Result> results = new TestSubscriber<>();
+        CheckDispatcher dispatcher = new CheckDispatcher(checks(), results);
+
+        Event[] events = new Event[EVENTS.length];
+        for(int i=0; i<EVENTS.length; i++) events[i] = new GenericEvent(EVENTS[i]);
+        for(int from=0; from<events.length && !dispatcher.isUnsubscribed(); from+=batchSize)
+        {
+            dispatcher.onNextBatch(events, from, Math.min(from+batchSize, events.length));
+        }
+        dispatcher.onCompleted();
+
+        return outcomes(results);
+    }
+
+    @Test
+    public void testCheckDispatcher_BatchesAsSingleEvents()
+    {
+        TestSubscriber<Result> results = new TestSubscriber<>();
+        CheckDispatcher dispatcher = new CheckDispatcher(checks(), results);
+        for(String string: EVENTS) dispatcher.onNext(new GenericEvent(string));
+        dispatcher.onCompleted();
+
+        List<String> expected = outcomes(results);
+        for(int batchSize=1; batchSize<=EVENTS.length; batchSize++)
+        {
+            assertEquals("Batch size "+batchSize, expected, runBatches(batchSize));
+        }
+        assertEquals(checks().size(), expected.size());
+    }
+
+    @Test
+    public void testCheckDispatcher_ReusedChecks()
+    {
+        TestSubscriber<Result> results = new TestSubscriber<>();
+        CheckDispatcher dispatcher = new CheckDispatcher(checks(), results);
+        for(String string: EVENTS) dispatcher.onNext(new GenericEvent(string));
+        dispatcher.onCompleted();
+        List<String> expected = outcomes(results);
+
+        // The same checks (with a shared quantifier) evaluated by two interleaved runs
+        AbstractQuantifier shared = exactly(2);
+        List<Check> checks = new ArrayList<>(checks());
+        checks.add(allHold(shared.eventsWhereEach(is("C")).mustHappenAfter(anEventThat(is("A2"))), exist(shared).eventsWhereEach(starts("A"))));
+
+        TestSubscriber<Result> firstResults = new TestSubscriber<>();
+        TestSubscriber<Result> secondResults = new TestSubscriber<>();
+        CheckDispatcher first = new CheckDispatcher(checks, firstResults);
+        CheckDispatcher second = new CheckDispatcher(checks, secondResults);
+        for(String string: EVENTS)
+        {
+            first.onNext(new GenericEvent(string));
+            second.onNext(new GenericEvent(string));
+        }
+        first.onCompleted();
+        second.onCompleted();
+
+        List<String> firstOutcomes = outcomes(firstResults);
+        assertEquals(firstOutcomes, outcomes(secondResults));
+        assertTrue(firstOutcomes.containsAll(expected));
+        assertEquals(expected.size()+1, firstOutcomes.size());
+    }
+
+    @Test
+    public void testCheckDispatcher_EarlyVerdictOfConnective()
+    {
+        TestSubscriber<Result> results = new TestSubscriber<>();
+        List<Check> checks = Collections.<Check>singletonList(allHold(
+                anEventThat(starts("A")).canHappenOnlyAfter(anEventThat(is("B"))),
+                exist(atLeast(2)).eventsWhereEach(is("C"))));
+        CheckDispatcher dispatcher = new CheckDispatcher(checks, results);
+
+        // The failure of an internal check is sent at the offending event, and the connective stops
+        dispatcher.onNext(new GenericEvent("C"));
+        assertEquals(0, results.getOnNextEvents().size());
+        dispatcher.onNext(new GenericEvent("A1"));
+        assertEquals(1, results.getOnNextEvents().size());
+        assertEquals(Outcome.FAILURE, results.getOnNextEvents().get(0).getOutcome());
+        results.assertCompleted();
+        assertTrue(dispatcher.isUnsubscribed());
+    }
+
+    @Test
+    public void testCheckDispatcher_EarlyVerdictOfSubscriber()
+    {
+        Check check = new Check("No X")
+        {
+            @Override
+            protected CheckSubscriber newCheckSubscriber()
+            {
+                return new CheckSubscriber()
+                {
+                    private boolean foundX = false;
+
+                    @Override
+                    public void onNext(Event event)
+                    {
+                        foundX |= "X".equals(((GenericEvent) event).getObjects()[0]);
+                    }
+
+                    @Override
+                    public Verdict getVerdict()
+                    {
+                        return foundX ? Verdict.VIOLATED : super.getVerdict();
+                    }
+
+                    @NonNull
+                    @Override
+                    public Result getFinalResult()
+                    {
+                        return new Result(foundX ? Outcome.FAILURE : Outcome.SUCCESS, "");
+                    }
+                };
+            }
+        };
+        TestSubscriber<Result> results = new TestSubscriber<>();
+        CheckDispatcher dispatcher = new CheckDispatcher(Collections.singletonList(check), results);
+
+        // The check is ended by the dispatcher as soon as its verdict is definitive
+        dispatcher.onNext(new GenericEvent("A"));
+        assertEquals(0, results.getOnNextEvents().size());
+        dispatcher.onNext(new GenericEvent("X"));
+        assertEquals(1, results.getOnNextEvents().size());
+        assertEquals(Outcome.FAILURE, results.getOnNextEvents().get(0).getOutcome());
+        assertTrue(dispatcher.isUnsubscribed());
+    }
+
+    private static Check foundACheck()
+    {
+        // Once an "A" is found the automaton is in an absorbing state, but no transition ends the check
+        final Automaton automaton = Automaton.builder(2, is("A")).on(0, 1, 1, Automaton.SET_WITNESS).build();
+        return new Check("Found A", is("A"))
+        {
+            @Override
+            protected CheckSubscriber newCheckSubscriber()
+            {
+                return new AutomatonSubscriber(automaton, null)
+                {
+                    @NonNull
+                    @Override
+                    public Result getFinalResult()
+                    {
+                        return new Result(getState()==1 ? Outcome.SUCCESS : Outcome.FAILURE, "");
+                    }
+                };
+            }
+        };
+    }
+
+    @Test
+    public void testCheckDispatcher_EarlyVerdictOfAutomaton()
+    {
+        // Alone, and as a term of a connective whose other term is still open
+        for(Check check: new Check[]{foundACheck(), anyHolds(exist(atLeast(2)).eventsWhereEach(is("C")), foundACheck())})
+        {
+            TestSubscriber<Result> results = new TestSubscriber<>();
+            CheckDispatcher dispatcher = new CheckDispatcher(Collections.singletonList(check), results);
+
+            // The result is sent at the event that leads to the absorbing state, before the end of the stream
+            dispatcher.onNext(new GenericEvent("B"));
+            assertEquals(0, results.getOnNextEvents().size());
+            dispatcher.onNext(new GenericEvent("A"));
+            assertEquals(1, results.getOnNextEvents().size());
+            assertEquals(Outcome.SUCCESS, results.getOnNextEvents().get(0).getOutcome());
+            results.assertCompleted();
+            assertTrue(dispatcher.isUnsubscribed());
+        }
+    }
+
+    @Test
+    public void testCheckDispatcher_Metrics()
+    {
+        // Two checks with the same matcher: each one calls it on every event, but it is evaluated only once per event
+        Matcher<GenericEvent> matcher = is("B");
+        List<Check> checks = Arrays.asList(
+                exist(atMost(5)).eventsWhereEach(matcher),
+                exist(atMost(5)).eventsWhereEach(matcher));
+
+        // The busy time is measured only if required
+        for(boolean busyTimeMeasured: new boolean[]{false, true})
+        {
+            TestSubscriber<Result> results = new TestSubscriber<>();
+            CheckDispatcher dispatcher = new CheckDispatcher(checks, CheckDispatcher.newMetrics(checks, busyTimeMeasured), results);
+
+            for(String label: EVENTS) dispatcher.onNext(new GenericEvent(label));
+            dispatcher.onCompleted();
+
+            results.assertCompleted();
+            long evaluationsCount = 0;
+            for(Result result: results.getOnNextEvents())
+            {
+                CheckMetrics metrics = result.getMetrics();
+                assertEquals(EVENTS.length, metrics.getEventsCount());
+                assertEquals(EVENTS.length, metrics.getMatcherCallsCount());
+                assertEquals(EVENTS.length, metrics.getTransitionsCount());
+                assertTrue(metrics.getTimeToVerdictNanos()>=0);
+                assertEquals(busyTimeMeasured, metrics.isBusyTimeMeasured());
+                assertEquals(busyTimeMeasured, metrics.getBusyNanos()>0);
+                evaluationsCount += metrics.getMatcherEvaluationsCount();
+            }
+            assertEquals(EVENTS.length, evaluationsCount);
+        }
+    }
+
+    @Test
+    public void testCheckDispatcher_InterestStates()
+    {
+        // Before a toast the check only needs toasts, after it only back presses
+        Event[] events = {new BackPressEvent(), new BackPressEvent(), new ToastEvent("A"), new ToastEvent("B"), new BackPressEvent(), new BackPressEvent()};
+        for(boolean batch: new boolean[]{false, true})
+        {
+            Check check = anEventThat(isToastDisplay()).canHappenOnlyBefore(anEventThat(isBackPressed()));
+            TestSubscriber<Result> results = new TestSubscriber<>();
+            CheckDispatcher dispatcher = new CheckDispatcher(Collections.singletonList(check), results);
+
+            if(batch) dispatcher.onNextBatch(events, 0, events.length);
+            else for(Event event: events) dispatcher.onNext(event);
+            dispatcher.onCompleted();
+
+            // Only the first toast and the back press after it reach the check (in a batch, each of them comes
+            // with the next event, which is filtered against the state before the run)
+            results.assertValueCount(1);
+            Result result = results.getOnNextEvents().get(0);
+            assertEquals(Outcome.SUCCESS, result.getOutcome());
+            assertEquals(batch ? 4 : 2, result.getMetrics().getEventsCount());
+        }
+    }
+}
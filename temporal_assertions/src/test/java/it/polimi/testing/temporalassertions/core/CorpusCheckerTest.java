@@ -0,0 +1,67 @@
+package it.polimi.testing.temporalassertions.core;
+
+import org.junit.Test;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import static it.polimi.testing.temporalassertions.core.AnEventThat.anEventThat;
+import static it.polimi.testing.temporalassertions.core.AtLeast.atLeast;
+import static it.polimi.testing.temporalassertions.core.Exist.existsAnEventThat;
+import static it.polimi.testing.temporalassertions.core.RxTestUtils.is;
+import static it.polimi.testing.temporalassertions.core.RxTestUtils.writeTrace;
+import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.assertTrue;
+
+public class CorpusCheckerTest
+{
+    @Test
+    public void testCorpusChecker_AggregateOutcomes() throws IOException, InterruptedException
+    {
+        File directory = File.createTempFile("corpus", "");
+        assertTrue(directory.delete());
+        assertTrue(directory.mkdir());
+        directory.deleteOnExit();
+
+        // Half of the traces have an "E", the odd ones are too slow
+        int traces = 20;
+        for(int i=0; i<traces; i++)
+        {
+            File file = new File(directory, String.format("trace-%02d.bin", i));
+            file.deleteOnExit();
+            writeTrace(file, new String[]{"A", "B", i%2==0 ? "E" : "X", "C"}, new long[]{0, 10, 20, i%2==0 ? 50 : 500});
+        }
+
+        // A file that is not a trace
+        File corrupted = new File(directory, "trace-corrupted.bin");
+        corrupted.deleteOnExit();
+        FileOutputStream output = new FileOutputStream(corrupted);
+        output.write(new byte[]{1, 2, 3, 4, 5, 6});
+        output.close();
+
+        OfflineMonitor suite = new OfflineMonitor();
+        Check existsE = existsAnEventThat(is("E"));
+        Check fastC = atLeast(1).eventsWhereEach(is("C")).mustHappenAfter(anEventThat(is("B")), 200, TimeUnit.MILLISECONDS);
+        suite.checkThat("E", existsE);
+        suite.checkThat("Fast C", fastC);
+
+        CorpusChecker checker = new CorpusChecker(suite);
+        checker.setParallelism(4);
+        CorpusResult result = checker.check(directory);
+
+        assertEquals(traces, result.getTracesCount());
+        assertEquals(1, result.getErrors().size());
+        assertTrue(result.getErrors().containsKey(corrupted));
+        assertEquals(traces/2, result.getCount(existsE, Outcome.SUCCESS));
+        assertEquals(traces/2, result.getCount(existsE, Outcome.FAILURE));
+        assertEquals(traces/2, result.getCount(fastC, Outcome.SUCCESS));
+        assertEquals(traces/2, result.getCount(fastC, Outcome.FAILURE));
+
+        // The failing traces keep the order of the corpus
+        assertEquals(traces/2, result.getFailingTraces(existsE).size());
+        assertEquals(new File(directory, "trace-01.bin"), result.getFailingTraces(existsE).get(0));
+        assertEquals(new File(directory, "trace-19.bin"), result.getFailingTraces(fastC).get(traces/2-1));
+    }
+}
@@ -0,0 +1,58 @@
+package it.polimi.testing.temporalassertions.core;
+
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static it.polimi.testing.temporalassertions.core.AnEventThat.anEventThat;
+import static it.polimi.testing.temporalassertions.core.DelaysBetween.delaysBetween;
+import static it.polimi.testing.temporalassertions.core.RxTestUtils.assertThatOutcomeIs;
+import static it.polimi.testing.temporalassertions.core.RxTestUtils.is;
+
+public class DelaysBetweenTest
+{
+    @Test
+    public void testHavePercentileBelow_Correct()
+    {
+        String[] events = new String[]{"A", "B", "C", "B", "A", "B", "C", "D", "C"};
+        long[] millis = new long[]{0, 10, 30, 100, 110, 200, 240, 250, 300};
+        Check check = delaysBetween(anEventThat(is("B")), anEventThat(is("C"))).havePercentileBelow(100, 50, TimeUnit.MILLISECONDS);
+        assertThatOutcomeIs(events, millis, check, Outcome.SUCCESS);
+    }
+
+    @Test
+    public void testHavePercentileBelow_SlowPair()
+    {
+        String[] events = new String[]{"B", "C", "B", "C", "B", "C", "B", "C"};
+        long[] millis = new long[]{0, 10, 100, 110, 200, 210, 300, 400};
+        Check check = delaysBetween(anEventThat(is("B")), anEventThat(is("C"))).havePercentileBelow(99, 50, TimeUnit.MILLISECONDS);
+        assertThatOutcomeIs(events, millis, check, Outcome.FAILURE);
+    }
+
+    @Test
+    public void testHavePercentileBelow_SlowPairBelowPercentile()
+    {
+        String[] events = new String[]{"B", "C", "B", "C", "B", "C", "B", "C"};
+        long[] millis = new long[]{0, 10, 100, 110, 200, 210, 300, 400};
+        Check check = delaysBetween(anEventThat(is("B")), anEventThat(is("C"))).havePercentileBelow(75, 50, TimeUnit.MILLISECONDS);
+        assertThatOutcomeIs(events, millis, check, Outcome.SUCCESS);
+    }
+
+    @Test
+    public void testHavePercentileBelow_NoPairs()
+    {
+        String[] events = new String[]{"C", "A", "B"};
+        long[] millis = new long[]{0, 10, 100};
+        Check check = delaysBetween(anEventThat(is("B")), anEventThat(is("C"))).havePercentileBelow(99, 50, TimeUnit.MILLISECONDS);
+        assertThatOutcomeIs(events, millis, check, Outcome.WARNING);
+    }
+
+    @Test
+    public void testHavePercentileBelow_NegativeTimestamps()
+    {
+        String[] events = new String[]{"B", "C", "B", "C", "B", "C", "B", "C"};
+        long[] millis = new long[]{-1000, -990, -900, -890, -800, -790, -700, -600};
+        Check check = delaysBetween(anEventThat(is("B")), anEventThat(is("C"))).havePercentileBelow(99, 50, TimeUnit.MILLISECONDS);
+        assertThatOutcomeIs(events, millis, check, Outcome.FAILURE);
+    }
+}
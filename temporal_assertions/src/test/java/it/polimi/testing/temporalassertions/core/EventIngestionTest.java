@@ -0,0 +1,337 @@
+package it.polimi.testing.temporalassertions.core;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+import it.polimi.testing.temporalassertions.events.CallbackEvent;
+import it.polimi.testing.temporalassertions.events.Event;
+import it.polimi.testing.temporalassertions.events.GenericEvent;
+import it.polimi.testing.temporalassertions.events.ToastEvent;
+import rx.Observable;
+import rx.Subscriber;
+import rx.functions.Action1;
+import rx.observers.TestSubscriber;
+import rx.schedulers.Schedulers;
+
+import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.assertTrue;
+
+public class EventIngestionTest
+{
+    @Test
+    public void testEventIngestion_ConcurrentProducers() throws InterruptedException
+    {
+        final int producers = 4;
+        final int events = 1000;
+        final EventIngestion ingestion = new EventIngestion(Schedulers.newThread());
+
+        // Events produced before the connection are not lost
+        ingestion.offer(new GenericEvent("before"));
+
+        RingBufferSubject<Event> subject = RingBufferSubject.create(RetentionPolicy.untilSubscribed());
+        TestSubscriber<Event> subscriber = new TestSubscriber<>();
+        subject.subscribe(subscriber);
+        ingestion.connect(subject);
+
+        Thread[] threads = new Thread[producers];
+        for(int p=0; p<producers; p++)
+        {
+            threads[p] = new Thread(new Runnable()
+            {
+                @Override
+                public void run()
+                {
+                    for(int i=0; i<events; i++) ingestion.offer(new GenericEvent(i));
+                }
+            });
+            threads[p].start();
+        }
+        for(Thread thread: threads) thread.join();
+
+        // Completion comes after all the events already received
+        ingestion.complete();
+        subscriber.awaitTerminalEvent(5, TimeUnit.SECONDS);
+        subscriber.assertNoErrors();
+        subscriber.assertCompleted();
+        assertEquals(producers*events+1, subscriber.getOnNextEvents().size());
+    }
+
+    @Test
+    public void testEventIngestion_Sources()
+    {
+        EventIngestion ingestion = new EventIngestion(Schedulers.immediate());
+        RingBufferSubject<Event> subject = RingBufferSubject.create(RetentionPolicy.untilSubscribed());
+        TestSubscriber<Event> subscriber = new TestSubscriber<>();
+        subject.subscribe(subscriber);
+        ingestion.connect(subject);
+
+        // A completed source does not complete the stream
+        RxTestUtils.generateEvents("A", "B", "C").subscribe(ingestion.newSourceSubscriber());
+        subscriber.assertValueCount(3);
+        subscriber.assertNotCompleted();
+
+        // A failed source does
+        Observable.<Event>error(new IllegalStateException()).subscribe(ingestion.newSourceSubscriber());
+        subscriber.assertError(IllegalStateException.class);
+    }
+
+    @Test
+    public void testEventIngestion_Stamps()
+    {
+        // A clock that goes back in time after the second event
+        final long[] times = {10, 20, 15, 30};
+        EventIngestion ingestion = new EventIngestion(Schedulers.immediate());
+        ingestion.setClock(new Clock()
+        {
+            private int i = 0;
+
+            @Override
+            public long nanoTime()
+            {
+                return times[i++];
+            }
+        });
+        RingBufferSubject<Event> subject = RingBufferSubject.create(RetentionPolicy.untilSubscribed());
+        TestSubscriber<Event> subscriber = new TestSubscriber<>();
+        subject.subscribe(subscriber);
+
+        // The time is read when the event is offered, but the event is stamped when it enters the stream
+        Event first = new GenericEvent("A");
+        ingestion.offer(first);
+        assertEquals(-1, first.getSequence());
+        assertEquals(-1, first.getTimestamp());
+        ingestion.connect(subject);
+        for(String name: new String[]{"B", "C", "D"}) ingestion.offer(new GenericEvent(name));
+
+        long[] expectedTimestamps = {10, 20, 20, 30};
+        for(int i=0; i<4; i++)
+        {
+            Event event = subscriber.getOnNextEvents().get(i);
+            assertEquals(i, event.getSequence());
+            assertEquals(expectedTimestamps[i], event.getTimestamp());
+        }
+    }
+
+    @Test
+    public void testEventIngestion_StampsAtEmission()
+    {
+        final long[] now = {10};
+        EventIngestion ingestion = new EventIngestion(Schedulers.immediate());
+        ingestion.setClock(new Clock()
+        {
+            @Override
+            public long nanoTime()
+            {
+                return now[0];
+            }
+        });
+        RingBufferSubject<Event> subject = RingBufferSubject.create(RetentionPolicy.untilSubscribed());
+        TestSubscriber<Event> subscriber = new TestSubscriber<>();
+        subject.subscribe(subscriber);
+
+        // The waiting events keep the time of their emission, also when they take the marker of a dropped one
+        Event custom = new GenericEvent("custom");
+        ingestion.offer(custom);
+        Subscriber<Event> source = ingestion.newSourceSubscriber("bounded", BackpressurePolicy.dropOldest(1));
+        now[0] = 20;
+        source.onNext(new GenericEvent("dropped"));
+        now[0] = 30;
+        Event kept = new GenericEvent("kept");
+        source.onNext(kept);
+        now[0] = 100;
+        ingestion.connect(subject);
+
+        subscriber.assertValues(custom, kept);
+        assertEquals(10, custom.getTimestamp());
+        assertEquals(30, kept.getTimestamp());
+        assertEquals(1, kept.getSequence());
+
+        // An event emitted again enters the stream again, with the stamps of its new position
+        ingestion.offer(custom);
+        ingestion.offer(new GenericEvent("next"));
+        assertEquals(4, subscriber.getOnNextEvents().size());
+        assertEquals(custom, subscriber.getOnNextEvents().get(2));
+        assertEquals(100, custom.getTimestamp());
+        assertEquals(2, custom.getSequence());
+        assertEquals(3, subscriber.getOnNextEvents().get(3).getSequence());
+
+    }
+
+    @Test
+    public void testEventIngestion_EmittedAgainInBatch()
+    {
+        EventIngestion ingestion = new EventIngestion(Schedulers.immediate());
+        RingBufferSubject<Event> subject = RingBufferSubject.create(RetentionPolicy.untilSubscribed());
+        final List<Long> sequences = new ArrayList<>();
+        subject.subscribe(new Action1<Event>()
+        {
+            @Override
+            public void call(Event event)
+            {
+                sequences.add(event.getSequence());
+            }
+        });
+
+        // The same instance waits twice in the queue, each delivery sees its own stamps
+        Event event = new GenericEvent("A");
+        ingestion.offer(event);
+        ingestion.offer(new GenericEvent("B"));
+        ingestion.offer(event);
+        ingestion.connect(subject);
+        assertEquals(Arrays.asList(0L, 1L, 2L), sequences);
+        assertEquals(2, event.getSequence());
+        assertEquals(0, ingestion.getMetrics().getBacklog());
+    }
+
+    @Test
+    public void testEventIngestion_Metrics()
+    {
+        EventIngestion ingestion = new EventIngestion(Schedulers.immediate());
+        RingBufferSubject<Event> subject = RingBufferSubject.create(RetentionPolicy.untilSubscribed());
+        TestSubscriber<Event> subscriber = new TestSubscriber<>();
+        subject.subscribe(subscriber);
+
+        // The events offered before the connection are waiting
+        ingestion.offer(new GenericEvent("custom"));
+        RxTestUtils.generateEvents("A", "B", "C").subscribe(ingestion.newSourceSubscriber("letters", BackpressurePolicy.unbounded()));
+        PipelineMetrics metrics = ingestion.getMetrics();
+        assertEquals(0, metrics.getEventsCount());
+        assertEquals(4, metrics.getBacklog());
+
+        // Each source counts its own events
+        ingestion.connect(subject);
+        RxTestUtils.generateEvents("D", "E").subscribe(ingestion.newSourceSubscriber("more letters", BackpressurePolicy.unbounded()));
+        metrics = ingestion.getMetrics();
+        assertEquals(6, metrics.getEventsCount());
+        assertEquals(0, metrics.getBacklog());
+        assertEquals(3, metrics.getSources().size());
+        assertEquals(EventIngestion.CUSTOM_SOURCE_TAG, metrics.getSources().get(0).getTag());
+        assertEquals(1, metrics.getSources().get(0).getEventsCount());
+        assertEquals("letters", metrics.getSources().get(1).getTag());
+        assertEquals(3, metrics.getSources().get(1).getEventsCount());
+        assertEquals("more letters", metrics.getSources().get(2).getTag());
+        assertEquals(2, metrics.getSources().get(2).getEventsCount());
+        assertTrue(metrics.getMaxLag()>=metrics.getLagAtPercentile(50));
+    }
+
+    @Test
+    public void testEventIngestion_RecentRate() throws InterruptedException
+    {
+        EventIngestion ingestion = new EventIngestion(Schedulers.immediate());
+        RingBufferSubject<Event> subject = RingBufferSubject.create(RetentionPolicy.untilSubscribed());
+        subject.subscribe(new TestSubscriber<Event>());
+        ingestion.connect(subject);
+
+        // During the first second the recent rate is the mean one, then it is the rate of the last seconds
+        for(int i=0; i<100; i++) ingestion.offer(new GenericEvent(i));
+        PipelineMetrics.Source custom = ingestion.getMetrics().getSources().get(0);
+        assertEquals(custom.getRate(), custom.getRecentRate(), custom.getRate()/100);
+        Thread.sleep(1100);
+        custom = ingestion.getMetrics().getSources().get(0);
+        assertEquals(100, custom.getRecentRate(), 1);
+
+        // A quiet second counts for about a tenth
+        Thread.sleep(1000);
+        custom = ingestion.getMetrics().getSources().get(0);
+        assertEquals(100*Math.exp(-0.1), custom.getRecentRate(), 1);
+    }
+
+    @Test
+    public void testEventIngestion_Backpressure()
+    {
+        EventIngestion ingestion = new EventIngestion(Schedulers.immediate());
+        RingBufferSubject<Event> subject = RingBufferSubject.create(RetentionPolicy.untilSubscribed());
+        TestSubscriber<Event> subscriber = new TestSubscriber<>();
+        subject.subscribe(subscriber);
+
+        // Before the connection nothing is checked, so the bounded sources overflow
+        RxTestUtils.generateEvents("A1", "A2", "A3", "A4").subscribe(ingestion.newSourceSubscriber("newest", BackpressurePolicy.dropNewest(2)));
+        RxTestUtils.generateEvents("B1", "B2", "B3", "B4").subscribe(ingestion.newSourceSubscriber("oldest", BackpressurePolicy.dropOldest(2)));
+        RxTestUtils.generateEvents("C1", "C2", "C3").subscribe(ingestion.newSourceSubscriber("latest", BackpressurePolicy.latest()));
+        PipelineMetrics metrics = ingestion.getMetrics();
+        assertEquals(5, metrics.getBacklog());
+        assertEquals(6, ingestion.getDroppedCount(Collections.<Class<?>>singleton(Event.class)));
+
+        // The dropped events are counted by class
+        Subscriber<Event> callbacks = ingestion.newSourceSubscriber("callbacks", BackpressurePolicy.dropNewest(1));
+        for(int i=0; i<3; i++) callbacks.onNext(new CallbackEvent("onClick"));
+        assertEquals(8, ingestion.getDroppedCount(Collections.<Class<?>>singleton(Event.class)));
+        assertEquals(6, ingestion.getDroppedCount(Collections.<Class<?>>singleton(GenericEvent.class)));
+        assertEquals(2, ingestion.getDroppedCount(Collections.<Class<?>>singleton(CallbackEvent.class)));
+        assertEquals(0, ingestion.getDroppedCount(Collections.<Class<?>>singleton(ToastEvent.class)));
+
+        // Each source keeps the events chosen by its policy, in order
+        ingestion.connect(subject);
+        String[] expected = {"A1", "A2", "B3", "B4", "C3", "onClick"};
+        subscriber.assertValueCount(expected.length);
+        for(int i=0; i<expected.length; i++)
+        {
+            Event event = subscriber.getOnNextEvents().get(i);
+            assertEquals(expected[i], event instanceof CallbackEvent ? ((CallbackEvent) event).getCallbackName() : ((GenericEvent) event).getObjects()[0]);
+        }
+
+        metrics = ingestion.getMetrics();
+        assertEquals(6, metrics.getEventsCount());
+        assertEquals(0, metrics.getBacklog());
+        assertEquals(4, metrics.getSources().get(1).getEventsCount());
+        assertEquals(2, metrics.getSources().get(1).getDroppedCount());
+        assertEquals(2, metrics.getSources().get(2).getDroppedCount());
+        assertEquals(2, metrics.getSources().get(3).getDroppedCount());
+        assertEquals(0, metrics.getSources().get(0).getDroppedCount());
+    }
+
+    @Test
+    public void testEventIngestion_BackpressureConcurrent() throws InterruptedException
+    {
+        final int events = 20000;
+        for(BackpressurePolicy policy: new BackpressurePolicy[]{BackpressurePolicy.dropOldest(2), BackpressurePolicy.latest(), BackpressurePolicy.dropNewest(2), BackpressurePolicy.block(2)})
+        {
+            final EventIngestion ingestion = new EventIngestion(Schedulers.newThread());
+            RingBufferSubject<Event> subject = RingBufferSubject.create(RetentionPolicy.untilSubscribed());
+
+            // A slow subscriber, so that the source overflows while the worker is taking its events
+            TestSubscriber<Event> subscriber = new TestSubscriber<Event>()
+            {
+                @Override
+                public void onNext(Event event)
+                {
+                    if(event.getSequence()%16==0) LockSupport.parkNanos(1000);
+                    super.onNext(event);
+                }
+            };
+            subject.subscribe(subscriber);
+            ingestion.connect(subject);
+
+            final Subscriber<Event> source = ingestion.newSourceSubscriber("fast", policy);
+            Thread producer = new Thread(new Runnable()
+            {
+                @Override
+                public void run()
+                {
+                    for(int i=0; i<events; i++) source.onNext(new GenericEvent(i));
+                }
+            });
+            producer.start();
+            producer.join();
+            ingestion.complete();
+            subscriber.awaitTerminalEvent(10, TimeUnit.SECONDS);
+            subscriber.assertCompleted();
+
+            // Every event is either delivered or dropped, and the last one is never lost
+            List<Event> received = subscriber.getOnNextEvents();
+            PipelineMetrics.Source metrics = ingestion.getMetrics().getSources().get(1);
+            assertEquals(policy.toString(), events, metrics.getEventsCount());
+            assertEquals(policy.toString(), events, received.size()+metrics.getDroppedCount());
+            if(!BackpressurePolicy.Kind.DROP_NEWEST.equals(policy.getKind()))
+            {
+                assertEquals(policy.toString(), events-1, ((GenericEvent) received.get(received.size()-1)).getObjects()[0]);
+            }
+        }
+    }
+}
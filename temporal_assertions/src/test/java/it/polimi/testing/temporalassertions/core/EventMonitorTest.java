@@ -11,12 +11,22 @@ import java.util.concurrent.TimeUnit;
 
 import it.polimi.testing.temporalassertions.BuildConfig;
 import it.polimi.testing.temporalassertions.events.Event;
+import it.polimi.testing.temporalassertions.events.GenericEvent;
 import rx.observers.TestSubscriber;
+import rx.schedulers.Schedulers;
 
+import static it.polimi.testing.temporalassertions.core.AnEventThat.anEventThat;
+import static it.polimi.testing.temporalassertions.core.AtLeast.atLeast;
+import static it.polimi.testing.temporalassertions.core.Exactly.exactly;
+import static it.polimi.testing.temporalassertions.core.Exist.exist;
 import static it.polimi.testing.temporalassertions.core.RxTestUtils.alwaysFailureCheck;
 import static it.polimi.testing.temporalassertions.core.RxTestUtils.alwaysSuccessCheck;
 import static it.polimi.testing.temporalassertions.core.RxTestUtils.generateEvents;
+import static it.polimi.testing.temporalassertions.core.RxTestUtils.is;
+import static it.polimi.testing.temporalassertions.core.RxTestUtils.throwing;
 import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.assertTrue;
+import static junit.framework.Assert.fail;
 import static org.junit.Assert.assertNotNull;
 
 @RunWith(RobolectricGradleTestRunner.class)
@@ -107,4 +117,117 @@ public class EventMonitorTest
             eventMonitor.stopVerification();
         }
     }
+
+    @Test
+    public void testMonitor_StopVerification() throws InterruptedException
+    {
+        EventMonitor eventMonitor = EventMonitor.getInstance();
+        eventMonitor.initialize();
+
+        addChecks();
+        TestSubscriber<Result> resultsTestSubscriber = new TestSubscriber<>();
+        TestSubscriber<? super Event> eventsTestSubscriber = new TestSubscriber<>();
+        eventMonitor.startVerification(eventsTestSubscriber, resultsTestSubscriber);
+        for(int i=0; i<1000; i++) eventMonitor.fireCustomEvent(new GenericEvent(i));
+
+        // The verification stops without waiting, then all the events and the results are received
+        eventMonitor.stopVerification();
+        assertTrue(eventMonitor.awaitTermination(5, TimeUnit.SECONDS));
+        eventsTestSubscriber.assertCompleted();
+        assertEquals(1000, eventsTestSubscriber.getOnNextEvents().size());
+        resultsTestSubscriber.assertCompleted();
+        assertEquals(3, resultsTestSubscriber.getOnNextEvents().size());
+    }
+
+    @Test
+    public void testMonitor_BlockingSource() throws InterruptedException
+    {
+        EventMonitor eventMonitor = EventMonitor.getInstance();
+        eventMonitor.initialize();
+
+        try
+        {
+            // A blocking source cannot be subscribed on the main thread
+            try
+            {
+                eventMonitor.observe("blocking", generateEvents("A"), BackpressurePolicy.block(1));
+                fail();
+            }
+            catch(IllegalArgumentException e)
+            {
+                // Expected
+            }
+
+            // It can on its own scheduler, and none of its events is lost
+            eventMonitor.observe("blocking", generateEvents("A", "A", "A", "A", "A"), BackpressurePolicy.block(1), Schedulers.newThread());
+            eventMonitor.checkThat("", exist(exactly(5)).eventsWhereEach(is("A")));
+            TestSubscriber<Result> resultsTestSubscriber = new TestSubscriber<>();
+            eventMonitor.startVerification(new TestSubscriber<Event>(), resultsTestSubscriber);
+            for(int i=0; i<200 && eventMonitor.getPipelineMetrics().getEventsCount()<5; i++) Thread.sleep(10);
+            eventMonitor.stopVerification();
+            assertTrue(eventMonitor.awaitTermination(5, TimeUnit.SECONDS));
+            assertEquals(Outcome.SUCCESS, resultsTestSubscriber.getOnNextEvents().get(0).getOutcome());
+        }
+        finally
+        {
+            eventMonitor.stopVerification();
+        }
+    }
+
+    @Test
+    public void testMonitor_CheckError()
+    {
+        EventMonitor eventMonitor = EventMonitor.getInstance();
+        eventMonitor.initialize();
+
+        // A check whose matcher throws
+        eventMonitor.checkThat("", exist(atLeast(1)).eventsWhereEach(throwing("boom")));
+        TestSubscriber<Result> resultsTestSubscriber = new TestSubscriber<>();
+        TestSubscriber<? super Event> eventsTestSubscriber = new TestSubscriber<>();
+        eventMonitor.startVerification(eventsTestSubscriber, resultsTestSubscriber);
+
+        try
+        {
+            // Both subscribers receive the error, and the later events are not waiting forever
+            eventMonitor.fireCustomEvent(new GenericEvent("A"));
+            eventsTestSubscriber.awaitTerminalEvent(2, TimeUnit.SECONDS);
+            resultsTestSubscriber.awaitTerminalEvent(2, TimeUnit.SECONDS);
+            eventsTestSubscriber.assertError(IllegalStateException.class);
+            resultsTestSubscriber.assertError(IllegalStateException.class);
+            assertEquals("boom", resultsTestSubscriber.getOnErrorEvents().get(0).getMessage());
+
+            assertEquals(1, eventMonitor.getPipelineMetrics().getEventsCount());
+            eventMonitor.fireCustomEvent(new GenericEvent("B"));
+            assertEquals(1, eventMonitor.getPipelineMetrics().getEventsCount());
+            assertEquals(0, eventMonitor.getPipelineMetrics().getBacklog());
+        }
+        finally
+        {
+            eventMonitor.stopVerification();
+        }
+    }
+
+    @Test
+    public void testMonitor_DeadlineWithoutEvents() throws InterruptedException
+    {
+        EventMonitor eventMonitor = EventMonitor.getInstance();
+        eventMonitor.initialize();
+
+        eventMonitor.checkThat("", atLeast(1).eventsWhereEach(is("B")).mustHappenAfter(anEventThat(is("A")), 200, TimeUnit.MILLISECONDS));
+        TestSubscriber<Result> resultsTestSubscriber = new TestSubscriber<>();
+        eventMonitor.startVerification(new TestSubscriber<Event>(), resultsTestSubscriber);
+
+        try
+        {
+            // The check fails when its deadline expires, even if no other event arrives
+            eventMonitor.fireCustomEvent(new GenericEvent("A"));
+            for(int i=0; i<200 && resultsTestSubscriber.getOnNextEvents().isEmpty(); i++) Thread.sleep(10);
+            assertEquals(1, resultsTestSubscriber.getOnNextEvents().size());
+            assertEquals(Outcome.FAILURE, resultsTestSubscriber.getOnNextEvents().get(0).getOutcome());
+        }
+        finally
+        {
+            eventMonitor.stopVerification();
+        }
+    }
 }
@@ -3,6 +3,8 @@ package it.polimi.testing.temporalassertions.core;
 
 import org.junit.Test;
 
+import java.util.concurrent.TimeUnit;
+
 import static it.polimi.testing.temporalassertions.core.AllHold.allHold;
 import static it.polimi.testing.temporalassertions.core.AnEventThat.anEventThat;
 import static it.polimi.testing.temporalassertions.core.AtLeast.atLeast;
@@ -400,4 +402,155 @@ public class EventsWhereEachTest
         Check check = atMost(2).eventsWhereEach(is("D")).mustHappenBetween(anEventThat(is("B")), anEventThat(is("F")));
         assertThatOutcomeIs(events, check, Outcome.WARNING);
     }
+
+    /**********************************************
+     * Timed MustHappenAfter Tests
+     **********************************************/
+
+    @Test
+    public void testTimedMustHappenAfter_Correct()
+    {
+        String[] events = new String[]{"A", "B", "D", "C", "B", "C", "D", "E"};
+        long[] millis = new long[]{0, 10, 100, 150, 300, 320, 500, 900};
+        Check check = atLeast(1).eventsWhereEach(is("D")).mustHappenAfter(anEventThat(is("B")), 200, TimeUnit.MILLISECONDS);
+        assertThatOutcomeIs(events, millis, check, Outcome.SUCCESS);
+    }
+
+    @Test
+    public void testTimedMustHappenAfter_TooLate()
+    {
+        String[] events = new String[]{"A", "B", "D", "C", "B", "C", "D", "E"};
+        long[] millis = new long[]{0, 10, 100, 150, 300, 320, 501, 900};
+        Check check = atLeast(1).eventsWhereEach(is("D")).mustHappenAfter(anEventThat(is("B")), 200, TimeUnit.MILLISECONDS);
+        assertThatOutcomeIs(events, millis, check, Outcome.FAILURE);
+    }
+
+    @Test
+    public void testTimedMustHappenAfter_LateEventsNotCounted()
+    {
+        String[] events = new String[]{"A", "B", "D", "D", "C"};
+        long[] millis = new long[]{0, 10, 100, 300, 400};
+        Check check = exactly(1).eventsWhereEach(is("D")).mustHappenAfter(anEventThat(is("B")), 200, TimeUnit.MILLISECONDS);
+        assertThatOutcomeIs(events, millis, check, Outcome.SUCCESS);
+    }
+
+    @Test
+    public void testTimedMustHappenAfter_NoM2()
+    {
+        String[] events = new String[]{"A", "C", "D"};
+        long[] millis = new long[]{0, 10, 100};
+        Check check = atLeast(1).eventsWhereEach(is("D")).mustHappenAfter(anEventThat(is("B")), 200, TimeUnit.MILLISECONDS);
+        assertThatOutcomeIs(events, millis, check, Outcome.WARNING);
+    }
+
+    /**********************************************
+     * PerWindow Tests
+     **********************************************/
+
+    @Test
+    public void testAtMostPerWindow_Correct()
+    {
+        String[] events = new String[]{"D", "A", "D", "D", "C", "D", "D"};
+        long[] millis = new long[]{0, 10, 50, 120, 130, 160, 230};
+        Check check = atMost(2).eventsWhereEach(is("D")).perWindow(100, TimeUnit.MILLISECONDS);
+        assertThatOutcomeIs(events, millis, check, Outcome.SUCCESS);
+    }
+
+    @Test
+    public void testAtMostPerWindow_Storm()
+    {
+        String[] events = new String[]{"D", "A", "D", "D", "C", "D", "D"};
+        long[] millis = new long[]{0, 10, 50, 120, 130, 160, 200};
+        Check check = atMost(2).eventsWhereEach(is("D")).perWindow(100, TimeUnit.MILLISECONDS);
+        assertThatOutcomeIs(events, millis, check, Outcome.FAILURE);
+    }
+
+    @Test
+    public void testAtMostPerWindow_LargestBound()
+    {
+        String[] events = new String[]{"D", "D", "D", "D"};
+        long[] millis = new long[]{0, 1, 2, 3};
+        Check check = atMost(Integer.MAX_VALUE).eventsWhereEach(is("D")).perWindow(100, TimeUnit.MILLISECONDS);
+        assertThatOutcomeIs(events, millis, check, Outcome.SUCCESS);
+    }
+
+    @Test
+    public void testAtLeastPerWindow_LargeBound()
+    {
+        String[] events = new String[]{"D", "D", "D", "D"};
+        long[] millis = new long[]{0, 1, 2, 300};
+        Check check = atLeast(1000000).eventsWhereEach(is("D")).perWindow(100, TimeUnit.MILLISECONDS);
+        assertThatOutcomeIs(events, millis, check, Outcome.FAILURE);
+    }
+
+    @Test
+    public void testExactlyPerWindow_ManyEvents()
+    {
+        String[] events = new String[100];
+        long[] millis = new long[100];
+        for(int i=0; i<100; i++)
+        {
+            events[i] = "D";
+            millis[i] = i*10;
+        }
+        assertThatOutcomeIs(events, millis, exactly(10).eventsWhereEach(is("D")).perWindow(100, TimeUnit.MILLISECONDS), Outcome.SUCCESS);
+        millis[50] = 495;
+        assertThatOutcomeIs(events, millis, exactly(10).eventsWhereEach(is("D")).perWindow(100, TimeUnit.MILLISECONDS), Outcome.FAILURE);
+        millis[50] = 505;
+        assertThatOutcomeIs(events, millis, exactly(10).eventsWhereEach(is("D")).perWindow(100, TimeUnit.MILLISECONDS), Outcome.FAILURE);
+    }
+
+    @Test
+    public void testAtMostPerWindow_NegativeTimestamps()
+    {
+        String[] events = new String[]{"D", "A", "D", "D", "C", "D", "D"};
+        long[] millis = new long[]{-1000, -990, -950, -880, -870, -840, -800};
+        Check check = atMost(2).eventsWhereEach(is("D")).perWindow(100, TimeUnit.MILLISECONDS);
+        assertThatOutcomeIs(events, millis, check, Outcome.FAILURE);
+    }
+
+    @Test
+    public void testAtLeastPerWindow_Correct()
+    {
+        String[] events = new String[]{"D", "D", "A", "D", "D", "D"};
+        long[] millis = new long[]{0, 40, 60, 80, 120, 160};
+        Check check = atLeast(2).eventsWhereEach(is("D")).perWindow(100, TimeUnit.MILLISECONDS);
+        assertThatOutcomeIs(events, millis, check, Outcome.SUCCESS);
+    }
+
+    @Test
+    public void testAtLeastPerWindow_Gap()
+    {
+        String[] events = new String[]{"D", "D", "A", "D", "D"};
+        long[] millis = new long[]{0, 50, 60, 120, 160};
+        Check check = atLeast(2).eventsWhereEach(is("D")).perWindow(100, TimeUnit.MILLISECONDS);
+        assertThatOutcomeIs(events, millis, check, Outcome.FAILURE);
+    }
+
+    @Test
+    public void testExactlyPerWindow_Correct()
+    {
+        String[] events = new String[]{"D", "A", "D", "D"};
+        long[] millis = new long[]{0, 30, 100, 200};
+        Check check = exactly(1).eventsWhereEach(is("D")).perWindow(100, TimeUnit.MILLISECONDS);
+        assertThatOutcomeIs(events, millis, check, Outcome.SUCCESS);
+    }
+
+    @Test
+    public void testExactlyPerWindow_Gap()
+    {
+        String[] events = new String[]{"D", "A", "D", "D"};
+        long[] millis = new long[]{0, 30, 100, 250};
+        Check check = exactly(1).eventsWhereEach(is("D")).perWindow(100, TimeUnit.MILLISECONDS);
+        assertThatOutcomeIs(events, millis, check, Outcome.FAILURE);
+    }
+
+    @Test
+    public void testPerWindow_NoM1()
+    {
+        String[] events = new String[]{"A", "B", "C"};
+        long[] millis = new long[]{0, 10, 100};
+        Check check = atMost(2).eventsWhereEach(is("D")).perWindow(100, TimeUnit.MILLISECONDS);
+        assertThatOutcomeIs(events, millis, check, Outcome.WARNING);
+    }
 }
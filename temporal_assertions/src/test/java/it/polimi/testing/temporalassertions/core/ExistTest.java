@@ -2,6 +2,8 @@ package it.polimi.testing.temporalassertions.core;
 
 import org.junit.Test;
 
+import java.util.concurrent.TimeUnit;
+
 import static it.polimi.testing.temporalassertions.core.AnEventThat.anEventThat;
 import static it.polimi.testing.temporalassertions.core.AtLeast.atLeast;
 import static it.polimi.testing.temporalassertions.core.AtMost.atMost;
@@ -253,4 +255,26 @@ public class ExistTest
         Check check = exist(between(anEventThat(starts("X")), anEventThat(ends("Y"))), exactly(3)).eventsWhereEach(is("A"));
         assertThatOutcomeIs(events, check, Outcome.SUCCESS);
     }
+
+    /**********************************************
+     * Timed Exist After Tests
+     **********************************************/
+
+    @Test
+    public void testTimedExistAfter_Correct()
+    {
+        String[] events = new String[]{"B", "A", "C", "B", "A", "A", "C"};
+        long[] millis = new long[]{0, 300, 400, 500, 550, 600, 1000};
+        Check check = exist(after(anEventThat(is("B")), 200, TimeUnit.MILLISECONDS), atLeast(2)).eventsWhereEach(is("A"));
+        assertThatOutcomeIs(events, millis, check, Outcome.SUCCESS);
+    }
+
+    @Test
+    public void testTimedExistAfter_AllTooLate()
+    {
+        String[] events = new String[]{"B", "A", "A", "C", "B", "A", "A", "C"};
+        long[] millis = new long[]{0, 100, 300, 400, 500, 550, 800, 1000};
+        Check check = exist(after(anEventThat(is("B")), 200, TimeUnit.MILLISECONDS), atLeast(2)).eventsWhereEach(is("A"));
+        assertThatOutcomeIs(events, millis, check, Outcome.FAILURE);
+    }
 }
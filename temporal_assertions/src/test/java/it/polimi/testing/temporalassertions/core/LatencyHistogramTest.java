@@ -0,0 +1,46 @@
+package it.polimi.testing.temporalassertions.core;
+
+import org.junit.Test;
+
+import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.assertTrue;
+
+public class LatencyHistogramTest
+{
+    @Test
+    public void testLatencyHistogram_Percentiles()
+    {
+        LatencyHistogram histogram = new LatencyHistogram();
+        assertEquals(0, histogram.getValueAtPercentile(99));
+
+        // 1..10000 microseconds
+        for(long i=1; i<=10000; i++) histogram.record(i*1000);
+
+        assertEquals(10000, histogram.getTotalCount());
+        assertEquals(10000000, histogram.getMax());
+        assertEquals(10000000, histogram.getValueAtPercentile(100));
+
+        // Within the precision of the histogram, never lower than the exact value
+        long[] exact = {1000, 5000000, 9000000, 9900000};
+        double[] percentiles = {0, 50, 90, 99};
+        for(int i=0; i<exact.length; i++)
+        {
+            long value = histogram.getValueAtPercentile(percentiles[i]);
+            assertTrue(value>=exact[i]);
+            assertTrue(value<=exact[i]*1.04);
+        }
+    }
+
+    @Test
+    public void testLatencyHistogram_SmallAndHugeValues()
+    {
+        LatencyHistogram histogram = new LatencyHistogram();
+        histogram.record(-5);
+        histogram.record(3);
+        histogram.record(Long.MAX_VALUE);
+
+        assertEquals(0, histogram.getValueAtPercentile(10));
+        assertEquals(3, histogram.getValueAtPercentile(50));
+        assertEquals(Long.MAX_VALUE, histogram.getValueAtPercentile(100));
+    }
+}
@@ -0,0 +1,96 @@
+package it.polimi.testing.temporalassertions.core;
+
+import org.hamcrest.BaseMatcher;
+import org.hamcrest.Description;
+import org.hamcrest.Matcher;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import it.polimi.testing.temporalassertions.events.Event;
+
+import static it.polimi.testing.temporalassertions.core.AllHold.allHold;
+import static it.polimi.testing.temporalassertions.core.Exist.existsAnEventThat;
+import static it.polimi.testing.temporalassertions.core.Not.isNotSatisfied;
+import static junit.framework.Assert.assertEquals;
+
+public class LazyStringTest
+{
+    @Test
+    public void testLazyString_RenderedOnceOnDemand()
+    {
+        final int[] renders = {0};
+        Object part = new Object()
+        {
+            @Override
+            public String toString()
+            {
+                renders[0]++;
+                return "part";
+            }
+        };
+
+        LazyString string = LazyString.of("The ", part, " and ", 3, " events");
+        Result result = new Result(Outcome.SUCCESS, string);
+        assertEquals(0, renders[0]);
+
+        assertEquals("The part and 3 events", result.getReport());
+        assertEquals("The part and 3 events", result.getReport());
+        assertEquals(21, string.length());
+        assertEquals(1, renders[0]);
+    }
+
+    @Test
+    public void testLazyString_Join()
+    {
+        assertEquals("a; ; c", LazyString.join("; ", new Object[]{"a", "", LazyString.of("c")}).toString());
+        assertEquals("", LazyString.join("; ", new Object[0]).toString());
+
+        assertEquals("a; b; c", LazyString.joinNonEmpty("; ", Arrays.asList("a", LazyString.of("b"), "c")).toString());
+        assertEquals("b", LazyString.joinNonEmpty("; ", Arrays.asList("", "b")).toString());
+        assertEquals("", LazyString.joinNonEmpty("; ", Collections.emptyList()).toString());
+    }
+
+    @Test
+    public void testLazyString_CheckDescription()
+    {
+        final int[] renders = {0};
+        Matcher<Event> matcher = new BaseMatcher<Event>()
+        {
+            @Override
+            public boolean matches(Object item)
+            {
+                return true;
+            }
+
+            @Override
+            public void describeTo(Description description)
+            {
+                renders[0]++;
+                description.appendText("anything");
+            }
+        };
+
+        Check check = allHold(isNotSatisfied(existsAnEventThat(matcher)), existsAnEventThat(matcher));
+        assertEquals(0, renders[0]);
+
+        assertEquals("(NOT TRUE THAT (Exists an event that anything)) AND (Exists an event that anything)", check.toString());
+        check.toString();
+        assertEquals(2, renders[0]);
+    }
+
+    @Test
+    public void testLazyString_StringConstructorsKept() throws NoSuchMethodException
+    {
+        // The checks and the results built by the code compiled against the previous versions still link
+        Check.class.getDeclaredConstructor(String.class, CheckSubscriber.class);
+        Result.class.getConstructor(Outcome.class, String.class);
+
+        Check check = new Check("A check", RxTestUtils.alwaysSuccessCheck().newCheckSubscriber())
+        {
+        };
+        assertEquals("A check", check.toString());
+        assertEquals(0, check.getMatchers().length);
+    }
+}
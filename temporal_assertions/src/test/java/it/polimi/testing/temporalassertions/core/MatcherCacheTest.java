@@ -0,0 +1,97 @@
+package it.polimi.testing.temporalassertions.core;
+
+import org.hamcrest.BaseMatcher;
+import org.hamcrest.Description;
+import org.junit.Test;
+
+import it.polimi.testing.temporalassertions.events.Event;
+import it.polimi.testing.temporalassertions.events.GenericEvent;
+
+import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.assertFalse;
+import static junit.framework.Assert.assertTrue;
+
+public class MatcherCacheTest
+{
+    /**
+     * A matcher that counts how many times it is evaluated
+     */
+    private static class CountingMatcher extends BaseMatcher<Event>
+    {
+        private final String string;
+        private int evaluations = 0;
+
+        CountingMatcher(String string)
+        {
+            this.string = string;
+        }
+
+        @Override
+        public boolean matches(Object item)
+        {
+            evaluations++;
+            return item instanceof GenericEvent && string.equals(((GenericEvent) item).getObjects()[0]);
+        }
+
+        @Override
+        public void describeTo(Description description)
+        {
+
+        }
+    }
+
+    @Test
+    public void testMatcherCache_OneEvaluationPerEvent()
+    {
+        MatcherCache cache = new MatcherCache();
+        CountingMatcher matcher = new CountingMatcher("A");
+        cache.register(matcher);
+
+        Event a = new GenericEvent("A");
+        cache.setCurrentEvent(a);
+        assertTrue(cache.matches(matcher, a));
+        assertTrue(cache.matches(matcher, a));
+        assertEquals(1, matcher.evaluations);
+
+        Event b = new GenericEvent("B");
+        cache.setCurrentEvent(b);
+        assertFalse(cache.matches(matcher, b));
+        assertFalse(cache.matches(matcher, b));
+        assertEquals(2, matcher.evaluations);
+    }
+
+    @Test
+    public void testMatcherCache_ManyMatchers()
+    {
+        MatcherCache cache = new MatcherCache();
+        CountingMatcher[] matchers = new CountingMatcher[130];
+        for(int i=0; i<matchers.length; i++)
+        {
+            matchers[i] = new CountingMatcher(i%2==0 ? "A" : "B");
+        }
+
+        Event a = new GenericEvent("A");
+        cache.setCurrentEvent(a);
+        for(int round=0; round<3; round++)
+        {
+            for(int i=0; i<matchers.length; i++)
+            {
+                assertEquals(i%2==0, cache.matches(matchers[i], a));
+                assertEquals(1, matchers[i].evaluations);
+            }
+        }
+    }
+
+    @Test
+    public void testMatcherCache_NotCurrentEvent()
+    {
+        MatcherCache cache = new MatcherCache();
+        CountingMatcher matcher = new CountingMatcher("A");
+
+        Event a = new GenericEvent("A");
+        cache.setCurrentEvent(new GenericEvent("B"));
+        assertTrue(cache.matches(matcher, a));
+        assertTrue(cache.matches(matcher, a));
+        assertEquals(2, matcher.evaluations);
+    }
+}
@@ -0,0 +1,58 @@
+package it.polimi.testing.temporalassertions.core;
+
+import org.hamcrest.Matcher;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+
+import it.polimi.testing.temporalassertions.events.ActivityLifecycleEvent;
+import it.polimi.testing.temporalassertions.events.CallbackEvent;
+import it.polimi.testing.temporalassertions.events.Event;
+import it.polimi.testing.temporalassertions.events.GenericEvent;
+import it.polimi.testing.temporalassertions.events.MenuClickEvent;
+import it.polimi.testing.temporalassertions.events.ToastEvent;
+
+import static it.polimi.testing.temporalassertions.core.RxTestUtils.starts;
+import static it.polimi.testing.temporalassertions.events.ActivityLifecycleEvent.isActivityLifecycleEvent;
+import static it.polimi.testing.temporalassertions.events.CallbackEvent.isCallbackEvent;
+import static it.polimi.testing.temporalassertions.events.MenuClickEvent.isMenuClick;
+import static it.polimi.testing.temporalassertions.events.ToastEvent.isToastDisplay;
+import static it.polimi.testing.temporalassertions.matchers.AnyEvent.anyEvent;
+import static junit.framework.Assert.assertEquals;
+import static org.hamcrest.CoreMatchers.both;
+import static org.hamcrest.Matchers.any;
+import static org.hamcrest.Matchers.anything;
+
+public class MatcherEventTypesTest
+{
+    private static Set<Class<?>> types(Class<?>... classes)
+    {
+        return new HashSet<>(Arrays.asList(classes));
+    }
+
+    @Test
+    public void testMatcherEventTypes_FeatureMatcher()
+    {
+        assertEquals(types(ActivityLifecycleEvent.class), MatcherEventTypes.of(isActivityLifecycleEvent(ActivityLifecycleEvent.ON_CREATE)));
+        assertEquals(types(CallbackEvent.class), MatcherEventTypes.of(isCallbackEvent("A")));
+        assertEquals(types(GenericEvent.class), MatcherEventTypes.of(starts("A")));
+    }
+
+    @Test
+    public void testMatcherEventTypes_Combinations()
+    {
+        Matcher<ActivityLifecycleEvent> both = both(isActivityLifecycleEvent(ActivityLifecycleEvent.ON_CREATE)).and(isActivityLifecycleEvent());
+        assertEquals(types(ActivityLifecycleEvent.class), MatcherEventTypes.of(both));
+        assertEquals(types(ToastEvent.class, MenuClickEvent.class), MatcherEventTypes.of(anyEvent(isToastDisplay(), isMenuClick())));
+    }
+
+    @Test
+    public void testMatcherEventTypes_Unknown()
+    {
+        assertEquals(types(Event.class), MatcherEventTypes.of(anything()));
+        assertEquals(types(Event.class), MatcherEventTypes.of(anyEvent(isToastDisplay(), any(Event.class))));
+        assertEquals(types(Event.class), MatcherEventTypes.of(new Matcher<?>[0]));
+    }
+}
@@ -0,0 +1,73 @@
+package it.polimi.testing.temporalassertions.core;
+
+import org.junit.Test;
+
+import java.util.concurrent.CountDownLatch;
+
+import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.assertNull;
+import static junit.framework.Assert.assertTrue;
+
+public class MpscQueueTest
+{
+    @Test
+    public void testMpscQueue_SingleProducer()
+    {
+        MpscQueue<Integer> queue = new MpscQueue<>();
+        assertTrue(queue.isEmpty());
+        assertNull(queue.poll());
+
+        for(int i=0; i<5; i++) queue.offer(i);
+        for(int i=0; i<5; i++) assertEquals(Integer.valueOf(i), queue.poll());
+        assertNull(queue.poll());
+        assertTrue(queue.isEmpty());
+    }
+
+    @Test
+    public void testMpscQueue_ManyProducers() throws InterruptedException
+    {
+        final int producers = 4;
+        final int items = 10000;
+        final MpscQueue<int[]> queue = new MpscQueue<>();
+        final CountDownLatch start = new CountDownLatch(1);
+
+        Thread[] threads = new Thread[producers];
+        for(int p=0; p<producers; p++)
+        {
+            final int producer = p;
+            threads[p] = new Thread(new Runnable()
+            {
+                @Override
+                public void run()
+                {
+                    try
+                    {
+                        start.await();
+                    }
+                    catch(InterruptedException e)
+                    {
+                        return;
+                    }
+                    for(int i=0; i<items; i++) queue.offer(new int[]{producer, i});
+                }
+            });
+            threads[p].start();
+        }
+        start.countDown();
+
+        // Each producer's items must be received in order, and none must be lost
+        int[] next = new int[producers];
+        int received = 0;
+        while(received<producers*items)
+        {
+            int[] item = queue.poll();
+            if(item==null) continue;
+            assertEquals(next[item[0]], item[1]);
+            next[item[0]]++;
+            received++;
+        }
+
+        for(Thread thread: threads) thread.join();
+        assertTrue(queue.isEmpty());
+    }
+}
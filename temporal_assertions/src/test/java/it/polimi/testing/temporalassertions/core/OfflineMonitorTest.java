@@ -0,0 +1,54 @@
+package it.polimi.testing.temporalassertions.core;
+
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import it.polimi.testing.temporalassertions.trace.TraceReader;
+import rx.observers.TestSubscriber;
+
+import static it.polimi.testing.temporalassertions.core.AnEventThat.anEventThat;
+import static it.polimi.testing.temporalassertions.core.AtLeast.atLeast;
+import static it.polimi.testing.temporalassertions.core.Exist.existsAnEventThat;
+import static it.polimi.testing.temporalassertions.core.RxTestUtils.is;
+import static it.polimi.testing.temporalassertions.core.RxTestUtils.writeTrace;
+import static junit.framework.Assert.assertEquals;
+
+public class OfflineMonitorTest
+{
+    @Test
+    public void testOfflineMonitor_Replay() throws IOException, InterruptedException
+    {
+        String[] strings = new String[]{"A", "B", "C", "B", "C", "D"};
+        long[] millis = new long[]{0, 10, 20, 100, 250, 400};
+
+        // Record the trace
+        File file = File.createTempFile("trace", ".bin");
+        file.deleteOnExit();
+        writeTrace(file, strings, millis);
+
+        // Check it again, twice
+        OfflineMonitor monitor = new OfflineMonitor();
+        monitor.checkThat("B then C", atLeast(1).eventsWhereEach(is("C")).mustHappenAfter(anEventThat(is("B")), 200, TimeUnit.MILLISECONDS));
+        monitor.checkThat("No E", existsAnEventThat(is("E")));
+        monitor.checkThat("D", anEventThat(is("D")).canHappenOnlyAfter(anEventThat(is("A"))));
+        for(int i=0; i<2; i++)
+        {
+            TestSubscriber<Result> results = new TestSubscriber<>();
+            monitor.replay(new TraceReader(file), results);
+
+            results.assertNoErrors();
+            results.assertCompleted();
+            List<Result> list = results.getOnNextEvents();
+            assertEquals(3, list.size());
+            for(Result result: list)
+            {
+                Outcome expected = result.getLinkedCheck().getDescription().startsWith("Exists") ? Outcome.FAILURE : Outcome.SUCCESS;
+                assertEquals(result.toString(), expected, result.getOutcome());
+            }
+        }
+    }
+}
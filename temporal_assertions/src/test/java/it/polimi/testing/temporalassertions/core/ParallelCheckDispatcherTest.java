@@ -0,0 +1,172 @@
+package it.polimi.testing.temporalassertions.core;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import it.polimi.testing.temporalassertions.events.Event;
+import it.polimi.testing.temporalassertions.events.GenericEvent;
+import rx.observers.TestSubscriber;
+
+import static it.polimi.testing.temporalassertions.core.AllEventsWhereEach.allEventsWhereEach;
+import static it.polimi.testing.temporalassertions.core.AnEventThat.anEventThat;
+import static it.polimi.testing.temporalassertions.core.AtLeast.atLeast;
+import static it.polimi.testing.temporalassertions.core.Exactly.exactly;
+import static it.polimi.testing.temporalassertions.core.Exist.exist;
+import static it.polimi.testing.temporalassertions.core.RxTestUtils.is;
+import static it.polimi.testing.temporalassertions.core.RxTestUtils.starts;
+import static it.polimi.testing.temporalassertions.core.RxTestUtils.throwing;
+import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.assertFalse;
+import static junit.framework.Assert.assertNotNull;
+
+public class ParallelCheckDispatcherTest
+{
+    private final static String[] PATTERN = {"B", "A1", "A2", "C", "B", "A3", "C"};
+
+    @SuppressWarnings("unchecked")
+    private static List<Check> checks()
+    {
+        return Arrays.asList(
+                anEventThat(starts("A")).canHappenOnlyAfter(anEventThat(is("B"))),
+                exactly(3).eventsWhereEach(starts("A")).mustHappenBetween(anEventThat(is("B")), anEventThat(is("C"))),
+                exist(atLeast(2)).eventsWhereEach(is("C")),
+                allEventsWhereEach(starts("A")).matchInOrder(is("A1"), is("A2")),
+                exist(exactly(1000)).eventsWhereEach(is("A3")),
+                exactly(1).eventsWhereEach(is("B")).mustHappenBefore(anEventThat(is("C"))));
+    }
+
+    private static Event[] events(int repetitions)
+    {
+        Event[] events = new Event[PATTERN.length*repetitions];
+        for(int i=0; i<events.length; i++) events[i] = new GenericEvent(PATTERN[i%PATTERN.length]);
+        return events;
+    }
+
+    private static List<String> outcomes(TestSubscriber<Result> subscriber)
+    {
+        subscriber.awaitTerminalEvent(5, TimeUnit.SECONDS);
+        subscriber.assertNoErrors();
+        subscriber.assertCompleted();
+
+        List<String> outcomes = new ArrayList<>();
+        for(Result result: subscriber.getOnNextEvents()) outcomes.add(result.toString());
+        Collections.sort(outcomes);
+        return outcomes;
+    }
+
+    @Test
+    public void testParallelCheckDispatcher_SameResultsAsSingleThread()
+    {
+        Event[] events = events(1000);
+
+        TestSubscriber<Result> expected = new TestSubscriber<>();
+        CheckDispatcher dispatcher = new CheckDispatcher(checks(), expected);
+        dispatcher.onNextBatch(events, 0, events.length);
+        dispatcher.onCompleted();
+
+        // A small buffer makes the producer wait for the workers and wrap around the ring
+        TestSubscriber<Result> actual = new TestSubscriber<>();
+        ParallelCheckDispatcher parallelDispatcher = new ParallelCheckDispatcher(checks(), actual, 4, 16);
+        for(int from=0; from<events.length; from+=50)
+        {
+            parallelDispatcher.onNextBatch(events, from, Math.min(from+50, events.length));
+        }
+        parallelDispatcher.onNext(new GenericEvent("Z"));
+        parallelDispatcher.onCompleted();
+
+        assertEquals(outcomes(expected), outcomes(actual));
+    }
+
+    @Test
+    public void testParallelCheckDispatcher_AllChecksTerminate()
+    {
+        TestSubscriber<Result> results = new TestSubscriber<>();
+        ParallelCheckDispatcher parallelDispatcher = new ParallelCheckDispatcher(Arrays.asList(
+                allEventsWhereEach(starts("A")).matchInOrder(is("A2")),
+                exactly(0).eventsWhereEach(is("B")).mustHappenBefore(anEventThat(is("C")))), results, 2, 16);
+
+        // Both checks fail before the end of the stream, so the dispatcher stops receiving events
+        Event[] events = events(100);
+        parallelDispatcher.onNextBatch(events, 0, events.length);
+
+        assertEquals(2, outcomes(results).size());
+        for(int i=0; i<100 && !parallelDispatcher.isUnsubscribed(); i++)
+        {
+            try
+            {
+                Thread.sleep(10);
+            }
+            catch(InterruptedException e)
+            {
+                break;
+            }
+        }
+        assertEquals(true, parallelDispatcher.isUnsubscribed());
+    }
+
+    private static int countWorkers()
+    {
+        int count = 0;
+        for(Thread thread: Thread.getAllStackTraces().keySet())
+        {
+            if(thread.isAlive() && thread.getName().startsWith("EventMonitor-worker-")) count++;
+        }
+        return count;
+    }
+
+    @Test
+    public void testParallelCheckDispatcher_Unsubscribe() throws InterruptedException
+    {
+        int workersBefore = countWorkers();
+        TestSubscriber<Result> results = new TestSubscriber<>();
+        ParallelCheckDispatcher parallelDispatcher = new ParallelCheckDispatcher(checks(), results, 4, 16);
+        Event[] events = events(10);
+        parallelDispatcher.onNextBatch(events, 0, events.length);
+
+        // The stream is abandoned without terminating it: the workers stop anyway
+        parallelDispatcher.unsubscribe();
+        for(int i=0; i<100 && countWorkers()>workersBefore; i++) Thread.sleep(10);
+        assertEquals(workersBefore, countWorkers());
+        results.assertNoTerminalEvent();
+
+        // The slots read by all the consumers do not keep their events
+        SequencedEventBuffer buffer = new SequencedEventBuffer(8, 2);
+        buffer.publish(events, 0, 6);
+        buffer.release(0, 5);
+        assertNotNull(buffer.getRing()[0]);
+        buffer.release(1, 3);
+        for(int i=0; i<8; i++) assertEquals(i>=4 && i<6, buffer.getRing()[i]!=null);
+    }
+
+    @Test
+    public void testParallelCheckDispatcher_CheckError() throws InterruptedException
+    {
+        List<Check> checks = new ArrayList<>(checks());
+        checks.add(exist(atLeast(1)).eventsWhereEach(throwing("boom")));
+        TestSubscriber<Result> results = new TestSubscriber<>();
+        final ParallelCheckDispatcher parallelDispatcher = new ParallelCheckDispatcher(checks, results, 2, 4);
+
+        // The worker of the failing check does not keep the producer waiting
+        final Event[] events = events(1000);
+        Thread producer = new Thread(new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                parallelDispatcher.onNextBatch(events, 0, events.length);
+                parallelDispatcher.onCompleted();
+            }
+        });
+        producer.start();
+        producer.join(3000);
+        assertFalse(producer.isAlive());
+
+        results.awaitTerminalEvent(3, TimeUnit.SECONDS);
+        results.assertError(IllegalStateException.class);
+    }
+}
@@ -0,0 +1,97 @@
+package it.polimi.testing.temporalassertions.core;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+import rx.observers.TestSubscriber;
+
+import static junit.framework.Assert.assertEquals;
+
+public class RingBufferSubjectTest
+{
+    private static RingBufferSubject<Integer> subjectWith(RetentionPolicy policy, int items)
+    {
+        RingBufferSubject<Integer> subject = RingBufferSubject.create(policy);
+        for(int i=0; i<items; i++) subject.onNext(i);
+        return subject;
+    }
+
+    @Test
+    public void testRingBufferSubject_LastEvents()
+    {
+        RingBufferSubject<Integer> subject = subjectWith(RetentionPolicy.lastEvents(3), 10);
+        assertEquals(3, subject.getRetainedCount());
+
+        TestSubscriber<Integer> late = new TestSubscriber<>();
+        subject.subscribe(late);
+        subject.onNext(10);
+        subject.onCompleted();
+
+        late.assertValues(7, 8, 9, 10);
+        late.assertCompleted();
+        assertEquals(3, subject.getRetainedCount());
+    }
+
+    @Test
+    public void testRingBufferSubject_UntilSubscribed()
+    {
+        RingBufferSubject<Integer> subject = subjectWith(RetentionPolicy.untilSubscribed(), 2);
+
+        TestSubscriber<Integer> first = new TestSubscriber<>();
+        subject.subscribe(first);
+        subject.onAllSubscribed();
+        assertEquals(0, subject.getRetainedCount());
+
+        subject.onNext(2);
+        assertEquals(0, subject.getRetainedCount());
+
+        TestSubscriber<Integer> late = new TestSubscriber<>();
+        subject.subscribe(late);
+        subject.onNext(3);
+
+        first.assertValues(0, 1, 2, 3);
+        late.assertValues(3);
+    }
+
+    @Test
+    public void testRingBufferSubject_Unbounded()
+    {
+        RingBufferSubject<Integer> subject = subjectWith(RetentionPolicy.unbounded(), 100);
+        subject.onAllSubscribed();
+        assertEquals(100, subject.getRetainedCount());
+
+        TestSubscriber<Integer> late = new TestSubscriber<>();
+        subject.subscribe(late);
+        assertEquals(100, late.getOnNextEvents().size());
+        assertEquals(Arrays.asList(0, 1, 2), late.getOnNextEvents().subList(0, 3));
+    }
+
+    @Test
+    public void testRingBufferSubject_LastPeriod() throws InterruptedException
+    {
+        RingBufferSubject<Integer> subject = subjectWith(RetentionPolicy.lastPeriod(50, TimeUnit.MILLISECONDS, 4), 10);
+        assertEquals(4, subject.getRetainedCount());
+
+        Thread.sleep(100);
+        assertEquals(0, subject.getRetainedCount());
+
+        subject.onNext(10);
+        TestSubscriber<Integer> late = new TestSubscriber<>();
+        subject.subscribe(late);
+        late.assertValues(10);
+    }
+
+    @Test
+    public void testRingBufferSubject_Unsubscribe()
+    {
+        RingBufferSubject<Integer> subject = RingBufferSubject.create(RetentionPolicy.untilSubscribed());
+        TestSubscriber<Integer> subscriber = new TestSubscriber<>();
+        subject.subscribe(subscriber);
+        assertEquals(true, subject.hasObservers());
+
+        subscriber.unsubscribe();
+        assertEquals(false, subject.hasObservers());
+    }
+}
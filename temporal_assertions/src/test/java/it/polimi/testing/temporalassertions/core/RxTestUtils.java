@@ -6,10 +6,15 @@ import org.hamcrest.BaseMatcher;
 import org.hamcrest.Description;
 import org.hamcrest.Matcher;
 
+import java.io.File;
+import java.io.IOException;
+import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.TimeUnit;
 
 import it.polimi.testing.temporalassertions.events.Event;
 import it.polimi.testing.temporalassertions.events.GenericEvent;
+import it.polimi.testing.temporalassertions.trace.TraceWriter;
 import rx.Observable;
 import rx.Subscriber;
 import rx.functions.Func1;
@@ -19,6 +24,8 @@ import static it.polimi.testing.temporalassertions.events.GenericEvent.isGeneric
 import static it.polimi.testing.temporalassertions.events.GenericEvent.isGenericEventWithObjectsThatMatch;
 import static junit.framework.Assert.assertEquals;
 import static junit.framework.Assert.assertNotNull;
+import static junit.framework.Assert.assertNull;
+import static junit.framework.Assert.assertTrue;
 import static org.hamcrest.core.StringEndsWith.endsWith;
 import static org.hamcrest.core.StringStartsWith.startsWith;
 
@@ -27,6 +34,8 @@ import static org.hamcrest.core.StringStartsWith.startsWith;
  */
 abstract class RxTestUtils
 {
+    private final static int DISPATCH_BATCH_SIZE = 2;
+
     /**
      * Generates "strings.length" generic events, each containing the corresponding string
      * @param strings the strings contained by each event
@@ -52,6 +61,51 @@ abstract class RxTestUtils
         });
     }
 
+    /**
+     * Generates "strings.length" generic events, each containing the corresponding string and stamped with the
+     * corresponding time
+     * @param strings the strings contained by each event
+     * @param millis the timestamps of each event, in milliseconds
+     * @return the observable of events
+     */
+    public static Observable<? extends Event> generateTimedEvents(final String[] strings, final long[] millis)
+    {
+        return Observable.create(new Observable.OnSubscribe<Event>()
+        {
+            @Override
+            public void call(final Subscriber<? super Event> subscriber)
+            {
+                for(int i=0; i<strings.length; i++)
+                {
+                    if(!subscriber.isUnsubscribed())
+                    {
+                        Event event = new GenericEvent(strings[i]);
+                        EventStamps.stamp(event, TimeUnit.MILLISECONDS.toNanos(millis[i]), i);
+                        subscriber.onNext(event);
+                    }
+                }
+
+                subscriber.onCompleted();
+            }
+        });
+    }
+
+    /**
+     * Records a trace of generic events, as generated by generateTimedEvents()
+     * @param file the file of the trace
+     * @param strings the strings contained by each event
+     * @param millis the timestamps of each event, in milliseconds
+     * @throws IOException if the trace cannot be written
+     * @throws InterruptedException if interrupted while waiting for the trace to be written
+     */
+    public static void writeTrace(File file, String[] strings, long[] millis) throws IOException, InterruptedException
+    {
+        TraceWriter writer = new TraceWriter(file);
+        generateTimedEvents(strings, millis).subscribe(writer);
+        assertTrue(writer.awaitTermination(5, TimeUnit.SECONDS));
+        assertNull(writer.getError());
+    }
+
     /**
      * Matcher used with generateEvents() to match an event with the given string
      * @param string the event string
@@ -82,6 +136,29 @@ abstract class RxTestUtils
         return isGenericEventWithObjectsThatMatch(generalStringMatcher(endsWith(string)));
     }
 
+    /**
+     * Matcher that throws an exception on every event, to test the failures of the checks
+     * @param message the message of the exception
+     * @return the Hamcrest matcher
+     */
+    public static Matcher<Event> throwing(final String message)
+    {
+        return new BaseMatcher<Event>()
+        {
+            @Override
+            public boolean matches(Object item)
+            {
+                throw new IllegalStateException(message);
+            }
+
+            @Override
+            public void describeTo(Description description)
+            {
+
+            }
+        };
+    }
+
     /**
      * Wrapper matcher that applies a String matcher to an object (i.e. only if the object is a string)
      * @param matcher the string matcher
@@ -113,8 +190,63 @@ abstract class RxTestUtils
      */
     public static void assertThatOutcomeIs(String[] events, final Check check, final Outcome outcome)
     {
-        Observable<? extends Event> observable = generateEvents(events);
-        Observable<Result> resultObservable = observable.lift(new EnforceCheck<>(check)).map(new Func1<Result, Result>()
+        assertThatOutcomeIs(generateEvents(events), check, outcome);
+    }
+
+    /**
+     * Assertions for testing a timed consistency check
+     * @param events all the events of the stream
+     * @param millis the timestamps of the events, in milliseconds
+     * @param check the check to be applied
+     * @param outcome the expected outcome
+     */
+    public static void assertThatOutcomeIs(String[] events, long[] millis, final Check check, final Outcome outcome)
+    {
+        assertThatOutcomeIs(generateTimedEvents(events, millis), check, outcome);
+    }
+
+    /**
+     * Assertions for testing a consistency check, applied by the dispatcher of the monitor: the events are sent in
+     * small batches, each followed by the time of its last event (as in {@link OfflineMonitor})
+     * @param observable the stream
+     * @param check the check to be applied
+     * @param outcome the expected outcome
+     */
+    private static void assertThatOutcomeIs(final Observable<? extends Event> observable, final Check check, final Outcome outcome)
+    {
+        Observable<Result> resultObservable = Observable.create(new Observable.OnSubscribe<Result>()
+        {
+            @Override
+            public void call(Subscriber<? super Result> resultsChild)
+            {
+                final CheckDispatcher dispatcher = new CheckDispatcher(Collections.singletonList(check), resultsChild);
+                resultsChild.add(dispatcher);
+                observable.cast(Event.class).buffer(DISPATCH_BATCH_SIZE).unsafeSubscribe(new Subscriber<List<Event>>()
+                {
+                    @Override
+                    public void onCompleted()
+                    {
+                        dispatcher.onCompleted();
+                    }
+
+                    @Override
+                    public void onError(Throwable e)
+                    {
+                        dispatcher.onError(e);
+                    }
+
+                    @Override
+                    public void onNext(List<Event> events)
+                    {
+                        Event[] batch = events.toArray(new Event[events.size()]);
+                        dispatcher.onNextBatch(batch, 0, batch.length);
+                        Event last = batch[batch.length-1];
+                        if(last.isStamped() && !dispatcher.isUnsubscribed()) dispatcher.onTime(last.getTimestamp());
+                        if(dispatcher.isUnsubscribed()) unsubscribe();
+                    }
+                });
+            }
+        }).map(new Func1<Result, Result>()
         {
             @Override
             public Result call(Result result)
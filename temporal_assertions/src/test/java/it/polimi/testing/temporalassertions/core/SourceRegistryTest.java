@@ -0,0 +1,60 @@
+package it.polimi.testing.temporalassertions.core;
+
+import org.junit.Test;
+
+import it.polimi.testing.temporalassertions.events.Event;
+import it.polimi.testing.temporalassertions.events.GenericEvent;
+import rx.Subscription;
+import rx.observers.TestSubscriber;
+import rx.schedulers.Schedulers;
+import rx.subjects.PublishSubject;
+
+import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.assertFalse;
+import static junit.framework.Assert.assertTrue;
+
+public class SourceRegistryTest
+{
+    @Test
+    public void testSourceRegistry_AddAndRemove()
+    {
+        EventIngestion ingestion = new EventIngestion(Schedulers.immediate());
+        RingBufferSubject<Event> subject = RingBufferSubject.create(RetentionPolicy.untilSubscribed());
+        TestSubscriber<Event> subscriber = new TestSubscriber<>();
+        subject.subscribe(subscriber);
+        ingestion.connect(subject);
+
+        // A source added before the connection is subscribed when the registry connects
+        SourceRegistry registry = new SourceRegistry(Schedulers.immediate());
+        PublishSubject<GenericEvent> first = PublishSubject.create();
+        registry.add("first", first, BackpressurePolicy.unbounded());
+        assertFalse(first.hasObservers());
+        registry.connect(ingestion);
+        first.onNext(new GenericEvent("A"));
+        subscriber.assertValueCount(1);
+
+        // A source added later is subscribed immediately, and stops when removed
+        PublishSubject<GenericEvent> second = PublishSubject.create();
+        Subscription secondSubscription = registry.add(null, second, BackpressurePolicy.unbounded());
+        second.onNext(new GenericEvent("B"));
+        subscriber.assertValueCount(2);
+        secondSubscription.unsubscribe();
+        assertFalse(second.hasObservers());
+        assertEquals(1, registry.size());
+
+        // The stream goes on with the other sources, the removed one keeps its metrics
+        first.onNext(new GenericEvent("C"));
+        subscriber.assertValueCount(3);
+        PipelineMetrics metrics = ingestion.getMetrics();
+        assertEquals("first", metrics.getSources().get(1).getTag());
+        assertEquals(2, metrics.getSources().get(1).getEventsCount());
+        assertEquals("source-1", metrics.getSources().get(2).getTag());
+        assertEquals(1, metrics.getSources().get(2).getEventsCount());
+
+        // Once closed, no source is subscribed anymore
+        registry.close();
+        assertFalse(first.hasObservers());
+        assertTrue(registry.add("third", PublishSubject.<GenericEvent>create(), BackpressurePolicy.unbounded()).isUnsubscribed());
+        subscriber.assertNotCompleted();
+    }
+}
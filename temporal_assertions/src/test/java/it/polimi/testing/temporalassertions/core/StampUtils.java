@@ -0,0 +1,20 @@
+package it.polimi.testing.temporalassertions.core;
+
+import it.polimi.testing.temporalassertions.events.Event;
+
+/**
+ * Gives the tests of the other packages the access to the stamps of the events
+ */
+public abstract class StampUtils
+{
+    /**
+     * Stamps an event, as if it entered a stream
+     * @param event the event
+     * @param timestamp the monotonic time in nanoseconds
+     * @param sequence the position in the stream
+     */
+    public static void stamp(Event event, long timestamp, long sequence)
+    {
+        EventStamps.stamp(event, timestamp, sequence);
+    }
+}
@@ -0,0 +1,141 @@
+package it.polimi.testing.temporalassertions.core;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import it.polimi.testing.temporalassertions.events.Event;
+import it.polimi.testing.temporalassertions.events.GenericEvent;
+import rx.Subscriber;
+
+import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.assertFalse;
+import static junit.framework.Assert.assertTrue;
+
+public class TimerWheelTest
+{
+    @Test
+    public void testTimerWheel_ExpireInOrderOfTime()
+    {
+        final List<Integer> expired = new ArrayList<>();
+        TimerWheel wheel = new TimerWheel(10, 8);
+        wheel.advance(0);
+
+        // Deadlines within the first rotation, beyond it and in the past
+        long[] deadlines = {25, 5, 1000, 79, -3};
+        TimerWheel.Timeout[] timeouts = new TimerWheel.Timeout[deadlines.length];
+        for(int i=0; i<deadlines.length; i++)
+        {
+            final int index = i;
+            timeouts[i] = new TimerWheel.Timeout()
+            {
+                @Override
+                void expire(long now)
+                {
+                    expired.add(index);
+                }
+            };
+            wheel.schedule(timeouts[i], deadlines[i]);
+        }
+        assertEquals(5, wheel.getPendingCount());
+
+        // A cancelled timeout never expires
+        wheel.cancel(timeouts[3]);
+        assertFalse(timeouts[3].isScheduled());
+
+        assertEquals(2, wheel.advance(6));
+        assertTrue(expired.contains(1) && expired.contains(4));
+
+        assertEquals(0, wheel.advance(25));
+        assertEquals(1, wheel.advance(26));
+        assertEquals(0, expired.get(2).intValue());
+
+        // The timeout beyond the first rotation stays in its bucket until its deadline
+        assertEquals(0, wheel.advance(990));
+        assertEquals(1, wheel.advance(5000));
+        assertEquals(2, expired.get(3).intValue());
+        assertEquals(0, wheel.getPendingCount());
+    }
+
+    @Test
+    public void testTimerWheel_DeadlineWithoutEvents()
+    {
+        final long window = CheckDispatcher.TIMER_TICK_NANOS*3;
+        final List<Result> results = new ArrayList<>();
+
+        // A check that fails when its deadline passes
+        Check timed = new Check("Timed", RxTestUtils.is("A"))
+        {
+            @Override
+            boolean isTimed()
+            {
+                return true;
+            }
+
+            @Override
+            protected CheckSubscriber newCheckSubscriber()
+            {
+                return new CheckSubscriber()
+                {
+                    private boolean late = false;
+
+                    @Override
+                    public void onNext(Event event)
+                    {
+                        setDeadline(event.getTimestamp()+window);
+                    }
+
+                    @Override
+                    void onDeadline(long deadline)
+                    {
+                        late = true;
+                        endCheck();
+                    }
+
+                    @Override
+                    public Result getFinalResult()
+                    {
+                        return new Result(late ? Outcome.FAILURE : Outcome.SUCCESS, "");
+                    }
+                };
+            }
+        };
+
+        List<Check> checks = new ArrayList<>();
+        checks.add(timed);
+        checks.add(RxTestUtils.alwaysSuccessCheck());
+        CheckDispatcher dispatcher = new CheckDispatcher(checks, new Subscriber<Result>()
+        {
+            @Override
+            public void onCompleted()
+            {
+
+            }
+
+            @Override
+            public void onError(Throwable e)
+            {
+
+            }
+
+            @Override
+            public void onNext(Result result)
+            {
+                results.add(result);
+            }
+        });
+
+        Event event = new GenericEvent("A");
+        EventStamps.stamp(event, 0, 0);
+        dispatcher.onNext(event);
+        assertEquals(1, results.size());
+
+        // Only the time goes on
+        dispatcher.onTime(window);
+        assertEquals(1, results.size());
+        dispatcher.onTime(window+1);
+        assertEquals(2, results.size());
+        assertEquals(Outcome.FAILURE, results.get(1).getOutcome());
+    }
+}
@@ -0,0 +1,109 @@
+package it.polimi.testing.temporalassertions.trace;
+
+import android.app.Activity;
+
+import org.junit.Test;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import it.polimi.testing.temporalassertions.events.ActivityLifecycleEvent;
+import it.polimi.testing.temporalassertions.events.BackPressEvent;
+import it.polimi.testing.temporalassertions.events.CallbackEvent;
+import it.polimi.testing.temporalassertions.events.Event;
+import it.polimi.testing.temporalassertions.events.GenericEvent;
+import it.polimi.testing.temporalassertions.events.MenuClickEvent;
+import it.polimi.testing.temporalassertions.events.TextChangeEvent;
+import it.polimi.testing.temporalassertions.events.ToastEvent;
+
+import static it.polimi.testing.temporalassertions.core.StampUtils.stamp;
+import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.assertFalse;
+import static junit.framework.Assert.assertNull;
+import static junit.framework.Assert.assertSame;
+import static junit.framework.Assert.assertTrue;
+import static junit.framework.Assert.fail;
+
+public class TraceReaderTest
+{
+    @Test
+    public void testTraceReader_RoundTrip() throws IOException, InterruptedException
+    {
+        Event[] events = new Event[]{
+                new GenericEvent("A", 1, -2L, 1.5, 2.5f, 'c', true, null),
+                new CallbackEvent("onClick"),
+                new ActivityLifecycleEvent(Activity.class, ActivityLifecycleEvent.ON_CREATE),
+                new TextChangeEvent(null, "text"),
+                new MenuClickEvent(42),
+                new ToastEvent("toast"),
+                new BackPressEvent(),
+                new CustomEvent(),
+                new CallbackEvent("onClick")
+        };
+        File file = File.createTempFile("trace", ".bin");
+        file.deleteOnExit();
+
+        TraceWriter writer = new TraceWriter(file);
+        for(int i=0; i<events.length; i++)
+        {
+            stamp(events[i], 1000+i*i, i);
+            writer.onNext(events[i]);
+        }
+        writer.onCompleted();
+        assertTrue(writer.awaitTermination(5, TimeUnit.SECONDS));
+
+        // Same classes (except the custom event), descriptions, timestamps and sequence numbers
+        TraceReader reader = new TraceReader(file);
+        Event[] read = new Event[events.length];
+        for(int i=0; i<events.length; i++)
+        {
+            read[i] = reader.next();
+            assertEquals(i<events.length-2 ? events[i].getClass() : read[i].getClass(), read[i].getClass());
+            assertEquals(events[i].toString(), read[i].toString());
+            assertEquals(events[i].getTimestamp(), reader.getLastTimestamp());
+            assertEquals(events[i].getSequence(), reader.getLastSequence());
+            assertFalse(read[i].isStamped());
+        }
+        assertNull(reader.next());
+
+        assertTrue(read[7] instanceof RecordedEvent);
+        assertEquals(CustomEvent.class.getName(), ((RecordedEvent) read[7]).getClassName());
+
+        // The strings of the dictionary are shared
+        assertSame(((CallbackEvent) read[1]).getCallbackName(), ((CallbackEvent) read[8]).getCallbackName());
+    }
+
+    @Test
+    public void testTraceReader_NotATrace() throws IOException
+    {
+        File file = File.createTempFile("trace", ".bin");
+        file.deleteOnExit();
+        FileOutputStream output = new FileOutputStream(file);
+        output.write(new byte[]{'N', 'O', 'P', 'E', 1});
+        output.close();
+
+        try
+        {
+            new TraceReader(file);
+            fail();
+        }
+        catch(IOException e)
+        {
+            // Expected
+        }
+    }
+
+    /**
+     * An event that the trace does not know
+     */
+    private static class CustomEvent extends Event
+    {
+        @Override
+        public String toString()
+        {
+            return "{Custom}";
+        }
+    }
+}
@@ -0,0 +1,94 @@
+package it.polimi.testing.temporalassertions.trace;
+
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+import it.polimi.testing.temporalassertions.events.CallbackEvent;
+import it.polimi.testing.temporalassertions.events.Event;
+import it.polimi.testing.temporalassertions.events.GenericEvent;
+import it.polimi.testing.temporalassertions.events.ToastEvent;
+
+import static it.polimi.testing.temporalassertions.core.StampUtils.stamp;
+import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.assertNull;
+import static junit.framework.Assert.assertTrue;
+
+public class TraceWriterTest
+{
+    @Test
+    public void testTraceWriter_DictionaryAndDeltas() throws IOException, InterruptedException
+    {
+        File file = File.createTempFile("trace", ".bin");
+        file.deleteOnExit();
+
+        // Consecutive events 1 ms apart with the same callback name
+        TraceWriter writer = new TraceWriter(file);
+        for(int i=0; i<100; i++)
+        {
+            Event event = new CallbackEvent("onCreate");
+            stamp(event, i*1000000L, i);
+            writer.onNext(event);
+        }
+        writer.onCompleted();
+        assertTrue(writer.awaitTermination(5, TimeUnit.SECONDS));
+        assertNull(writer.getError());
+
+        byte[] bytes = readAll(file);
+        assertTrue(Arrays.equals(TraceFormat.MAGIC, Arrays.copyOf(bytes, 4)));
+        assertEquals(TraceFormat.VERSION, bytes[4]);
+
+        // Header, then tag + timestamp (1 byte for 0, 3 bytes for 1 ms) + sequence + string (defined only the first time)
+        assertEquals(5+(4+1+8)+99*(1+3+1+1), bytes.length);
+    }
+
+    @Test
+    public void testTraceWriter_SmallBuffers() throws IOException, InterruptedException
+    {
+        File large = File.createTempFile("trace", ".bin");
+        File small = File.createTempFile("trace", ".bin");
+        large.deleteOnExit();
+        small.deleteOnExit();
+
+        // The strings longer than the buffers span several of them, the file is the same
+        TraceWriter[] writers = new TraceWriter[]{new TraceWriter(large), new TraceWriter(small, 16)};
+        for(TraceWriter writer: writers)
+        {
+            for(int i=0; i<50; i++)
+            {
+                Event event = i%2==0 ? new ToastEvent("A long toast text that does not fit in the buffer "+i) : new GenericEvent("A", i, 1.5, null, true);
+                stamp(event, i*100L, i);
+                writer.onNext(event);
+            }
+            writer.onCompleted();
+            assertTrue(writer.awaitTermination(5, TimeUnit.SECONDS));
+        }
+
+        assertTrue(Arrays.equals(readAll(large), readAll(small)));
+    }
+
+    /**
+     * Helper to read a whole file
+     * @param file the file
+     * @return its bytes
+     * @throws IOException if the file cannot be read
+     */
+    private static byte[] readAll(File file) throws IOException
+    {
+        RandomAccessFile input = new RandomAccessFile(file, "r");
+        try
+        {
+            byte[] bytes = new byte[(int) input.length()];
+            input.readFully(bytes);
+            return bytes;
+        }
+        finally
+        {
+            input.close();
+        }
+    }
+}